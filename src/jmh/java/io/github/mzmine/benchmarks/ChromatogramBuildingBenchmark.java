@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ADAP chromatogram building of a single file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChromatogramBuildingBenchmark {
+
+  @Param({"1000", "3000"})
+  public int numScans;
+
+  @Param({"1000", "5000"})
+  public int numFeatures;
+
+  private RawDataFile file;
+  private ParameterSet parameters;
+
+  /**
+   * @return parameters of the chromatogram builder for the {@link SyntheticData}
+   */
+  @NotNull
+  static ParameterSet createParameters() {
+    final ParameterSet param = new ADAPChromatogramBuilderParameters().cloneParameterSet();
+    param.getParameter(ADAPChromatogramBuilderParameters.dataFiles)
+        .setValue(RawDataFilesSelectionType.ALL_FILES);
+    param.setParameter(ADAPChromatogramBuilderParameters.scanSelection, new ScanSelection(1));
+    param.setParameter(ADAPChromatogramBuilderParameters.minimumConsecutiveScans, 4);
+    param.setParameter(ADAPChromatogramBuilderParameters.mzTolerance, new MZTolerance(0.002, 10));
+    param.setParameter(ADAPChromatogramBuilderParameters.minHighestPoint, 3E4);
+    param.setParameter(ADAPChromatogramBuilderParameters.minGroupIntensity, 1E4);
+    param.setParameter(ADAPChromatogramBuilderParameters.suffix, "chroms");
+    return param;
+  }
+
+  /**
+   * Runs the chromatogram builder in the current thread.
+   *
+   * @return the new feature list
+   */
+  @NotNull
+  static ModularFeatureList buildChromatograms(@NotNull MZmineProject project,
+      @NotNull RawDataFile file, @NotNull ParameterSet parameters) {
+    final ModularADAPChromatogramBuilderTask task = ModularADAPChromatogramBuilderTask.forChromatography(
+        project, file, parameters, MemoryMapStorage.forFeatureList(), Instant.now(),
+        ModularADAPChromatogramBuilderModule.class);
+    task.run();
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException("Chromatogram builder failed: " + task.getErrorMessage());
+    }
+    final var featureLists = project.getCurrentFeatureLists();
+    return (ModularFeatureList) featureLists.get(featureLists.size() - 1);
+  }
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    SyntheticData.initMZmineCore();
+    file = new SyntheticData(1, numFeatures, numScans * SyntheticData.SCAN_INTERVAL).createFile(
+        "chromatograms", numScans, 2, 0f, 200, false, MemoryMapStorage.forRawDataFile());
+    parameters = createParameters();
+  }
+
+  @Benchmark
+  public ModularFeatureList buildChromatograms() {
+    return buildChromatograms(new MZmineProjectImpl(), file, parameters);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetectorParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mass detection of all scans of a memory mapped file. The centroid detector runs on centroided
+ * scans, the exact mass detector on profile scans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MassDetectionBenchmark {
+
+  @Param({"centroid", "exact"})
+  public String detector;
+
+  @Param({"1000"})
+  public int numScans;
+
+  @Param({"2000"})
+  public int numFeatures;
+
+  private Scan[] scans;
+  private MassDetector massDetector;
+  private ParameterSet parameters;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    SyntheticData.initMZmineCore();
+
+    final boolean profile = detector.equals("exact");
+    final RawDataFile file = new SyntheticData(1, numFeatures,
+        numScans * SyntheticData.SCAN_INTERVAL).createFile("mass detection", numScans, 2, 0f,
+        500, profile, MemoryMapStorage.forRawDataFile());
+    scans = file.getScans().toArray(Scan[]::new);
+
+    if (profile) {
+      massDetector = new ExactMassDetector();
+      parameters = new ExactMassDetectorParameters().cloneParameterSet();
+      parameters.setParameter(ExactMassDetectorParameters.noiseLevel, 5E3);
+      parameters.setParameter(ExactMassDetectorParameters.detectIsotopes, false);
+    } else {
+      massDetector = new CentroidMassDetector();
+      parameters = new CentroidMassDetectorParameters().cloneParameterSet();
+      parameters.setParameter(CentroidMassDetectorParameters.noiseLevel, 5E3);
+      parameters.setParameter(CentroidMassDetectorParameters.detectIsotopes, false);
+    }
+  }
+
+  @Benchmark
+  public void detectMasses(Blackhole blackhole) {
+    for (Scan scan : scans) {
+      blackhole.consume(massDetector.getMassValues(scan, parameters));
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvingDimension;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolver;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Local minimum resolving of all chromatograms of a feature list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinimumSearchResolverBenchmark {
+
+  @Param({"2000"})
+  public int numScans;
+
+  @Param({"5000"})
+  public int numFeatures;
+
+  private MinimumSearchFeatureResolver resolver;
+  private double[][] x;
+  private double[][] y;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    SyntheticData.initMZmineCore();
+    final RawDataFile file = new SyntheticData(1, numFeatures,
+        numScans * SyntheticData.SCAN_INTERVAL).createFile("resolving", numScans, 2, 0f, 200,
+        false, MemoryMapStorage.forRawDataFile());
+    final ModularFeatureList flist = ChromatogramBuildingBenchmark.buildChromatograms(
+        new MZmineProjectImpl(), file, ChromatogramBuildingBenchmark.createParameters());
+
+    final ParameterSet param = new MinimumSearchFeatureResolverParameters().cloneParameterSet();
+    param.setParameter(MinimumSearchFeatureResolverParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL,
+        0.8);
+    param.setParameter(MinimumSearchFeatureResolverParameters.dimension,
+        ResolvingDimension.RETENTION_TIME);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_ABSOLUTE_HEIGHT, 3E4);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_NUMBER_OF_DATAPOINTS, 4);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RATIO, 1.8);
+    param.setParameter(MinimumSearchFeatureResolverParameters.MIN_RELATIVE_HEIGHT, 0d);
+    param.setParameter(MinimumSearchFeatureResolverParameters.PEAK_DURATION,
+        Range.closed(0.02, 1d));
+    param.setParameter(MinimumSearchFeatureResolverParameters.SEARCH_RT_RANGE, 0.05);
+    param.setParameter(MinimumSearchFeatureResolverParameters.groupMS2Parameters, false);
+    resolver = new MinimumSearchFeatureResolver(param, flist);
+
+    x = new double[flist.getNumberOfRows()][];
+    y = new double[flist.getNumberOfRows()][];
+    for (int i = 0; i < flist.getNumberOfRows(); i++) {
+      final FeatureListRow row = flist.getRow(i);
+      final IonTimeSeries<?> data = row.getBestFeature().getFeatureData();
+      final int numValues = data.getNumberOfValues();
+      x[i] = new double[numValues];
+      for (int j = 0; j < numValues; j++) {
+        x[i][j] = data.getRetentionTime(j);
+      }
+      y[i] = data.getIntensityValues(new double[numValues]);
+    }
+  }
+
+  @Benchmark
+  public void resolve(Blackhole blackhole) {
+    for (int i = 0; i < x.length; i++) {
+      // the resolver overwrites intensities below the threshold
+      blackhole.consume(resolver.resolve(x[i], y[i].clone()));
+    }
+  }
+}
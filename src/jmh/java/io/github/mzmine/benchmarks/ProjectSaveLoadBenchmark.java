@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.modules.io.projectload.ProjectOpeningTask;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveAsParameters;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveOption;
+import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.File;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saves a snapshot project of raw data files and their feature lists and opens it again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectSaveLoadBenchmark {
+
+  @Param({"3"})
+  public int numFiles;
+
+  @Param({"1000"})
+  public int numScans;
+
+  @Param({"3000"})
+  public int numFeatures;
+
+  private MZmineProjectImpl project;
+  private ParameterSet saveParameters;
+  private File projectFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    SyntheticData.initMZmineCore();
+    final SyntheticData data = new SyntheticData(1, numFeatures,
+        numScans * SyntheticData.SCAN_INTERVAL);
+    final ParameterSet chromParam = ChromatogramBuildingBenchmark.createParameters();
+
+    project = new MZmineProjectImpl();
+    for (int i = 0; i < numFiles; i++) {
+      final RawDataFile file = data.createFile("project file " + i, numScans, i + 2, 0f, 200,
+          false, MemoryMapStorage.forRawDataFile());
+      project.addFile(file);
+      ChromatogramBuildingBenchmark.buildChromatograms(project, file, chromParam);
+    }
+
+    projectFile = File.createTempFile("mzmine_benchmark", ".mzmine");
+    saveParameters = new ProjectSaveAsParameters().cloneParameterSet();
+    saveParameters.setParameter(ProjectSaveAsParameters.projectFile, projectFile);
+    saveParameters.setParameter(ProjectSaveAsParameters.option, ProjectSaveOption.SNAPSHOT);
+    // the load benchmark needs an existing project file
+    save();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    projectFile.delete();
+  }
+
+  @Benchmark
+  public TaskStatus save() {
+    return runTask(new ProjectSavingTask(project, saveParameters, Instant.now()));
+  }
+
+  @Benchmark
+  public TaskStatus load() {
+    return runTask(new ProjectOpeningTask(projectFile, Instant.now()));
+  }
+
+  private static TaskStatus runTask(AbstractTask task) {
+    task.run();
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException(
+          task.getTaskDescription() + " failed: " + task.getErrorMessage());
+    }
+    return task.getStatus();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.similarity.SpectralAlignmentKernel;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarityParameters;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Weighted cosine similarity of random spectrum pairs, once on data point arrays and once on the
+ * primitive {@link SpectralAlignmentKernel} that is used by the library search.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpectralSimilarityBenchmark {
+
+  private static final int NUM_PAIRS = 100;
+
+  @Param({"20", "200"})
+  public int numSignals;
+
+  private final WeightedCosineSpectralSimilarity similarity = new WeightedCosineSpectralSimilarity();
+  private final MZTolerance mzTol = new MZTolerance(0.005, 10);
+  private ParameterSet parameters;
+  private DataPoint[][] library;
+  private DataPoint[][] query;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    SyntheticData.initMZmineCore();
+    parameters = new WeightedCosineSpectralSimilarityParameters().cloneParameterSet();
+    parameters.setParameter(WeightedCosineSpectralSimilarityParameters.minCosine, 0d);
+
+    final Random random = new Random(1);
+    library = new DataPoint[NUM_PAIRS][];
+    query = new DataPoint[NUM_PAIRS][];
+    for (int i = 0; i < NUM_PAIRS; i++) {
+      library[i] = randomSpectrum(random, null);
+      query[i] = randomSpectrum(random, library[i]);
+    }
+  }
+
+  /**
+   * @param shared half of the signals are taken from this spectrum, if not null
+   */
+  private DataPoint[] randomSpectrum(Random random, DataPoint[] shared) {
+    final DataPoint[] dps = new DataPoint[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      if (shared != null && i % 2 == 0) {
+        dps[i] = new SimpleDataPoint(shared[i].getMZ() + (random.nextDouble() - 0.5) * 0.004,
+            shared[i].getIntensity() * (0.5 + random.nextDouble()));
+      } else {
+        dps[i] = new SimpleDataPoint(50 + random.nextDouble() * 950,
+            Math.pow(10, 2 + random.nextDouble() * 4));
+      }
+    }
+    Arrays.sort(dps, Comparator.comparingDouble(DataPoint::getMZ));
+    return dps;
+  }
+
+  @Benchmark
+  public void dataPoints(Blackhole blackhole) {
+    for (int i = 0; i < NUM_PAIRS; i++) {
+      blackhole.consume(similarity.getSimilarity(parameters, mzTol, 0, library[i], query[i]));
+    }
+  }
+
+  @Benchmark
+  public void kernel(Blackhole blackhole) {
+    final SpectralAlignmentKernel kernel = SpectralAlignmentKernel.get();
+    for (int i = 0; i < NUM_PAIRS; i++) {
+      kernel.setLibrary(library[i]);
+      kernel.setQuery(query[i]);
+      blackhole.consume(similarity.getScore(parameters, mzTol, 0, kernel));
+    }
+  }
+}
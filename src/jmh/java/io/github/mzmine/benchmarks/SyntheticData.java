@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.benchmarks;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Generates LC-MS data in-process for the benchmarks. A set of features (m/z, retention time,
+ * peak width, height) is drawn once from a seed, every file then contains Gaussian elution
+ * profiles of these features and random noise signals. Files of the same {@link SyntheticData}
+ * share the features and can be aligned.
+ */
+public class SyntheticData {
+
+  public static final double MIN_MZ = 100d;
+  public static final double MAX_MZ = 1100d;
+  /**
+   * Minutes between two MS1 scans
+   */
+  public static final float SCAN_INTERVAL = 0.01f;
+
+  private static boolean coreInitialized = false;
+
+  private final double[] featureMzs;
+  private final float[] featureRts;
+  private final float[] featureSigmas;
+  private final double[] featureHeights;
+
+  /**
+   * @param seed        the seed of the features
+   * @param numFeatures the number of features in every file
+   * @param rtLength    the retention time range of the features in minutes
+   */
+  public SyntheticData(long seed, int numFeatures, float rtLength) {
+    final Random random = new Random(seed);
+    featureMzs = new double[numFeatures];
+    featureRts = new float[numFeatures];
+    featureSigmas = new float[numFeatures];
+    featureHeights = new double[numFeatures];
+    for (int i = 0; i < numFeatures; i++) {
+      featureMzs[i] = MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ);
+      featureRts[i] = random.nextFloat() * rtLength;
+      // 2 - 5 scans
+      featureSigmas[i] = SCAN_INTERVAL * (2f + random.nextFloat() * 3f);
+      // 1E4 - 1E7
+      featureHeights[i] = Math.pow(10, 4 + random.nextDouble() * 3);
+    }
+  }
+
+  /**
+   * Starts MZmine in headless mode. Many modules read the preferences, so this has to be called
+   * before any parameter set or task is created.
+   */
+  public static synchronized void initMZmineCore() {
+    if (!coreInitialized) {
+      MZmineCore.main(new String[]{"-r", "-m", "none"});
+      coreInitialized = true;
+    }
+  }
+
+  /**
+   * Creates a file with one MS1 scan every {@link #SCAN_INTERVAL} minutes.
+   *
+   * @param numScans     the number of scans
+   * @param noiseSeed    seed for the m/z and intensity errors and the noise signals
+   * @param rtShift      shift of all features in minutes
+   * @param noisePerScan number of noise signals per scan
+   * @param profile      true for profile spectra with 7 data points per signal, false for
+   *                     centroided spectra that are also used as mass list
+   * @param storage      the storage of the scans or null to keep them in memory
+   */
+  @NotNull
+  public RawDataFile createFile(@NotNull String name, int numScans, long noiseSeed,
+      float rtShift, int noisePerScan, boolean profile, @Nullable MemoryMapStorage storage)
+      throws IOException {
+    final Random random = new Random(noiseSeed);
+    // the project save uses the path to name the file in the zip, it does not need to exist
+    final String path = new File(System.getProperty("java.io.tmpdir"),
+        name + ".mzML").getAbsolutePath();
+    final RawDataFile file = new RawDataFileImpl(name, path, storage);
+
+    final DoubleArrayList mzs = new DoubleArrayList();
+    final DoubleArrayList intensities = new DoubleArrayList();
+    for (int scanIndex = 0; scanIndex < numScans; scanIndex++) {
+      final float rt = scanIndex * SCAN_INTERVAL;
+      mzs.clear();
+      intensities.clear();
+
+      for (int f = 0; f < featureMzs.length; f++) {
+        final float distance = (rt - featureRts[f] - rtShift) / featureSigmas[f];
+        if (Math.abs(distance) > 4f) {
+          continue;
+        }
+        final double intensity = featureHeights[f] * Math.exp(-0.5 * distance * distance)
+            * (0.9 + 0.2 * random.nextDouble());
+        // 2 ppm error
+        final double mz = featureMzs[f] * (1 + (random.nextDouble() - 0.5) * 4E-6);
+        mzs.add(mz);
+        intensities.add(intensity);
+      }
+      for (int i = 0; i < noisePerScan; i++) {
+        mzs.add(MIN_MZ + random.nextDouble() * (MAX_MZ - MIN_MZ));
+        intensities.add(1E3 + random.nextDouble() * 9E3);
+      }
+
+      final double[][] spectrum = sort(mzs.toDoubleArray(), intensities.toDoubleArray());
+      final double[][] values = profile ? toProfile(spectrum[0], spectrum[1]) : spectrum;
+      final SimpleScan scan = new SimpleScan(file, scanIndex, 1, rt, null, values[0], values[1],
+          profile ? MassSpectrumType.PROFILE : MassSpectrumType.CENTROIDED,
+          PolarityType.POSITIVE, "", Range.closed(MIN_MZ, MAX_MZ));
+      if (!profile) {
+        scan.addMassList(new ScanPointerMassList(scan));
+      }
+      file.addScan(scan);
+    }
+    return file;
+  }
+
+  private static double[][] sort(double[] mzs, double[] intensities) {
+    final Integer[] order = new Integer[mzs.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    final double[][] sorted = new double[2][mzs.length];
+    for (int i = 0; i < order.length; i++) {
+      sorted[0][i] = mzs[order[i]];
+      sorted[1][i] = intensities[order[i]];
+    }
+    return sorted;
+  }
+
+  /**
+   * Every centroid is spread to 7 profile points with a spacing of 0.002. Overlapping profiles
+   * are not merged, the spectrum stays sorted because the centroids are far apart in most cases.
+   */
+  private static double[][] toProfile(double[] mzs, double[] intensities) {
+    final int width = 3;
+    final double spacing = 0.002;
+    final double[][] profile = new double[2][mzs.length * (2 * width + 1)];
+    int index = 0;
+    for (int i = 0; i < mzs.length; i++) {
+      for (int j = -width; j <= width; j++) {
+        profile[0][index] = mzs[i] + j * spacing;
+        profile[1][index] = intensities[i] * Math.exp(-0.5 * j * j);
+        index++;
+      }
+    }
+    return sort(profile[0], profile[1]);
+  }
+}
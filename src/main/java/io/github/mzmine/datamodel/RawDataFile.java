@@ -145,6 +145,50 @@ public interface RawDataFile {
         .toArray(Scan[]::new);
   }
 
+  /**
+   * Columnar index of the scan metadata for fast retention time and precursor m/z queries.
+   * Implementations should cache the index and recreate it when scans are added.
+   *
+   * @return the index of all scans of this file
+   */
+  default @NotNull ScanMetadataIndex getScanMetadataIndex() {
+    return ScanMetadataIndex.of(getScans());
+  }
+
+  /**
+   * Binary search of the retention time range in the {@link #getScanMetadataIndex()}
+   *
+   * @param msLevel MS level
+   * @param rtRange Retention time range
+   * @return all scans of this MS level in the retention time range, sorted by scan index
+   */
+  default @NotNull List<Scan> getScans(int msLevel, @NotNull Range<Float> rtRange) {
+    return toScans(getScanMetadataIndex().getScanIndices(msLevel, rtRange));
+  }
+
+  /**
+   * Binary search of the precursor m/z range in the {@link #getScanMetadataIndex()}
+   *
+   * @param msLevel          MS level of the fragment scans
+   * @param rtRange          Retention time range or null for all scans
+   * @param precursorMzRange precursor m/z range
+   * @return all scans of this MS level with a precursor m/z in the range, sorted by scan index
+   */
+  default @NotNull List<Scan> getFragmentScans(int msLevel, @Nullable Range<Float> rtRange,
+      @NotNull Range<Double> precursorMzRange) {
+    return toScans(
+        getScanMetadataIndex().getFragmentScanIndices(msLevel, rtRange, precursorMzRange));
+  }
+
+  private @NotNull List<Scan> toScans(@NotNull int[] scanIndices) {
+    final List<Scan> scans = getScans();
+    final Scan[] result = new Scan[scanIndices.length];
+    for (int i = 0; i < scanIndices.length; i++) {
+      result[i] = scans.get(scanIndices[i]);
+    }
+    return List.of(result);
+  }
+
   /**
    * Uses binary search
    *
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel;
+
+import com.google.common.collect.Range;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Columnar index of the scan metadata of a {@link RawDataFile}. The retention time, MS level,
+ * polarity, precursor m/z, TIC and base peak of each scan are kept in primitive arrays, so that
+ * queries do not need to touch the scans. Scans of one MS level can be selected in a retention
+ * time window by binary search, fragment scans by binary search on their precursor m/z. All
+ * queries return indices into {@link RawDataFile#getScans()} in ascending order.
+ * <p>
+ * The index is immutable and reflects the scans at the time of creation.
+ */
+public final class ScanMetadataIndex {
+
+  private static final PolarityType[] POLARITIES = PolarityType.values();
+  private static final int[] EMPTY = new int[0];
+
+  private final float[] rts;
+  private final byte[] msLevels;
+  private final byte[] polarities;
+  private final double[] precursorMzs;
+  private final double[] tics;
+  private final double[] basePeakMzs;
+  private final double[] basePeakIntensities;
+
+  // scan indices of each MS level in file order
+  private final Int2ObjectMap<int[]> msLevelIndices = new Int2ObjectOpenHashMap<>();
+  // MS levels where the retention times are not ascending (should not happen)
+  private final Int2ObjectMap<Boolean> unsortedMsLevels = new Int2ObjectOpenHashMap<>();
+  // summaries of each MS level and of all scans (key 0)
+  private final Int2ObjectMap<LevelSummary> summaries = new Int2ObjectOpenHashMap<>();
+  // scans with precursor m/z, sorted by precursor m/z
+  private final int[] precursorOrder;
+  private final double[] sortedPrecursorMzs;
+
+  private ScanMetadataIndex(@NotNull List<? extends Scan> scans) {
+    final int n = scans.size();
+    rts = new float[n];
+    msLevels = new byte[n];
+    polarities = new byte[n];
+    precursorMzs = new double[n];
+    tics = new double[n];
+    basePeakMzs = new double[n];
+    basePeakIntensities = new double[n];
+
+    final Int2ObjectMap<IntArrayList> levels = new Int2ObjectOpenHashMap<>();
+    final Int2ObjectMap<SummaryBuilder> builders = new Int2ObjectOpenHashMap<>();
+    final SummaryBuilder all = new SummaryBuilder();
+    builders.put(0, all);
+    final IntArrayList withPrecursor = new IntArrayList();
+
+    for (int i = 0; i < n; i++) {
+      final Scan scan = scans.get(i);
+      final int msLevel = scan.getMSLevel();
+      rts[i] = scan.getRetentionTime();
+      msLevels[i] = (byte) msLevel;
+      polarities[i] = (byte) scan.getPolarity().ordinal();
+      precursorMzs[i] = nullToNaN(scan.getPrecursorMz());
+      tics[i] = nullToNaN(scan.getTIC());
+      basePeakMzs[i] = nullToNaN(scan.getBasePeakMz());
+      basePeakIntensities[i] = nullToNaN(scan.getBasePeakIntensity());
+      if (!Double.isNaN(precursorMzs[i])) {
+        withPrecursor.add(i);
+      }
+
+      final IntArrayList levelIndices = levels.computeIfAbsent(msLevel, l -> new IntArrayList());
+      if (!levelIndices.isEmpty() && rts[levelIndices.getInt(levelIndices.size() - 1)] > rts[i]) {
+        unsortedMsLevels.put(msLevel, Boolean.TRUE);
+      }
+      levelIndices.add(i);
+
+      final Range<Double> mzRange = scan.getDataPointMZRange();
+      all.add(i, mzRange);
+      if (msLevel != 0) {
+        builders.computeIfAbsent(msLevel, l -> new SummaryBuilder()).add(i, mzRange);
+      }
+    }
+
+    for (var entry : levels.int2ObjectEntrySet()) {
+      msLevelIndices.put(entry.getIntKey(), entry.getValue().toIntArray());
+    }
+    for (var entry : builders.int2ObjectEntrySet()) {
+      summaries.put(entry.getIntKey(), entry.getValue().build());
+    }
+
+    precursorOrder = withPrecursor.toIntArray();
+    IntArrays.quickSort(precursorOrder,
+        (a, b) -> Double.compare(precursorMzs[a], precursorMzs[b]));
+    sortedPrecursorMzs = new double[precursorOrder.length];
+    for (int i = 0; i < precursorOrder.length; i++) {
+      sortedPrecursorMzs[i] = precursorMzs[precursorOrder[i]];
+    }
+  }
+
+  /**
+   * @param scans the scans of a raw data file in file order
+   */
+  @NotNull
+  public static ScanMetadataIndex of(@NotNull List<? extends Scan> scans) {
+    return new ScanMetadataIndex(scans);
+  }
+
+  private static double nullToNaN(@Nullable Double value) {
+    return value == null ? Double.NaN : value;
+  }
+
+  public int getNumberOfScans() {
+    return rts.length;
+  }
+
+  public float getRetentionTime(int index) {
+    return rts[index];
+  }
+
+  public int getMSLevel(int index) {
+    return msLevels[index];
+  }
+
+  @NotNull
+  public PolarityType getPolarity(int index) {
+    return POLARITIES[polarities[index]];
+  }
+
+  /**
+   * @return the precursor m/z or NaN
+   */
+  public double getPrecursorMz(int index) {
+    return precursorMzs[index];
+  }
+
+  /**
+   * @return the TIC or NaN
+   */
+  public double getTIC(int index) {
+    return tics[index];
+  }
+
+  /**
+   * @return the base peak m/z or NaN
+   */
+  public double getBasePeakMz(int index) {
+    return basePeakMzs[index];
+  }
+
+  /**
+   * @return the base peak intensity or NaN
+   */
+  public double getBasePeakIntensity(int index) {
+    return basePeakIntensities[index];
+  }
+
+  /**
+   * @return sorted MS levels in this file
+   */
+  @NotNull
+  public int[] getMSLevels() {
+    final int[] levels = msLevelIndices.keySet().toIntArray();
+    IntArrays.quickSort(levels);
+    return levels;
+  }
+
+  /**
+   * @return the number of scans of this MS level
+   */
+  public int getNumberOfScans(int msLevel) {
+    final int[] indices = msLevelIndices.get(msLevel);
+    return indices == null ? 0 : indices.length;
+  }
+
+  /**
+   * @return indices of all scans of this MS level. Do not modify.
+   */
+  @NotNull
+  public int[] getScanIndices(int msLevel) {
+    return Objects.requireNonNullElse(msLevelIndices.get(msLevel), EMPTY);
+  }
+
+  /**
+   * Binary search of the retention time window
+   *
+   * @return indices of all scans of this MS level within the retention time range
+   */
+  @NotNull
+  public int[] getScanIndices(int msLevel, @NotNull Range<Float> rtRange) {
+    final int[] indices = getScanIndices(msLevel);
+    if (unsortedMsLevels.containsKey(msLevel)) {
+      return filterRt(indices, 0, rtRange, false);
+    }
+    final int start = rtRange.hasLowerBound() ? lowerBound(indices, rtRange.lowerEndpoint()) : 0;
+    return filterRt(indices, start, rtRange, true);
+  }
+
+  /**
+   * Binary search of the precursor m/z range
+   *
+   * @param msLevel          the MS level of the fragment scans
+   * @param rtRange          the retention time range or null for all scans
+   * @param precursorMzRange the precursor m/z range
+   * @return indices of all scans of this MS level with a precursor m/z within the range
+   */
+  @NotNull
+  public int[] getFragmentScanIndices(int msLevel, @Nullable Range<Float> rtRange,
+      @NotNull Range<Double> precursorMzRange) {
+    int start = 0;
+    if (precursorMzRange.hasLowerBound()) {
+      start = Arrays.binarySearch(sortedPrecursorMzs,
+          precursorMzRange.lowerEndpoint());
+      start = start < 0 ? -start - 1 : start;
+      // first of equal values
+      while (start > 0 && sortedPrecursorMzs[start - 1] == precursorMzRange.lowerEndpoint()) {
+        start--;
+      }
+    }
+
+    final IntArrayList result = new IntArrayList();
+    for (int p = start; p < sortedPrecursorMzs.length; p++) {
+      final double mz = sortedPrecursorMzs[p];
+      if (precursorMzRange.hasUpperBound() && mz > precursorMzRange.upperEndpoint()) {
+        break;
+      }
+      final int index = precursorOrder[p];
+      if (msLevels[index] == msLevel && precursorMzRange.contains(mz) && (rtRange == null
+          || rtRange.contains(rts[index]))) {
+        result.add(index);
+      }
+    }
+    final int[] indices = result.toIntArray();
+    // file order
+    IntArrays.quickSort(indices);
+    return indices;
+  }
+
+  /**
+   * @param msLevel the MS level or 0 for all scans
+   * @return the retention time range or null if there are no scans
+   */
+  @Nullable
+  public Range<Float> getRTRange(int msLevel) {
+    final LevelSummary summary = summaries.get(msLevel);
+    return summary == null ? null : summary.rtRange();
+  }
+
+  /**
+   * @param msLevel the MS level or 0 for all scans
+   * @return the span of the m/z ranges of all scans or null if no scan has data points
+   */
+  @Nullable
+  public Range<Double> getMZRange(int msLevel) {
+    final LevelSummary summary = summaries.get(msLevel);
+    return summary == null ? null : summary.mzRange();
+  }
+
+  /**
+   * @param msLevel the MS level or 0 for all scans
+   * @return the maximum TIC or -1 if there is no scan with a TIC
+   */
+  public double getMaxTIC(int msLevel) {
+    final LevelSummary summary = summaries.get(msLevel);
+    return summary == null ? -1d : summary.maxTIC();
+  }
+
+  /**
+   * @param msLevel the MS level or 0 for all scans
+   * @return the maximum base peak intensity or -1 if there is no scan with a base peak
+   */
+  public double getMaxBasePeakIntensity(int msLevel) {
+    final LevelSummary summary = summaries.get(msLevel);
+    return summary == null ? -1d : summary.maxBasePeakIntensity();
+  }
+
+  /**
+   * @return first position in the indices with a retention time >= rt
+   */
+  private int lowerBound(int[] indices, float rt) {
+    int low = 0;
+    int high = indices.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (rts[indices[mid]] < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param start  first position to check
+   * @param sorted stops at the first retention time above the range if the indices are sorted by
+   *               retention time
+   */
+  private int[] filterRt(int[] indices, int start, Range<Float> rtRange, boolean sorted) {
+    final IntArrayList result = new IntArrayList();
+    for (int p = start; p < indices.length; p++) {
+      final float rt = rts[indices[p]];
+      if (sorted && rtRange.hasUpperBound() && rt > rtRange.upperEndpoint()) {
+        break;
+      }
+      if (rtRange.contains(rt)) {
+        result.add(indices[p]);
+      }
+    }
+    return result.toIntArray();
+  }
+
+  private record LevelSummary(@Nullable Range<Float> rtRange, @Nullable Range<Double> mzRange,
+                              double maxTIC, double maxBasePeakIntensity) {
+
+  }
+
+  private class SummaryBuilder {
+
+    private float minRt = Float.POSITIVE_INFINITY;
+    private float maxRt = Float.NEGATIVE_INFINITY;
+    private Range<Double> mzRange;
+    private double maxTIC = Double.NEGATIVE_INFINITY;
+    private double maxBasePeakIntensity = Double.NEGATIVE_INFINITY;
+    private int numScans = 0;
+
+    private void add(int index, @Nullable Range<Double> scanMzRange) {
+      numScans++;
+      minRt = Math.min(minRt, rts[index]);
+      maxRt = Math.max(maxRt, rts[index]);
+      if (scanMzRange != null) {
+        mzRange = mzRange == null ? scanMzRange : mzRange.span(scanMzRange);
+      }
+      if (tics[index] > maxTIC) {
+        maxTIC = tics[index];
+      }
+      if (basePeakIntensities[index] > maxBasePeakIntensity) {
+        maxBasePeakIntensity = basePeakIntensities[index];
+      }
+    }
+
+    private LevelSummary build() {
+      return new LevelSummary(numScans == 0 ? null : Range.closed(minRt, maxRt), mzRange,
+          maxTIC == Double.NEGATIVE_INFINITY ? -1d : maxTIC,
+          maxBasePeakIntensity == Double.NEGATIVE_INFINITY ? -1d : maxBasePeakIntensity);
+    }
+  }
+}
@@ -29,7 +29,9 @@ import io.github.mzmine.datamodel.featuredata.IonSeries;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -184,6 +186,61 @@ public class StorageUtils {
     return buffer;
   }
 
+  /**
+   * Stores the given array into a float buffer.
+   *
+   * @param storage The storage to be used. If null, the values will be wrapped using {@link
+   *                FloatBuffer#wrap(float[])}.
+   * @param values  The values to be stored. If storage is null, a float buffer will be wrapped
+   *                around this array. Changes in the array will therefore be reflected in the
+   *                FloatBuffer.
+   * @return The float buffer the values were stored in.
+   */
+  @NotNull
+  public static FloatBuffer storeValuesToFloatBuffer(@Nullable final MemoryMapStorage storage,
+      @NotNull final float[] values) {
+
+    FloatBuffer buffer;
+    if (storage != null) {
+      try {
+        buffer = storage.storeData(values);
+      } catch (IOException e) {
+        e.printStackTrace();
+        buffer = FloatBuffer.wrap(values);
+      }
+    } else {
+      buffer = FloatBuffer.wrap(values);
+    }
+    return buffer;
+  }
+
+  /**
+   * Stores the given bytes into a byte buffer.
+   *
+   * @param storage The storage to be used. If null, the values will be wrapped using {@link
+   *                ByteBuffer#wrap(byte[], int, int)}.
+   * @param values  The values to be stored.
+   * @param length  The number of bytes to store, starting at index 0.
+   * @return The byte buffer the values were stored in.
+   */
+  @NotNull
+  public static ByteBuffer storeValuesToByteBuffer(@Nullable final MemoryMapStorage storage,
+      @NotNull final byte[] values, final int length) {
+
+    ByteBuffer buffer;
+    if (storage != null) {
+      try {
+        buffer = storage.storeData(values, 0, length);
+      } catch (IOException e) {
+        e.printStackTrace();
+        buffer = ByteBuffer.wrap(values, 0, length).slice();
+      }
+    } else {
+      buffer = ByteBuffer.wrap(values, 0, length).slice();
+    }
+    return buffer;
+  }
+
   /**
    * Stores the given array into an int buffer.
    *
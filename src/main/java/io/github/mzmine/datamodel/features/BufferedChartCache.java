@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import javafx.scene.Node;
+import javafx.scene.layout.Pane;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Least recently used cache of the graphical cell nodes of all rows and features. The nodes stay
+ * in the buffer maps of their rows and features, this cache only limits the total number of nodes.
+ * When the limit is reached, the nodes that were not shown for the longest time are dropped from
+ * their buffers and recreated when they are shown again. Nodes that are still part of a scene are
+ * never dropped, so the limit may be exceeded while more charts are visible.
+ */
+final class BufferedChartCache {
+
+  private static final int MAX_BUFFERED_CHARTS = 1000;
+
+  private static final LinkedHashMap<ChartKey, Node> charts = new LinkedHashMap<>(
+      MAX_BUFFERED_CHARTS * 4 / 3 + 1, 0.75f, true);
+
+  private BufferedChartCache() {
+  }
+
+  @Nullable
+  static synchronized Node get(@NotNull Map<String, Node> buffer, String column) {
+    final Node node = buffer.get(column);
+    if (node != null) {
+      // mark as recently used
+      charts.get(new ChartKey(buffer, column));
+    }
+    return node;
+  }
+
+  static synchronized void put(@NotNull Map<String, Node> buffer, String column, Node node) {
+    buffer.put(column, node);
+    charts.put(new ChartKey(buffer, column), node);
+    if (charts.size() > MAX_BUFFERED_CHARTS) {
+      evictHidden();
+    }
+  }
+
+  /**
+   * Drops the least recently used nodes that are not shown in a scene until the cache is within
+   * its limit.
+   */
+  private static void evictHidden() {
+    final Iterator<Entry<ChartKey, Node>> it = charts.entrySet().iterator();
+    while (charts.size() > MAX_BUFFERED_CHARTS && it.hasNext()) {
+      final Entry<ChartKey, Node> entry = it.next();
+      final Node node = entry.getValue();
+      if (node.getScene() != null) {
+        // still visible in a cell
+        continue;
+      }
+      final ChartKey key = entry.getKey();
+      key.buffer().remove(key.column(), node);
+      it.remove();
+    }
+  }
+
+  /**
+   * Removes all nodes of this buffer from the cache and from their parents, so that they can be
+   * garbage collected.
+   */
+  static synchronized void clear(@NotNull Map<String, Node> buffer) {
+    buffer.forEach((k, v) -> {
+      charts.remove(new ChartKey(buffer, k));
+      if (v instanceof Pane p && p.getParent() instanceof Pane pane) {
+        // remove the node from the parent so there is no more reference and it can be GC'ed
+        pane.getChildren().remove(v);
+      }
+    });
+    buffer.clear();
+  }
+
+  /**
+   * Identifies the buffer map by identity, the maps of different rows may be equal
+   */
+  private record ChartKey(Map<String, Node> buffer, String column) {
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ChartKey other && other.buffer == buffer && other.column.equals(column);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(buffer) + column.hashCode();
+    }
+  }
+}
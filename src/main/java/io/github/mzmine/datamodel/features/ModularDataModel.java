@@ -55,6 +55,17 @@ public interface ModularDataModel {
    */
   ObservableMap<DataType, Object> getMap();
 
+  /**
+   * The map that actually stores the values. Used by all accessors of this model, so that
+   * implementations can back the values by a different storage and only create the observable
+   * {@link #getMap()} on demand.
+   *
+   * @return the value map, defaults to {@link #getMap()}
+   */
+  default Map<DataType, Object> getValueMap() {
+    return getMap();
+  }
+
   /**
    * Get DataType column of this DataModel
    *
@@ -124,7 +135,7 @@ public interface ModularDataModel {
    */
   @Nullable
   default <T extends Object> T get(DataType<T> type) {
-    return (T) getMap().get(type);
+    return (T) getValueMap().get(type);
   }
 
   /**
@@ -133,7 +144,7 @@ public interface ModularDataModel {
    */
   @Nullable
   default <T extends Object> boolean hasValueFor(DataType<T> type) {
-    return getMap().get(type) != null;
+    return getValueMap().get(type) != null;
   }
 
   /**
@@ -195,7 +206,7 @@ public interface ModularDataModel {
     }
 
     DataType<T> realType = getTypeColumn(tclass);
-    Object old = getMap().put(realType, value);
+    Object old = getValueMap().put(realType, value);
     // send changes to all listeners for this data type
     List<DataTypeValueChangeListener<?>> listeners = getValueChangeListeners().get(realType);
     if (!Objects.equals(old, value)) {
@@ -217,7 +228,7 @@ public interface ModularDataModel {
   default <T> void remove(Class<? extends DataType<T>> tclass) {
     DataType type = getTypeColumn(tclass);
     if (type != null) {
-      Object old = getMap().remove(type);
+      Object old = getValueMap().remove(type);
       if (old != null) {
         List<DataTypeValueChangeListener<?>> listeners = getValueChangeListeners().get(type);
         if (listeners != null) {
@@ -242,7 +253,7 @@ public interface ModularDataModel {
    * @return
    */
   default Stream<Entry<DataType, Object>> stream() {
-    return getMap().entrySet().stream();
+    return getValueMap().entrySet().stream();
   }
 
 }
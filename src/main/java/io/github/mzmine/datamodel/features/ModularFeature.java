@@ -75,7 +75,6 @@ import javafx.collections.FXCollections;
 import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableMap;
 import javafx.scene.Node;
-import javafx.scene.layout.Pane;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -87,7 +86,10 @@ import org.jetbrains.annotations.Nullable;
 public class ModularFeature implements Feature, ModularDataModel {
 
   private static final Logger logger = Logger.getLogger(ModularFeature.class.getName());
-  private final ObservableMap<DataType, Object> map = FXCollections.observableMap(new HashMap<>());
+  // values of all types, numeric values might be stored in the columns of the feature list
+  private final Map<DataType, Object> values;
+  // observable view on the values, only created on demand
+  private volatile ObservableMap<DataType, Object> map;
   // buffert col charts and nodes
   private final Map<String, Node> buffertColCharts = new HashMap<>();
   @NotNull
@@ -97,6 +99,7 @@ public class ModularFeature implements Feature, ModularDataModel {
 
   public ModularFeature(@NotNull ModularFeatureList flist) {
     this.flist = flist;
+    this.values = flist.createFeatureValueMap();
 
     // register listener to types map to automatically generate default properties for new DataTypes
     flist.getFeatureTypes().addListener(
@@ -277,22 +280,20 @@ public class ModularFeature implements Feature, ModularDataModel {
     }
   }
 
+  /**
+   * @return the buffered node or null if it was not created yet or evicted by the
+   * {@link BufferedChartCache}
+   */
   public Node getBufferedColChart(String colname) {
-    return buffertColCharts.get(colname);
+    return BufferedChartCache.get(buffertColCharts, colname);
   }
 
   public void addBufferedColChart(String colname, Node node) {
-    buffertColCharts.put(colname, node);
+    BufferedChartCache.put(buffertColCharts, colname, node);
   }
 
   public void clearBufferedColCharts() {
-    buffertColCharts.forEach((k, v) -> {
-      if (v instanceof Pane p && p.getParent() instanceof Pane pane) {
-        // remove the node from the parent so there is no more reference and it can be GC'ed
-        pane.getChildren().remove(v);
-      }
-    });
-    buffertColCharts.clear();
+    BufferedChartCache.clear(buffertColCharts);
   }
 
   @Override
@@ -329,7 +330,22 @@ public class ModularFeature implements Feature, ModularDataModel {
   // todo make this private?
   @Override
   public ObservableMap<DataType, Object> getMap() {
-    return map;
+    ObservableMap<DataType, Object> observable = map;
+    if (observable == null) {
+      synchronized (values) {
+        observable = map;
+        if (observable == null) {
+          observable = FXCollections.observableMap(values);
+          map = observable;
+        }
+      }
+    }
+    return observable;
+  }
+
+  @Override
+  public Map<DataType, Object> getValueMap() {
+    return values;
   }
 
   /**
@@ -31,6 +31,7 @@ import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.columnar.PrimitiveColumnStore;
 import io.github.mzmine.datamodel.features.correlation.R2RMap;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship.Type;
@@ -106,6 +107,11 @@ public class ModularFeatureList implements FeatureList {
   private String dateCreated;
   // grouping
   private List<RowGroup> groups;
+  // numeric row and feature values in primitive columns, null to use one map per row and feature
+  @Nullable
+  private final PrimitiveColumnStore rowColumns;
+  @Nullable
+  private final PrimitiveColumnStore featureColumns;
 
 
   public ModularFeatureList(String name, @Nullable MemoryMapStorage storage,
@@ -122,6 +128,13 @@ public class ModularFeatureList implements FeatureList {
     dateCreated = DATA_FORMAT.format(new Date());
     selectedScans = FXCollections.observableMap(new HashMap<>());
     this.memoryMapStorage = storage;
+    if (PrimitiveColumnStore.isEnabled()) {
+      rowColumns = new PrimitiveColumnStore();
+      featureColumns = new PrimitiveColumnStore();
+    } else {
+      rowColumns = null;
+      featureColumns = null;
+    }
 
     // only a few standard types
     addRowType(new IDType());
@@ -822,6 +835,24 @@ public class ModularFeatureList implements FeatureList {
     return memoryMapStorage;
   }
 
+  /**
+   * @return a new map for the values of a row, backed by the primitive columns of this feature
+   * list if {@link PrimitiveColumnStore#isEnabled()} was set on creation
+   */
+  @NotNull
+  Map<DataType, Object> createRowValueMap() {
+    return rowColumns == null ? new HashMap<>() : rowColumns.createValueMap();
+  }
+
+  /**
+   * @return a new map for the values of a feature, backed by the primitive columns of this feature
+   * list if {@link PrimitiveColumnStore#isEnabled()} was set on creation
+   */
+  @NotNull
+  Map<DataType, Object> createFeatureValueMap() {
+    return featureColumns == null ? new HashMap<>() : featureColumns.createValueMap();
+  }
+
   /**
    * Replaces {@link CachedIMSRawDataFile}s and {@link CachedIMSFrame}s in the selected scans and
    * raw data files of this feature list. Cached files are used during feature list import to avoid
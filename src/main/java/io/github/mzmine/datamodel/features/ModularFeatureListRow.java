@@ -85,7 +85,6 @@ import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import javafx.scene.Node;
-import javafx.scene.layout.Pane;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -102,11 +101,10 @@ import org.jetbrains.annotations.Nullable;
 public class ModularFeatureListRow implements FeatureListRow {
 
   private static final Logger logger = Logger.getLogger(ModularFeatureListRow.class.getName());
-  /**
-   * this final map is used in the FeaturesType - only ModularFeatureListRow is supposed to change
-   * this map see {@link #addFeature}
-   */
-  private final ObservableMap<DataType, Object> map = FXCollections.observableMap(new HashMap<>());
+  // values of all types, numeric values might be stored in the columns of the feature list
+  private final Map<DataType, Object> values;
+  // observable view on the values, only created on demand
+  private volatile ObservableMap<DataType, Object> map;
   private final Map<RawDataFile, ModularFeature> features;
   // buffert col charts and nodes
   private final Map<String, Node> buffertColCharts = new HashMap<>();
@@ -121,6 +119,7 @@ public class ModularFeatureListRow implements FeatureListRow {
    */
   public ModularFeatureListRow(@NotNull ModularFeatureList flist, int id) {
     this.flist = flist;
+    this.values = flist.createRowValueMap();
 
     // register listener to types map to automatically generate default properties for new DataTypes
     flist.getRowTypes().addListener(
@@ -209,7 +208,22 @@ public class ModularFeatureListRow implements FeatureListRow {
   // todo make private?
   @Override
   public ObservableMap<DataType, Object> getMap() {
-    return map;
+    ObservableMap<DataType, Object> observable = map;
+    if (observable == null) {
+      synchronized (values) {
+        observable = map;
+        if (observable == null) {
+          observable = FXCollections.observableMap(values);
+          map = observable;
+        }
+      }
+    }
+    return observable;
+  }
+
+  @Override
+  public Map<DataType, Object> getValueMap() {
+    return values;
   }
 
   @Override
@@ -384,22 +398,20 @@ public class ModularFeatureListRow implements FeatureListRow {
     return features.containsValue(feature);
   }
 
+  /**
+   * @return the buffered node or null if it was not created yet or evicted by the
+   * {@link BufferedChartCache}
+   */
   public Node getBufferedColChart(String colname) {
-    return buffertColCharts.get(colname);
+    return BufferedChartCache.get(buffertColCharts, colname);
   }
 
   public void addBufferedColChart(String colname, Node node) {
-    buffertColCharts.put(colname, node);
+    BufferedChartCache.put(buffertColCharts, colname, node);
   }
 
   public void clearBufferedColCharts() {
-    buffertColCharts.forEach((k, v) -> {
-      if (v instanceof Pane p && p.getParent() instanceof Pane pane) {
-        // remove the node from the parent so there is no more reference and it can be GC'ed
-        pane.getChildren().remove(v);
-      }
-    });
-    buffertColCharts.clear();
+    BufferedChartCache.clear(buffertColCharts);
   }
 
   /**
@@ -548,7 +560,7 @@ public class ModularFeatureListRow implements FeatureListRow {
 
   @Override
   public void addCompoundAnnotation(CompoundDBAnnotation id) {
-    synchronized (getMap()) {
+    synchronized (values) {
       List<CompoundDBAnnotation> matches = get(CompoundDatabaseMatchesType.class);
       if (matches == null) {
         matches = new ArrayList<>();
@@ -574,7 +586,7 @@ public class ModularFeatureListRow implements FeatureListRow {
    */
   @Override
   public boolean isIdentified() {
-    for (Entry<DataType, Object> entry : getMap().entrySet()) {
+    for (Entry<DataType, Object> entry : values.entrySet()) {
       final DataType dt = entry.getKey();
       if (dt instanceof ListWithSubsType<?> listType && dt instanceof AnnotationType) {
         final List<?> list = get(listType);
@@ -588,14 +600,14 @@ public class ModularFeatureListRow implements FeatureListRow {
 
   @Override
   public void setCompoundAnnotations(List<CompoundDBAnnotation> annotations) {
-    synchronized (getMap()) {
+    synchronized (values) {
       set(CompoundDatabaseMatchesType.class, annotations);
     }
   }
 
   @Override
   public void addSpectralLibraryMatch(SpectralDBAnnotation id) {
-    synchronized (getMap()) {
+    synchronized (values) {
       List<SpectralDBAnnotation> matches = get(SpectralLibraryMatchesType.class);
       if (matches == null) {
         matches = new ArrayList<>();
@@ -607,7 +619,7 @@ public class ModularFeatureListRow implements FeatureListRow {
 
   @Override
   public void addSpectralLibraryMatches(List<SpectralDBAnnotation> matches) {
-    synchronized (getMap()) {
+    synchronized (values) {
       List<SpectralDBAnnotation> old = get(SpectralLibraryMatchesType.class);
       if (old == null) {
         old = new ArrayList<>();
@@ -625,7 +637,7 @@ public class ModularFeatureListRow implements FeatureListRow {
 
   @Override
   public void setSpectralLibraryMatch(List<SpectralDBAnnotation> matches) {
-    synchronized (getMap()) {
+    synchronized (values) {
       set(SpectralLibraryMatchesType.class, matches);
     }
   }
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.columnar;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import java.util.AbstractMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The values of one row or feature. Numeric values live in the {@link PrimitiveColumnStore} of the
+ * feature list, all other values in a small hash map that is only created when needed. The entry
+ * set is a snapshot and cannot be used to change values.
+ */
+@SuppressWarnings("rawtypes")
+public class ColumnarValueMap extends AbstractMap<DataType, Object> {
+
+  private final PrimitiveColumnStore store;
+  private final int slot;
+  // values that are not stored in a column, only created on demand
+  private volatile Map<DataType, Object> objects;
+
+  ColumnarValueMap(@NotNull PrimitiveColumnStore store, int slot) {
+    this.store = store;
+    this.slot = slot;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (!(key instanceof DataType type)) {
+      return null;
+    }
+    if (PrimitiveColumnStore.isColumnType(type)) {
+      final Object value = store.get(type, slot);
+      if (value != null) {
+        return value;
+      }
+    }
+    final Map<DataType, Object> current = objects;
+    return current == null ? null : current.get(type);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public Object put(DataType type, Object value) {
+    if (PrimitiveColumnStore.isColumnType(type) && PrimitiveColumnStore.isColumnValue(type,
+        value)) {
+      final Object old = store.set(type, slot, value);
+      // a value of a different class might have been put before
+      final Map<DataType, Object> current = objects;
+      final Object oldObject = current == null ? null : current.remove(type);
+      return old != null ? old : oldObject;
+    }
+
+    final Object old = PrimitiveColumnStore.isColumnType(type) ? store.set(type, slot, null) : null;
+    final Object oldObject = getOrCreateObjects().put(type, value);
+    return old != null ? old : oldObject;
+  }
+
+  private Map<DataType, Object> getOrCreateObjects() {
+    Map<DataType, Object> current = objects;
+    if (current == null) {
+      synchronized (this) {
+        current = objects;
+        if (current == null) {
+          current = new HashMap<>(4);
+          objects = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  @Override
+  public Object remove(Object key) {
+    if (!(key instanceof DataType type)) {
+      return null;
+    }
+    final Object old = PrimitiveColumnStore.isColumnType(type) ? store.set(type, slot, null) : null;
+    final Map<DataType, Object> current = objects;
+    final Object oldObject = current == null ? null : current.remove(type);
+    return old != null ? old : oldObject;
+  }
+
+  @Override
+  public void clear() {
+    for (DataType type : store.getColumns().keySet()) {
+      store.set(type, slot, null);
+    }
+    objects = null;
+  }
+
+  @NotNull
+  @Override
+  public Set<Entry<DataType, Object>> entrySet() {
+    final Set<Entry<DataType, Object>> entries = new LinkedHashSet<>();
+    for (var column : store.getColumns().entrySet()) {
+      final Object value = column.getValue().get(slot);
+      if (value != null) {
+        entries.add(new SimpleImmutableEntry<>(column.getKey(), value));
+      }
+    }
+    final Map<DataType, Object> current = objects;
+    if (current != null) {
+      for (Entry<DataType, Object> entry : current.entrySet()) {
+        entries.add(new SimpleImmutableEntry<>(entry));
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * @return the slot of this row or feature in the {@link PrimitiveColumnStore}
+   */
+  public int getSlot() {
+    return slot;
+  }
+}
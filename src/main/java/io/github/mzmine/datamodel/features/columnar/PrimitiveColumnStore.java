@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.columnar;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores the values of {@link Float}, {@link Double} and {@link Integer} {@link DataType}s of all
+ * rows (or all features) of a feature list in primitive columns. Every row or feature gets a slot
+ * and reads and writes its values through a {@link ColumnarValueMap}. This avoids one boxed number
+ * and one hash map entry per value, which dominate the memory of large feature lists.
+ * <p>
+ * Columns are split into pages of {@link #PAGE_SIZE} slots that are allocated on first write.
+ * Growing a column only copies the page table, so concurrent writes to different slots are never
+ * lost.
+ */
+public class PrimitiveColumnStore {
+
+  static final int PAGE_SIZE = 1024;
+  private static final int PAGE_SHIFT = 10;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  // signalling NaN patterns that are never produced by arithmetic - mark missing values
+  private static final int FLOAT_NULL = 0x7fa0_0bad;
+  private static final long DOUBLE_NULL = 0x7ff4_0bad_0bad_0badL;
+  // the only int that cannot be stored in a column, kept in the object map of the value map
+  private static final int INT_NULL = Integer.MIN_VALUE;
+
+  private static boolean enabled = false;
+
+  private final Map<DataType<?>, Column> columns = new ConcurrentHashMap<>();
+  private final AtomicInteger nextSlot = new AtomicInteger(0);
+
+  /**
+   * @return true if new feature lists store numeric values in primitive columns
+   */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Only applies to feature lists that are created afterwards
+   *
+   * @param enabled store numeric values of new feature lists in primitive columns
+   */
+  public static void setEnabled(boolean enabled) {
+    PrimitiveColumnStore.enabled = enabled;
+  }
+
+  /**
+   * @return true if the values of this type are stored in a primitive column
+   */
+  public static boolean isColumnType(@Nullable DataType<?> type) {
+    if (type == null) {
+      return false;
+    }
+    final Class<?> valueClass = type.getValueClass();
+    return valueClass == Float.class || valueClass == Double.class || valueClass == Integer.class;
+  }
+
+  /**
+   * @param value a value of the type or null
+   * @return true if the value can be stored in the column of this type
+   */
+  static boolean isColumnValue(@NotNull DataType<?> type, @Nullable Object value) {
+    if (value == null) {
+      return true;
+    }
+    return type.getValueClass().isInstance(value) && !(value instanceof Integer i
+        && i == INT_NULL);
+  }
+
+  /**
+   * @return a new value map for a row or feature that uses the next free slot of this store
+   */
+  @NotNull
+  public ColumnarValueMap createValueMap() {
+    return new ColumnarValueMap(this, nextSlot.getAndIncrement());
+  }
+
+  /**
+   * @return the number of slots that were handed out
+   */
+  public int getSlotCount() {
+    return nextSlot.get();
+  }
+
+  @Nullable
+  Object get(@NotNull DataType<?> type, int slot) {
+    final Column column = columns.get(type);
+    return column == null ? null : column.get(slot);
+  }
+
+  /**
+   * @param value the new value, must be an instance of the type's value class or null
+   * @return the old value
+   */
+  @Nullable
+  Object set(@NotNull DataType<?> type, int slot, @Nullable Object value) {
+    Column column = columns.get(type);
+    if (column == null) {
+      if (value == null) {
+        return null;
+      }
+      column = columns.computeIfAbsent(type, PrimitiveColumnStore::createColumn);
+    }
+    return column.set(slot, value);
+  }
+
+  /**
+   * Used to iterate the values of a slot
+   */
+  @NotNull
+  Map<DataType<?>, Column> getColumns() {
+    return columns;
+  }
+
+  private static Column createColumn(DataType<?> type) {
+    final Class<?> valueClass = type.getValueClass();
+    if (valueClass == Float.class) {
+      return new FloatColumn();
+    } else if (valueClass == Double.class) {
+      return new DoubleColumn();
+    } else if (valueClass == Integer.class) {
+      return new IntColumn();
+    }
+    throw new IllegalArgumentException(
+        "No primitive column for data type " + type.getClass().getName());
+  }
+
+  /**
+   * A column of primitive values, split into pages.
+   */
+  abstract static class Column {
+
+    private volatile Object[] pages = new Object[0];
+
+    /**
+     * @return the page that contains the slot or null if it was never written
+     */
+    @Nullable
+    protected Object getPage(int slot) {
+      final Object[] current = pages;
+      final int index = slot >>> PAGE_SHIFT;
+      return index < current.length ? current[index] : null;
+    }
+
+    /**
+     * @return the page that contains the slot, allocated if needed
+     */
+    @NotNull
+    protected Object getOrCreatePage(int slot) {
+      final Object page = getPage(slot);
+      return page != null ? page : createPage(slot >>> PAGE_SHIFT);
+    }
+
+    private synchronized Object createPage(int index) {
+      Object[] current = pages;
+      if (index < current.length && current[index] != null) {
+        return current[index];
+      }
+      if (index >= current.length) {
+        current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+      }
+      final Object page = newPage();
+      current[index] = page;
+      pages = current;
+      return page;
+    }
+
+    protected static int offset(int slot) {
+      return slot & PAGE_MASK;
+    }
+
+    protected abstract Object newPage();
+
+    @Nullable
+    abstract Object get(int slot);
+
+    @Nullable
+    abstract Object set(int slot, @Nullable Object value);
+  }
+
+  private static class FloatColumn extends Column {
+
+    @Override
+    protected Object newPage() {
+      final int[] page = new int[PAGE_SIZE];
+      Arrays.fill(page, FLOAT_NULL);
+      return page;
+    }
+
+    @Override
+    Object get(int slot) {
+      final int[] page = (int[]) getPage(slot);
+      if (page == null) {
+        return null;
+      }
+      final int bits = page[offset(slot)];
+      return bits == FLOAT_NULL ? null : Float.intBitsToFloat(bits);
+    }
+
+    @Override
+    Object set(int slot, Object value) {
+      final int[] page = (int[]) getOrCreatePage(slot);
+      final int old = page[offset(slot)];
+      page[offset(slot)] = value == null ? FLOAT_NULL : Float.floatToRawIntBits((Float) value);
+      return old == FLOAT_NULL ? null : Float.intBitsToFloat(old);
+    }
+  }
+
+  private static class DoubleColumn extends Column {
+
+    @Override
+    protected Object newPage() {
+      final long[] page = new long[PAGE_SIZE];
+      Arrays.fill(page, DOUBLE_NULL);
+      return page;
+    }
+
+    @Override
+    Object get(int slot) {
+      final long[] page = (long[]) getPage(slot);
+      if (page == null) {
+        return null;
+      }
+      final long bits = page[offset(slot)];
+      return bits == DOUBLE_NULL ? null : Double.longBitsToDouble(bits);
+    }
+
+    @Override
+    Object set(int slot, Object value) {
+      final long[] page = (long[]) getOrCreatePage(slot);
+      final long old = page[offset(slot)];
+      page[offset(slot)] = value == null ? DOUBLE_NULL : Double.doubleToRawLongBits((Double) value);
+      return old == DOUBLE_NULL ? null : Double.longBitsToDouble(old);
+    }
+  }
+
+  private static class IntColumn extends Column {
+
+    @Override
+    protected Object newPage() {
+      final int[] page = new int[PAGE_SIZE];
+      Arrays.fill(page, INT_NULL);
+      return page;
+    }
+
+    @Override
+    Object get(int slot) {
+      final int[] page = (int[]) getPage(slot);
+      if (page == null) {
+        return null;
+      }
+      final int value = page[offset(slot)];
+      return value == INT_NULL ? null : value;
+    }
+
+    @Override
+    Object set(int slot, Object value) {
+      final int[] page = (int[]) getOrCreatePage(slot);
+      final int old = page[offset(slot)];
+      page[offset(slot)] = value == null ? INT_NULL : (Integer) value;
+      return old == INT_NULL ? null : old;
+    }
+  }
+}
@@ -26,17 +26,29 @@
 package io.github.mzmine.datamodel.features.correlation;
 
 import io.github.mzmine.datamodel.features.FeatureListRow;
-import io.github.mzmine.util.MathUtils;
-import java.util.concurrent.ConcurrentHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Map an object to two rows
+ * Map an object to two rows. Pairs are stored with primitive long keys of both row IDs in lock
+ * striped hash maps, so that concurrent tasks can add edges without boxing each key.
  *
  * @author Robin Schmid
  */
-public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
+public class R2RMap<T> {
 
+  // power of two
+  private static final int STRIPES = 32;
+
+  private final Long2ObjectOpenHashMap<T>[] stripes;
+
+  @SuppressWarnings("unchecked")
   public R2RMap() {
+    stripes = new Long2ObjectOpenHashMap[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Long2ObjectOpenHashMap<>();
+    }
   }
 
   /**
@@ -46,8 +58,26 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param b Feature list row with getID >=0
    * @return unique undirected ID
    */
-  public static int toKey(FeatureListRow a, FeatureListRow b) {
-    return MathUtils.undirectedPairing(a.getID(), b.getID());
+  public static long toKey(FeatureListRow a, FeatureListRow b) {
+    return toKey(a.getID(), b.getID());
+  }
+
+  /**
+   * A unique undirected key of two row IDs. Unlike a pairing function on int, this does not
+   * overflow for large IDs.
+   *
+   * @return the lower ID in the upper 32 bits and the higher ID in the lower 32 bits
+   */
+  public static long toKey(int idA, int idB) {
+    final int min = Math.min(idA, idB);
+    final int max = Math.max(idA, idB);
+    return ((long) min << 32) | (max & 0xffffffffL);
+  }
+
+  private Long2ObjectOpenHashMap<T> stripe(long key) {
+    // spread the bits of both IDs
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return stripes[(int) (h >>> 59) & (STRIPES - 1)];
   }
 
   /**
@@ -57,7 +87,7 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * @param value values is mapped to the pair of FeatureListRows a and b
    */
   public void add(FeatureListRow a, FeatureListRow b, T value) {
-    this.put(toKey(a, b), value);
+    put(a, b, value);
   }
 
   /**
@@ -65,9 +95,21 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
    * and yield the same mapping.
    *
    * @param value values is mapped to the pair of FeatureListRows a and b
+   * @return the previous value or null
    */
-  public void put(FeatureListRow a, FeatureListRow b, T value) {
-    super.put(toKey(a, b), value);
+  public T put(FeatureListRow a, FeatureListRow b, T value) {
+    return put(toKey(a, b), value);
+  }
+
+  /**
+   * @param key created by {@link #toKey(int, int)}
+   * @return the previous value or null
+   */
+  public T put(long key, T value) {
+    final Long2ObjectOpenHashMap<T> map = stripe(key);
+    synchronized (map) {
+      return map.put(key, value);
+    }
   }
 
   /**
@@ -79,4 +121,77 @@ public class R2RMap<T> extends ConcurrentHashMap<Integer, T> {
     return get(toKey(a, b));
   }
 
+  /**
+   * @param key created by {@link #toKey(int, int)}
+   * @return the mapped value or null if no mapping exists
+   */
+  public T get(long key) {
+    final Long2ObjectOpenHashMap<T> map = stripe(key);
+    synchronized (map) {
+      return map.get(key);
+    }
+  }
+
+  /**
+   * @return the removed value or null
+   */
+  public T remove(FeatureListRow a, FeatureListRow b) {
+    final long key = toKey(a, b);
+    final Long2ObjectOpenHashMap<T> map = stripe(key);
+    synchronized (map) {
+      return map.remove(key);
+    }
+  }
+
+  /**
+   * Adds all mappings of another map
+   */
+  public void putAll(R2RMap<? extends T> other) {
+    // both maps use the same stripe for a key
+    for (int i = 0; i < STRIPES; i++) {
+      final Long2ObjectOpenHashMap<? extends T> source = other.stripes[i];
+      final Long2ObjectOpenHashMap<T> copy = new Long2ObjectOpenHashMap<>();
+      synchronized (source) {
+        copy.putAll(source);
+      }
+      synchronized (stripes[i]) {
+        stripes[i].putAll(copy);
+      }
+    }
+  }
+
+  /**
+   * @return a snapshot of all values
+   */
+  public List<T> values() {
+    final List<T> values = new ArrayList<>(size());
+    for (Long2ObjectOpenHashMap<T> map : stripes) {
+      synchronized (map) {
+        values.addAll(map.values());
+      }
+    }
+    return values;
+  }
+
+  public int size() {
+    int size = 0;
+    for (Long2ObjectOpenHashMap<T> map : stripes) {
+      synchronized (map) {
+        size += map.size();
+      }
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  public void clear() {
+    for (Long2ObjectOpenHashMap<T> map : stripes) {
+      synchronized (map) {
+        map.clear();
+      }
+    }
+  }
 }
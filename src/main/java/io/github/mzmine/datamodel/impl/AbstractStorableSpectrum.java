@@ -25,6 +25,7 @@
 
 package io.github.mzmine.datamodel.impl;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
 import io.github.mzmine.util.DataPointUtils;
@@ -63,6 +64,28 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     setDataPoints(storage, mzValues, intensityValues);
   }
 
+  /**
+   * Uses already stored data points, e.g., the memory mapped peaks of a compiled spectral library.
+   * The m/z values need to be sorted and the summary values are not recalculated, so that the data
+   * points are only read on access.
+   *
+   * @param mzValues        sorted m/z values
+   * @param intensityValues intensity values
+   * @param mzRange         the m/z range or null if there are no data points
+   * @param basePeakIndex   the index of the base peak or null if there are no data points
+   * @param tic             the total ion current
+   */
+  protected AbstractStorableSpectrum(@NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues, @Nullable Range<Double> mzRange,
+      @Nullable Integer basePeakIndex, double tic) {
+    assert mzValues.capacity() == intensityValues.capacity();
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
+    this.mzRange = mzRange;
+    this.basePeakIndex = basePeakIndex;
+    this.totalIonCurrent = tic;
+  }
+
   protected synchronized void setDataPoints(@Nullable MemoryMapStorage storage,
       @Nullable double[] mzValues, @Nullable double[] intensityValues) {
 
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores the values of mobility scans in a compact, lossy encoding. Every scan is encoded in its
+ * own block of bytes:
+ * <ul>
+ *   <li>one flag byte</li>
+ *   <li>the m/z values rounded to a grid of {@link #MZ_STEP}. The grid indices are stored as
+ *   variable length differences to the previous value of the scan. Consecutive data points of
+ *   TOF spectra are close, so most differences fit into two or three bytes.</li>
+ *   <li>the intensities as variable length integers if all intensities of the scan are whole
+ *   numbers (ion counts, e.g., of timsTOF data), otherwise as floats.</li>
+ * </ul>
+ * The values of a scan are decoded on access. The last decoded scan is cached for random access
+ * to single values.
+ */
+class CompressedMobilityScanValues implements MobilityScanValues {
+
+  /**
+   * The m/z values are rounded to this step. The error is at most 0.000005, far below the mass
+   * accuracy of the instruments.
+   */
+  static final double MZ_STEP = 1E-5;
+
+  private static final byte FLAG_INTEGER_INTENSITIES = 1;
+  /**
+   * Integer intensities above this value are stored as floats.
+   */
+  private static final double MAX_INTEGER_INTENSITY = 1L << 53;
+
+  private final IntBuffer storageOffsets;
+  private final IntBuffer byteOffsets;
+  private final ByteBuffer data;
+  private final int totalNumPoints;
+
+  /**
+   * Decoded values of the last scan that was accessed by index. Immutable, so it can be shared
+   * between threads.
+   */
+  private volatile DecodedScan lastScan;
+
+  /**
+   * @param storageOffsets the index of the first data point of every scan
+   * @param mzs            the m/z values of all scans
+   * @param intensities    the intensities of all scans
+   */
+  CompressedMobilityScanValues(@Nullable MemoryMapStorage storage, @NotNull int[] storageOffsets,
+      @NotNull double[] mzs, @NotNull double[] intensities) {
+    totalNumPoints = mzs.length;
+
+    final int[] byteOffsets = new int[storageOffsets.length];
+    final Encoder encoder = new Encoder(mzs.length * 4 + storageOffsets.length);
+    for (int scan = 0; scan < storageOffsets.length; scan++) {
+      byteOffsets[scan] = encoder.size;
+      final int start = storageOffsets[scan];
+      final int end = scan < storageOffsets.length - 1 ? storageOffsets[scan + 1] : mzs.length;
+      encoder.writeScan(mzs, intensities, start, end);
+    }
+
+    this.storageOffsets = StorageUtils.storeValuesToIntBuffer(storage, storageOffsets);
+    this.byteOffsets = StorageUtils.storeValuesToIntBuffer(storage, byteOffsets);
+    data = StorageUtils.storeValuesToByteBuffer(storage, encoder.bytes, encoder.size);
+  }
+
+  @Override
+  public int getNumberOfScans() {
+    return storageOffsets.capacity();
+  }
+
+  @Override
+  public int getStorageOffset(int scanIndex) {
+    return storageOffsets.get(scanIndex);
+  }
+
+  @Override
+  public int getNumberOfDataPoints(int scanIndex) {
+    if (scanIndex < storageOffsets.capacity() - 1) {
+      return storageOffsets.get(scanIndex + 1) - storageOffsets.get(scanIndex);
+    } else {
+      return totalNumPoints - storageOffsets.get(scanIndex);
+    }
+  }
+
+  @Override
+  public int getTotalNumPoints() {
+    return totalNumPoints;
+  }
+
+  @Override
+  public void getMzValues(int scanIndex, double[] dst, int offset) {
+    decode(scanIndex, dst, offset, null, 0);
+  }
+
+  @Override
+  public void getIntensityValues(int scanIndex, double[] dst, int offset) {
+    decode(scanIndex, null, 0, dst, offset);
+  }
+
+  @Override
+  public void getAllMzValues(double[] dst) {
+    for (int scan = 0; scan < getNumberOfScans(); scan++) {
+      decode(scan, dst, getStorageOffset(scan), null, 0);
+    }
+  }
+
+  @Override
+  public void getAllIntensityValues(double[] dst) {
+    for (int scan = 0; scan < getNumberOfScans(); scan++) {
+      decode(scan, null, 0, dst, getStorageOffset(scan));
+    }
+  }
+
+  @Override
+  public double getMzValue(int scanIndex, int index) {
+    return getDecodedScan(scanIndex).mzs()[index];
+  }
+
+  @Override
+  public double getIntensityValue(int scanIndex, int index) {
+    return getDecodedScan(scanIndex).intensities()[index];
+  }
+
+  /**
+   * @return the number of bytes of the encoded values
+   */
+  int getEncodedSize() {
+    return data.capacity();
+  }
+
+  private DecodedScan getDecodedScan(int scanIndex) {
+    DecodedScan scan = lastScan;
+    if (scan == null || scan.index() != scanIndex) {
+      final int numPoints = getNumberOfDataPoints(scanIndex);
+      final double[] mzs = new double[numPoints];
+      final double[] intensities = new double[numPoints];
+      decode(scanIndex, mzs, 0, intensities, 0);
+      scan = new DecodedScan(scanIndex, mzs, intensities);
+      lastScan = scan;
+    }
+    return scan;
+  }
+
+  /**
+   * Decodes the values of a scan. The m/z values have to be read to find the start of the
+   * intensities.
+   *
+   * @param mzDst        the m/z destination or null
+   * @param intensityDst the intensity destination or null
+   */
+  private void decode(int scanIndex, @Nullable double[] mzDst, int mzOffset,
+      @Nullable double[] intensityDst, int intensityOffset) {
+    final int numPoints = getNumberOfDataPoints(scanIndex);
+    int pos = byteOffsets.get(scanIndex);
+    final byte flags = data.get(pos++);
+
+    long mzIndex = 0;
+    for (int i = 0; i < numPoints; i++) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = data.get(pos++);
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+
+      if (mzDst != null) {
+        mzIndex += (value >>> 1) ^ -(value & 1);
+        mzDst[mzOffset + i] = mzIndex * MZ_STEP;
+      }
+    }
+
+    if (intensityDst == null) {
+      return;
+    }
+    if ((flags & FLAG_INTEGER_INTENSITIES) != 0) {
+      for (int i = 0; i < numPoints; i++) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+          b = data.get(pos++);
+          value |= (long) (b & 0x7F) << shift;
+          shift += 7;
+        } while (b < 0);
+        intensityDst[intensityOffset + i] = value;
+      }
+    } else {
+      for (int i = 0; i < numPoints; i++, pos += Float.BYTES) {
+        final int bits = (data.get(pos) & 0xFF) | (data.get(pos + 1) & 0xFF) << 8
+            | (data.get(pos + 2) & 0xFF) << 16 | (data.get(pos + 3) & 0xFF) << 24;
+        intensityDst[intensityOffset + i] = Float.intBitsToFloat(bits);
+      }
+    }
+  }
+
+  private record DecodedScan(int index, double[] mzs, double[] intensities) {
+
+  }
+
+  private static class Encoder {
+
+    private byte[] bytes;
+    private int size = 0;
+
+    private Encoder(int initialCapacity) {
+      bytes = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    private void writeScan(double[] mzs, double[] intensities, int start, int end) {
+      boolean integerIntensities = true;
+      for (int i = start; i < end && integerIntensities; i++) {
+        final double intensity = intensities[i];
+        integerIntensities = intensity >= 0 && intensity <= MAX_INTEGER_INTENSITY
+                             && intensity == Math.rint(intensity);
+      }
+      writeByte(integerIntensities ? FLAG_INTEGER_INTENSITIES : 0);
+
+      long lastMzIndex = 0;
+      for (int i = start; i < end; i++) {
+        final long mzIndex = Math.round(mzs[i] / MZ_STEP);
+        final long delta = mzIndex - lastMzIndex;
+        // zig zag, the m/z values are usually but not necessarily sorted
+        writeVarLong((delta << 1) ^ (delta >> 63));
+        lastMzIndex = mzIndex;
+      }
+
+      for (int i = start; i < end; i++) {
+        if (integerIntensities) {
+          writeVarLong((long) intensities[i]);
+        } else {
+          final int bits = Float.floatToRawIntBits((float) intensities[i]);
+          writeByte(bits);
+          writeByte(bits >>> 8);
+          writeByte(bits >>> 16);
+          writeByte(bits >>> 24);
+        }
+      }
+    }
+
+    private void writeVarLong(long value) {
+      while ((value & ~0x7FL) != 0) {
+        writeByte((int) ((value & 0x7F) | 0x80));
+        value >>>= 7;
+      }
+      writeByte((int) value);
+    }
+
+    private void writeByte(int value) {
+      if (size == bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+      bytes[size++] = (byte) value;
+    }
+  }
+}
@@ -38,7 +38,6 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.scans.ScanUtils;
-import java.nio.DoubleBuffer;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
@@ -49,24 +48,26 @@ import org.jetbrains.annotations.Nullable;
 /**
  * Memory efficient storage of {@link MobilityScan}s. Methods return an instance of
  * {@link StoredMobilityScan} or {@link StoredMobilityScanMassList} which is garbage collected if
- * not used anymore.
+ * not used anymore. The values may be stored in a compressed form, see
+ * {@link #setCompressionEnabled(boolean)}.
  *
  * @author https://github.com/steffenheu
  */
 public class MobilityScanStorage {
 
+  /**
+   * Only applies to mobility scans that are stored afterwards.
+   */
+  private static boolean compressionEnabled = false;
+
   // raw data
   private final Frame frame;
-  private final DoubleBuffer rawMzValues;
-  private final DoubleBuffer rawIntensityValues;
-  private final IntBuffer rawStorageOffsets;
+  private final MobilityScanValues rawValues;
   private final IntBuffer rawBasePeakIndices;
   private final int rawMaxNumPoints;
 
   // mass list
-  private DoubleBuffer massListMzValues = null;
-  private DoubleBuffer massListIntensityValues = null;
-  private IntBuffer massListStorageOffsets = null;
+  private MobilityScanValues massListValues = null;
   private IntBuffer massListBasePeakIndices = null;
   private int massListMaxNumPoints = -1;
 
@@ -87,7 +88,6 @@ public class MobilityScanStorage {
 
     final AtomicInteger biggestOffset = new AtomicInteger(0);
     final int[] rawStorageOffsets = StorageUtils.generateOffsets(data, biggestOffset);
-    this.rawStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage, rawStorageOffsets);
 
     rawMaxNumPoints = biggestOffset.get();
 
@@ -100,8 +100,35 @@ public class MobilityScanStorage {
     final int[] rawBasePeakIndices = StorageUtils.putAllValuesIntoOneArray(data, 1, intensities);
     this.rawBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage, rawBasePeakIndices);
 
-    rawMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    rawIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    rawValues = storeValues(storage, rawStorageOffsets, mzs, intensities);
+  }
+
+  /**
+   * Lossy compression of the m/z values and intensities of mobility scans and their mass lists.
+   * The m/z values are rounded to 0.00001 and intensities that are not whole numbers are stored
+   * as floats. Reduces the size of the temporary files of ion mobility data several times.
+   *
+   * @return true if new mobility scans are compressed
+   */
+  public static boolean isCompressionEnabled() {
+    return compressionEnabled;
+  }
+
+  /**
+   * Only applies to mobility scans that are stored afterwards.
+   *
+   * @param compressionEnabled true to compress new mobility scans
+   */
+  public static void setCompressionEnabled(boolean compressionEnabled) {
+    MobilityScanStorage.compressionEnabled = compressionEnabled;
+  }
+
+  private static MobilityScanValues storeValues(@Nullable MemoryMapStorage storage,
+      int[] storageOffsets, double[] mzs, double[] intensities) {
+    if (compressionEnabled) {
+      return new CompressedMobilityScanValues(storage, storageOffsets, mzs, intensities);
+    }
+    return new SimpleMobilityScanValues(storage, storageOffsets, mzs, intensities);
   }
 
   public MobilityScanStorage(@Nullable MemoryMapStorage storage, @NotNull final Frame frame,
@@ -111,9 +138,7 @@ public class MobilityScanStorage {
     if (useAsMassList) {
       massListBasePeakIndices = rawBasePeakIndices;
       massListMaxNumPoints = rawMaxNumPoints;
-      massListMzValues = rawMzValues;
-      massListIntensityValues = rawIntensityValues;
-      massListStorageOffsets = rawStorageOffsets;
+      massListValues = rawValues;
     }
   }
 
@@ -132,9 +157,7 @@ public class MobilityScanStorage {
       // no need to run mass detection in this case.
       massListBasePeakIndices = rawBasePeakIndices;
       massListMaxNumPoints = rawMaxNumPoints;
-      massListMzValues = rawMzValues;
-      massListIntensityValues = rawIntensityValues;
-      massListStorageOffsets = rawStorageOffsets;
+      massListValues = rawValues;
       return;
     }
 
@@ -163,8 +186,6 @@ public class MobilityScanStorage {
   public void setMassLists(final @Nullable MemoryMapStorage storage, final List<double[][]> data) {
     AtomicInteger biggestOffset = new AtomicInteger(0);
     final int[] massListStorageOffsets = StorageUtils.generateOffsets(data, biggestOffset);
-    this.massListStorageOffsets = StorageUtils.storeValuesToIntBuffer(storage,
-        massListStorageOffsets);
     massListMaxNumPoints = biggestOffset.get();
 
     final int numDp = massListStorageOffsets[massListStorageOffsets.length - 1] + data.get(
@@ -177,12 +198,11 @@ public class MobilityScanStorage {
         intensities);
     this.massListBasePeakIndices = StorageUtils.storeValuesToIntBuffer(storage,
         massListBasePeakIndices);
-    massListMzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
-    massListIntensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+    massListValues = storeValues(storage, massListStorageOffsets, mzs, intensities);
   }
 
   public MassList getMassList(int mobilityScanIndex) {
-    if (massListIntensityValues == null) {
+    if (massListValues == null) {
       return null;
     }
     return new StoredMobilityScanMassList(mobilityScanIndex, this);
@@ -220,7 +240,7 @@ public class MobilityScanStorage {
   }
 
   public int getNumberOfMobilityScans() {
-    return rawStorageOffsets.capacity();
+    return rawValues.getNumberOfScans();
   }
 
   /**
@@ -229,11 +249,7 @@ public class MobilityScanStorage {
    */
   public int getNumberOfRawDatapoints(int index) {
     assert index < getNumberOfMobilityScans();
-    if (index < rawStorageOffsets.capacity() - 1) {
-      return rawStorageOffsets.get(index + 1) - rawStorageOffsets.get(index);
-    } else {
-      return rawMzValues.capacity() - rawStorageOffsets.get(index);
-    }
+    return rawValues.getNumberOfDataPoints(index);
   }
 
   /**
@@ -256,7 +272,7 @@ public class MobilityScanStorage {
    * @return The total number of points in this {@link  MobilityScanStorage}.
    */
   public int getRawTotalNumPoints() {
-    return rawMzValues.capacity();
+    return rawValues.getTotalNumPoints();
   }
 
   public Frame getFrame() {
@@ -265,52 +281,46 @@ public class MobilityScanStorage {
 
   public int getRawStorageOffset(int mobilityScanIndex) {
     assert mobilityScanIndex < getNumberOfMobilityScans();
-    return rawStorageOffsets.get(mobilityScanIndex);
+    return rawValues.getStorageOffset(mobilityScanIndex);
   }
 
   public void getRawMobilityScanMzValues(int mobilityScanIndex, double[] dst, int offset) {
     assert getNumberOfRawDatapoints(mobilityScanIndex) + offset <= dst.length;
-    rawMzValues.get(getRawStorageOffset(mobilityScanIndex), dst, offset,
-        getNumberOfRawDatapoints(mobilityScanIndex));
+    rawValues.getMzValues(mobilityScanIndex, dst, offset);
   }
 
   public void getAllRawMobilityScanMzValues(double[] dst) {
     assert dst.length >= getRawTotalNumPoints();
-    rawMzValues.get(0, dst, 0, getRawTotalNumPoints());
+    rawValues.getAllMzValues(dst);
   }
 
   public void getRawMobilityScanIntensityValues(int mobilityScanIndex, double[] dst, int offset) {
     assert getNumberOfRawDatapoints(mobilityScanIndex) + offset <= dst.length;
-    rawIntensityValues.get(getRawStorageOffset(mobilityScanIndex), dst, offset,
-        getNumberOfRawDatapoints(mobilityScanIndex));
+    rawValues.getIntensityValues(mobilityScanIndex, dst, offset);
   }
 
   public void getAllRawMobilityScanIntensityValues(double[] dst) {
     assert dst.length >= getRawTotalNumPoints();
-    rawIntensityValues.get(0, dst, 0, getRawTotalNumPoints());
+    rawValues.getAllIntensityValues(dst);
   }
 
   public double getRawMobilityScanMzValue(int mobilityScanIndex, int index) {
-    return rawMzValues.get(getRawStorageOffset(mobilityScanIndex) + index);
+    return rawValues.getMzValue(mobilityScanIndex, index);
   }
 
   public double getRawMobilityScanIntensityValue(int mobilityScanIndex, int index) {
-    return rawIntensityValues.get(getRawStorageOffset(mobilityScanIndex) + index);
+    return rawValues.getIntensityValue(mobilityScanIndex, index);
   }
 
   // mass list
   public int getNumberOfMassListDatapoints(int index) {
-    if (massListStorageOffsets == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
     assert index < getNumberOfMobilityScans();
-    if (index < massListStorageOffsets.capacity() - 1) {
-      return massListStorageOffsets.get(index + 1) - massListStorageOffsets.get(index);
-    } else {
-      return massListMzValues.capacity() - massListStorageOffsets.get(index);
-    }
+    return massListValues.getNumberOfDataPoints(index);
   }
 
   /**
@@ -318,12 +328,12 @@ public class MobilityScanStorage {
    * @return The storage offset (where data points of this mass list start)
    */
   public int getMassListStorageOffset(int index) {
-    if (massListStorageOffsets == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
-    return massListStorageOffsets.get(index);
+    return massListValues.getStorageOffset(index);
   }
 
   /**
@@ -355,71 +365,69 @@ public class MobilityScanStorage {
    * @return The total number of data points in all mobility scan-mass lists of this frame.
    */
   public int getMassListTotalNumPoints() {
-    if (massListIntensityValues == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
-    return massListIntensityValues.capacity();
+    return massListValues.getTotalNumPoints();
   }
 
   public void getMassListMzValues(int mobilityScanIndex, double[] dst, int offset) {
-    if (massListMzValues == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
     assert getNumberOfMassListDatapoints(mobilityScanIndex) + offset <= dst.length;
-    massListMzValues.get(getMassListStorageOffset(mobilityScanIndex), dst, offset,
-        getNumberOfMassListDatapoints(mobilityScanIndex));
+    massListValues.getMzValues(mobilityScanIndex, dst, offset);
   }
 
   public void getAllMassListMzValues(double[] dst) {
-    if (massListMzValues == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
     assert dst.length >= getMassListTotalNumPoints();
-    massListMzValues.get(0, dst, 0, getMassListTotalNumPoints());
+    massListValues.getAllMzValues(dst);
   }
 
   public void getMassListIntensityValues(int mobilityScanIndex, double[] dst, int offset) {
-    if (massListIntensityValues == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
     assert getNumberOfMassListDatapoints(mobilityScanIndex) + offset <= dst.length;
-    massListIntensityValues.get(getMassListStorageOffset(mobilityScanIndex), dst, offset,
-        getNumberOfMassListDatapoints(mobilityScanIndex));
+    massListValues.getIntensityValues(mobilityScanIndex, dst, offset);
   }
 
   public void getAllMassListIntensityValues(double[] dst) {
-    if (massListIntensityValues == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
     assert dst.length >= getMassListTotalNumPoints();
-    massListIntensityValues.get(0, dst, 0, getMassListTotalNumPoints());
+    massListValues.getAllIntensityValues(dst);
   }
 
   public double getMassListMzValue(int mobilityScanIndex, int index) {
-    if (massListMzValues == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
-    return massListMzValues.get(getMassListStorageOffset(mobilityScanIndex) + index);
+    return massListValues.getMzValue(mobilityScanIndex, index);
   }
 
   public double getMassListIntensityValue(int mobilityScanIndex, int index) {
-    if (massListIntensityValues == null) {
+    if (massListValues == null) {
       throw new MissingMassListException(
           "No mass list present for mobility scans. Run mass detection for scan type \"Mobility scans\" prior.",
           null);
     }
-    return massListIntensityValues.get(getMassListStorageOffset(mobilityScanIndex) + index);
+    return massListValues.getIntensityValue(mobilityScanIndex, index);
   }
 }
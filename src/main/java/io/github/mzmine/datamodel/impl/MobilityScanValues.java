@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+/**
+ * The m/z and intensity values of all mobility scans (or of their mass lists) of a single frame.
+ * The data points of all scans are numbered consecutively, the data points of a scan start at its
+ * storage offset.
+ *
+ * @see MobilityScanStorage
+ */
+interface MobilityScanValues {
+
+  int getNumberOfScans();
+
+  /**
+   * @return The index of the first data point of the scan in this storage.
+   */
+  int getStorageOffset(int scanIndex);
+
+  int getNumberOfDataPoints(int scanIndex);
+
+  /**
+   * @return The total number of data points of all scans.
+   */
+  int getTotalNumPoints();
+
+  void getMzValues(int scanIndex, double[] dst, int offset);
+
+  void getIntensityValues(int scanIndex, double[] dst, int offset);
+
+  void getAllMzValues(double[] dst);
+
+  void getAllIntensityValues(double[] dst);
+
+  double getMzValue(int scanIndex, int index);
+
+  double getIntensityValue(int scanIndex, int index);
+}
@@ -33,6 +33,7 @@ import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.maths.CenterFunction;
@@ -202,6 +203,7 @@ public class SimpleMergedMassSpectrum extends AbstractStorableSpectrum implement
     }
     MassList old = this.massList;
     this.massList = massList;
+    SimpleMassList.transferStorageOwnership(old, massList);
 
     if (rawDataFile != null) {
       rawDataFile.applyMassListChanged(this, old, massList);
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.impl;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores the values of mobility scans as doubles.
+ */
+class SimpleMobilityScanValues implements MobilityScanValues {
+
+  private final IntBuffer storageOffsets;
+  private final DoubleBuffer mzValues;
+  private final DoubleBuffer intensityValues;
+
+  /**
+   * @param storageOffsets the index of the first data point of every scan
+   * @param mzs            the m/z values of all scans
+   * @param intensities    the intensities of all scans
+   */
+  SimpleMobilityScanValues(@Nullable MemoryMapStorage storage, @NotNull int[] storageOffsets,
+      @NotNull double[] mzs, @NotNull double[] intensities) {
+    this.storageOffsets = StorageUtils.storeValuesToIntBuffer(storage, storageOffsets);
+    mzValues = StorageUtils.storeValuesToDoubleBuffer(storage, mzs);
+    intensityValues = StorageUtils.storeValuesToDoubleBuffer(storage, intensities);
+  }
+
+  @Override
+  public int getNumberOfScans() {
+    return storageOffsets.capacity();
+  }
+
+  @Override
+  public int getStorageOffset(int scanIndex) {
+    return storageOffsets.get(scanIndex);
+  }
+
+  @Override
+  public int getNumberOfDataPoints(int scanIndex) {
+    if (scanIndex < storageOffsets.capacity() - 1) {
+      return storageOffsets.get(scanIndex + 1) - storageOffsets.get(scanIndex);
+    } else {
+      return mzValues.capacity() - storageOffsets.get(scanIndex);
+    }
+  }
+
+  @Override
+  public int getTotalNumPoints() {
+    return mzValues.capacity();
+  }
+
+  @Override
+  public void getMzValues(int scanIndex, double[] dst, int offset) {
+    mzValues.get(getStorageOffset(scanIndex), dst, offset, getNumberOfDataPoints(scanIndex));
+  }
+
+  @Override
+  public void getIntensityValues(int scanIndex, double[] dst, int offset) {
+    intensityValues.get(getStorageOffset(scanIndex), dst, offset,
+        getNumberOfDataPoints(scanIndex));
+  }
+
+  @Override
+  public void getAllMzValues(double[] dst) {
+    mzValues.get(0, dst, 0, getTotalNumPoints());
+  }
+
+  @Override
+  public void getAllIntensityValues(double[] dst) {
+    intensityValues.get(0, dst, 0, getTotalNumPoints());
+  }
+
+  @Override
+  public double getMzValue(int scanIndex, int index) {
+    return mzValues.get(getStorageOffset(scanIndex) + index);
+  }
+
+  @Override
+  public double getIntensityValue(int scanIndex, int index) {
+    return intensityValues.get(getStorageOffset(scanIndex) + index);
+  }
+}
@@ -31,6 +31,7 @@ import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
 import io.github.mzmine.datamodel.msms.MsMsInfo;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.scans.ScanUtils;
@@ -173,6 +174,7 @@ public class SimpleScan extends AbstractStorableSpectrum implements Scan {
     }
     MassList old = this.massList;
     this.massList = massList;
+    SimpleMassList.transferStorageOwnership(old, massList);
 
     if (dataFile != null) {
       dataFile.applyMassListChanged(this, old, massList);
@@ -25,6 +25,7 @@
 
 package io.github.mzmine.datamodel.impl.masslist;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MassList;
 import io.github.mzmine.datamodel.impl.AbstractStorableSpectrum;
@@ -33,6 +34,7 @@ import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.ParsingUtils;
+import java.nio.DoubleBuffer;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -46,9 +48,13 @@ public class SimpleMassList extends AbstractStorableSpectrum implements MassList
 
   public static final String XML_ELEMENT = "simplemasslist";
 
+  @Nullable
+  private final MemoryMapStorage storage;
+
   public SimpleMassList(@Nullable MemoryMapStorage storage, @NotNull double[] mzValues,
       @NotNull double[] intensityValues) {
     super(storage, mzValues, intensityValues);
+    this.storage = storage;
   }
 
   /**
@@ -57,6 +63,36 @@ public class SimpleMassList extends AbstractStorableSpectrum implements MassList
    */
   public SimpleMassList(@Nullable MemoryMapStorage storage, @NotNull double[][] mzIntensities) {
     super(storage, mzIntensities[0], mzIntensities[1]);
+    this.storage = storage;
+  }
+
+  /**
+   * Mass list on already stored and sorted data points
+   *
+   * @see AbstractStorableSpectrum#AbstractStorableSpectrum(DoubleBuffer, DoubleBuffer, Range,
+   * Integer, double)
+   */
+  protected SimpleMassList(@NotNull DoubleBuffer mzValues, @NotNull DoubleBuffer intensityValues,
+      @Nullable Range<Double> mzRange, @Nullable Integer basePeakIndex, double tic) {
+    super(mzValues, intensityValues, mzRange, basePeakIndex, tic);
+    this.storage = null;
+  }
+
+  /**
+   * Scans own the storage of their mass list. Retains the storage of the new mass list and releases
+   * the storage of the replaced mass list, so that the temporary files of a previous mass detection
+   * are deleted once all its mass lists were replaced.
+   *
+   * @param old     the replaced mass list or null
+   * @param current the new mass list or null
+   */
+  public static void transferStorageOwnership(@Nullable MassList old, @Nullable MassList current) {
+    if (current instanceof SimpleMassList sml && sml.storage != null) {
+      sml.storage.retain();
+    }
+    if (old instanceof SimpleMassList sml && sml.storage != null) {
+      sml.storage.release();
+    }
   }
 
   /**
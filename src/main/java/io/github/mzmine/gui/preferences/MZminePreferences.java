@@ -25,6 +25,8 @@
 
 package io.github.mzmine.gui.preferences;
 
+import io.github.mzmine.datamodel.features.columnar.PrimitiveColumnStore;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
 import io.github.mzmine.gui.chartbasics.chartthemes.ChartThemeParameters;
 import io.github.mzmine.main.KeepInMemory;
 import io.github.mzmine.main.MZmineCore;
@@ -153,6 +155,18 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final BooleanParameter columnarFeatureStorage = new BooleanParameter(
+      "Columnar feature storage", "Stores numeric values of rows and features (m/z, RT, height, "
+      + "area, ...) in primitive columns per feature list instead of one map per row and feature. "
+      + "Reduces the memory of large feature lists. Only applies to new feature lists.", false);
+
+  public static final BooleanParameter compressMobilityScans = new BooleanParameter(
+      "Compress mobility scans", "Stores the m/z values and intensities of mobility scans and "
+      + "their mass lists in a compact encoding. Reduces the size of the temporary files of ion "
+      + "mobility data several times. The compression is lossy, m/z values are rounded to 0.00001 "
+      + "and intensities that are not whole numbers are stored with single precision. Only "
+      + "applies to data that is imported or detected afterwards.", false);
+
   public static final BooleanParameter showPrecursorWindow = new BooleanParameter(
       "Show precursor windows", "Show the isolation window instead of just the precursor m/z.",
       false);
@@ -176,7 +190,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public MZminePreferences() {
     super(// start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath, sendStatistics,
+        numOfThreads, memoryOption, columnarFeatureStorage, compressMobilityScans, tempDirectory,
+        proxySettings, rExecPath, sendStatistics,
         // visuals
         // number formats
         mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat, scoreFormat,
@@ -201,8 +216,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath,
-            sendStatistics});
+        new Parameter[]{numOfThreads, memoryOption, columnarFeatureStorage, compressMobilityScans,
+            tempDirectory, proxySettings, rExecPath, sendStatistics});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
             scoreFormat, unitFormat});
@@ -228,6 +243,8 @@ public class MZminePreferences extends SimpleParameterSet {
     final KeepInMemory keepInMemory = MZmineCore.getConfiguration().getPreferences()
         .getParameter(MZminePreferences.memoryOption).getValue();
     keepInMemory.enforceToMemoryMapping();
+    PrimitiveColumnStore.setEnabled(getValue(MZminePreferences.columnarFeatureStorage));
+    MobilityScanStorage.setCompressionEnabled(getValue(MZminePreferences.compressMobilityScans));
 
     final Themes theme = getValue(MZminePreferences.theme);
     theme.apply(MZmineCore.getDesktop().getMainWindow().getScene().getStylesheets());
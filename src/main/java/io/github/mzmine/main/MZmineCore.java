@@ -31,6 +31,8 @@ import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.ImagingRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.columnar.PrimitiveColumnStore;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
 import io.github.mzmine.gui.Desktop;
 import io.github.mzmine.gui.HeadLessDesktop;
 import io.github.mzmine.gui.MZmineGUI;
@@ -190,6 +192,10 @@ public final class MZmineCore {
 
       // apply memory management option
       keepInMemory.enforceToMemoryMapping();
+      PrimitiveColumnStore.setEnabled(getInstance().configuration.getPreferences()
+          .getValue(MZminePreferences.columnarFeatureStorage));
+      MobilityScanStorage.setCompressionEnabled(getInstance().configuration.getPreferences()
+          .getValue(MZminePreferences.compressMobilityScans));
 
       // batch mode defined by command line argument
       File batchFile = argsParser.getBatchFile();
@@ -541,6 +547,10 @@ public final class MZmineCore {
     getInstance().storageList.add(storage);
   }
 
+  public static void unregisterStorage(MemoryMapStorage storage) {
+    getInstance().storageList.remove(storage);
+  }
+
   public static List<MemoryMapStorage> getStorageList() {
     return getInstance().storageList;
   }
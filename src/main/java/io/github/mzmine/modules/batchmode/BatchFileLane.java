@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineModuleCategory;
+import io.github.mzmine.modules.MZmineProcessingModule;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.filter_merge.RawFileMergeModule;
+import io.github.mzmine.modules.tools.sortdatafiles.SortDataFilesModule;
+import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.EmbeddedParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskStatusListener;
+import io.github.mzmine.taskcontrol.impl.WrappedTask;
+import io.github.mzmine.util.ExitCode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Runs a consecutive run of per-file batch steps for a single raw data file. Multiple lanes run
+ * concurrently, so that one file can already be resolved while the chromatograms of another file
+ * are still being built. Steps that need all files (alignment, gap filling, merging, ...) are not
+ * pipelinable and act as barriers in the {@link BatchTask}.
+ */
+class BatchFileLane implements Callable<List<FeatureList>> {
+
+  private static final Logger logger = Logger.getLogger(BatchFileLane.class.getName());
+
+  /**
+   * Module categories that only work on one raw data file or one feature list at a time.
+   */
+  private static final Set<MZmineModuleCategory> PIPELINABLE_CATEGORIES = EnumSet.of(
+      MZmineModuleCategory.RAWDATA, MZmineModuleCategory.EIC_DETECTION,
+      MZmineModuleCategory.FEATURE_RESOLVING, MZmineModuleCategory.ISOTOPES,
+      MZmineModuleCategory.FEATURELISTFILTERING);
+
+  /**
+   * Modules in the pipelinable categories that still need to see all files at once
+   */
+  private static final Set<Class<?>> BARRIER_MODULES = Set.of(RawFileMergeModule.class,
+      SortDataFilesModule.class);
+
+  private final MZmineProject project;
+  private final List<MZmineProcessingStep<?>> steps;
+  private final RawDataFile file;
+  private final BooleanSupplier stopped;
+  private final Object statusLock = new Object();
+  private final TaskStatusListener statusListener = (task, newStatus, oldStatus) -> {
+    synchronized (statusLock) {
+      statusLock.notifyAll();
+    }
+  };
+  private List<FeatureList> featureLists;
+
+  /**
+   * @param steps            the consecutive pipelinable steps
+   * @param file             the raw data file processed by this lane
+   * @param inputFeatureList the feature list of this file if the first step works on feature
+   *                         lists, otherwise null
+   * @param stopped          true if the batch was canceled or another lane failed
+   */
+  BatchFileLane(@NotNull MZmineProject project, @NotNull List<MZmineProcessingStep<?>> steps,
+      @NotNull RawDataFile file, @Nullable FeatureList inputFeatureList,
+      @NotNull BooleanSupplier stopped) {
+    this.project = project;
+    this.steps = steps;
+    this.file = file;
+    this.stopped = stopped;
+    featureLists = inputFeatureList == null ? List.of() : List.of(inputFeatureList);
+  }
+
+  /**
+   * A step can run in a lane if its module works per file and it takes exactly one input, either
+   * the raw data files or the feature lists of the previous batch step.
+   */
+  static boolean isPipelinable(@NotNull MZmineProcessingStep<?> step) {
+    if (!(step.getModule() instanceof MZmineProcessingModule module)
+        || !PIPELINABLE_CATEGORIES.contains(module.getModuleCategory())
+        || BARRIER_MODULES.contains(module.getClass())) {
+      return false;
+    }
+
+    int rawInputs = 0;
+    int flistInputs = 0;
+    for (Parameter<?> p : step.getParameterSet().getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp) {
+        if (rdp.getValue() == null
+            || rdp.getValue().getSelectionType() != RawDataFilesSelectionType.BATCH_LAST_FILES) {
+          return false;
+        }
+        rawInputs++;
+      } else if (p instanceof FeatureListsParameter flp) {
+        if (flp.getValue() == null || flp.getValue().getSelectionType()
+                                      != FeatureListsSelectionType.BATCH_LAST_FEATURELISTS) {
+          return false;
+        }
+        flistInputs++;
+      }
+    }
+    return rawInputs + flistInputs == 1;
+  }
+
+  /**
+   * @return true if the step takes raw data files as input, false for feature lists
+   */
+  static boolean usesRawDataFiles(@NotNull MZmineProcessingStep<?> step) {
+    return Arrays.stream(step.getParameterSet().getParameters())
+        .anyMatch(RawDataFilesParameter.class::isInstance);
+  }
+
+  @NotNull
+  RawDataFile getRawDataFile() {
+    return file;
+  }
+
+  /**
+   * @return the feature lists of this file after the last step that created feature lists, the
+   * input feature list if no step created a new one, or an empty list if there is neither.
+   */
+  @Override
+  public List<FeatureList> call() throws Exception {
+    for (MZmineProcessingStep<?> step : steps) {
+      if (stopped.getAsBoolean()) {
+        return featureLists;
+      }
+      processStep(step);
+    }
+    return featureLists;
+  }
+
+  private void processStep(MZmineProcessingStep<?> step) throws Exception {
+    final MZmineProcessingModule method = (MZmineProcessingModule) step.getModule();
+    // every lane needs its own selection
+    final ParameterSet parameters = step.getParameterSet().cloneParameterSet();
+    setBatchLastToParamSet(method, parameters);
+
+    List<String> messages = new ArrayList<>();
+    if (!parameters.checkParameterValues(messages)) {
+      throw new IllegalStateException(
+          "Invalid parameter settings for module " + method.getName() + ": " + messages);
+    }
+
+    final List<FeatureList> beforeFeatureLists = project.getCurrentFeatureLists();
+    List<Task> tasks = new ArrayList<>();
+    ExitCode exitCode = method.runModule(project, parameters, tasks, Instant.now());
+    if (exitCode != ExitCode.OK) {
+      throw new IllegalStateException("Could not start batch step " + method.getName());
+    }
+
+    if (!tasks.isEmpty()) {
+      waitForTasks(MZmineCore.getTaskController().addTasks(tasks.toArray(new Task[0])));
+    }
+
+    // other lanes add feature lists at the same time, only keep the lists of this file
+    List<FeatureList> created = new ArrayList<>(project.getCurrentFeatureLists());
+    created.removeAll(beforeFeatureLists);
+    created.removeIf(flist -> !flist.getRawDataFiles().equals(List.of(file)));
+    if (!created.isEmpty()) {
+      featureLists = created;
+    }
+    logger.finest(() -> "Finished batch step " + method.getName() + " for " + file.getName());
+  }
+
+  private void setBatchLastToParamSet(MZmineProcessingModule method, ParameterSet parameters) {
+    for (Parameter<?> p : parameters.getParameters()) {
+      if (p instanceof RawDataFilesParameter rdp) {
+        rdp.getValue().setBatchLastFiles(new RawDataFile[]{file});
+      } else if (p instanceof FeatureListsParameter flp) {
+        if (featureLists.isEmpty()) {
+          throw new IllegalStateException(
+              "Batch step " + method.getName() + " requires a feature list but none was created for "
+              + file.getName());
+        }
+        flp.getValue().setBatchLastFeatureLists(featureLists.toArray(new FeatureList[0]));
+      } else if (p instanceof EmbeddedParameterSet embedded) {
+        setBatchLastToParamSet(method, embedded.getEmbeddedParameters());
+      }
+    }
+  }
+
+  private void waitForTasks(WrappedTask[] wrappedTasks) throws Exception {
+    for (WrappedTask wrappedTask : wrappedTasks) {
+      wrappedTask.getActualTask().addTaskStatusListener(statusListener);
+    }
+    try {
+      // statuses are checked while holding the lock, so no notification is missed before waiting
+      synchronized (statusLock) {
+        while (true) {
+          if (stopped.getAsBoolean()) {
+            cancelAll(wrappedTasks);
+            return;
+          }
+          if (allFinished(wrappedTasks)) {
+            return;
+          }
+          // woken up by status changes, the timeout only covers cancellation of the batch
+          statusLock.wait(1000);
+        }
+      }
+    } finally {
+      for (WrappedTask wrappedTask : wrappedTasks) {
+        wrappedTask.getActualTask().removeTaskStatusListener(statusListener);
+      }
+    }
+  }
+
+  /**
+   * @return true if all tasks finished
+   * @throws IllegalStateException if any task failed or was canceled
+   */
+  private static boolean allFinished(WrappedTask[] wrappedTasks) {
+    boolean allFinished = true;
+    for (WrappedTask wrappedTask : wrappedTasks) {
+      final Task task = wrappedTask.getActualTask();
+      final TaskStatus status = task.getStatus();
+      if (status == TaskStatus.ERROR) {
+        cancelAll(wrappedTasks);
+        throw new IllegalStateException(task.getTaskDescription() + ": " + task.getErrorMessage());
+      }
+      if (status == TaskStatus.CANCELED) {
+        cancelAll(wrappedTasks);
+        throw new IllegalStateException(task.getTaskDescription() + " was canceled");
+      }
+      if (status != TaskStatus.FINISHED) {
+        allFinished = false;
+      }
+    }
+    return allFinished;
+  }
+
+  private static void cancelAll(WrappedTask[] wrappedTasks) {
+    for (WrappedTask t : wrappedTasks) {
+      t.getActualTask().cancel();
+    }
+  }
+}
@@ -28,6 +28,7 @@ package io.github.mzmine.modules.batchmode;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.AdvancedParametersParameter;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNameListSilentParameter;
 import io.github.mzmine.util.ExitCode;
 
@@ -40,8 +41,15 @@ public class BatchModeParameters extends SimpleParameterSet {
   public static final AdvancedParametersParameter<AdvancedBatchModeParameters> advanced = new AdvancedParametersParameter<>(
       new AdvancedBatchModeParameters());
 
+  public static final BooleanParameter pipelineFileSteps = new BooleanParameter(
+      "Pipeline per-file steps",
+      "Run consecutive per-file steps (mass detection, chromatogram building, resolving, isotope "
+      + "grouping, feature list filters) as independent lanes per raw data file. Files do not "
+      + "wait for each other until a step needs all files, e.g., alignment or gap filling.",
+      false);
+
   public BatchModeParameters() {
-    super(new Parameter[]{batchQueue, advanced, lastFiles});
+    super(new Parameter[]{batchQueue, pipelineFileSteps, advanced, lastFiles});
   }
 
   @Override
@@ -56,9 +56,19 @@ import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Batch mode task
@@ -74,6 +84,7 @@ public class BatchTask extends AbstractTask {
   private int processedSteps;
   private final boolean useAdvanced;
   private final int datasets;
+  private final boolean pipelineFileSteps;
   private List<File> subDirectories;
   private List<RawDataFile> createdDataFiles;
   private List<RawDataFile> previousCreatedDataFiles;
@@ -95,6 +106,7 @@ public class BatchTask extends AbstractTask {
     super(null, moduleCallDate);
     this.project = project;
     this.queue = parameters.getParameter(BatchModeParameters.batchQueue).getValue();
+    pipelineFileSteps = parameters.getValue(BatchModeParameters.pipelineFileSteps);
     // advanced parameters
     useAdvanced = parameters.getParameter(BatchModeParameters.advanced).getValue();
     if (useAdvanced) {
@@ -167,9 +179,17 @@ public class BatchTask extends AbstractTask {
         }
       }
 
-      // run step
-      processQueueStep(i % stepsPerDataset);
-      processedSteps++;
+      // run step or a run of per-file steps as parallel lanes
+      final int step = i % stepsPerDataset;
+      final int pipelinedSteps = pipelineFileSteps ? getPipelinableStepCount(step) : 0;
+      if (pipelinedSteps > 1) {
+        processPipelinedSteps(step, pipelinedSteps);
+        processedSteps += pipelinedSteps;
+        i += pipelinedSteps - 1;
+      } else {
+        processQueueStep(step);
+        processedSteps++;
+      }
 
       // If we are canceled or ran into error, stop here
       if (isCanceled()) {
@@ -406,6 +426,135 @@ public class BatchTask extends AbstractTask {
     }
   }
 
+  /**
+   * @return the number of consecutive steps starting at stepNumber that can run per file
+   */
+  private int getPipelinableStepCount(int stepNumber) {
+    int count = 0;
+    while (stepNumber + count < stepsPerDataset && BatchFileLane.isPipelinable(
+        queue.get(stepNumber + count))) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Runs consecutive per-file steps as one lane per raw data file. The lanes only meet again at the
+   * next step that needs all files (alignment, gap filling, ...). Falls back to sequential
+   * processing if the input cannot be split by file.
+   */
+  private void processPipelinedSteps(int firstStep, int numSteps) {
+    if (createdDataFiles.isEmpty()) {
+      createdDataFiles = previousCreatedDataFiles;
+    }
+    if (createdFeatureLists.isEmpty()) {
+      createdFeatureLists = previousCreatedFeatureLists;
+    }
+
+    final List<MZmineProcessingStep<?>> steps = new ArrayList<>(
+        queue.subList(firstStep, firstStep + numSteps));
+    // stop all lanes as soon as one lane fails
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    final List<BatchFileLane> lanes = createLanes(steps,
+        () -> failed.get() || getStatus() != TaskStatus.PROCESSING);
+    if (lanes == null) {
+      logger.info("Cannot split the input of step # " + (firstStep + 1)
+                  + " by raw data file, running the steps sequentially");
+      for (int s = firstStep; s < firstStep + numSteps && getStatus() == TaskStatus.PROCESSING;
+          s++) {
+        processQueueStep(s);
+      }
+      return;
+    }
+
+    logger.info(
+        "Starting steps # %d to %d as %d parallel lanes".formatted(firstStep + 1, firstStep + numSteps,
+            lanes.size()));
+
+    final int numThreads = Math.min(lanes.size(), Runtime.getRuntime().availableProcessors());
+    final ExecutorService laneExecutor = Executors.newFixedThreadPool(numThreads, r -> {
+      Thread thread = new Thread(r, "Batch lane thread");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    final List<FeatureList> laneFeatureLists = new ArrayList<>();
+    try {
+      final List<Future<List<FeatureList>>> futures = new ArrayList<>();
+      for (BatchFileLane lane : lanes) {
+        futures.add(laneExecutor.submit(() -> {
+          try {
+            return lane.call();
+          } catch (Exception e) {
+            failed.set(true);
+            throw e;
+          }
+        }));
+      }
+
+      // collect in lane order to keep the order of the raw data files
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          laneFeatureLists.addAll(futures.get(i).get());
+        } catch (ExecutionException e) {
+          final Throwable cause = e.getCause() != null ? e.getCause() : e;
+          logger.log(Level.WARNING, "Batch lane of " + lanes.get(i).getRawDataFile().getName()
+                                    + " failed: " + cause.getMessage(), cause);
+          if (getStatus() != TaskStatus.ERROR) {
+            setStatus(TaskStatus.ERROR);
+            setErrorMessage(cause.getMessage());
+          }
+        } catch (InterruptedException e) {
+          failed.set(true);
+          cancel();
+        }
+      }
+    } finally {
+      laneExecutor.shutdownNow();
+    }
+
+    if (getStatus() != TaskStatus.PROCESSING) {
+      return;
+    }
+
+    for (MZmineProcessingStep<?> step : steps) {
+      GoogleAnalyticsTracker.trackModule((MZmineProcessingModule) step.getModule());
+    }
+
+    // per-file steps never create new raw data files, the previous ones stay valid
+    createdDataFiles = new ArrayList<>();
+    if (laneFeatureLists.isEmpty() || laneFeatureLists.equals(createdFeatureLists)) {
+      createdFeatureLists = new ArrayList<>();
+    } else {
+      createdFeatureLists = laneFeatureLists;
+      previousCreatedFeatureLists = createdFeatureLists;
+    }
+  }
+
+  /**
+   * @return one lane per raw data file or null if the input of the first step cannot be split by
+   * file
+   */
+  @Nullable
+  private List<BatchFileLane> createLanes(List<MZmineProcessingStep<?>> steps,
+      BooleanSupplier stopped) {
+    final List<BatchFileLane> lanes = new ArrayList<>();
+    if (BatchFileLane.usesRawDataFiles(steps.get(0))) {
+      for (RawDataFile file : createdDataFiles) {
+        lanes.add(new BatchFileLane(project, steps, file, null, stopped));
+      }
+    } else {
+      final Set<RawDataFile> files = new HashSet<>();
+      for (FeatureList flist : createdFeatureLists) {
+        if (flist.getNumberOfRawDataFiles() != 1 || !files.add(flist.getRawDataFile(0))) {
+          return null;
+        }
+        lanes.add(new BatchFileLane(project, steps, flist.getRawDataFile(0), flist, stopped));
+      }
+    }
+    return lanes.size() > 1 ? lanes : null;
+  }
+
   private void setLastFilesIfAllDataImportStep(final ParameterSet batchStepParameters) {
     if (AllSpectralDataImportParameters.isParameterSetClass(batchStepParameters)) {
       var loadedRawDataFiles = AllSpectralDataImportParameters.getLoadedRawDataFiles(
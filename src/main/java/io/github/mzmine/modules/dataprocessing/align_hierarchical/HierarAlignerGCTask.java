@@ -128,6 +128,7 @@ public class HierarAlignerGCTask extends AbstractTask {
   public static final boolean USE_DOUBLE_PRECISION_FOR_DIST = false;
 
   private ClusteringProgression clustProgress;
+  private volatile SparseDistanceEngine distanceEngine;
 
   // Minimum score ever.
   // TODO: better use "Double.MIN_VALUE" rather than zero (it has consequences
@@ -240,8 +241,11 @@ public class HierarAlignerGCTask extends AbstractTask {
     if (totalRows == 0)
       return 0f;
     // return (double) processedRows / (double) totalRows;
+    final SparseDistanceEngine engine = distanceEngine;
+    final int distanceRows = engine != null ? engine.getProcessedRows() : 0;
     double progress =
-        (processedRows + (clustProgress.getProgress() * totalRows / 3.0d)) / totalRows;
+        (processedRows + distanceRows + (clustProgress.getProgress() * totalRows / 3.0d))
+            / totalRows;
     // logger.info(">> THE progress: " + progress);
     // logger.info("Caught progress: " +
     // clustProgress.getProgress());
@@ -326,24 +330,10 @@ public class HierarAlignerGCTask extends AbstractTask {
     Integer[] newIds = orderIds.toArray(new Integer[orderIds.size()]);
     //
 
-    // TriangularMatrix distances = null;
-    DistanceMatrix distancesGNF_Tri = null;
+    // Only the pairs of rows within the tolerances are stored, all other distances are infinite
+    SparseDistanceMatrix distancesGNF_Tri = null;
     DistanceMatrix distancesGNF_Tri_Bkp = null;
 
-    int nbPeaks = 0;
-    for (int i = 0; i < newIds.length; ++i) {
-      FeatureList peakList = peakLists[newIds[i]];
-      nbPeaks += peakList.getNumberOfRows();
-    }
-
-    // If 'Hybrid' or no distance matrix: no need for a matrix
-    if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
-      // distances = new double[nbPeaks][nbPeaks];
-
-      int nRowCount = nbPeaks;
-      distancesGNF_Tri = new DistanceMatrixTriangular1D2D(nRowCount);
-    }
-
     full_rows_list = new ArrayList<>();
 
     for (int i = 0; i < newIds.length; ++i) {
@@ -369,28 +359,21 @@ public class HierarAlignerGCTask extends AbstractTask {
         maximumScore);
 
     // If 'Hybrid' or no distance matrix: no need for a matrix
+    // the edges are kept in a temporary storage until the clusters are validated
+    final MemoryMapStorage distanceStorage = MemoryMapStorage.create().retain();
     if (CLUSTERER_TYPE == ClustererType.HYBRID || !saveRAMratherThanCPU_1) {
 
-      for (int x = 0; x < nbPeaks; ++x) {
-
-        for (int y = x; y < nbPeaks; ++y) {
-
-          float dist = (float) distProvider.getRankedDistance(x, y, mzTolerance.getMzTolerance(),
-              rtTolerance.getTolerance(), minScore);
-
-          // if (CLUSTERER_TYPE == ClustererType.CLASSIC_OLD)
-          // distances.set(x, y , dist);
-          // else
-          distancesGNF_Tri.setValue(x, y, dist);
-
-        }
-
-        processedRows++;
-        if (DEBUG)
-          logger.info(
-              "Treating lists: " + (Math.round(100 * processedRows / (double) nbPeaks)) + " %");
-
+      distanceEngine = new SparseDistanceEngine(full_rows_list, distProvider,
+          mzTolerance.getMzTolerance(), rtTolerance.getTolerance(), minScore, maximumScore,
+          this::isCanceled);
+      distancesGNF_Tri = distanceEngine.compute(distanceStorage);
+      if (distancesGNF_Tri == null) {
+        distanceStorage.release();
+        return;
       }
+      final int distanceRows = distanceEngine.getProcessedRows();
+      distanceEngine = null;
+      processedRows += distanceRows;
     }
     if (DEBUG)
       printMemoryUsage(logger, run_time, prevTotal, prevFree, "DISTANCES COMPUTED");
@@ -446,22 +429,21 @@ public class HierarAlignerGCTask extends AbstractTask {
                                     // recomputed on demand during
                                     // "getValidatedClusters_3()"
         distancesGNF_Tri_Bkp = null; // No duplicate backup storage!
-      } else { // Otherwise, backing up the distance matrix (matrix being
-               // deeply changed during "clusterDM()", then no more
-               // exploitable)
-        distancesGNF_Tri_Bkp = new DistanceMatrixTriangular1D2D(distancesGNF_Tri);
-        if (DEBUG)
-          printMemoryUsage(logger, run_time, prevTotal, prevFree, "GNF CLUSTERER BACKUP MATRIX");
+      } else { // The sparse matrix is not changed by the clustering, no backup needed
+        distancesGNF_Tri_Bkp = distancesGNF_Tri;
       }
 
       if (DEBUG)
         logger.info("Clustering...");
       if (distancesGNF_Tri != null)
-        arNodes = org.gnf.clustering.sequentialcache.SequentialCacheClustering
-            .clusterDM(distancesGNF_Tri, linkageStartegyType, null, nRowCount);
+        arNodes = SparseHierarchicalClustering.cluster(distancesGNF_Tri, linkageStartegyType,
+            clustProgress, this::isCanceled);
+      if (arNodes == null) {
+        distanceStorage.release();
+        return;
+      }
 
       distancesGNF_Tri = null;
-      System.gc();
 
       if (DEBUG)
         printMemoryUsage(logger, run_time, prevTotal, prevFree, "GNF CLUSTERER DONE");
@@ -499,6 +481,8 @@ public class HierarAlignerGCTask extends AbstractTask {
 
       gnfClusters = getValidatedClusters_3(arNodes, 0.0f, newIds.length, max_dist,
           distancesGNF_Tri_Bkp, distProvider);
+      distancesGNF_Tri_Bkp = null;
+      distanceStorage.release();
 
       // -- Print
       if (DEBUG_2 && do_verbose)
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes the {@link SparseDistanceMatrix} of all rows. Only rows of different raw data files
+ * within the RT and m/z windows of {@link RowVsRowDistanceProvider#getRankedDistance} are scored
+ * and only pairs with a score above the minimum score become edges, all other pairs can never be
+ * part of the same cluster. The rows are sorted by RT and cut into blocks, each block is compared
+ * to the following rows within the RT window in parallel.
+ */
+class SparseDistanceEngine {
+
+  private static final Logger logger = Logger.getLogger(SparseDistanceEngine.class.getName());
+
+  private static final int BLOCK_SIZE = 256;
+
+  private final List<FeatureListRow> rows;
+  private final RowVsRowDistanceProvider distProvider;
+  private final double mzMaxDiff;
+  private final double rtMaxDiff;
+  private final double minScore;
+  private final double maximumScore;
+  private final BooleanSupplier isCanceled;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
+
+  SparseDistanceEngine(@NotNull List<FeatureListRow> rows,
+      @NotNull RowVsRowDistanceProvider distProvider, double mzMaxDiff, double rtMaxDiff,
+      double minScore, double maximumScore, @NotNull BooleanSupplier isCanceled) {
+    this.rows = rows;
+    this.distProvider = distProvider;
+    this.mzMaxDiff = mzMaxDiff;
+    this.rtMaxDiff = rtMaxDiff;
+    this.minScore = minScore;
+    this.maximumScore = maximumScore;
+    this.isCanceled = isCanceled;
+  }
+
+  int getProcessedRows() {
+    return processedRows.get();
+  }
+
+  /**
+   * @param storage the storage for the edges or null to keep them in memory
+   * @return the distance matrix or null if the task was canceled
+   */
+  @Nullable
+  SparseDistanceMatrix compute(@Nullable MemoryMapStorage storage) {
+    final int n = rows.size();
+    final float[] rts = new float[n];
+    final double[] mzs = new double[n];
+    final int[] files = new int[n];
+    final Map<RawDataFile, Integer> fileIndices = new HashMap<>();
+    for (int i = 0; i < n; i++) {
+      final FeatureListRow row = rows.get(i);
+      final Feature best = row.getBestFeature();
+      rts[i] = best.getRT();
+      mzs[i] = best.getMZ();
+      files[i] = fileIndices.computeIfAbsent(row.getRawDataFiles().get(0),
+          f -> fileIndices.size());
+    }
+
+    final int[] order = IntStream.range(0, n).toArray();
+    IntArrays.quickSort(order, (a, b) -> Float.compare(rts[a], rts[b]));
+
+    final int numBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final List<BlockEdges> blocks = IntStream.range(0, numBlocks).parallel()
+        .mapToObj(block -> computeBlock(block, order, rts, mzs, files)).toList();
+    if (isCanceled.getAsBoolean()) {
+      return null;
+    }
+
+    final int numEdges = blocks.stream().mapToInt(b -> b.rows().length).sum();
+    final int[] edgeRows = new int[numEdges];
+    final int[] edgeCols = new int[numEdges];
+    final float[] edgeDists = new float[numEdges];
+    int offset = 0;
+    for (BlockEdges block : blocks) {
+      final int length = block.rows().length;
+      System.arraycopy(block.rows(), 0, edgeRows, offset, length);
+      System.arraycopy(block.cols(), 0, edgeCols, offset, length);
+      System.arraycopy(block.dists(), 0, edgeDists, offset, length);
+      offset += length;
+    }
+    logger.finest(() -> "Found %d pairs of rows within the tolerances out of %d rows".formatted(
+        numEdges, n));
+
+    return new SparseDistanceMatrix(n, edgeRows, edgeCols, edgeDists, storage);
+  }
+
+  private BlockEdges computeBlock(int block, int[] order, float[] rts, double[] mzs, int[] files) {
+    final IntArrayList edgeRows = new IntArrayList();
+    final IntArrayList edgeCols = new IntArrayList();
+    final FloatArrayList edgeDists = new FloatArrayList();
+    final double minAcceptedScore = Math.max(HierarAlignerGCTask.MIN_SCORE_ABSOLUTE, minScore);
+
+    final int end = Math.min(order.length, (block + 1) * BLOCK_SIZE);
+    for (int p = block * BLOCK_SIZE; p < end; p++) {
+      if (isCanceled.getAsBoolean()) {
+        break;
+      }
+      final int i = order[p];
+      // same windows as the ranked distance, rows are sorted by RT
+      for (int q = p + 1; q < order.length && Math.abs(rts[order[q]] - rts[i]) < rtMaxDiff / 2.0;
+          q++) {
+        final int j = order[q];
+        if (files[i] == files[j] || Math.abs(mzs[i] - mzs[j]) >= mzMaxDiff / 2.0) {
+          continue;
+        }
+        // score in the original row order, the score is not necessarily symmetric
+        final double score = distProvider.getScore(Math.min(i, j), Math.max(i, j), mzMaxDiff,
+            rtMaxDiff).getScore();
+        if (score <= minAcceptedScore) {
+          continue;
+        }
+        edgeRows.add(i);
+        edgeCols.add(j);
+        edgeDists.add((float) (maximumScore - score));
+      }
+      processedRows.incrementAndGet();
+    }
+    return new BlockEdges(edgeRows.toIntArray(), edgeCols.toIntArray(),
+        edgeDists.toFloatArray());
+  }
+
+  private record BlockEdges(int[] rows, int[] cols, float[] dists) {
+
+  }
+}
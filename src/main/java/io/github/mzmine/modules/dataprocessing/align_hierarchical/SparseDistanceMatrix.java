@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.Arrays;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.gnf.clustering.DistanceMatrix;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Symmetric distance matrix that only holds the pairs of rows that can be aligned. All other
+ * distances are {@link #NO_EDGE}. The edges are stored row by row (compressed sparse rows) with the
+ * neighbours of each row in ascending order, so that a single distance is a binary search and the
+ * neighbours of a row can be iterated directly. Neighbours and distances are kept in a
+ * {@link MemoryMapStorage}.
+ */
+public class SparseDistanceMatrix implements DistanceMatrix {
+
+  public static final float NO_EDGE = Float.POSITIVE_INFINITY;
+
+  private final int dimension;
+  // offsets[i] to offsets[i+1] are the neighbours of row i
+  private final int[] offsets;
+  private final IntBuffer neighbours;
+  private final FloatBuffer distances;
+
+  /**
+   * @param nRowCount the number of rows
+   * @param rows      first row of each edge
+   * @param cols      second row of each edge
+   * @param dists     distance of each edge. Every edge is only given once.
+   * @param storage   the storage for the edges or null to keep them in memory
+   */
+  public SparseDistanceMatrix(int nRowCount, int[] rows, int[] cols, float[] dists,
+      @Nullable MemoryMapStorage storage) {
+    dimension = nRowCount;
+    if (2L * rows.length > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException(
+          "Too many pairs of rows within the tolerances (" + rows.length + ")");
+    }
+
+    offsets = new int[nRowCount + 1];
+    for (int e = 0; e < rows.length; e++) {
+      offsets[rows[e] + 1]++;
+      offsets[cols[e] + 1]++;
+    }
+    for (int i = 0; i < nRowCount; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+
+    final int[] next = java.util.Arrays.copyOf(offsets, nRowCount);
+    final int[] allNeighbours = new int[2 * rows.length];
+    final float[] allDistances = new float[2 * rows.length];
+    for (int e = 0; e < rows.length; e++) {
+      int pos = next[rows[e]]++;
+      allNeighbours[pos] = cols[e];
+      allDistances[pos] = dists[e];
+      pos = next[cols[e]]++;
+      allNeighbours[pos] = rows[e];
+      allDistances[pos] = dists[e];
+    }
+
+    for (int i = 0; i < nRowCount; i++) {
+      Arrays.quickSort(offsets[i], offsets[i + 1],
+          (a, b) -> Integer.compare(allNeighbours[a], allNeighbours[b]), (a, b) -> {
+            final int n = allNeighbours[a];
+            allNeighbours[a] = allNeighbours[b];
+            allNeighbours[b] = n;
+            final float d = allDistances[a];
+            allDistances[a] = allDistances[b];
+            allDistances[b] = d;
+          });
+    }
+
+    neighbours = StorageUtils.storeValuesToIntBuffer(storage, allNeighbours);
+    distances = StorageUtils.storeValuesToFloatBuffer(storage, allDistances);
+  }
+
+  public int getNumberOfNeighbours(int row) {
+    return offsets[row + 1] - offsets[row];
+  }
+
+  /**
+   * @param index the index within the neighbours of this row
+   * @return the row of the neighbour
+   */
+  public int getNeighbour(int row, int index) {
+    return neighbours.get(offsets[row] + index);
+  }
+
+  /**
+   * @param index the index within the neighbours of this row
+   * @return the distance to the neighbour
+   */
+  public float getNeighbourDistance(int row, int index) {
+    return distances.get(offsets[row] + index);
+  }
+
+  /**
+   * @return the number of edges, each pair of rows counted once
+   */
+  public int getNumberOfEdges() {
+    return neighbours.limit() / 2;
+  }
+
+  @Override
+  public int getRowCount() {
+    return dimension;
+  }
+
+  @Override
+  public int getColCount() {
+    return dimension;
+  }
+
+  @Override
+  public float getValue(int nRow, int nCol) {
+    if (nRow == nCol) {
+      return 0f;
+    }
+    // search the shorter row
+    if (getNumberOfNeighbours(nRow) > getNumberOfNeighbours(nCol)) {
+      final int tmp = nRow;
+      nRow = nCol;
+      nCol = tmp;
+    }
+    int low = offsets[nRow];
+    int high = offsets[nRow + 1] - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final int neighbour = neighbours.get(mid);
+      if (neighbour < nCol) {
+        low = mid + 1;
+      } else if (neighbour > nCol) {
+        high = mid - 1;
+      } else {
+        return distances.get(mid);
+      }
+    }
+    return NO_EDGE;
+  }
+
+  /**
+   * The matrix is read only.
+   */
+  @Override
+  public void setValue(int nRow, int nCol, float fVal) {
+    throw new UnsupportedOperationException("The sparse distance matrix cannot be changed");
+  }
+}
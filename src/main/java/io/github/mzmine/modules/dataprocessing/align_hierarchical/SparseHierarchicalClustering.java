@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+import org.gnf.clustering.LinkageMode;
+import org.gnf.clustering.Node;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Agglomerative hierarchical clustering on a {@link SparseDistanceMatrix}. Missing edges are
+ * infinite distances: with {@link LinkageMode#MIN} two clusters are linked by their closest edge,
+ * with {@link LinkageMode#MAX} and {@link LinkageMode#AVG} two clusters are only linked if every
+ * pair of their rows is an edge. Clusters that are never linked are joined by a balanced tree on
+ * top with distance {@link #UNLINKED_DISTANCE}.
+ * <p>
+ * The result has the same layout as the one of
+ * {@link org.gnf.clustering.sequentialcache.SequentialCacheClustering#clusterDM}: n-1 nodes with
+ * the root last, children >= 0 are rows and children < 0 are nodes (-index-1).
+ */
+class SparseHierarchicalClustering {
+
+  static final float UNLINKED_DISTANCE = Float.MAX_VALUE;
+
+  private final SparseDistanceMatrix distances;
+  private final LinkageMode linkage;
+  private final int n;
+  // clusters 0..n-1 are the rows, cluster n+k is created by node k
+  private final int[] parent;
+  private final int[] size;
+  private final boolean[] merged;
+  // links of clusters >= n to the clusters at the time they were created
+  private final ClusterLinks[] links;
+
+  private SparseHierarchicalClustering(SparseDistanceMatrix distances, LinkageMode linkage) {
+    this.distances = distances;
+    this.linkage = linkage;
+    n = distances.getRowCount();
+    final int numClusters = Math.max(0, 2 * n - 1);
+    parent = new int[numClusters];
+    size = new int[numClusters];
+    merged = new boolean[numClusters];
+    links = new ClusterLinks[Math.max(0, n - 1)];
+    for (int i = 0; i < numClusters; i++) {
+      parent[i] = i;
+      size[i] = 1;
+    }
+  }
+
+  /**
+   * @param progress is updated with the fraction of created nodes
+   * @return the nodes or null if canceled
+   */
+  @Nullable
+  static Node[] cluster(@NotNull SparseDistanceMatrix distances, @NotNull LinkageMode linkage,
+      @NotNull ClusteringProgression progress, @NotNull BooleanSupplier isCanceled) {
+    return new SparseHierarchicalClustering(distances, linkage).cluster(progress, isCanceled);
+  }
+
+  @Nullable
+  private Node[] cluster(ClusteringProgression progress, BooleanSupplier isCanceled) {
+    final Node[] nodes = new Node[Math.max(0, n - 1)];
+    final PriorityQueue<Merge> queue = new PriorityQueue<>(
+        Math.max(1, distances.getNumberOfEdges()), Merge.ORDER);
+    for (int i = 0; i < n; i++) {
+      for (int k = 0; k < distances.getNumberOfNeighbours(i); k++) {
+        final int j = distances.getNeighbour(i, k);
+        if (i < j) {
+          queue.add(new Merge(distances.getNeighbourDistance(i, k), i, j));
+        }
+      }
+    }
+
+    int numNodes = 0;
+    while (!queue.isEmpty()) {
+      if (isCanceled.getAsBoolean()) {
+        return null;
+      }
+      final Merge next = queue.poll();
+      // one of the clusters was merged after this link was queued
+      if (merged[next.a()] || merged[next.b()]) {
+        continue;
+      }
+      final int cluster = n + numNodes;
+      nodes[numNodes] = new Node(toNodeChild(next.a()), toNodeChild(next.b()), next.distance());
+      merge(next.a(), next.b(), cluster, queue);
+      numNodes++;
+      progress.setProgress((double) numNodes / nodes.length);
+    }
+
+    // join all remaining clusters
+    IntArrayList roots = new IntArrayList();
+    for (int c = 0; c < n + numNodes; c++) {
+      if (!merged[c]) {
+        roots.add(c);
+      }
+    }
+    while (roots.size() > 1) {
+      final IntArrayList nextRoots = new IntArrayList();
+      for (int r = 0; r + 1 < roots.size(); r += 2) {
+        nodes[numNodes] = new Node(toNodeChild(roots.getInt(r)), toNodeChild(roots.getInt(r + 1)),
+            UNLINKED_DISTANCE);
+        nextRoots.add(n + numNodes);
+        numNodes++;
+      }
+      if (roots.size() % 2 == 1) {
+        nextRoots.add(roots.getInt(roots.size() - 1));
+      }
+      roots = nextRoots;
+    }
+    progress.setProgress(1d);
+    return nodes;
+  }
+
+  private int toNodeChild(int cluster) {
+    return cluster < n ? cluster : -(cluster - n) - 1;
+  }
+
+  private int find(int cluster) {
+    int root = cluster;
+    while (parent[root] != root) {
+      root = parent[root];
+    }
+    while (parent[cluster] != root) {
+      final int next = parent[cluster];
+      parent[cluster] = root;
+      cluster = next;
+    }
+    return root;
+  }
+
+  /**
+   * Creates the links of the new cluster from the links of a and b and queues them. The links of
+   * other clusters are not updated, they are resolved to the current clusters when they are merged
+   * themselves.
+   */
+  private void merge(int a, int b, int cluster, PriorityQueue<Merge> queue) {
+    merged[a] = true;
+    merged[b] = true;
+    parent[a] = cluster;
+    parent[b] = cluster;
+    size[cluster] = size[a] + size[b];
+
+    final Int2ObjectOpenHashMap<Link> combined = new Int2ObjectOpenHashMap<>();
+    collectLinks(a, cluster, combined);
+    collectLinks(b, cluster, combined);
+    // the links of a and b are not needed anymore
+    if (a >= n) {
+      links[a - n] = null;
+    }
+    if (b >= n) {
+      links[b - n] = null;
+    }
+
+    final int[] others = new int[combined.size()];
+    final double[] values = new double[combined.size()];
+    final long[] pairs = new long[combined.size()];
+    int i = 0;
+    for (Int2ObjectMap.Entry<Link> entry : combined.int2ObjectEntrySet()) {
+      final int other = entry.getIntKey();
+      final Link link = entry.getValue();
+      others[i] = other;
+      values[i] = link.value;
+      pairs[i] = link.pairs;
+      i++;
+
+      final float distance = linkageDistance(link, (long) size[cluster] * size[other]);
+      if (distance != SparseDistanceMatrix.NO_EDGE) {
+        queue.add(new Merge(distance, other, cluster));
+      }
+    }
+    links[cluster - n] = new ClusterLinks(others, values, pairs);
+  }
+
+  private void collectLinks(int source, int cluster, Int2ObjectOpenHashMap<Link> combined) {
+    if (source < n) {
+      for (int k = 0; k < distances.getNumberOfNeighbours(source); k++) {
+        addLink(combined, cluster, distances.getNeighbour(source, k),
+            distances.getNeighbourDistance(source, k), 1);
+      }
+    } else {
+      final ClusterLinks sourceLinks = links[source - n];
+      for (int k = 0; k < sourceLinks.others().length; k++) {
+        addLink(combined, cluster, sourceLinks.others()[k], sourceLinks.values()[k],
+            sourceLinks.pairs()[k]);
+      }
+    }
+  }
+
+  private void addLink(Int2ObjectOpenHashMap<Link> combined, int cluster, int other, double value,
+      long pairs) {
+    final int current = find(other);
+    if (current == cluster) {
+      return;
+    }
+    final Link link = combined.get(current);
+    if (link == null) {
+      combined.put(current, new Link(value, pairs));
+      return;
+    }
+    link.pairs += pairs;
+    if (linkage == LinkageMode.MIN) {
+      link.value = Math.min(link.value, value);
+    } else if (linkage == LinkageMode.MAX) {
+      link.value = Math.max(link.value, value);
+    } else {
+      link.value += value;
+    }
+  }
+
+  /**
+   * @param allPairs the number of row pairs between both clusters
+   * @return the linkage distance or {@link SparseDistanceMatrix#NO_EDGE}
+   */
+  private float linkageDistance(Link link, long allPairs) {
+    if (linkage == LinkageMode.MIN) {
+      return (float) link.value;
+    }
+    if (link.pairs < allPairs) {
+      return SparseDistanceMatrix.NO_EDGE;
+    }
+    return (float) (linkage == LinkageMode.MAX ? link.value : link.value / link.pairs);
+  }
+
+  /**
+   * Minimum, maximum or sum of the distances of all edges between two clusters.
+   */
+  private static class Link {
+
+    private double value;
+    private long pairs;
+
+    private Link(double value, long pairs) {
+      this.value = value;
+      this.pairs = pairs;
+    }
+  }
+
+  private record ClusterLinks(int[] others, double[] values, long[] pairs) {
+
+  }
+
+  private record Merge(float distance, int a, int b) {
+
+    // ties are merged in a deterministic order
+    private static final Comparator<Merge> ORDER = Comparator.comparingDouble(Merge::distance)
+        .thenComparingInt(Merge::a).thenComparingInt(Merge::b);
+  }
+}
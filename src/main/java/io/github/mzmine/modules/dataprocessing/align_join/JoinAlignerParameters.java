@@ -89,6 +89,12 @@ public class JoinAlignerParameters extends SimpleParameterSet {
       "Compare spectra similarity", "Compare MS1 or MS2 spectra similarity",
       new JoinAlignerSpectraSimilarityScoreParameters(), false);
 
+  public static final BooleanParameter outOfCoreAlignment = new BooleanParameter(
+      "Out-of-core alignment",
+      "If checked, rows are matched on compact m/z, RT, and mobility values that are sorted by m/z "
+          + "and temporarily stored on disk. The aligned feature list is created at the end. "
+          + "\nRecommended for thousands of samples to reduce the memory consumption.", false);
+
 
   public static final OriginalFeatureListHandlingParameter handleOriginal = new OriginalFeatureListHandlingParameter(
       "Original feature list",
@@ -98,7 +104,7 @@ public class JoinAlignerParameters extends SimpleParameterSet {
   public JoinAlignerParameters() {
     super(new Parameter[]{peakLists, peakListName, MZTolerance, MZWeight, RTTolerance, RTWeight,
             mobilityTolerance, mobilityWeight, SameChargeRequired, SameIDRequired,
-            compareIsotopePattern, compareSpectraSimilarity, handleOriginal},
+            compareIsotopePattern, compareSpectraSimilarity, outOfCoreAlignment, handleOriginal},
         "https://mzmine.github.io/mzmine_documentation/module_docs/join_aligner/join_aligner.html");
   }
 
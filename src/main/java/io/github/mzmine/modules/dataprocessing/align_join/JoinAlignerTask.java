@@ -41,6 +41,7 @@ import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.align_join.StreamingJoinAligner.AlignedChunk;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreCalculator;
 import io.github.mzmine.modules.tools.isotopepatternscore.IsotopePatternScoreParameters;
 import io.github.mzmine.parameters.ParameterSet;
@@ -89,11 +90,13 @@ public class JoinAlignerTask extends AbstractTask {
   private final Double minIsotopeScore;
   private final Double isotopeNoiseLevel;
   private final MZTolerance isotopeMZTolerance;
+  private final boolean outOfCore;
   /**
    * All feature lists except the base list
    */
   private final List<FeatureList> featureLists;
   private ModularFeatureList alignedFeatureList;
+  private volatile StreamingJoinAligner streamingAligner;
   // Processed rows counter
   private int totalRows;
   // ID counter for the new peaklist
@@ -156,6 +159,7 @@ public class JoinAlignerTask extends AbstractTask {
           .getEmbeddedParameters().getParameter(JoinAlignerSpectraSimilarityScoreParameters.msLevel)
           .getValue();
     }
+    outOfCore = parameters.getValue(JoinAlignerParameters.outOfCoreAlignment);
   }
 
   @Override
@@ -169,6 +173,12 @@ public class JoinAlignerTask extends AbstractTask {
     if (totalRows == 0) {
       return 0f;
     }
+    if (outOfCore) {
+      // tuples are aligned first, rows are created afterwards
+      final StreamingJoinAligner aligner = streamingAligner;
+      return aligner != null ? (aligner.getProcessedTuples() + alignedRows.get()) / (2d * totalRows)
+          : 0d;
+    }
     return alignedFeatureList != null ? (alignedFeatureList.getNumberOfRows() + alignedRows.get())
         / (double) totalRows : 0d;
   }
@@ -183,8 +193,8 @@ public class JoinAlignerTask extends AbstractTask {
     }
 
     setStatus(TaskStatus.PROCESSING);
-    logger.info(
-        () -> "Running parallel join aligner on " + featureLists.size() + " feature lists.");
+    logger.info(() -> "Running parallel " + (outOfCore ? "out-of-core " : "")
+        + "join aligner on " + featureLists.size() + " feature lists.");
 
     // Remember how many rows we need to process. Each row will be processed
     // twice, first for score calculation, second for actual alignment.
@@ -204,7 +214,54 @@ public class JoinAlignerTask extends AbstractTask {
     FeatureListUtils.transferRowTypes(alignedFeatureList, featureLists);
     FeatureListUtils.transferSelectedScans(alignedFeatureList, featureLists);
     final AtomicInteger newRowID = new AtomicInteger(1);
+    if (outOfCore) {
+      alignOutOfCore(newRowID);
+    } else {
+      alignInMemory(newRowID);
+    }
+    if (isCanceled()) {
+      return;
+    }
+
+    // sort by RT and reset IDs
+    FeatureListUtils.sortByDefaultRT(alignedFeatureList, true);
+
+    // update row bindings
+    alignedFeatureList.parallelStream().filter(row -> row.getNumberOfFeatures() > 1)
+        .forEach(FeatureListRow::applyRowBindings);
+
+    // score alignment by the number of features that fall within the mz, RT, mobility range
+    // do not apply all the advanced filters to keep it simple
+    MobilityTolerance mobTol = compareMobility ? mobilityTolerance : null;
+    RowAlignmentScoreCalculator calculator = new RowAlignmentScoreCalculator(featureLists,
+        mzTolerance, rtTolerance, mobTol, mzWeight, rtWeight, mobilityWeight);
+    FeatureListUtils.addAlignmentScores(alignedFeatureList, calculator, false);
+
+    // applied methods
+    alignedFeatureList.getAppliedMethods().addAll(featureLists.get(0).getAppliedMethods());
+    // Add task description to peakList
+    alignedFeatureList.addDescriptionOfAppliedTask(
+        new SimpleFeatureListAppliedMethod("Join aligner", JoinAlignerModule.class, parameters,
+            getModuleCallDate()));
+    // Add new aligned feature list to the project {
+    project.addFeatureList(alignedFeatureList);
+
+    if (parameters.getValue(JoinAlignerParameters.handleOriginal)
+        == OriginalFeatureListOption.REMOVE) {
+      project.removeFeatureLists(featureLists);
+    }
+
+    logger.info("Finished join aligner");
 
+    setStatus(TaskStatus.FINISHED);
+
+  }
+
+  /**
+   * Aligns all rows of all feature lists in memory onto the feature list with the most unaligned
+   * rows, repeated until all rows are aligned.
+   */
+  private void alignInMemory(AtomicInteger newRowID) {
     // list all rows for each feature list
     final List<List<FeatureListRow>> allRows = new ArrayList<>(featureLists.size());
 
@@ -247,39 +304,50 @@ public class JoinAlignerTask extends AbstractTask {
       }
       iteration++;
     }
+  }
 
-    // sort by RT and reset IDs
-    FeatureListUtils.sortByDefaultRT(alignedFeatureList, true);
-
-    // update row bindings
-    alignedFeatureList.parallelStream().filter(row -> row.getNumberOfFeatures() > 1)
-        .forEach(FeatureListRow::applyRowBindings);
-
-    // score alignment by the number of features that fall within the mz, RT, mobility range
-    // do not apply all the advanced filters to keep it simple
-    MobilityTolerance mobTol = compareMobility ? mobilityTolerance : null;
-    RowAlignmentScoreCalculator calculator = new RowAlignmentScoreCalculator(featureLists,
-        mzTolerance, rtTolerance, mobTol, mzWeight, rtWeight, mobilityWeight);
-    FeatureListUtils.addAlignmentScores(alignedFeatureList, calculator, false);
-
-    // applied methods
-    alignedFeatureList.getAppliedMethods().addAll(featureLists.get(0).getAppliedMethods());
-    // Add task description to peakList
-    alignedFeatureList.addDescriptionOfAppliedTask(
-        new SimpleFeatureListAppliedMethod("Join aligner", JoinAlignerModule.class, parameters,
-            getModuleCallDate()));
-    // Add new aligned feature list to the project {
-    project.addFeatureList(alignedFeatureList);
-
-    if (parameters.getValue(JoinAlignerParameters.handleOriginal)
-        == OriginalFeatureListOption.REMOVE) {
-      project.removeFeatureLists(featureLists);
+  /**
+   * Matches rows on compact tuples with the {@link StreamingJoinAligner} and only creates the
+   * aligned rows after all rows were matched.
+   */
+  private void alignOutOfCore(AtomicInteger newRowID) {
+    final boolean hasAdditionalChecks =
+        sameChargeRequired || sameIDRequired || compareIsotopePattern || compareSpectraSimilarity;
+    streamingAligner = new StreamingJoinAligner(featureLists, mzTolerance, rtTolerance,
+        compareMobility ? mobilityTolerance : null, mzWeight, rtWeight, mobilityWeight,
+        hasAdditionalChecks ? this::additionalChecks : null, this::isCanceled);
+    final List<AlignedChunk> chunks = streamingAligner.align();
+    if (chunks == null) {
+      return;
     }
 
-    logger.info("Finished join aligner");
-
-    setStatus(TaskStatus.FINISHED);
+    for (AlignedChunk chunk : chunks) {
+      final long[] rows = chunk.rows();
+      final int[] clusterStarts = chunk.clusterStarts();
+      for (int c = 0; c < chunk.getNumberOfClusters(); c++) {
+        final int baseIndex = clusterStarts[c];
+        final ModularFeatureListRow alignedRow = new ModularFeatureListRow(alignedFeatureList,
+            newRowID.getAndIncrement(), (ModularFeatureListRow) getRow(rows[baseIndex]), true);
+        alignedRows.getAndIncrement();
+
+        for (int i = baseIndex + 1; i < clusterStarts[c + 1]; i++) {
+          for (Feature feature : getRow(rows[i]).getFeatures()) {
+            final RawDataFile dataFile = feature.getRawDataFile();
+            if (!alignedRow.hasFeature(dataFile)) {
+              alignedRow.addFeature(dataFile, new ModularFeature(alignedFeatureList, feature),
+                  false);
+            }
+          }
+          alignedRows.getAndIncrement();
+        }
+        alignedFeatureList.addRow(alignedRow);
+      }
+    }
+  }
 
+  private FeatureListRow getRow(long rowReference) {
+    return featureLists.get(StreamingJoinAligner.getListIndex(rowReference))
+        .getRow(StreamingJoinAligner.getRowIndex(rowReference));
   }
 
   /**
@@ -0,0 +1,597 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_join;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import io.github.mzmine.util.FeatureListUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Out-of-core alignment for large numbers of feature lists. Rows are matched on compact (m/z, RT,
+ * mobility, row reference) tuples instead of the rows themselves. The tuples of each feature list
+ * are sorted by m/z and spilled to a temporary {@link MemoryMapStorage}.
+ * <p>
+ * The alignment uses the same rounds as the in-memory path of the {@link JoinAlignerTask}: the
+ * feature list with most unaligned rows overall is the base, all other unaligned rows are matched
+ * to their best scoring base row, and this is repeated until all rows are aligned. In every round,
+ * a k-way merge streams the unaligned tuples of the remaining feature lists in m/z order and cuts
+ * them into chunks wherever two consecutive tuples cannot match within the m/z tolerance. The
+ * chunks of a round are independent and are aligned in parallel. Only one aligned flag per tuple
+ * is kept in memory between rounds.
+ */
+class StreamingJoinAligner {
+
+  private static final Logger logger = Logger.getLogger(StreamingJoinAligner.class.getName());
+
+  private final List<FeatureList> featureLists;
+  private final MZTolerance mzTolerance;
+  private final RTTolerance rtTolerance;
+  private final @Nullable MobilityTolerance mobilityTolerance;
+  private final double mzWeight;
+  private final double rtWeight;
+  private final double mobilityWeight;
+  private final @Nullable BiPredicate<FeatureListRow, FeatureListRow> additionalChecks;
+  private final BooleanSupplier isCanceled;
+  private final AtomicInteger processedTuples = new AtomicInteger(0);
+
+  /**
+   * @param mobilityTolerance null if mobility is not compared
+   * @param additionalChecks  further checks of a row to add against a base row or null
+   * @param isCanceled        stops the alignment
+   */
+  StreamingJoinAligner(@NotNull List<FeatureList> featureLists, @NotNull MZTolerance mzTolerance,
+      @NotNull RTTolerance rtTolerance, @Nullable MobilityTolerance mobilityTolerance,
+      double mzWeight, double rtWeight, double mobilityWeight,
+      @Nullable BiPredicate<FeatureListRow, FeatureListRow> additionalChecks,
+      @NotNull BooleanSupplier isCanceled) {
+    this.featureLists = featureLists;
+    this.mzTolerance = mzTolerance;
+    this.rtTolerance = rtTolerance;
+    this.mobilityTolerance = mobilityTolerance;
+    this.mzWeight = mzWeight;
+    this.rtWeight = rtWeight;
+    this.mobilityWeight = mobilityWeight;
+    this.additionalChecks = additionalChecks;
+    this.isCanceled = isCanceled;
+  }
+
+  static int getListIndex(long rowReference) {
+    return (int) (rowReference >>> 32);
+  }
+
+  static int getRowIndex(long rowReference) {
+    return (int) rowReference;
+  }
+
+  private static long toRowReference(int listIndex, int rowIndex) {
+    return ((long) listIndex << 32) | (rowIndex & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @return index of the first value >= the given value or values.length
+   */
+  private static int firstIndexAtLeast(double[] sortedValues, double value) {
+    int low = 0;
+    int high = sortedValues.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sortedValues[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @Nullable
+  private static Float nanToNull(float value) {
+    return Float.isNaN(value) ? null : value;
+  }
+
+  private static float nullToNaN(@Nullable Float value) {
+    return value == null ? Float.NaN : value;
+  }
+
+  /**
+   * @return the number of tuples in aligned chunks
+   */
+  int getProcessedTuples() {
+    return processedTuples.get();
+  }
+
+  /**
+   * @return the aligned chunks of all rounds, each round in ascending m/z order, or null if the
+   * alignment was canceled
+   */
+  @Nullable
+  List<AlignedChunk> align() {
+    final MemoryMapStorage storage = MemoryMapStorage.create().retain();
+    try {
+      final List<SortedTuples> allTuples = new ArrayList<>(featureLists.size());
+      for (int i = 0; i < featureLists.size(); i++) {
+        if (isCanceled.getAsBoolean()) {
+          return null;
+        }
+        allTuples.add(SortedTuples.of(storage, i, featureLists.get(i), mobilityTolerance != null));
+      }
+
+      final List<AlignedChunk> alignedChunks = new ArrayList<>();
+      // feature lists with unaligned tuples in the same order as in the in-memory path
+      int[] remainingLists = IntStream.range(0, allTuples.size()).toArray();
+      int round = 0;
+      while (remainingLists.length > 0) {
+        if (isCanceled.getAsBoolean()) {
+          return null;
+        }
+        // stable sort, the feature list with the highest number of unaligned tuples first
+        IntArrays.mergeSort(remainingLists,
+            (a, b) -> Integer.compare(allTuples.get(b).unaligned.get(),
+                allTuples.get(a).unaligned.get()));
+        final int baseList = remainingLists[0];
+        if (allTuples.get(baseList).unaligned.get() == 0) {
+          break;
+        }
+
+        final List<AlignedChunk> roundChunks = alignRound(allTuples, remainingLists, baseList);
+        if (roundChunks == null) {
+          return null;
+        }
+        alignedChunks.addAll(roundChunks);
+
+        // the base list is fully aligned, drop all lists without unaligned tuples
+        remainingLists = Arrays.stream(remainingLists)
+            .filter(list -> list != baseList && allTuples.get(list).unaligned.get() > 0)
+            .toArray();
+        round++;
+      }
+
+      final int rounds = round;
+      logger.finest(() -> "Aligned %d tuples in %d rounds and %d m/z chunks".formatted(
+          processedTuples.get(), rounds, alignedChunks.size()));
+      return alignedChunks;
+    } finally {
+      // the chunks hold copies of the tuples, the spilled tuples are not needed anymore
+      storage.release();
+    }
+  }
+
+  /**
+   * Merges the unaligned tuples of the remaining feature lists and aligns each chunk on the base
+   * list as soon as it is complete. The number of pending chunks is limited, so that the merge
+   * does not load all tuples into memory.
+   *
+   * @param allTuples      the sorted tuples of all feature lists
+   * @param remainingLists the indices of all feature lists with unaligned tuples
+   * @param baseList       the index of the base feature list of this round
+   * @return the aligned chunks or null if the alignment was canceled
+   */
+  @Nullable
+  private List<AlignedChunk> alignRound(List<SortedTuples> allTuples, int[] remainingLists,
+      int baseList) {
+    final PriorityQueue<SortedTuples> queue = new PriorityQueue<>(
+        Math.max(1, remainingLists.length), Comparator.comparingDouble(SortedTuples::currentMz));
+    for (int list : remainingLists) {
+      final SortedTuples tuples = allTuples.get(list);
+      tuples.reset();
+      if (tuples.hasCurrent()) {
+        queue.add(tuples);
+      }
+    }
+
+    final Semaphore pendingChunks = new Semaphore(
+        2 * ForkJoinPool.getCommonPoolParallelism() + 1);
+    final List<CompletableFuture<AlignedChunk>> futures = new ArrayList<>();
+    final ChunkBuilder chunk = new ChunkBuilder(mobilityTolerance != null);
+
+    while (!queue.isEmpty() && !isCanceled.getAsBoolean()) {
+      final SortedTuples next = queue.poll();
+      if (!chunk.isEmpty() && startsNewChunk(chunk.lastMz(), next.currentMz())) {
+        submit(chunk, baseList, allTuples, pendingChunks, futures);
+      }
+      next.addCurrentTo(chunk);
+      next.advance();
+      if (next.hasCurrent()) {
+        queue.add(next);
+      }
+    }
+    if (!chunk.isEmpty()) {
+      submit(chunk, baseList, allTuples, pendingChunks, futures);
+    }
+
+    final List<AlignedChunk> alignedChunks = futures.stream().map(CompletableFuture::join)
+        .toList();
+    return isCanceled.getAsBoolean() ? null : alignedChunks;
+  }
+
+  /**
+   * Aligns the chunk if it contains base tuples. Chunks without base tuples are left unaligned
+   * for the next rounds.
+   */
+  private void submit(ChunkBuilder builder, int baseList, List<SortedTuples> allTuples,
+      Semaphore pendingChunks, List<CompletableFuture<AlignedChunk>> futures) {
+    if (!builder.containsList(baseList)) {
+      builder.clear();
+      return;
+    }
+    final TupleChunk chunk = builder.buildAndClear();
+    pendingChunks.acquireUninterruptibly();
+    futures.add(CompletableFuture.supplyAsync(() -> {
+      try {
+        return alignChunk(chunk, baseList, allTuples);
+      } finally {
+        pendingChunks.release();
+      }
+    }));
+  }
+
+  /**
+   * Tuples can only match if the m/z of the next tuple is within the tolerance of the last m/z. The
+   * tolerance grows with the m/z, so no later tuple can match any tuple of the current chunk.
+   */
+  private boolean startsNewChunk(double lastMz, double nextMz) {
+    // without m/z scoring, all rows are compared
+    return mzWeight > 0 && mzTolerance.getToleranceRange(nextMz).lowerEndpoint() > lastMz;
+  }
+
+  /**
+   * Aligns all other tuples of the chunk on its base tuples and marks the aligned tuples in their
+   * sorted tuples.
+   */
+  private AlignedChunk alignChunk(TupleChunk chunk, int baseList, List<SortedTuples> allTuples) {
+    final int n = chunk.size();
+    final boolean[] aligned = new boolean[n];
+    // tuples are sorted by m/z, so are the base tuples
+    final IntArrayList baseTuples = new IntArrayList();
+    for (int i = 0; i < n; i++) {
+      if (chunk.lists()[i] == baseList) {
+        baseTuples.add(i);
+        aligned[i] = true;
+      }
+    }
+
+    final IntArrayList[] members =
+        baseTuples.size() < n ? matchOnBase(chunk, aligned, baseTuples) : null;
+    final LongArrayList rows = new LongArrayList(n);
+    final IntArrayList clusterStarts = new IntArrayList(baseTuples.size() + 1);
+    for (int k = 0; k < baseTuples.size(); k++) {
+      clusterStarts.add(rows.size());
+      addAlignedTuple(chunk, baseTuples.getInt(k), rows, allTuples);
+      if (members == null || members[k] == null) {
+        continue;
+      }
+      for (int member : members[k]) {
+        addAlignedTuple(chunk, member, rows, allTuples);
+      }
+    }
+    clusterStarts.add(rows.size());
+    processedTuples.addAndGet(rows.size());
+    return new AlignedChunk(rows.toLongArray(), clusterStarts.toIntArray());
+  }
+
+  private static void addAlignedTuple(TupleChunk chunk, int tuple, LongArrayList rows,
+      List<SortedTuples> allTuples) {
+    rows.add(chunk.getRowReference(tuple));
+    allTuples.get(chunk.lists()[tuple]).markAligned(chunk.positions()[tuple]);
+  }
+
+  /**
+   * Matches all unaligned tuples to their best scoring base tuple and marks them as aligned. Each
+   * base tuple takes at most one tuple of each feature list.
+   *
+   * @param baseTuples base tuples sorted by m/z
+   * @return the matched tuples of each base tuple, null for base tuples without matches
+   */
+  private IntArrayList[] matchOnBase(TupleChunk chunk, boolean[] aligned,
+      IntArrayList baseTuples) {
+    final int numBase = baseTuples.size();
+    final double[] baseMzs = new double[numBase];
+    for (int k = 0; k < numBase; k++) {
+      baseMzs[k] = chunk.mzs()[baseTuples.getInt(k)];
+    }
+
+    final DoubleArrayList scores = new DoubleArrayList();
+    final IntArrayList scoredTuples = new IntArrayList();
+    final IntArrayList scoredBase = new IntArrayList();
+    for (int i = 0; i < chunk.size(); i++) {
+      if (aligned[i]) {
+        continue;
+      }
+      final float rt = chunk.rts()[i];
+      final float mobility = chunk.getMobility(i);
+      // same ranges as in the JoinAlignerTask, Range.all() deactivates the filter
+      final Range<Double> mzRange =
+          mzWeight > 0 ? mzTolerance.getToleranceRange(chunk.mzs()[i]) : Range.all();
+      final Range<Float> rtRange =
+          rtWeight > 0 && !Float.isNaN(rt) ? rtTolerance.getToleranceRange(rt) : Range.all();
+      final Range<Float> mobilityRange =
+          mobilityTolerance != null && mobilityWeight > 0 && !Float.isNaN(mobility)
+              ? mobilityTolerance.getToleranceRange(mobility) : Range.all();
+
+      final int first = mzWeight > 0 ? firstIndexAtLeast(baseMzs, mzRange.lowerEndpoint()) : 0;
+      for (int k = first; k < numBase && mzRange.contains(baseMzs[k]); k++) {
+        final int base = baseTuples.getInt(k);
+        final float baseRt = chunk.rts()[base];
+        final float baseMobility = chunk.getMobility(base);
+        if ((!Float.isNaN(baseRt) && !rtRange.contains(baseRt)) || (!Float.isNaN(baseMobility)
+            && !mobilityRange.contains(baseMobility))) {
+          continue;
+        }
+        if (additionalChecks != null && !additionalChecks.test(getRow(chunk, i),
+            getRow(chunk, base))) {
+          continue;
+        }
+        scores.add(FeatureListUtils.getAlignmentScore(baseMzs[k], nanToNull(baseRt),
+            nanToNull(baseMobility), null, mzRange, rtRange, mobilityRange, null, mzWeight,
+            rtWeight, mobilityWeight, 0));
+        scoredTuples.add(i);
+        scoredBase.add(k);
+      }
+    }
+
+    // highest score first
+    final int[] order = IntStream.range(0, scores.size()).toArray();
+    IntArrays.quickSort(order,
+        (a, b) -> Double.compare(scores.getDouble(b), scores.getDouble(a)));
+
+    final IntArrayList[] members = new IntArrayList[numBase];
+    // base tuple index (upper 32 bits) and feature list of all matches
+    final LongOpenHashSet matchedLists = new LongOpenHashSet();
+    for (int o : order) {
+      final int tuple = scoredTuples.getInt(o);
+      if (aligned[tuple]) {
+        continue;
+      }
+      final int k = scoredBase.getInt(o);
+      if (matchedLists.add(((long) k << 32) | chunk.lists()[tuple])) {
+        if (members[k] == null) {
+          members[k] = new IntArrayList(2);
+        }
+        members[k].add(tuple);
+        aligned[tuple] = true;
+      }
+    }
+    return members;
+  }
+
+  private FeatureListRow getRow(TupleChunk chunk, int tuple) {
+    return featureLists.get(chunk.lists()[tuple]).getRow(chunk.rows()[tuple]);
+  }
+
+  /**
+   * The aligned rows of one chunk. Row references combine the feature list index and the row index
+   * ({@link #getListIndex(long)}, {@link #getRowIndex(long)}). Cluster i are the rows from
+   * clusterStarts[i] (the base row) to clusterStarts[i + 1] (exclusive).
+   */
+  record AlignedChunk(long[] rows, int[] clusterStarts) {
+
+    int getNumberOfClusters() {
+      return clusterStarts.length - 1;
+    }
+  }
+
+  /**
+   * Tuples of a chunk in ascending m/z order.
+   *
+   * @param mobilities null if mobility is not compared
+   * @param positions  the positions of the tuples in the sorted tuples of their feature list
+   */
+  private record TupleChunk(double[] mzs, float[] rts, @Nullable float[] mobilities, int[] lists,
+                            int[] rows, int[] positions) {
+
+    int size() {
+      return mzs.length;
+    }
+
+    float getMobility(int tuple) {
+      return mobilities == null ? Float.NaN : mobilities[tuple];
+    }
+
+    long getRowReference(int tuple) {
+      return toRowReference(lists[tuple], rows[tuple]);
+    }
+  }
+
+  private static class ChunkBuilder {
+
+    private final DoubleArrayList mzs = new DoubleArrayList();
+    private final FloatArrayList rts = new FloatArrayList();
+    private final @Nullable FloatArrayList mobilities;
+    private final IntArrayList lists = new IntArrayList();
+    private final IntArrayList rows = new IntArrayList();
+    private final IntArrayList positions = new IntArrayList();
+
+    private ChunkBuilder(boolean withMobility) {
+      mobilities = withMobility ? new FloatArrayList() : null;
+    }
+
+    private boolean isEmpty() {
+      return mzs.isEmpty();
+    }
+
+    private double lastMz() {
+      return mzs.getDouble(mzs.size() - 1);
+    }
+
+    private boolean containsList(int list) {
+      return lists.contains(list);
+    }
+
+    private void add(double mz, float rt, float mobility, int list, int row, int position) {
+      mzs.add(mz);
+      rts.add(rt);
+      if (mobilities != null) {
+        mobilities.add(mobility);
+      }
+      lists.add(list);
+      rows.add(row);
+      positions.add(position);
+    }
+
+    private TupleChunk buildAndClear() {
+      final TupleChunk chunk = new TupleChunk(mzs.toDoubleArray(), rts.toFloatArray(),
+          mobilities == null ? null : mobilities.toFloatArray(), lists.toIntArray(),
+          rows.toIntArray(), positions.toIntArray());
+      clear();
+      return chunk;
+    }
+
+    private void clear() {
+      mzs.clear();
+      rts.clear();
+      if (mobilities != null) {
+        mobilities.clear();
+      }
+      lists.clear();
+      rows.clear();
+      positions.clear();
+    }
+  }
+
+  /**
+   * The tuples of one feature list sorted by m/z with a cursor for the merge. The cursor skips
+   * aligned tuples. Tuples are only marked as aligned after the merge passed them.
+   */
+  private static class SortedTuples {
+
+    private final int listIndex;
+    private final DoubleBuffer mzs;
+    private final FloatBuffer rts;
+    private final @Nullable FloatBuffer mobilities;
+    private final IntBuffer rowIndices;
+    private final boolean[] aligned;
+    private final AtomicInteger unaligned;
+    private int position = 0;
+
+    private SortedTuples(int listIndex, DoubleBuffer mzs, FloatBuffer rts,
+        @Nullable FloatBuffer mobilities, IntBuffer rowIndices) {
+      this.listIndex = listIndex;
+      this.mzs = mzs;
+      this.rts = rts;
+      this.mobilities = mobilities;
+      this.rowIndices = rowIndices;
+      aligned = new boolean[mzs.limit()];
+      unaligned = new AtomicInteger(aligned.length);
+    }
+
+    private static SortedTuples of(MemoryMapStorage storage, int listIndex, FeatureList flist,
+        boolean withMobility) {
+      final List<FeatureListRow> rows = flist.getRows();
+      final int n = rows.size();
+      final double[] unsortedMzs = new double[n];
+      for (int i = 0; i < n; i++) {
+        unsortedMzs[i] = rows.get(i).getAverageMZ();
+      }
+      final int[] order = IntStream.range(0, n).toArray();
+      IntArrays.quickSort(order, (a, b) -> Double.compare(unsortedMzs[a], unsortedMzs[b]));
+
+      final double[] mzs = new double[n];
+      final float[] rts = new float[n];
+      final float[] mobilities = withMobility ? new float[n] : null;
+      for (int i = 0; i < n; i++) {
+        final FeatureListRow row = rows.get(order[i]);
+        mzs[i] = unsortedMzs[order[i]];
+        rts[i] = nullToNaN(row.getAverageRT());
+        if (mobilities != null) {
+          mobilities[i] = nullToNaN(row.getAverageMobility());
+        }
+      }
+      return new SortedTuples(listIndex, StorageUtils.storeValuesToDoubleBuffer(storage, mzs),
+          StorageUtils.storeValuesToFloatBuffer(storage, rts),
+          mobilities == null ? null : StorageUtils.storeValuesToFloatBuffer(storage, mobilities),
+          StorageUtils.storeValuesToIntBuffer(storage, order));
+    }
+
+    private boolean hasCurrent() {
+      return position < aligned.length;
+    }
+
+    private double currentMz() {
+      return mzs.get(position);
+    }
+
+    /**
+     * Moves the cursor to the first unaligned tuple
+     */
+    private void reset() {
+      position = -1;
+      advance();
+    }
+
+    /**
+     * Moves the cursor to the next unaligned tuple
+     */
+    private void advance() {
+      do {
+        position++;
+      } while (position < aligned.length && aligned[position]);
+    }
+
+    /**
+     * Called from the chunk alignment threads. Each tuple is part of a single chunk.
+     */
+    private void markAligned(int tuplePosition) {
+      aligned[tuplePosition] = true;
+      unaligned.decrementAndGet();
+    }
+
+    private void addCurrentTo(ChunkBuilder chunk) {
+      chunk.add(mzs.get(position), rts.get(position),
+          mobilities == null ? Float.NaN : mobilities.get(position), listIndex,
+          rowIndices.get(position), position);
+    }
+  }
+}
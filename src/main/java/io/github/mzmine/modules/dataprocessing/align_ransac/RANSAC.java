@@ -24,22 +24,27 @@
  */
 package io.github.mzmine.modules.dataprocessing.align_ransac;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import io.github.mzmine.parameters.ParameterSet;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 import org.apache.commons.math.analysis.polynomials.PolynomialFunction;
 import org.apache.commons.math.optimization.fitting.PolynomialFitter;
 import org.apache.commons.math.optimization.general.GaussNewtonOptimizer;
 
-import com.google.common.collect.Range;
-
-import io.github.mzmine.parameters.ParameterSet;
-
 public class RANSAC {
 
+  /**
+   * Seed of the preview, the aligner uses one seed per feature list
+   */
+  public static final long DEFAULT_SEED = 0;
+  /**
+   * Spreads the seeds of consecutive iterations
+   */
+  private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+  private static final int MAX_SAMPLING_TRIES = 1000;
+
   /**
    * input: data - a set of observed data points n - the minimum number of data values required to
    * fit the model k - the maximum number of iterations allowed in the algorithm t - a threshold
@@ -48,12 +53,9 @@ public class RANSAC {
    *
    * output: model which best fit the data
    */
-  private int n;
-  private double d = 1;
-  private int k = 0;
-  private int AlsoNumber;
-  private double numRatePoints, t;
-  private boolean Linear;
+  private final int k;
+  private final double numRatePoints, t;
+  private final boolean Linear;
 
   public RANSAC(ParameterSet parameters) {
 
@@ -68,219 +70,199 @@ public class RANSAC {
   }
 
   /**
-   * Set all parameters and start ransac.
-   * 
+   * Set all parameters and start ransac. Marks the inliers of the best model as aligned.
+   *
    * @param data vector with the points which represent all possible alignments.
    */
   public void alignment(List<AlignStructMol> data) {
-    try {
-      // If the model is non linear 4 points are taken to build the model,
-      // if it is linear only 2 points are taken.
-      if (!Linear) {
-        n = 4;
-      } else {
-        n = 2;
-      }
+    final double[] rt = new double[data.size()];
+    final double[] rt2 = new double[data.size()];
+    for (int i = 0; i < data.size(); i++) {
+      rt[i] = data.get(i).RT;
+      rt2[i] = data.get(i).RT2;
+    }
 
-      // Minimun number of points required to assert that a model fits
-      // well to data
-      if (data.size() < 10) {
-        d = 3;
-      } else {
-        d = data.size() * numRatePoints;
-      }
+    final boolean[] aligned = alignment(rt, rt2, DEFAULT_SEED);
+    for (int i = 0; i < data.size(); i++) {
+      data.get(i).Aligned = aligned[i];
+    }
+  }
 
-      // Calculate the number of trials if the user has not define them
-      if (k == 0) {
-        k = (int) getK();
-      }
+  /**
+   * Runs ransac on all possible alignments. The iterations run in parallel, each with its own
+   * random generator seeded by the seed and the iteration number. The result only depends on the
+   * seed.
+   *
+   * @param rt  retention times of the possible alignments in the first feature list
+   * @param rt2 retention times of the possible alignments in the second feature list
+   * @return true for all possible alignments that are inliers of the best model
+   */
+  public boolean[] alignment(double[] rt, double[] rt2, long seed) {
+    final int size = rt.length;
+    // If the model is non linear 4 points are taken to build the model,
+    // if it is linear only 2 points are taken.
+    final int n = Linear ? 2 : 4;
+    if (size <= n) {
+      return new boolean[size];
+    }
+
+    // Minimun number of points required to assert that a model fits
+    // well to data
+    final double d = size < 10 ? 3 : size * numRatePoints;
 
-      ransac(data);
-    } catch (Exception exception) {
-      exception.printStackTrace();
+    // Calculate the number of trials if the user has not define them
+    final int iterations = k == 0 ? (int) getK(n) : k;
+    if (iterations <= 0) {
+      return new boolean[size];
+    }
+
+    // the best model has most inliers, ties go to the first iteration
+    final int numBlocks = Math.min(iterations, 4 * ForkJoinPool.getCommonPoolParallelism());
+    final long best = IntStream.range(0, numBlocks).parallel().mapToLong(block -> {
+      final Sample sample = new Sample(rt, rt2, n, d);
+      long bestOfBlock = -1;
+      for (int iteration = block; iteration < iterations; iteration += numBlocks) {
+        final int inliers = sample.run(seed + iteration * SEED_STEP, null);
+        if (inliers >= 0) {
+          bestOfBlock = Math.max(bestOfBlock,
+              ((long) inliers << 32) | (Integer.MAX_VALUE - iteration));
+        }
+      }
+      return bestOfBlock;
+    }).max().orElse(-1);
+
+    final boolean[] aligned = new boolean[size];
+    if (best >= 0) {
+      // repeat the best iteration to get its inliers
+      final int bestIteration = Integer.MAX_VALUE - (int) best;
+      new Sample(rt, rt2, n, d).run(seed + bestIteration * SEED_STEP, aligned);
     }
+    return aligned;
   }
 
   /**
    * Calculate k (number of trials)
-   * 
+   *
    * @return number of trials "k" required to select a subset of n good data points.
    */
-  private double getK() {
+  private double getK(int n) {
     double w = numRatePoints;
     double b = Math.pow(w, n);
     return Math.log10(1 - 0.99) / Math.log10(1 - b) + (Math.sqrt(1 - b) / b);
   }
 
   /**
-   * RANSAC algorithm
-   * 
-   * @param data vector with the points which represent all possible alignments.
+   * State of one thread to draw the initial points, fit the model, and count the inliers.
    */
-  public void ransac(List<AlignStructMol> data) {
-    double besterr = 9.9E99;
+  private class Sample {
+
+    private final double[] rt;
+    private final double[] rt2;
+    private final int n;
+    private final double d;
+    private final double minRT;
+    private final double midRT;
+    private final double maxRT;
+    private final boolean[] maybeInLiers;
+    private final int[] chosen;
+    private int numChosen;
+
+    private Sample(double[] rt, double[] rt2, int n, double d) {
+      this.rt = rt;
+      this.rt2 = rt2;
+      this.n = n;
+      this.d = d;
+      double min = Double.MAX_VALUE;
+      double max = -Double.MAX_VALUE;
+      for (double value : rt) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      minRT = min;
+      maxRT = max;
+      midRT = ((max - min) / 2) + min;
+      maybeInLiers = new boolean[rt.length];
+      chosen = new int[n];
+    }
 
-    for (int iterations = 0; iterations < k; iterations++) {
-      AlsoNumber = n;
+    /**
+     * One RANSAC iteration
+     *
+     * @param inliers set to true for all inliers of the model, if not null
+     * @return the number of inliers or -1 if the model has less than the minimum number of points
+     */
+    private int run(long seed, boolean[] inliers) {
+      final SplittableRandom random = new SplittableRandom(seed);
       // Get the initial points
-      boolean initN = getInitN(data);
-      if (!initN) {
-        continue;
-      }
+      numChosen = 0;
+      draw(random, n / 2, minRT, midRT);
+      draw(random, n - numChosen, midRT, maxRT);
 
       // Calculate the model
-      fittPolinomialFunction(data, Linear);
-
-      // If the model has the minimun number of points
-      if (AlsoNumber >= d) {
-        // Get the error of the model based on the number of points
-        double error = 9.9E99;
-        try {
-          error = newError(data);
-        } catch (Exception ex) {
-          Logger.getLogger(RANSAC.class.getName()).log(Level.SEVERE, null, ex);
+      final PolynomialFunction function = fitPolynomialFunction();
+
+      int alsoNumber = n;
+      int numInliers = 0;
+      for (int i = 0; i < rt.length; i++) {
+        final boolean alsoInLier =
+            function != null && Math.abs(rt2[i] - function.value(rt[i])) < t;
+        if (alsoInLier) {
+          alsoNumber++;
         }
-
-        // If the error is less than the error of the last model
-        if (error < besterr) {
-          besterr = error;
-          for (int i = 0; i < data.size(); i++) {
-            AlignStructMol alignStruct = data.get(i);
-            if (alignStruct.ransacAlsoInLiers || alignStruct.ransacMaybeInLiers) {
-              alignStruct.Aligned = true;
-            } else {
-              alignStruct.Aligned = false;
-            }
-
-            alignStruct.ransacAlsoInLiers = false;
-            alignStruct.ransacMaybeInLiers = false;
-
+        if (alsoInLier || maybeInLiers[i]) {
+          numInliers++;
+          if (inliers != null) {
+            inliers[i] = true;
           }
         }
       }
-      // remove the model
-      for (int i = 0; i < data.size(); i++) {
-        AlignStructMol alignStruct = data.get(i);
-        alignStruct.ransacAlsoInLiers = false;
-        alignStruct.ransacMaybeInLiers = false;
-      }
 
+      // remove the initial points
+      for (int i = 0; i < numChosen; i++) {
+        maybeInLiers[chosen[i]] = false;
+      }
+      // If the model has the minimun number of points
+      return alsoNumber >= d ? numInliers : -1;
     }
-  }
-
-  /**
-   * Take the initial points ramdoly. The points are divided by the initial number of points. If the
-   * fractions contain enough number of points took one point from each part.
-   * 
-   * @param data vector with the points which represent all possible alignments.
-   * @return false if there is any problem.
-   */
-  private boolean getInitN(List<AlignStructMol> data) {
-    if (data.size() > n) {
-      Collections.sort(data, new AlignStructMol());
-      double min = data.get(0).RT;
-      double max = data.get(data.size() - 1).RT;
-
-      Range<Double> rtRange = Range.closed(min, ((max - min) / 2) + min);
-
-      int cont = 0, bucle = 0;
-      while (cont < n / 2 && bucle < 1000) {
-        int index = (int) (data.size() * Math.random());
-        if (!data.get(index).ransacMaybeInLiers && rtRange.contains(data.get(index).RT)) {
-          data.get(index).ransacMaybeInLiers = true;
-          cont++;
 
+    /**
+     * Takes the initial points randomly within the RT range. If there are not enough points in
+     * the range, any points are taken.
+     */
+    private void draw(SplittableRandom random, int numPoints, double fromRT, double toRT) {
+      int drawn = 0;
+      for (int tries = 0; drawn < numPoints && tries < MAX_SAMPLING_TRIES; tries++) {
+        final int index = random.nextInt(rt.length);
+        if (!maybeInLiers[index] && rt[index] >= fromRT && rt[index] <= toRT) {
+          choose(index);
+          drawn++;
         }
-
-        bucle++;
-      }
-      if (bucle >= 1000) {
-        getN(data, (n / 2) - cont);
       }
-
-      bucle = 0;
-      rtRange = Range.closed(((max - min) / 2) + min, max);
-
-      while (cont < n && bucle < 1000) {
-
-        int index = (int) (data.size() * Math.random());
-        if (!data.get(index).ransacMaybeInLiers && rtRange.contains(data.get(index).RT)) {
-          data.get(index).ransacMaybeInLiers = true;
-          cont++;
+      while (drawn < numPoints) {
+        final int index = random.nextInt(rt.length);
+        if (!maybeInLiers[index]) {
+          choose(index);
+          drawn++;
         }
-        bucle++;
-      }
-      if (bucle >= 1000) {
-        getN(data, n - cont);
       }
-      return true;
-    } else {
-      return false;
     }
-  }
 
-  private void getN(List<AlignStructMol> data, int newN) {
-    if (newN < 1) {
-      return;
-    }
-    int cont = 0;
-    while (cont < newN) {
-      int index = (int) (data.size() * Math.random());
-      if (!data.get(index).ransacMaybeInLiers) {
-        data.get(index).ransacMaybeInLiers = true;
-        cont++;
-      }
-    }
-  }
-
-  private void fittPolinomialFunction(List<AlignStructMol> data, boolean linear) {
-    List<AlignStructMol> points = new ArrayList<AlignStructMol>();
-
-    int degree = 3;
-    if (linear) {
-      degree = 1;
+    private void choose(int index) {
+      maybeInLiers[index] = true;
+      chosen[numChosen++] = index;
     }
 
-    PolynomialFitter fitter = new PolynomialFitter(degree, new GaussNewtonOptimizer(true));
-    for (int i = 0; i < data.size(); i++) {
-      AlignStructMol point = data.get(i);
-      if (point.ransacMaybeInLiers) {
-        points.add(point);
-        fitter.addObservedPoint(1, point.RT, point.RT2);
-      }
-    }
-    try {
-      PolynomialFunction function = fitter.fit();
-      for (AlignStructMol point : data) {
-        double y = point.RT2;
-        double bestY = function.value(point.RT);
-        if (Math.abs(y - bestY) < t) {
-          point.ransacAlsoInLiers = true;
-          AlsoNumber++;
-        } else {
-          point.ransacAlsoInLiers = false;
-        }
+    private PolynomialFunction fitPolynomialFunction() {
+      final int degree = Linear ? 1 : 3;
+      final PolynomialFitter fitter = new PolynomialFitter(degree, new GaussNewtonOptimizer(true));
+      for (int i = 0; i < numChosen; i++) {
+        fitter.addObservedPoint(1, rt[chosen[i]], rt2[chosen[i]]);
       }
-    } catch (Exception ex) {
-    }
-  }
-
-  /**
-   * calculate the error in the model
-   * 
-   * @param data vector with the points which represent all possible alignments.
-   * @param regression regression of the alignment points
-   * @return the error in the model
-   */
-  private double newError(List<AlignStructMol> data) throws Exception {
-
-    double numT = 1;
-    for (int i = 0; i < data.size(); i++) {
-      if (data.get(i).ransacAlsoInLiers || data.get(i).ransacMaybeInLiers) {
-        numT++;
+      try {
+        return fitter.fit();
+      } catch (Exception ex) {
+        return null;
       }
     }
-    return 1 / numT;
-
   }
 }
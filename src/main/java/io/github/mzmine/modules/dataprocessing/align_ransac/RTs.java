@@ -26,6 +26,7 @@
 package io.github.mzmine.modules.dataprocessing.align_ransac;
 
 import java.util.Comparator;
+import java.util.Random;
 
 public class RTs implements Comparator<RTs> {
 
@@ -40,6 +41,14 @@ public class RTs implements Comparator<RTs> {
     this.RT2 = RT2 + 0.001 / Math.random();
   }
 
+  /**
+   * Reproducible jitter
+   */
+  public RTs(double RT, double RT2, Random random) {
+    this.RT = RT + 0.001 / random.nextDouble();
+    this.RT2 = RT2 + 0.001 / random.nextDouble();
+  }
+
   public int compare(RTs arg0, RTs arg1) {
     if (arg0.RT < arg1.RT) {
       return -1;
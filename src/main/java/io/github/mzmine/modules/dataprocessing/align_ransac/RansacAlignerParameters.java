@@ -75,6 +75,13 @@ public class RansacAlignerParameters extends SimpleParameterSet {
   public static final BooleanParameter SameChargeRequired = new BooleanParameter(
       "Require same charge state", "If checked, only rows having same charge state can be aligned");
 
+  public static final BooleanParameter fitAgainstFirstList = new BooleanParameter(
+      "Fit models in parallel",
+      "If checked, the RT models of all feature lists are fitted in parallel against the first "
+          + "feature list instead of one after another against the growing aligned feature list."
+          + "\nRecommended for many samples. The rows are still aligned in the order of the feature lists.",
+      false);
+
   @Override
   public ExitCode showSetupDialog(boolean valueCheckRequired) {
     RansacAlignerSetupDialog dialog = new RansacAlignerSetupDialog(valueCheckRequired, this);
@@ -84,7 +91,7 @@ public class RansacAlignerParameters extends SimpleParameterSet {
 
   public RansacAlignerParameters() {
     super(new Parameter[]{peakLists, peakListName, MZTolerance, RTToleranceBefore, RTToleranceAfter,
-            Iterations, NMinPoints, Margin, Linear, SameChargeRequired},
+            Iterations, NMinPoints, Margin, Linear, SameChargeRequired, fitAgainstFirstList},
         "https://mzmine.github.io/mzmine_documentation/module_docs/align_ransac/align_ransac.html");
   }
 
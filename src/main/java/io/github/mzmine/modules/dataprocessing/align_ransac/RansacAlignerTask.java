@@ -44,6 +44,8 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.RangeUtils;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -51,10 +53,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.apache.commons.math.analysis.polynomials.PolynomialFunction;
 import org.apache.commons.math.optimization.fitting.PolynomialFitter;
 import org.apache.commons.math.optimization.general.GaussNewtonOptimizer;
@@ -77,6 +81,7 @@ class RansacAlignerTask extends AbstractTask {
   private RTTolerance rtToleranceBefore, rtToleranceAfter;
   private ParameterSet parameters;
   private boolean sameChargeRequired;
+  private boolean fitAgainstFirstList;
   // ID counter for the new peaklist
   private int newRowID = 1;
 
@@ -102,6 +107,8 @@ class RansacAlignerTask extends AbstractTask {
     sameChargeRequired = parameters.getParameter(RansacAlignerParameters.SameChargeRequired)
         .getValue();
 
+    fitAgainstFirstList = parameters.getValue(RansacAlignerParameters.fitAgainstFirstList);
+
   }
 
   /**
@@ -163,10 +170,20 @@ class RansacAlignerTask extends AbstractTask {
       }
     }
 
+    // the models of all feature lists against the first feature list are independent
+    final List<PolynomialFunction> functions = fitAgainstFirstList ? IntStream.range(0,
+        featureLists.length).parallel().mapToObj(
+        i -> i == 0 ? null : fitModel(featureLists[0], featureLists[i], i)).toList() : null;
+
     // Iterate source feature lists
-    for (FeatureList featureList : featureLists) {
+    for (int i = 0; i < featureLists.length; i++) {
+      final FeatureList featureList = featureLists[i];
+      if (isCanceled()) {
+        return;
+      }
 
-      HashMap<FeatureListRow, FeatureListRow> alignmentMapping = this.getAlignmentMap(featureList);
+      HashMap<FeatureListRow, FeatureListRow> alignmentMapping = this.getAlignmentMap(featureList,
+          functions != null ? functions.get(i) : null, i);
 
       List<FeatureListRow> allRows = featureList.getRows();
 
@@ -228,10 +245,14 @@ class RansacAlignerTask extends AbstractTask {
   }
 
   /**
-   * @param peakList
+   * @param peakList  the feature list to align
+   * @param function  the RT model of this feature list or null to fit it against the aligned
+   *                  feature list
+   * @param listIndex index of the feature list to seed the model fit
    * @return
    */
-  private HashMap<FeatureListRow, FeatureListRow> getAlignmentMap(FeatureList peakList) {
+  private HashMap<FeatureListRow, FeatureListRow> getAlignmentMap(FeatureList peakList,
+      @Nullable PolynomialFunction function, int listIndex) {
 
     // Create a table of mappings for best scores
     HashMap<FeatureListRow, FeatureListRow> alignmentMapping = new HashMap<>();
@@ -244,8 +265,9 @@ class RansacAlignerTask extends AbstractTask {
     TreeSet<RowVsRowScore> scoreSet = new TreeSet<RowVsRowScore>();
 
     // RANSAC algorithm
-    List<AlignStructMol> list = ransacPeakLists(alignedFeatureList, peakList);
-    PolynomialFunction function = this.getPolynomialFunction(list);
+    if (function == null) {
+      function = fitModel(alignedFeatureList, peakList, listIndex);
+    }
 
     List<FeatureListRow> allRows = peakList.getRows();
 
@@ -315,45 +337,44 @@ class RansacAlignerTask extends AbstractTask {
   }
 
   /**
-   * RANSAC
+   * Fits the RT model of a feature list against another feature list with RANSAC. The result only
+   * depends on the seed.
    *
-   * @param alignedPeakList
-   * @param peakList
-   * @return
+   * @return the model or null if it could not be fitted
    */
-  private List<AlignStructMol> ransacPeakLists(FeatureList alignedPeakList, FeatureList peakList) {
-    List<AlignStructMol> list = this.getVectorAlignment(alignedPeakList, peakList);
-    RANSAC ransac = new RANSAC(parameters);
-    ransac.alignment(list);
-    return list;
+  @Nullable
+  private PolynomialFunction fitModel(FeatureList alignedPeakList, FeatureList peakList,
+      long seed) {
+    final CandidatePairs pairs = getCandidatePairs(alignedPeakList, peakList);
+    if (pairs == null) {
+      return null;
+    }
+    final boolean[] aligned = new RANSAC(parameters).alignment(pairs.rts(), pairs.rts2(), seed);
+    return getPolynomialFunction(pairs.rts(), pairs.rts2(), aligned, new Random(seed));
   }
 
   /**
    * Return the corrected RT of the row
    *
-   * @param list
-   * @return
+   * @param rts     retention times of the possible alignments in the first feature list
+   * @param rts2    retention times of the possible alignments in the second feature list
+   * @param aligned inliers of the RANSAC model
+   * @param random  jitter of all points, the model only depends on its seed
+   * @return the model or null if it could not be fitted
    */
-  private PolynomialFunction getPolynomialFunction(List<AlignStructMol> list) {
+  @Nullable
+  static PolynomialFunction getPolynomialFunction(double[] rts, double[] rts2, boolean[] aligned,
+      Random random) {
     List<RTs> data = new ArrayList<RTs>();
-    for (AlignStructMol m : list) {
-      if (m.Aligned) {
-        data.add(new RTs(m.RT2, m.RT));
+    for (int i = 0; i < aligned.length; i++) {
+      if (aligned[i]) {
+        data.add(new RTs(rts2[i], rts[i], random));
       }
     }
 
-    data = this.smooth(data);
+    data = smooth(data, random);
     Collections.sort(data, new RTs());
 
-    double[] xval = new double[data.size()];
-    double[] yval = new double[data.size()];
-    int i = 0;
-
-    for (RTs rt : data) {
-      xval[i] = rt.RT;
-      yval[i++] = rt.RT2;
-    }
-
     PolynomialFitter fitter = new PolynomialFitter(3, new GaussNewtonOptimizer(true));
     for (RTs rt : data) {
       fitter.addObservedPoint(1, rt.RT, rt.RT2);
@@ -366,7 +387,7 @@ class RansacAlignerTask extends AbstractTask {
     }
   }
 
-  private List<RTs> smooth(List<RTs> list) {
+  private static List<RTs> smooth(List<RTs> list, Random random) {
     // Add points to the model in between of the real points to smooth the
     // regression model
     Collections.sort(list, new RTs());
@@ -380,7 +401,7 @@ class RansacAlignerTask extends AbstractTask {
         regression.addData(point2.RT, point2.RT2);
         double rt = point1.RT + 1;
         while (rt < point2.RT) {
-          RTs newPoint = new RTs(rt, regression.predict(rt));
+          RTs newPoint = new RTs(rt, regression.predict(rt), random);
           list.add(newPoint);
           rt++;
         }
@@ -392,15 +413,31 @@ class RansacAlignerTask extends AbstractTask {
   }
 
   /**
-   * Create the vector which contains all the possible aligned peaks.
+   * Create the retention times of all the possible aligned peaks. The rows of the second feature
+   * list are searched by m/z in primitive arrays.
    *
    * @param peakListX
    * @param peakListY
-   * @return vector which contains all the possible aligned peaks.
+   * @return all the possible aligned peaks or null if the task was canceled.
    */
-  private List<AlignStructMol> getVectorAlignment(FeatureList peakListX, FeatureList peakListY) {
+  @Nullable
+  private CandidatePairs getCandidatePairs(FeatureList peakListX, FeatureList peakListY) {
+    final List<FeatureListRow> rowsY = peakListY.getRows();
+    final int[] order = IntStream.range(0, rowsY.size()).toArray();
+    final double[] unsortedMzs = new double[rowsY.size()];
+    for (int i = 0; i < unsortedMzs.length; i++) {
+      unsortedMzs[i] = rowsY.get(i).getAverageMZ();
+    }
+    IntArrays.quickSort(order, (a, b) -> Double.compare(unsortedMzs[a], unsortedMzs[b]));
+    final double[] mzsY = new double[order.length];
+    final float[] rtsY = new float[order.length];
+    for (int i = 0; i < order.length; i++) {
+      mzsY[i] = unsortedMzs[order[i]];
+      rtsY[i] = rowsY.get(order[i]).getAverageRT();
+    }
 
-    List<AlignStructMol> alignMol = new ArrayList<AlignStructMol>();
+    final DoubleArrayList rts = new DoubleArrayList();
+    final DoubleArrayList rts2 = new DoubleArrayList();
     for (FeatureListRow row : peakListX.getRows()) {
 
       if (isCanceled()) {
@@ -410,14 +447,27 @@ class RansacAlignerTask extends AbstractTask {
       Range<Double> mzRange = mzTolerance.getToleranceRange(row.getAverageMZ());
       Range<Float> rtRange = rtToleranceBefore.getToleranceRange(row.getAverageRT());
 
-      // Get all rows of the aligned peaklist within parameter limits
-      List<FeatureListRow> candidateRows = peakListY.getRowsInsideScanAndMZRange(rtRange, mzRange);
-
-      for (FeatureListRow candidateRow : candidateRows) {
-        alignMol.add(new AlignStructMol(row, candidateRow));
+      // Get all rows of the other feature list within parameter limits
+      int index = Arrays.binarySearch(mzsY, mzRange.lowerEndpoint());
+      index = index < 0 ? -index - 1 : index;
+      while (index > 0 && mzsY[index - 1] >= mzRange.lowerEndpoint()) {
+        index--;
+      }
+      for (; index < mzsY.length && mzsY[index] <= mzRange.upperEndpoint(); index++) {
+        if (rtRange.contains(rtsY[index])) {
+          rts.add(row.getAverageRT());
+          rts2.add(rtsY[index]);
+        }
       }
     }
 
-    return alignMol;
+    return new CandidatePairs(rts.toDoubleArray(), rts2.toDoubleArray());
+  }
+
+  /**
+   * Retention times of all possible aligned peaks in the two feature lists
+   */
+  private record CandidatePairs(double[] rts, double[] rts2) {
+
   }
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Builds ADAP chromatograms on primitive arrays. All data points of all scans are collected, sorted
+ * by descending intensity and added to the chromatogram whose m/z range contains them. Data points
+ * without a chromatogram start a new one if they are above the minimum height. The chromatograms
+ * are the same as with {@link ADAPChromatogram} in a range map, without creating data point,
+ * range and map entry objects for each data point.
+ */
+class ADAPChromatogramCollector {
+
+  private final Scan[] scans;
+  private final MZTolerance mzTolerance;
+  private final double minHighestPoint;
+  private final MzRangeIndex ranges = new MzRangeIndex();
+
+  // all data points
+  private double[] mzs;
+  private double[] intensities;
+  private int[] scanIndices;
+  private int numDataPoints = 0;
+  // data point indices sorted by descending intensity
+  private int[] sortedDataPoints;
+
+  // data points of each chromatogram (range id) as linked list in the order they were added
+  private int[] nextDataPoint;
+  private int[] firstDataPoint = new int[1024];
+  private int[] lastDataPoint = new int[1024];
+
+  // the current chromatogram sorted by scan
+  private final int[] scanMarks;
+  private int mark = 0;
+  private final long[] sortedByScan;
+  private int currentSize;
+  private double currentMz;
+
+  /**
+   * @param scans    all scans in the order of their index
+   * @param capacity expected number of data points
+   */
+  ADAPChromatogramCollector(@NotNull Scan[] scans, @NotNull MZTolerance mzTolerance,
+      double minHighestPoint, int capacity) {
+    this.scans = scans;
+    this.mzTolerance = mzTolerance;
+    this.minHighestPoint = minHighestPoint;
+    mzs = new double[capacity];
+    intensities = new double[capacity];
+    scanIndices = new int[capacity];
+    scanMarks = new int[scans.length];
+    sortedByScan = new long[scans.length];
+  }
+
+  /**
+   * Data points need to be added in the order of their scans
+   *
+   * @param scanIndex index of the scan in the scans array
+   */
+  void addDataPoint(int scanIndex, double mz, double intensity) {
+    if (numDataPoints == mzs.length) {
+      final int newLength = Math.max(16, mzs.length + (mzs.length >> 1));
+      mzs = Arrays.copyOf(mzs, newLength);
+      intensities = Arrays.copyOf(intensities, newLength);
+      scanIndices = Arrays.copyOf(scanIndices, newLength);
+    }
+    mzs[numDataPoints] = mz;
+    intensities[numDataPoints] = intensity;
+    scanIndices[numDataPoints] = scanIndex;
+    numDataPoints++;
+  }
+
+  int getNumberOfDataPoints() {
+    return numDataPoints;
+  }
+
+  /**
+   * Sort all data points by descending intensity and m/z. Equal data points stay in scan order.
+   */
+  void sortByIntensity() {
+    final int[] sorted = new int[numDataPoints];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = i;
+    }
+    final double[] mzs = this.mzs;
+    final double[] intensities = this.intensities;
+    IntArrays.parallelQuickSort(sorted, (a, b) -> {
+      int result = Double.compare(intensities[b], intensities[a]);
+      if (result == 0) {
+        result = Double.compare(mzs[b], mzs[a]);
+      }
+      return result != 0 ? result : Integer.compare(a, b);
+    });
+    sortedDataPoints = sorted;
+    nextDataPoint = new int[numDataPoints];
+  }
+
+  /**
+   * Adds the data point to the chromatogram that contains its m/z or starts a new chromatogram.
+   * Call for all ranks in ascending order after {@link #sortByIntensity()}.
+   *
+   * @param rank the index of the data point sorted by descending intensity
+   */
+  void addToChromatograms(int rank) {
+    final int dp = sortedDataPoints[rank];
+    final double mz = mzs[dp];
+    final double intensity = intensities[dp];
+    if (Double.isNaN(mz) || Double.isNaN(intensity)) {
+      return;
+    }
+
+    final int existing = ranges.get(mz);
+    if (existing != -1) {
+      append(existing, dp);
+    } else if (intensity >= minHighestPoint) {
+      // add a new chromatogram - limit ranges to avoid overlap
+      startNewChromatogramLimitMzRanges(dp, mz);
+    }
+  }
+
+  /**
+   * Starts a new chromatogram and limits its range so that it does not overlap with existing m/z
+   * ranges
+   */
+  private void startNewChromatogramLimitMzRanges(int dp, double mz) {
+    final double tolerance = mzTolerance.getMzToleranceForMass(mz);
+    final double toleranceLower = mz - tolerance;
+    final double toleranceUpper = mz + tolerance;
+
+    // use the bounds of neighbouring ranges so that none of the ranges overlap
+    final int minusRange = ranges.get(toleranceLower);
+    final int plusRange = ranges.get(toleranceUpper);
+    final double lower = minusRange == -1 ? toleranceLower : ranges.getUpper(minusRange);
+    final double upper = plusRange == -1 ? toleranceUpper : ranges.getLower(plusRange);
+
+    if (lower < upper) {
+      // ranges in between are replaced by the new range, the same as in a RangeMap
+      ranges.removeRangesStartingIn(lower, upper);
+      final int chrom = ranges.add(lower, upper);
+      if (chrom == firstDataPoint.length) {
+        final int newLength = chrom + (chrom >> 1);
+        firstDataPoint = Arrays.copyOf(firstDataPoint, newLength);
+        lastDataPoint = Arrays.copyOf(lastDataPoint, newLength);
+      }
+      firstDataPoint[chrom] = dp;
+      lastDataPoint[chrom] = dp;
+      nextDataPoint[dp] = -1;
+    } else if (lower == upper && plusRange != -1) {
+      append(plusRange, dp);
+    } else {
+      throw new IllegalStateException(
+          String.format("Incorrect range [%f, %f] for m/z %f", lower, upper, mz));
+    }
+  }
+
+  private void append(int chrom, int dp) {
+    nextDataPoint[lastDataPoint[chrom]] = dp;
+    nextDataPoint[dp] = -1;
+    lastDataPoint[chrom] = dp;
+  }
+
+  /**
+   * Releases the sorted data points that are only needed to add data points to chromatograms
+   *
+   * @return the chromatogram ids sorted by m/z
+   */
+  int[] finishChromatograms() {
+    sortedDataPoints = null;
+    return ranges.toSortedIds();
+  }
+
+  /**
+   * Loads a chromatogram with the first (highest) data point of each scan sorted by scan.
+   *
+   * @return the number of data points in the chromatogram
+   */
+  int loadChromatogram(int chrom) {
+    mark++;
+    int n = 0;
+    double mzSum = 0;
+    for (int dp = firstDataPoint[chrom]; dp != -1; dp = nextDataPoint[dp]) {
+      final int scanIndex = scanIndices[dp];
+      if (scanMarks[scanIndex] == mark) {
+        continue;
+      }
+      scanMarks[scanIndex] = mark;
+      mzSum += mzs[dp];
+      sortedByScan[n++] = ((long) scanIndex << 32) | dp;
+    }
+    Arrays.sort(sortedByScan, 0, n);
+    currentSize = n;
+    currentMz = mzSum / n;
+    return n;
+  }
+
+  /**
+   * Check the loaded chromatogram for a minimum number of continuous scans
+   *
+   * @param intensityThresh minimum intensity to consider data point connected
+   * @param minimumScanSpan minimum number of connected dp
+   * @return true if a minimum number of scans are connected (without holes)
+   */
+  boolean matchesMinContinuousDataPoints(double intensityThresh, int minimumScanSpan,
+      double minHeight) {
+    if (minimumScanSpan <= 1 && currentSize > 0) {
+      return true;
+    }
+
+    int connectedScans = 0;
+    double maxCurrentHeight = 0d;
+    int previousScan = -2;
+    for (int i = 0; i < currentSize; i++) {
+      final int scanIndex = (int) (sortedByScan[i] >>> 32);
+      final double intensity = intensities[(int) sortedByScan[i]];
+      if (scanIndex != previousScan + 1) {
+        connectedScans = 0;
+      }
+      previousScan = scanIndex;
+
+      if (intensity >= intensityThresh) {
+        connectedScans++;
+        // track height of current segment
+        if (maxCurrentHeight < intensity) {
+          maxCurrentHeight = intensity;
+        }
+        // check conditions
+        if (connectedScans >= minimumScanSpan && maxCurrentHeight >= minHeight) {
+          return true;
+        }
+      } else {
+        connectedScans = 0;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates the time series of the loaded chromatogram with one zero intensity data point on both
+   * sides of every consecutive run of scans.
+   */
+  @NotNull SimpleIonTimeSeries createTimeSeries(@Nullable MemoryMapStorage storage) {
+    final int maxSize = Math.min(scans.length, currentSize * 3);
+    final double[] seriesMzs = new double[maxSize];
+    final double[] seriesIntensities = new double[maxSize];
+    final List<Scan> seriesScans = new ArrayList<>(maxSize);
+
+    int n = 0;
+    int previousScan = -1;
+    for (int i = 0; i < currentSize; i++) {
+      final int scanIndex = (int) (sortedByScan[i] >>> 32);
+      final int dp = (int) sortedByScan[i];
+      if (scanIndex - 1 > previousScan) {
+        seriesMzs[n] = currentMz;
+        seriesScans.add(scans[scanIndex - 1]);
+        n++;
+      }
+      seriesMzs[n] = mzs[dp];
+      seriesIntensities[n] = intensities[dp];
+      seriesScans.add(scans[scanIndex]);
+      n++;
+      previousScan = scanIndex;
+
+      final int nextScan =
+          i + 1 < currentSize ? (int) (sortedByScan[i + 1] >>> 32) : Integer.MAX_VALUE;
+      // a single missing scan is filled by the leading zero of the next data point
+      if (nextScan > scanIndex + 2 && scanIndex + 1 < scans.length) {
+        seriesMzs[n] = currentMz;
+        seriesScans.add(scans[scanIndex + 1]);
+        n++;
+        previousScan = scanIndex + 1;
+      }
+    }
+
+    return new SimpleIonTimeSeries(storage, Arrays.copyOf(seriesMzs, n),
+        Arrays.copyOf(seriesIntensities, n), seriesScans);
+  }
+}
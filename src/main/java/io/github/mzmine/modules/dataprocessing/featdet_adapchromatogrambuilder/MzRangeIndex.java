@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import java.util.Arrays;
+
+/**
+ * Non-overlapping closed-open m/z ranges [lower, upper) that are identified by an int id. Replaces
+ * a TreeRangeMap of boxed ranges: the bounds are stored in primitive arrays by id and the ids are
+ * kept sorted by lower bound in blocks of limited size, so that adding or removing a range only
+ * shifts the ids of one block.
+ */
+class MzRangeIndex {
+
+  private static final int MAX_BLOCK_SIZE = 1024;
+
+  // bounds by range id
+  private double[] lowerBounds = new double[1024];
+  private double[] upperBounds = new double[1024];
+  private int numIds = 0;
+  private int size = 0;
+
+  // range ids sorted by lower bound
+  private int[][] blocks = new int[16][];
+  private int[] blockSizes = new int[16];
+  // lower bound of the first range in each block
+  private double[] blockStarts = new double[16];
+  private int numBlocks = 0;
+
+  /**
+   * @return the id of the range that contains the m/z or -1
+   */
+  int get(double mz) {
+    final int b = findBlock(mz);
+    if (b < 0) {
+      return -1;
+    }
+    final int id = blocks[b][floorPosition(b, mz)];
+    return mz < upperBounds[id] ? id : -1;
+  }
+
+  double getLower(int id) {
+    return lowerBounds[id];
+  }
+
+  double getUpper(int id) {
+    return upperBounds[id];
+  }
+
+  /**
+   * Adds a new range that must not overlap with any existing range. Ids are assigned in ascending
+   * order starting at 0 and are not reused after removal.
+   *
+   * @return the id of the new range
+   */
+  int add(double lower, double upper) {
+    if (numIds == lowerBounds.length) {
+      final int newLength = lowerBounds.length + (lowerBounds.length >> 1);
+      lowerBounds = Arrays.copyOf(lowerBounds, newLength);
+      upperBounds = Arrays.copyOf(upperBounds, newLength);
+    }
+    final int id = numIds++;
+    lowerBounds[id] = lower;
+    upperBounds[id] = upper;
+    size++;
+
+    if (numBlocks == 0) {
+      insertBlock(0, new int[MAX_BLOCK_SIZE], 0);
+    }
+    final int b = Math.max(findBlock(lower), 0);
+    final int pos = floorPosition(b, lower) + 1;
+    final int[] block = blocks[b];
+    System.arraycopy(block, pos, block, pos + 1, blockSizes[b] - pos);
+    block[pos] = id;
+    blockSizes[b]++;
+    if (pos == 0) {
+      blockStarts[b] = lower;
+    }
+
+    if (blockSizes[b] == MAX_BLOCK_SIZE) {
+      // split full block in two halves
+      final int half = MAX_BLOCK_SIZE / 2;
+      final int[] upperHalf = new int[MAX_BLOCK_SIZE];
+      System.arraycopy(block, half, upperHalf, 0, MAX_BLOCK_SIZE - half);
+      blockSizes[b] = half;
+      insertBlock(b + 1, upperHalf, MAX_BLOCK_SIZE - half);
+    }
+    return id;
+  }
+
+  /**
+   * Removes all ranges that start within [lower, upper)
+   */
+  void removeRangesStartingIn(double lower, double upper) {
+    if (numBlocks == 0) {
+      return;
+    }
+    int b = Math.max(findBlock(lower), 0);
+    int pos = floorPosition(b, lower);
+    if (pos < 0 || lowerBounds[blocks[b][pos]] < lower) {
+      pos++;
+    }
+
+    while (b < numBlocks) {
+      if (pos >= blockSizes[b]) {
+        b++;
+        pos = 0;
+        continue;
+      }
+      final int[] block = blocks[b];
+      if (lowerBounds[block[pos]] >= upper) {
+        return;
+      }
+      System.arraycopy(block, pos + 1, block, pos, blockSizes[b] - pos - 1);
+      blockSizes[b]--;
+      size--;
+      if (blockSizes[b] == 0) {
+        // next block moves to index b
+        removeBlock(b);
+        pos = 0;
+      } else if (pos == 0) {
+        blockStarts[b] = lowerBounds[block[0]];
+      }
+    }
+  }
+
+  /**
+   * @return number of ranges
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * @return the ids of all ranges sorted by m/z
+   */
+  int[] toSortedIds() {
+    final int[] ids = new int[size];
+    int n = 0;
+    for (int b = 0; b < numBlocks; b++) {
+      System.arraycopy(blocks[b], 0, ids, n, blockSizes[b]);
+      n += blockSizes[b];
+    }
+    return ids;
+  }
+
+  /**
+   * @return the last block that starts at or before the m/z or -1 if the m/z is below all ranges
+   */
+  private int findBlock(double mz) {
+    int low = 0;
+    int high = numBlocks - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (blockStarts[mid] <= mz) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  /**
+   * @return the position of the last range in the block that starts at or before the m/z or -1
+   */
+  private int floorPosition(int b, double mz) {
+    final int[] block = blocks[b];
+    int low = 0;
+    int high = blockSizes[b] - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (lowerBounds[block[mid]] <= mz) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  private void insertBlock(int b, int[] block, int blockSize) {
+    if (numBlocks == blocks.length) {
+      final int newLength = blocks.length * 2;
+      blocks = Arrays.copyOf(blocks, newLength);
+      blockSizes = Arrays.copyOf(blockSizes, newLength);
+      blockStarts = Arrays.copyOf(blockStarts, newLength);
+    }
+    final int moved = numBlocks - b;
+    System.arraycopy(blocks, b, blocks, b + 1, moved);
+    System.arraycopy(blockSizes, b, blockSizes, b + 1, moved);
+    System.arraycopy(blockStarts, b, blockStarts, b + 1, moved);
+    blocks[b] = block;
+    blockSizes[b] = blockSize;
+    blockStarts[b] = blockSize > 0 ? lowerBounds[block[0]] : Double.NEGATIVE_INFINITY;
+    numBlocks++;
+  }
+
+  private void removeBlock(int b) {
+    final int moved = numBlocks - b - 1;
+    System.arraycopy(blocks, b + 1, blocks, b, moved);
+    System.arraycopy(blockSizes, b + 1, blockSizes, b, moved);
+    System.arraycopy(blockStarts, b + 1, blockStarts, b, moved);
+    numBlocks--;
+    blocks[numBlocks] = null;
+  }
+}
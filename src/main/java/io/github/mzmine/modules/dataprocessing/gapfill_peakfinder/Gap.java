@@ -124,6 +124,15 @@ public class Gap {
 
   }
 
+  /**
+   * Scans are offered in ascending order of retention time
+   *
+   * @return true if this gap ignores all scans at and after this retention time
+   */
+  public boolean isFinishedAt(float rt) {
+    return rt > rtRange.upperEndpoint();
+  }
+
   /**
    * Finalizes the gap, adds a peak
    */
@@ -268,4 +277,8 @@ public class Gap {
   public FeatureListRow getFeatureListRow() {
     return featureListRow;
   }
+
+  public Range<Float> getRtRange() {
+    return rtRange;
+  }
 }
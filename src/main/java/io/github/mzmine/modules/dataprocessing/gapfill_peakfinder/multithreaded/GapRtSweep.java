@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.multithreaded;
+
+import io.github.mzmine.modules.dataprocessing.gapfill_peakfinder.Gap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sweeps over the scans of a file in ascending retention time order and only provides the gaps
+ * that may accept a scan at the current retention time. Gaps are activated when the sweep reaches
+ * the start of their RT range and retired once they are finished, so that a scan is only offered
+ * to the gaps that overlap with it instead of all gaps of the file.
+ *
+ * @param <T> the gap type
+ */
+class GapRtSweep<T extends Gap> {
+
+  // all gaps sorted by the start of their RT range
+  private final List<T> gapsByStart;
+  private final List<T> active = new ArrayList<>();
+  private int nextStart = 0;
+
+  GapRtSweep(@NotNull List<T> gaps) {
+    gapsByStart = new ArrayList<>(gaps);
+    gapsByStart.sort(Comparator.comparingDouble(gap -> gap.getRtRange().lowerEndpoint()));
+  }
+
+  /**
+   * Retention times need to be ascending for consecutive calls
+   *
+   * @param rt the retention time of the next scan
+   * @return the gaps that may accept a scan at this retention time
+   */
+  @NotNull
+  List<T> getActiveGaps(float rt) {
+    while (nextStart < gapsByStart.size()
+           && gapsByStart.get(nextStart).getRtRange().lowerEndpoint() <= rt) {
+      active.add(gapsByStart.get(nextStart));
+      nextStart++;
+    }
+    active.removeIf(gap -> gap.isFinishedAt(rt));
+    return active;
+  }
+}
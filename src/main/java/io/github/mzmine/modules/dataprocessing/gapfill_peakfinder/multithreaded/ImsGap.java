@@ -123,6 +123,14 @@ public class ImsGap extends Gap {
 
   }
 
+  /**
+   * Continues an elution that started within the RT range until it ends
+   */
+  @Override
+  public boolean isFinishedAt(float rt) {
+    return rt > rtRange.upperEndpoint() && currentPeakDataPoints == null;
+  }
+
   private DataPointIonMobilitySeries findDataPoint(@NotNull final MobilityScanDataAccess access) {
 
     final Frame frame = access.getFrame();
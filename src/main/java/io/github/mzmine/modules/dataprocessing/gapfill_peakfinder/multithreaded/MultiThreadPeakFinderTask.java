@@ -212,6 +212,7 @@ class MultiThreadPeakFinderTask extends AbstractTask {
       final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
           MobilityScanDataType.CENTROID, (List<Frame>) peakList.getSeletedScans(file));
       List<ImsGap> imsGaps = (List<ImsGap>) (List<? extends Gap>) gaps;
+      final GapRtSweep<ImsGap> sweep = new GapRtSweep<>(imsGaps);
 
       while (access.hasNextFrame()) {
         if (isCanceled()) {
@@ -219,7 +220,7 @@ class MultiThreadPeakFinderTask extends AbstractTask {
         }
 
         final Frame frame = access.nextFrame();
-        for (ImsGap gap : imsGaps) {
+        for (ImsGap gap : sweep.getActiveGaps(frame.getRetentionTime())) {
           access.resetMobilityScan();
           gap.offerNextScan(access);
         }
@@ -231,13 +232,14 @@ class MultiThreadPeakFinderTask extends AbstractTask {
 
       final ScanDataAccess scanAccess = EfficientDataAccess.of(file, ScanDataType.CENTROID,
           peakList.getSeletedScans(file));
+      final GapRtSweep<Gap> sweep = new GapRtSweep<>(gaps);
       while (scanAccess.hasNextScan()) {
         if (isCanceled()) {
           return;
         }
         scanAccess.nextScan();
-        // Feed this scan to all gaps
-        for (Gap gap : gaps) {
+        // Feed this scan to all gaps that overlap in RT
+        for (Gap gap : sweep.getActiveGaps(scanAccess.getRetentionTime())) {
           gap.offerNextScan(scanAccess);
         }
 
@@ -32,6 +32,7 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.data_access.CachedFeatureDataAccess;
 import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.RowGroup;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
@@ -55,9 +56,11 @@ import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
 import io.github.mzmine.util.maths.similarity.SimilarityMeasure;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.IntStream;
@@ -273,18 +276,56 @@ public class CorrelateGroupingTask extends AbstractTask {
     // preload all intensity values
     CachedFeatureDataAccess data = new CachedFeatureDataAccess(rows, false, true);
 
+    // rows need features in the same sample within the RT tolerance. Order rows by their lowest
+    // feature RT and stop comparing once the lowest RT is outside the tolerance of the highest RT
+    // of the current row
+    final float[] minRT = new float[totalRows];
+    final float[] maxRT = new float[totalRows];
+    float maxFeatureRT = 0f;
+    for (int i = 0; i < totalRows; i++) {
+      minRT[i] = Float.POSITIVE_INFINITY;
+      maxRT[i] = Float.NEGATIVE_INFINITY;
+      for (ModularFeature f : rows[i].getFeatures()) {
+        final Float rt = f == null ? null : f.getRT();
+        if (rt != null) {
+          minRT[i] = Math.min(minRT[i], rt);
+          maxRT[i] = Math.max(maxRT[i], rt);
+        }
+      }
+      maxFeatureRT = Math.max(maxFeatureRT, maxRT[i]);
+    }
+    final float rtWindow;
+    if (rtTolerance != null && minFFilter.isRequiringFeatureOverlap()) {
+      // relative tolerances are largest at the highest RT, small margin for rounding
+      rtWindow = (rtTolerance.getToleranceRange(maxFeatureRT).upperEndpoint() - maxFeatureRT)
+                 * 1.001f;
+    } else {
+      // the filter accepts rows without overlapping features, compare all
+      rtWindow = Float.POSITIVE_INFINITY;
+    }
+    final int[] byMinRT = IntStream.range(0, totalRows).toArray();
+    IntArrays.quickSort(byMinRT, (a, b) -> Float.compare(minRT[a], minRT[b]));
+    final LongAdder comparisons = new LongAdder();
+
     // for all rows - do in parallel
-    IntStream.range(0, totalRows - 1).parallel().forEach(i -> {
+    IntStream.range(0, totalRows - 1).parallel().forEach(p -> {
       if (!isCanceled()) {
         try {
-          FeatureListRow row = rows[i];
-          // compare to the rest of rows
-          for (int x = i + 1; x < totalRows; x++) {
+          final int a = byMinRT[p];
+          final float maxRTWithTolerance = maxRT[a] + rtWindow;
+          // compare to the rest of rows within the RT window
+          for (int q = p + 1; q < totalRows; q++) {
             if (isCanceled()) {
               break;
             }
-
-            FeatureListRow row2 = rows[x];
+            final int b = byMinRT[q];
+            if (minRT[b] > maxRTWithTolerance) {
+              break;
+            }
+            comparisons.increment();
+            // keep the pair order by average RT
+            FeatureListRow row = rows[Math.min(a, b)];
+            FeatureListRow row2 = rows[Math.max(a, b)];
 
             // has a minimum number/% of overlapping features in all samples / in at least one
             // groups
@@ -318,6 +359,9 @@ public class CorrelateGroupingTask extends AbstractTask {
         }
       }
     });
+    logger.fine(() -> MessageFormat.format(
+        "Corr: Compared {0} of {1} row pairs within the RT tolerance", comparisons.sum(),
+        (long) totalRows * (totalRows - 1) / 2));
 
     // number of f2f correlations
     int nR2Rcorr = 0;
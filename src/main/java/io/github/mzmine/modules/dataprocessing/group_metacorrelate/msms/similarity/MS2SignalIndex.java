@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.msms.similarity;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntCollection;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Inverted index from signal values (fragment m/z, neutral losses or m/z differences) to the rows
+ * that contain them. Used to generate candidate pairs for the MS2 similarity so that only rows
+ * that share enough signals are aligned and scored.
+ * <p>
+ * Entries are matched within a fixed tolerance that must be at least as large as the largest
+ * tolerance used by the alignment. The counts are therefore an upper bound of the overlap that the
+ * alignment finds, and filtering by the minimum number of matched signals never drops a pair that
+ * would pass the exhaustive comparison.
+ */
+class MS2SignalIndex {
+
+  private final double tolerance;
+  private DoubleArrayList unsortedValues = new DoubleArrayList();
+  private IntArrayList unsortedOwners = new IntArrayList();
+  private IntArrayList unsortedWeights = new IntArrayList();
+  // sorted by value after build
+  private double[] values;
+  private int[] owners;
+  private int[] weights;
+
+  /**
+   * @param tolerance absolute tolerance to match signal values
+   */
+  MS2SignalIndex(double tolerance) {
+    this.tolerance = tolerance;
+  }
+
+  /**
+   * @param value  the signal value
+   * @param owner  index of the row that contains the signal
+   * @param weight the number of occurrences of this signal, 1 for plain signals
+   */
+  void add(double value, int owner, int weight) {
+    unsortedValues.add(value);
+    unsortedOwners.add(owner);
+    unsortedWeights.add(weight);
+  }
+
+  /**
+   * Sorts all entries by value. Needs to be called after all entries were added and before the
+   * index is queried.
+   */
+  void build() {
+    final int n = unsortedValues.size();
+    final double[] rawValues = unsortedValues.elements();
+    final int[] order = new int[n];
+    Arrays.setAll(order, i -> i);
+    IntArrays.parallelQuickSort(order, (a, b) -> Double.compare(rawValues[a], rawValues[b]));
+
+    values = new double[n];
+    owners = new int[n];
+    weights = new int[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = rawValues[order[i]];
+      owners[i] = unsortedOwners.getInt(order[i]);
+      weights[i] = unsortedWeights.getInt(order[i]);
+    }
+    unsortedValues = null;
+    unsortedOwners = null;
+    unsortedWeights = null;
+  }
+
+  /**
+   * Adds min(queryWeight, entry weight) for all entries within tolerance of value to the count of
+   * their owner. Only owners with an index greater than minOwner are counted, as all pairs are
+   * checked from the row with the lower index.
+   *
+   * @param value       the query signal value
+   * @param queryWeight the number of occurrences of the query signal
+   * @param minOwner    only count owners with a greater index
+   * @param counter     the target counter
+   */
+  void count(double value, int queryWeight, int minOwner, @NotNull CandidateCounter counter) {
+    final double max = value + tolerance;
+    for (int i = lowerBound(value - tolerance); i < values.length && values[i] <= max; i++) {
+      if (owners[i] > minOwner) {
+        counter.add(owners[i], Math.min(queryWeight, weights[i]));
+      }
+    }
+  }
+
+  /**
+   * @return the index of the first entry with value >= the given value
+   */
+  private int lowerBound(double value) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (values[mid] < value) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Counts matched signals per row. One instance per thread, reused for all query rows.
+   */
+  static class CandidateCounter {
+
+    private final int[] counts;
+    private final IntArrayList touched = new IntArrayList();
+
+    CandidateCounter(int numOwners) {
+      counts = new int[numOwners];
+    }
+
+    void add(int owner, int count) {
+      if (counts[owner] == 0) {
+        touched.add(owner);
+      }
+      counts[owner] += count;
+    }
+
+    /**
+     * Adds all owners with a count >= minCount to the target and resets all counts.
+     */
+    void collectAndReset(int minCount, @NotNull IntCollection target) {
+      for (int i = 0; i < touched.size(); i++) {
+        final int owner = touched.getInt(i);
+        if (counts[owner] >= minCount) {
+          target.add(owner);
+        }
+        counts[owner] = 0;
+      }
+      touched.clear();
+    }
+  }
+}
@@ -80,11 +80,18 @@ public class MS2SimilarityParameters extends SimpleParameterSet {
       "Generates a list of m/z differences and calculates cosine similarity",
       new NeutralLossSimilarityParameters(), false);
 
+  public static final BooleanParameter EXHAUSTIVE_PAIR_SEARCH = new BooleanParameter(
+      "Exhaustive pair search",
+      "Aligns all pairs of rows instead of only the pairs that share the minimum number of matched "
+      + "signals, neutral losses or m/z differences. Both options give the same results, the "
+      + "exhaustive search is much slower on large feature lists and is only needed for validation.",
+      false);
+
   public MS2SimilarityParameters() {
     super(
         new Parameter[]{FEATURE_LISTS, MZ_TOLERANCE, ONLY_BEST_MS2_SCAN, MIN_HEIGHT, MIN_DP,
             MIN_MATCH, MIN_COSINE_SIMILARITY, MODIFICATION_AWARE_COSINE,
-            CHECK_NEUTRAL_LOSS_SIMILARITY});
+            CHECK_NEUTRAL_LOSS_SIMILARITY, EXHAUSTIVE_PAIR_SEARCH});
   }
 
 }
@@ -39,6 +39,7 @@ import io.github.mzmine.datamodel.features.correlation.R2RSpectralSimilarityList
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship;
 import io.github.mzmine.datamodel.features.correlation.RowsRelationship.Type;
 import io.github.mzmine.datamodel.features.correlation.SpectralSimilarity;
+import io.github.mzmine.modules.dataprocessing.group_metacorrelate.msms.similarity.MS2SignalIndex.CandidateCounter;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -51,6 +52,10 @@ import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.ScanMZDiffConverter;
 import io.github.mzmine.util.scans.similarity.Weights;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import java.text.MessageFormat;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -58,6 +63,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -88,6 +94,7 @@ public class MS2SimilarityTask extends AbstractTask {
   private final R2RMap<RowsRelationship> mapNeutralLoss = new R2RMap<>();
   private final boolean checkNeutralLoss;
   private final boolean useModAwareCosine;
+  private final boolean exhaustivePairSearch;
   private List<FeatureListRow> rows;
 
 
@@ -105,6 +112,8 @@ public class MS2SimilarityTask extends AbstractTask {
         .getValue();
     onlyBestMS2Scan = parameterSet.getParameter(MS2SimilarityParameters.ONLY_BEST_MS2_SCAN)
         .getValue();
+    exhaustivePairSearch = parameterSet.getParameter(MS2SimilarityParameters.EXHAUSTIVE_PAIR_SEARCH)
+        .getValue();
     stageProgress = new AtomicDouble(0);
     // check neutral loss similarity?
     checkNeutralLoss = parameterSet.getParameter(
@@ -393,6 +402,10 @@ public class MS2SimilarityTask extends AbstractTask {
     }
     int numRows = filteredRows.size();
     LOG.log(Level.INFO, () -> MessageFormat.format("Checking MS2 similarity on {0} rows", numRows));
+    if (useSignalIndex()) {
+      checkRowsBestIndexed(mapSimilarity, mapNeutralLoss, filteredRows);
+      return;
+    }
     // run in parallel
     IntStream.range(0, numRows - 1).parallel().forEach(i -> {
       if (!isCanceled()) {
@@ -405,13 +418,7 @@ public class MS2SimilarityTask extends AbstractTask {
 
             // check neutral loss similarity
             if (checkNeutralLoss) {
-              // create mass diff array
-              DataPoint[] massDiffA = ScanMZDiffConverter.getAllMZDiff(a.data(), mzTolerance,
-                  minHeight, maxDPForDiff);
-              DataPoint[] massDiffB = ScanMZDiffConverter.getAllMZDiff(b.data(), mzTolerance,
-                  minHeight, maxDPForDiff);
-
-              checkR2RMs2Similarity(mapNeutralLoss, a.row(), b.row(), massDiffA, massDiffB,
+              checkR2RMs2Similarity(mapNeutralLoss, a.row(), b.row(), a.massDiff(), b.massDiff(),
                   Type.MS2_NEUTRAL_LOSS_SIM);
             }
           }
@@ -423,6 +430,71 @@ public class MS2SimilarityTask extends AbstractTask {
     });
   }
 
+  /**
+   * Same results as the exhaustive comparison in {@link #checkRowsBest}, but only aligns the pairs
+   * of rows that share at least {@link #minMatch} signals, neutral losses or m/z differences.
+   */
+  private void checkRowsBestIndexed(R2RMap<RowsRelationship> mapSimilarity,
+      R2RMap<RowsRelationship> mapNeutralLoss, List<FilteredRowData> filteredRows) {
+    final int numRows = filteredRows.size();
+    double maxMz = 0;
+    for (FilteredRowData data : filteredRows) {
+      maxMz = Math.max(maxMz, getMaxMz(data.data(), data.row().getAverageMZ()));
+    }
+    final double tolerance = getIndexTolerance(maxMz);
+
+    // inverted index of signals, neutral losses (for the modification aware cosine)
+    // and m/z differences
+    final MS2SignalIndex signalIndex = new MS2SignalIndex(tolerance);
+    final MS2SignalIndex lossIndex = new MS2SignalIndex(tolerance);
+    final MS2SignalIndex diffIndex = checkNeutralLoss ? new MS2SignalIndex(tolerance) : null;
+    for (int i = 0; i < numRows; i++) {
+      final FilteredRowData data = filteredRows.get(i);
+      addSignals(signalIndex, lossIndex, data.data(), data.row().getAverageMZ(), i);
+      if (diffIndex != null) {
+        addMassDiffs(diffIndex, data.massDiff(), i);
+      }
+    }
+    signalIndex.build();
+    lossIndex.build();
+    if (diffIndex != null) {
+      diffIndex.build();
+    }
+
+    final ThreadLocal<CandidateCounter> counters = ThreadLocal.withInitial(
+        () -> new CandidateCounter(numRows));
+    IntStream.range(0, numRows - 1).parallel().forEach(i -> {
+      if (!isCanceled()) {
+        final CandidateCounter counter = counters.get();
+        final IntArrayList candidates = new IntArrayList();
+        final FilteredRowData a = filteredRows.get(i);
+
+        countSignals(signalIndex, lossIndex, a.data(), a.row().getAverageMZ(), i, counter);
+        counter.collectAndReset(minMatch, candidates);
+        for (int c = 0; c < candidates.size() && !isCanceled(); c++) {
+          FilteredRowData b = filteredRows.get(candidates.getInt(c));
+          checkR2RMs2Similarity(mapSimilarity, a.row(), b.row(), a.data(), b.data(),
+              Type.MS2_COSINE_SIM);
+        }
+
+        // check neutral loss similarity
+        if (diffIndex != null) {
+          candidates.clear();
+          countMassDiffs(diffIndex, a.massDiff(), i, counter);
+          counter.collectAndReset(minMatch, candidates);
+          for (int c = 0; c < candidates.size() && !isCanceled(); c++) {
+            FilteredRowData b = filteredRows.get(candidates.getInt(c));
+            checkR2RMs2Similarity(mapNeutralLoss, a.row(), b.row(), a.massDiff(), b.massDiff(),
+                Type.MS2_NEUTRAL_LOSS_SIM);
+          }
+        }
+      }
+      if (stageProgress != null) {
+        stageProgress.getAndAdd(1d / numRows);
+      }
+    });
+  }
+
   /**
    * Parallel check of all r2r similarities
    *
@@ -442,8 +514,19 @@ public class MS2SimilarityTask extends AbstractTask {
         filteredRows.add(row);
       }
     }
+    // m/z differences of each feature, once as the first and once as the second of a pair
+    final Map<Feature, DataPoint[]> mapMassDiffA = checkNeutralLoss ? new HashMap<>() : null;
+    final Map<Feature, DataPoint[]> mapMassDiffB = checkNeutralLoss ? new HashMap<>() : null;
+    if (checkNeutralLoss) {
+      prepareMassDiffs(mapFeatureData, mapMassDiffA, mapMassDiffB);
+    }
+
     int numRows = filteredRows.size();
     LOG.log(Level.INFO, () -> MessageFormat.format("Checking MS2 similarity on {0} rows", numRows));
+    if (useSignalIndex()) {
+      checkAllFeaturesIndexed(mapFeatureData, mapMassDiffA, mapMassDiffB, filteredRows);
+      return;
+    }
     // run in parallel
     IntStream.range(0, numRows - 1).parallel().forEach(i -> {
       if (!isCanceled()) {
@@ -452,7 +535,7 @@ public class MS2SimilarityTask extends AbstractTask {
             FeatureListRow a = filteredRows.get(i);
             FeatureListRow b = filteredRows.get(j);
 
-            checkR2RAllFeaturesMs2Similarity(mapFeatureData, a, b);
+            checkR2RAllFeaturesMs2Similarity(mapFeatureData, mapMassDiffA, mapMassDiffB, a, b);
           }
         }
       }
@@ -462,24 +545,171 @@ public class MS2SimilarityTask extends AbstractTask {
     });
   }
 
+  /**
+   * Same results as the exhaustive comparison in {@link #checkAllFeatures}, but only aligns the
+   * pairs of rows with at least one pair of features that might share {@link #minMatch} signals,
+   * neutral losses or m/z differences.
+   */
+  private void checkAllFeaturesIndexed(Map<Feature, DataPoint[]> mapFeatureData,
+      @Nullable Map<Feature, DataPoint[]> mapMassDiffA,
+      @Nullable Map<Feature, DataPoint[]> mapMassDiffB, List<FeatureListRow> filteredRows) {
+    final int numRows = filteredRows.size();
+    double maxMz = 0;
+    for (Entry<Feature, DataPoint[]> entry : mapFeatureData.entrySet()) {
+      maxMz = Math.max(maxMz, getMaxMz(entry.getValue(), entry.getKey().getMZ()));
+    }
+    final double tolerance = getIndexTolerance(maxMz);
+
+    // all features of a row are indexed under the row index
+    final MS2SignalIndex signalIndex = new MS2SignalIndex(tolerance);
+    final MS2SignalIndex lossIndex = new MS2SignalIndex(tolerance);
+    final MS2SignalIndex diffIndex = checkNeutralLoss ? new MS2SignalIndex(tolerance) : null;
+    for (int i = 0; i < numRows; i++) {
+      for (Feature feature : filteredRows.get(i).getFeatures()) {
+        final DataPoint[] data = mapFeatureData.get(feature);
+        if (data != null) {
+          addSignals(signalIndex, lossIndex, data, feature.getMZ(), i);
+          if (diffIndex != null) {
+            addMassDiffs(diffIndex, mapMassDiffB.get(feature), i);
+          }
+        }
+      }
+    }
+    signalIndex.build();
+    lossIndex.build();
+    if (diffIndex != null) {
+      diffIndex.build();
+    }
+
+    final ThreadLocal<CandidateCounter> counters = ThreadLocal.withInitial(
+        () -> new CandidateCounter(numRows));
+    IntStream.range(0, numRows - 1).parallel().forEach(i -> {
+      if (!isCanceled()) {
+        final CandidateCounter counter = counters.get();
+        final IntSet candidates = new IntOpenHashSet();
+        final FeatureListRow a = filteredRows.get(i);
+        // count for each feature separately - the overlap is checked per pair of features
+        for (Feature feature : a.getFeatures()) {
+          final DataPoint[] data = mapFeatureData.get(feature);
+          if (data != null) {
+            countSignals(signalIndex, lossIndex, data, feature.getMZ(), i, counter);
+            counter.collectAndReset(minMatch, candidates);
+            if (diffIndex != null) {
+              countMassDiffs(diffIndex, mapMassDiffA.get(feature), i, counter);
+              counter.collectAndReset(minMatch, candidates);
+            }
+          }
+        }
+
+        for (IntIterator it = candidates.iterator(); it.hasNext() && !isCanceled(); ) {
+          FeatureListRow b = filteredRows.get(it.nextInt());
+          checkR2RAllFeaturesMs2Similarity(mapFeatureData, mapMassDiffA, mapMassDiffB, a, b);
+        }
+      }
+      if (stageProgress != null) {
+        stageProgress.getAndAdd(1d / numRows);
+      }
+    });
+  }
+
+  /**
+   * The candidate search is exact as long as at least one matched signal is required
+   */
+  private boolean useSignalIndex() {
+    return !exhaustivePairSearch && minMatch > 0;
+  }
+
+  /**
+   * @return the largest tolerance that the alignment might use for any signal, neutral loss, or
+   * shifted signal of the modification aware alignment. Slightly widened to absorb rounding of the
+   * neutral loss calculation.
+   */
+  private double getIndexTolerance(double maxMz) {
+    return mzTolerance.getMzToleranceForMass(2 * maxMz) * 1.0001;
+  }
+
+  private static double getMaxMz(DataPoint[] data, @Nullable Double precursorMz) {
+    double max = precursorMz != null ? precursorMz : 0;
+    for (DataPoint dp : data) {
+      max = Math.max(max, dp.getMZ());
+    }
+    return max;
+  }
+
+  /**
+   * Adds all signals and their neutral losses, if the precursor m/z is available
+   */
+  private static void addSignals(MS2SignalIndex signalIndex, MS2SignalIndex lossIndex,
+      DataPoint[] data, @Nullable Double precursorMz, int owner) {
+    final boolean addLosses = precursorMz != null && precursorMz > 0;
+    for (DataPoint dp : data) {
+      signalIndex.add(dp.getMZ(), owner, 1);
+      if (addLosses) {
+        lossIndex.add(precursorMz - dp.getMZ(), owner, 1);
+      }
+    }
+  }
+
+  private static void countSignals(MS2SignalIndex signalIndex, MS2SignalIndex lossIndex,
+      DataPoint[] data, @Nullable Double precursorMz, int owner, CandidateCounter counter) {
+    final boolean countLosses = precursorMz != null && precursorMz > 0;
+    for (DataPoint dp : data) {
+      signalIndex.count(dp.getMZ(), 1, owner, counter);
+      if (countLosses) {
+        lossIndex.count(precursorMz - dp.getMZ(), 1, owner, counter);
+      }
+    }
+  }
+
+  /**
+   * m/z differences are weighted by their number of occurrences (intensity)
+   */
+  private static void addMassDiffs(MS2SignalIndex diffIndex, DataPoint[] massDiffs, int owner) {
+    for (DataPoint dp : massDiffs) {
+      diffIndex.add(dp.getMZ(), owner, Math.max(1, (int) dp.getIntensity()));
+    }
+  }
+
+  private static void countMassDiffs(MS2SignalIndex diffIndex, DataPoint[] massDiffs, int owner,
+      CandidateCounter counter) {
+    for (DataPoint dp : massDiffs) {
+      diffIndex.count(dp.getMZ(), Math.max(1, (int) dp.getIntensity()), owner, counter);
+    }
+  }
+
+  /**
+   * Creates the sorted m/z differences for all features
+   *
+   * @param mapFeatureData the filtered data points of all features
+   * @param mapMassDiffA   target for the m/z differences of features compared as the first
+   * @param mapMassDiffB   target for the m/z differences of features compared as the second
+   */
+  private void prepareMassDiffs(Map<Feature, DataPoint[]> mapFeatureData,
+      Map<Feature, DataPoint[]> mapMassDiffA, Map<Feature, DataPoint[]> mapMassDiffB) {
+    for (Entry<Feature, DataPoint[]> entry : mapFeatureData.entrySet()) {
+      DataPoint[] dp = entry.getValue();
+      DataPoint[] massDiffA = ScanMZDiffConverter.getAllMZDiff(dp, mzTolerance, minHeight,
+          maxDPForDiff);
+      Arrays.sort(massDiffA, dpSorter);
+      mapMassDiffA.put(entry.getKey(), massDiffA);
+
+      DataPoint[] massDiffB = ScanMZDiffConverter.getAllMZDiff(dp, mzTolerance, maxDPForDiff);
+      Arrays.sort(massDiffB, dpSorter);
+      mapMassDiffB.put(entry.getKey(), massDiffB);
+    }
+  }
+
   private void checkR2RAllFeaturesMs2Similarity(Map<Feature, DataPoint[]> mapFeatureData,
-      FeatureListRow a, FeatureListRow b) {
+      @Nullable Map<Feature, DataPoint[]> mapMassDiffA,
+      @Nullable Map<Feature, DataPoint[]> mapMassDiffB, FeatureListRow a, FeatureListRow b) {
 
     R2RSpectralSimilarityList cosineSim = new R2RSpectralSimilarityList(a, b, Type.MS2_COSINE_SIM);
     R2RSpectralSimilarityList neutralLossSim =
         checkNeutralLoss ? new R2RSpectralSimilarityList(a, b, Type.MS2_NEUTRAL_LOSS_SIM) : null;
 
-    DataPoint[] massDiffA = null;
-    DataPoint[] massDiffB = null;
-
     for (Feature fa : a.getFeatures()) {
       DataPoint[] dpa = mapFeatureData.get(fa);
       if (dpa != null) {
-        // create mass diff array
-        if (checkNeutralLoss) {
-          massDiffA = ScanMZDiffConverter.getAllMZDiff(dpa, mzTolerance, minHeight, maxDPForDiff);
-          Arrays.sort(massDiffA, dpSorter);
-        }
         for (Feature fb : b.getFeatures()) {
           DataPoint[] dpb = mapFeatureData.get(fb);
           if (dpb != null) {
@@ -492,10 +722,8 @@ public class MS2SimilarityTask extends AbstractTask {
 
             // alignment and sim of neutral losses
             if (checkNeutralLoss) {
-              massDiffB = ScanMZDiffConverter.getAllMZDiff(dpb, mzTolerance, maxDPForDiff);
-              Arrays.sort(massDiffB, dpSorter);
-              SpectralSimilarity massDiffSim = createMS2Sim(mzTolerance, massDiffA, massDiffB,
-                  minMatch, DIFF_OVERLAP);
+              SpectralSimilarity massDiffSim = createMS2Sim(mzTolerance, mapMassDiffA.get(fa),
+                  mapMassDiffB.get(fb), minMatch, DIFF_OVERLAP);
 
               if (massDiffSim != null && massDiffSim.cosine() >= minCosineSimilarity) {
                 neutralLossSim.addSpectralSim(massDiffSim);
@@ -542,7 +770,9 @@ public class MS2SimilarityTask extends AbstractTask {
     if (filteredData.length >= minDP) {
       // sort by intensity
       Arrays.sort(filteredData, dpSorter);
-      return new FilteredRowData(row, filteredData);
+      DataPoint[] massDiff = checkNeutralLoss ? ScanMZDiffConverter.getAllMZDiff(filteredData,
+          mzTolerance, minHeight, maxDPForDiff) : null;
+      return new FilteredRowData(row, filteredData, massDiff);
     } else {
       return null;
     }
@@ -640,9 +870,11 @@ public class MS2SimilarityTask extends AbstractTask {
   }
 
   /**
-   * the filtered data of the best MS2 scan from row
+   * the filtered data of the best MS2 scan from row and its m/z differences (null if neutral loss
+   * similarity is not checked)
    */
-  private record FilteredRowData(FeatureListRow row, DataPoint[] data) {
+  private record FilteredRowData(FeatureListRow row, DataPoint[] data,
+                                 @Nullable DataPoint[] massDiff) {
 
   }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_lipididentification;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentTable;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidAnnotation;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+/**
+ * The lipid database of one parameter set compiled to the ion m/z of each lipid and each
+ * ionization of its fragmentation rules. Ions are sorted by m/z to find all candidates of a row by
+ * binary search. The fragment tables for MS/MS confirmation are created on first use and shared
+ * by all rows.
+ */
+class LipidDatabaseTable {
+
+  private final ILipidAnnotation[] lipids;
+  // by ion ID in database order
+  private final int[] lipidIndices;
+  private final IonizationType[] ionizations;
+  private final AtomicReferenceArray<LipidFragmentTable> fragmentTables;
+  // sorted by m/z
+  private final double[] sortedMzs;
+  private final int[] sortedIons;
+
+  LipidDatabaseTable(Collection<ILipidAnnotation> lipidDatabase) {
+    lipids = lipidDatabase.toArray(ILipidAnnotation[]::new);
+    final DoubleArrayList mzs = new DoubleArrayList();
+    final IntArrayList lipidIndexList = new IntArrayList();
+    final List<IonizationType> ionizationList = new ArrayList<>();
+
+    for (int i = 0; i < lipids.length; i++) {
+      final LipidFragmentationRule[] rules = lipids[i].getLipidClass().getFragmentationRules();
+      if (rules == null) {
+        continue;
+      }
+      final Set<IonizationType> lipidIonizations = new LinkedHashSet<>();
+      for (LipidFragmentationRule rule : rules) {
+        lipidIonizations.add(rule.getIonizationType());
+      }
+      final double mass = MolecularFormulaManipulator.getMass(lipids[i].getMolecularFormula(),
+          AtomContainerManipulator.MonoIsotopic);
+      for (IonizationType ionization : lipidIonizations) {
+        mzs.add(mass + ionization.getAddedMass());
+        lipidIndexList.add(i);
+        ionizationList.add(ionization);
+      }
+    }
+
+    lipidIndices = lipidIndexList.toIntArray();
+    ionizations = ionizationList.toArray(IonizationType[]::new);
+    fragmentTables = new AtomicReferenceArray<>(ionizations.length);
+
+    sortedIons = new int[ionizations.length];
+    for (int i = 0; i < sortedIons.length; i++) {
+      sortedIons[i] = i;
+    }
+    IntArrays.quickSort(sortedIons, (a, b) -> Double.compare(mzs.getDouble(a), mzs.getDouble(b)));
+    sortedMzs = new double[sortedIons.length];
+    for (int i = 0; i < sortedIons.length; i++) {
+      sortedMzs[i] = mzs.getDouble(sortedIons[i]);
+    }
+  }
+
+  int getNumberOfIons() {
+    return ionizations.length;
+  }
+
+  /**
+   * @return IDs of all ions within the range, in database order
+   */
+  int[] findIons(Range<Double> mzRange) {
+    int low = 0;
+    int high = sortedMzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sortedMzs[mid] < mzRange.lowerEndpoint()) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    final IntArrayList ions = new IntArrayList();
+    for (int i = low; i < sortedMzs.length && sortedMzs[i] <= mzRange.upperEndpoint(); i++) {
+      if (mzRange.contains(sortedMzs[i])) {
+        ions.add(sortedIons[i]);
+      }
+    }
+    final int[] result = ions.toIntArray();
+    IntArrays.quickSort(result);
+    return result;
+  }
+
+  /**
+   * @return index of the lipid in the database. Ions of the same lipid have consecutive IDs.
+   */
+  int getLipidIndex(int ion) {
+    return lipidIndices[ion];
+  }
+
+  ILipidAnnotation getLipid(int ion) {
+    return lipids[lipidIndices[ion]];
+  }
+
+  IonizationType getIonization(int ion) {
+    return ionizations[ion];
+  }
+
+  /**
+   * @return the expanded fragmentation rules of this ion, created on first use
+   */
+  LipidFragmentTable getFragmentTable(int ion) {
+    LipidFragmentTable table = fragmentTables.get(ion);
+    if (table == null) {
+      final ILipidAnnotation lipid = getLipid(ion);
+      // concurrent rows may create the same table, both are equal
+      table = LipidFragmentTable.create(lipid, ionizations[ion],
+          lipid.getLipidClass().getFragmentationRules());
+      fragmentTables.compareAndSet(ion, null, table);
+    }
+    return table;
+  }
+}
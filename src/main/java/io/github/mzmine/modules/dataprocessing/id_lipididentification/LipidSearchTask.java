@@ -28,14 +28,14 @@ package io.github.mzmine.modules.dataprocessing.id_lipididentification;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.annotations.LipidMatchListType;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
-import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentationRule;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentTable;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.MSMSLipidTools;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.*;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.customlipidclass.CustomLipidClass;
@@ -48,6 +48,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -56,8 +57,6 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
-import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
 
 /**
  * Task to search and annotate lipids in feature list
@@ -67,6 +66,7 @@ import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
 public class LipidSearchTask extends AbstractTask {
 
   private static final LipidFactory LIPID_FACTORY = new LipidFactory();
+  private static final MSMSLipidTools MSMS_LIPID_TOOLS = new MSMSLipidTools();
 
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private double finishedSteps;
@@ -163,14 +163,15 @@ public class LipidSearchTask extends AbstractTask {
     }
     totalSteps = rows.size();
 
-    // build lipid species database
+    // build lipid species database and compile the ion m/z of all lipids once
     Set<ILipidAnnotation> lipidDatabase = buildLipidDatabase();
+    LipidDatabaseTable databaseTable = new LipidDatabaseTable(lipidDatabase);
+    logger.finest(() -> "Compiled " + databaseTable.getNumberOfIons() + " ions of "
+        + lipidDatabase.size() + " lipids");
 
     // start lipid annotation
     rows.parallelStream().forEach(row -> {
-      for (ILipidAnnotation lipidAnnotation : lipidDatabase) {
-        findPossibleLipid(lipidAnnotation, row);
-      }
+      findPossibleLipids(databaseTable, row);
       finishedSteps++;
     });
 
@@ -222,43 +223,50 @@ public class LipidSearchTask extends AbstractTask {
   }
 
   /**
-   * Check if candidate peak may be a possible adduct of a given main peak
+   * Finds all lipid ions within the m/z tolerance of the row by binary search and annotates the
+   * row
    */
-  private void findPossibleLipid(ILipidAnnotation lipid, FeatureListRow row) {
+  private void findPossibleLipids(LipidDatabaseTable databaseTable, FeatureListRow row) {
     if (isCanceled()) {
       return;
     }
-    Set<MatchedLipid> possibleRowAnnotations = new HashSet<>();
-    Set<IonizationType> ionizationTypeList = new HashSet<>();
-    LipidFragmentationRule[] fragmentationRules = lipid.getLipidClass().getFragmentationRules();
-    for (LipidFragmentationRule fragmentationRule : fragmentationRules) {
-      ionizationTypeList.add(fragmentationRule.getIonizationType());
+    Range<Double> mzTolRange12C = mzTolerance.getToleranceRange(row.getAverageMZ());
+    int[] ions = databaseTable.findIons(mzTolRange12C);
+    if (ions.length == 0) {
+      return;
     }
-    for (IonizationType ionization : ionizationTypeList) {
-      if (!Objects.requireNonNull(row.getBestFeature().getRepresentativeScan()).getPolarity()
-          .equals(ionization.getPolarity())) {
-        continue;
-      }
-      double lipidIonMass = MolecularFormulaManipulator.getMass(lipid.getMolecularFormula(),
-          AtomContainerManipulator.MonoIsotopic) + ionization.getAddedMass();
-      Range<Double> mzTolRange12C = mzTolerance.getToleranceRange(row.getAverageMZ());
-
-      // MS1 check
-      if (mzTolRange12C.contains(lipidIonMass)) {
-
+    PolarityType polarity = Objects.requireNonNull(
+        row.getBestFeature().getRepresentativeScan()).getPolarity();
+    // deisotoped once per row and shared by all lipids
+    List<FragmentSpectrum> fragmentSpectra = null;
+
+    // ions of one lipid are consecutive
+    int i = 0;
+    while (i < ions.length) {
+      int lipidIndex = databaseTable.getLipidIndex(ions[i]);
+      ILipidAnnotation lipid = databaseTable.getLipid(ions[i]);
+      Set<MatchedLipid> possibleRowAnnotations = new HashSet<>();
+      for (; i < ions.length && databaseTable.getLipidIndex(ions[i]) == lipidIndex; i++) {
+        IonizationType ionization = databaseTable.getIonization(ions[i]);
+        if (!polarity.equals(ionization.getPolarity())) {
+          continue;
+        }
         // If search for MSMS fragments is selected search for fragments
         if (searchForMSMSFragments.booleanValue()) {
-          possibleRowAnnotations.addAll(searchMsmsFragments(row, ionization, lipid));
+          if (fragmentSpectra == null) {
+            fragmentSpectra = getFragmentSpectra(row);
+          }
+          possibleRowAnnotations.addAll(
+              searchMsmsFragments(row, ionization, lipid, databaseTable.getFragmentTable(ions[i]),
+                  fragmentSpectra));
         } else {
-
           // make MS1 annotation
           possibleRowAnnotations
               .add(new MatchedLipid(lipid, row.getAverageMZ(), ionization, null, 0.0));
         }
       }
-
+      addAnnotationsToFeatureList(row, possibleRowAnnotations);
     }
-    addAnnotationsToFeatureList(row, possibleRowAnnotations);
   }
 
   private void addAnnotationsToFeatureList(FeatureListRow row,
@@ -271,51 +279,56 @@ public class LipidSearchTask extends AbstractTask {
     }
   }
 
+  /**
+   * Deisotoped mass lists of all fragment scans of a row
+   *
+   * @return the spectra or an empty list if a fragment scan has no mass list
+   */
+  private List<FragmentSpectrum> getFragmentSpectra(FeatureListRow row) {
+    List<Scan> msmsScans = row.getAllFragmentScans();
+    List<FragmentSpectrum> spectra = new ArrayList<>(msmsScans.size());
+    for (Scan msmsScan : msmsScans) {
+      if (msmsScan.getMassList() == null) {
+        setErrorMessage("Mass List cannot be found.\nCheck if MS2 Scans have a Mass List");
+        setStatus(TaskStatus.ERROR);
+        return List.of();
+      }
+      DataPoint[] massList = msmsScan.getMassList().getDataPoints();
+      spectra.add(new FragmentSpectrum(msmsScan, deisotopeMassList(massList)));
+    }
+    return spectra;
+  }
+
   /**
    * This method searches for MS/MS fragments. A mass list for MS2 scans will be used if present.
+   *
+   * @param fragmentTable   the expanded fragmentation rules of this lipid and ionization
+   * @param fragmentSpectra the deisotoped fragment spectra of the row
    */
   private Set<MatchedLipid> searchMsmsFragments(FeatureListRow row, IonizationType ionization,
-      ILipidAnnotation lipid) {
+      ILipidAnnotation lipid, LipidFragmentTable fragmentTable,
+      List<FragmentSpectrum> fragmentSpectra) {
 
     Set<MatchedLipid> matchedLipids = new HashSet<>();
 
     // Check if selected feature has MSMS spectra and LipidIdentity
-    if (!row.getAllFragmentScans().isEmpty()) {
-      List<Scan> msmsScans = row.getAllFragmentScans();
-      for (Scan msmsScan : msmsScans) {
-        if (msmsScan.getMassList() == null) {
-          setErrorMessage("Mass List cannot be found.\nCheck if MS2 Scans have a Mass List");
-          setStatus(TaskStatus.ERROR);
-          return new HashSet<>();
-        }
-        DataPoint[] massList = null;
-        massList = msmsScan.getMassList().getDataPoints();
-        massList = deisotopeMassList(massList);
-        MSMSLipidTools msmsLipidTools = new MSMSLipidTools();
-        LipidFragmentationRule[] rules = lipid.getLipidClass().getFragmentationRules();
-        Set<LipidFragment> annotatedFragments = new HashSet<>();
-        if (rules != null && rules.length > 0) {
-          for (DataPoint dataPoint : massList) {
-            Range<Double> mzTolRangeMSMS = mzToleranceMS2.getToleranceRange(dataPoint.getMZ());
-            LipidFragment annotatedFragment = msmsLipidTools.checkForClassSpecificFragment(
-                mzTolRangeMSMS, lipid, ionization, rules,
-                new SimpleDataPoint(dataPoint.getMZ(), dataPoint.getIntensity()), msmsScan);
-            if (annotatedFragment != null) {
-              annotatedFragments.add(annotatedFragment);
-            }
-          }
-        }
+    if (!fragmentSpectra.isEmpty()) {
+      for (FragmentSpectrum spectrum : fragmentSpectra) {
+        DataPoint[] massList = spectrum.massList();
+        // merge join of the mass list with the predicted fragments
+        Set<LipidFragment> annotatedFragments = new HashSet<>(
+            fragmentTable.findFragments(massList, mzToleranceMS2, spectrum.scan()));
         if (!annotatedFragments.isEmpty()) {
 
           // check for class specific fragments like head group fragment
           MatchedLipid matchedLipid =
-              msmsLipidTools.confirmSpeciesLevelAnnotation(row.getAverageMZ(), lipid,
+              MSMS_LIPID_TOOLS.confirmSpeciesLevelAnnotation(row.getAverageMZ(), lipid,
                   annotatedFragments, massList, minMsMsScore, mzToleranceMS2, ionization);
           addUniqueMatchedLipid(matchedLipid, matchedLipids);
 
           // predict molecular species level annotations
           Set<MatchedLipid> molecularSpeciesLevelMatchedLipids =
-              msmsLipidTools.predictMolecularSpeciesLevelAnnotation(annotatedFragments, lipid,
+              MSMS_LIPID_TOOLS.predictMolecularSpeciesLevelAnnotation(annotatedFragments, lipid,
                   row.getAverageMZ(), massList, minMsMsScore, mzToleranceMS2, ionization);
           if (matchedLipid != null && molecularSpeciesLevelMatchedLipids != null
               && !molecularSpeciesLevelMatchedLipids.isEmpty()) {
@@ -400,4 +413,7 @@ public class LipidSearchTask extends AbstractTask {
     return MassListDeisotoper.filterIsotopes(massList, massListDeisotoperParameters);
   }
 
+  private record FragmentSpectrum(Scan scan, DataPoint[] massList) {
+
+  }
 }
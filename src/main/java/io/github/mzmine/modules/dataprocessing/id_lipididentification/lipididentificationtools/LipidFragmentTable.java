@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.IonizationType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidAnnotation;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.LipidFragment;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.LipidChainType;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.FormulaUtils;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+import org.openscience.cdk.tools.manipulator.MolecularFormulaManipulator;
+
+/**
+ * All fragment m/z values that the fragmentation rules of a lipid class predict for one lipid and
+ * ionization, sorted by m/z. Finds the same fragments as
+ * {@link MSMSLipidTools#checkForClassSpecificFragment(Range, ILipidAnnotation, IonizationType,
+ * LipidFragmentationRule[], DataPoint, Scan)} by binary search instead of evaluating each rule and
+ * chain formula for every data point. If multiple fragments match a data point, the fragment of
+ * the first rule and chain is reported.
+ */
+public class LipidFragmentTable {
+
+  private final ILipidAnnotation lipid;
+  // sorted
+  private final double[] mzs;
+  private final Candidate[] candidates;
+
+  private LipidFragmentTable(ILipidAnnotation lipid, List<Candidate> candidateList) {
+    this.lipid = lipid;
+    final int[] order = new int[candidateList.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    IntArrays.quickSort(order, (a, b) -> Double.compare(candidateList.get(a).matchMz(),
+        candidateList.get(b).matchMz()));
+    mzs = new double[order.length];
+    candidates = new Candidate[order.length];
+    for (int i = 0; i < order.length; i++) {
+      candidates[i] = candidateList.get(order[i]);
+      mzs[i] = candidates[i].matchMz();
+    }
+  }
+
+  /**
+   * Expands all rules of this ionization with all chain formulas
+   *
+   * @param rules the fragmentation rules of the lipid class
+   */
+  @NotNull
+  public static LipidFragmentTable create(@NotNull ILipidAnnotation lipid,
+      @NotNull IonizationType ionization, @Nullable LipidFragmentationRule[] rules) {
+    final List<Candidate> list = new ArrayList<>();
+    if (rules == null) {
+      return new LipidFragmentTable(lipid, list);
+    }
+    final double precursorMz = MolecularFormulaManipulator.getMass(lipid.getMolecularFormula(),
+        AtomContainerManipulator.MonoIsotopic) + ionization.getAddedMass();
+    final Builder builder = new Builder(list);
+
+    for (LipidFragmentationRule rule : rules) {
+      if (!ionization.equals(rule.getIonizationType())
+          || rule.getLipidFragmentationRuleType() == null) {
+        continue;
+      }
+      builder.rule = rule;
+      final PolarityType polarity = rule.getPolarityType();
+      final boolean negative = polarity.equals(PolarityType.NEGATIVE);
+      final String formula = rule.getMolecularFormula();
+
+      switch (rule.getLipidFragmentationRuleType()) {
+        case HEADGROUP_FRAGMENT -> {
+          final double mz = FormulaUtils.calculateMzRatio(formula);
+          builder.add(mz, mz, null, null);
+        }
+        case HEADGROUP_FRAGMENT_NL -> {
+          final double mz = precursorMz - FormulaUtils.calculateExactMass(formula);
+          builder.add(mz, mz, null, LipidChainType.ACYL_CHAIN);
+        }
+        case ACYLCHAIN_FRAGMENT -> {
+          if (negative) {
+            for (Chain fa : Chains.FATTY_ACIDS) {
+              builder.add(fa.mass() + IonizationType.NEGATIVE_HYDROGEN.getAddedMass(), fa,
+                  LipidChainType.ACYL_CHAIN);
+            }
+          }
+        }
+        case ACYLCHAIN_FRAGMENT_NL -> {
+          for (Chain fa : Chains.FATTY_ACIDS) {
+            builder.add(precursorMz - fa.mass(), fa, LipidChainType.ACYL_CHAIN);
+          }
+        }
+        case ACYLCHAIN_MINUS_FORMULA_FRAGMENT -> {
+          if (negative) {
+            final double fragment = FormulaUtils.calculateExactMass(formula);
+            for (Chain fa : Chains.FATTY_ACIDS) {
+              builder.add(fa.mass() - fragment, fa, LipidChainType.ACYL_CHAIN);
+            }
+          }
+        }
+        case ACYLCHAIN_MINUS_FORMULA_FRAGMENT_NL -> {
+          final double fragment = FormulaUtils.calculateExactMass(formula);
+          for (Chain fa : Chains.FATTY_ACIDS) {
+            builder.add(precursorMz - fa.mass() - fragment, fa, LipidChainType.ACYL_CHAIN);
+          }
+        }
+        case ACYLCHAIN_PLUS_FORMULA_FRAGMENT -> {
+          final double fragment = FormulaUtils.calculateExactMass(formula);
+          for (Chain fa : Chains.FATTY_ACIDS) {
+            builder.add(ionize(fa.mass() + fragment, polarity), fa, LipidChainType.ACYL_CHAIN);
+          }
+        }
+        case ACYLCHAIN_PLUS_FORMULA_FRAGMENT_NL -> {
+          final double fragment = FormulaUtils.calculateExactMass(formula);
+          for (Chain fa : Chains.FATTY_ACIDS) {
+            builder.add(precursorMz - fa.mass() + fragment, fa, LipidChainType.ACYL_CHAIN);
+          }
+        }
+        case TWO_ACYLCHAINS_PLUS_FORMULA_FRAGMENT -> {
+          final double fragment = FormulaUtils.calculateExactMass(formula);
+          for (Chain one : Chains.FATTY_ACIDS) {
+            for (Chain two : Chains.FATTY_ACIDS) {
+              // matched without ionization but reported ionized
+              final double mz = one.mass() + two.mass() + fragment;
+              builder.add(mz, ionize(mz, polarity), null, null);
+            }
+          }
+        }
+        case ALKYLCHAIN_FRAGMENT -> {
+          for (Chain hc : Chains.HYDRO_CARBONS) {
+            builder.add(ionize(hc.mass(), polarity), hc, LipidChainType.ALKYL_CHAIN);
+          }
+        }
+        case ALKYLCHAIN_FRAGMENT_NL -> {
+          for (Chain hc : Chains.HYDRO_CARBONS) {
+            builder.add(precursorMz - hc.mass(), hc, LipidChainType.ALKYL_CHAIN);
+          }
+        }
+        case ALKYLCHAIN_MINUS_FORMULA_FRAGMENT -> {
+          if (negative) {
+            final double fragment = FormulaUtils.calculateExactMass(formula);
+            for (int i = 0; i < Chains.HYDRO_CARBONS.size(); i++) {
+              builder.add(Chains.DEPROTONATED_HYDRO_CARBON_MASSES[i] - fragment,
+                  Chains.HYDRO_CARBONS.get(i), LipidChainType.ALKYL_CHAIN);
+            }
+          }
+        }
+        case ALKYLCHAIN_MINUS_FORMULA_FRAGMENT_NL -> {
+          final double fragment = FormulaUtils.calculateExactMass(formula);
+          for (Chain hc : Chains.HYDRO_CARBONS) {
+            builder.add(precursorMz - hc.mass() - fragment, hc, LipidChainType.ACYL_CHAIN);
+          }
+        }
+        case ALKYLCHAIN_PLUS_FORMULA_FRAGMENT -> {
+          final double fragment = FormulaUtils.calculateExactMass(formula);
+          for (Chain hc : Chains.HYDRO_CARBONS) {
+            builder.add(ionize(hc.mass() + fragment, polarity), hc, LipidChainType.ACYL_CHAIN);
+          }
+        }
+        case ALKYLCHAIN_PLUS_FORMULA_FRAGMENT_NL -> {
+          final double fragment = FormulaUtils.calculateExactMass(formula);
+          for (Chain hc : Chains.HYDRO_CARBONS) {
+            builder.add(precursorMz - hc.mass() + fragment, hc, LipidChainType.ACYL_CHAIN);
+          }
+        }
+      }
+    }
+    return new LipidFragmentTable(lipid, list);
+  }
+
+  private static double ionize(double mzExact, PolarityType polarityType) {
+    if (polarityType.equals(PolarityType.NEGATIVE)) {
+      return mzExact + IonizationType.NEGATIVE.getAddedMass();
+    } else if (polarityType.equals(PolarityType.POSITIVE)) {
+      return mzExact + IonizationType.POSITIVE.getAddedMass();
+    }
+    return mzExact;
+  }
+
+  public boolean isEmpty() {
+    return mzs.length == 0;
+  }
+
+  /**
+   * @param mzTolRangeMSMS tolerance range around the data point
+   * @return the fragment of the first rule and chain within the range or null
+   */
+  @Nullable
+  public LipidFragment findFragment(@NotNull Range<Double> mzTolRangeMSMS,
+      @NotNull DataPoint dataPoint, @Nullable Scan msMsScan) {
+    return findFragment(lowerBound(mzTolRangeMSMS.lowerEndpoint()), mzTolRangeMSMS, dataPoint,
+        msMsScan);
+  }
+
+  /**
+   * Merge join of the mass list and this table
+   *
+   * @param massList data points, sorted by m/z or unsorted
+   * @return all fragments found for the data points
+   */
+  @NotNull
+  public List<LipidFragment> findFragments(@NotNull DataPoint[] massList,
+      @NotNull MZTolerance mzToleranceMS2, @Nullable Scan msMsScan) {
+    final List<LipidFragment> fragments = new ArrayList<>();
+    if (isEmpty()) {
+      return fragments;
+    }
+    final DataPoint[] sorted = massList.clone();
+    Arrays.sort(sorted, Comparator.comparingDouble(DataPoint::getMZ));
+    int start = 0;
+    for (DataPoint dp : sorted) {
+      final Range<Double> range = mzToleranceMS2.getToleranceRange(dp.getMZ());
+      // lower endpoints increase with the data point m/z
+      while (start < mzs.length && mzs[start] < range.lowerEndpoint()) {
+        start++;
+      }
+      if (start == mzs.length) {
+        break;
+      }
+      final LipidFragment fragment = findFragment(start, range, dp, msMsScan);
+      if (fragment != null) {
+        fragments.add(fragment);
+      }
+    }
+    return fragments;
+  }
+
+  private LipidFragment findFragment(int start, Range<Double> range, DataPoint dataPoint,
+      Scan msMsScan) {
+    Candidate best = null;
+    for (int i = start; i < mzs.length && mzs[i] <= range.upperEndpoint(); i++) {
+      if (range.contains(mzs[i]) && (best == null || candidates[i].priority() < best.priority())) {
+        best = candidates[i];
+      }
+    }
+    if (best == null) {
+      return null;
+    }
+    final LipidFragmentationRule rule = best.rule();
+    return new LipidFragment(rule.getLipidFragmentationRuleType(),
+        rule.getLipidFragmentInformationLevelType(), best.mzExact(), dataPoint,
+        lipid.getLipidClass(), best.chainLength(), best.numberOfDBEs(), best.chainType(),
+        msMsScan);
+  }
+
+  /**
+   * @return first index with m/z >= mz
+   */
+  private int lowerBound(double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param matchMz  m/z compared to the data points
+   * @param mzExact  m/z reported in the fragment
+   * @param priority rule and chain order. The first matching rule and chain wins
+   */
+  private record Candidate(double matchMz, double mzExact, int priority,
+                           LipidFragmentationRule rule, Integer chainLength, Integer numberOfDBEs,
+                           LipidChainType chainType) {
+
+  }
+
+  private static class Builder {
+
+    private final List<Candidate> list;
+    private LipidFragmentationRule rule;
+
+    private Builder(List<Candidate> list) {
+      this.list = list;
+    }
+
+    private void add(double mz, @Nullable Chain chain, @Nullable LipidChainType chainType) {
+      add(mz, mz, chain, chainType);
+    }
+
+    private void add(double matchMz, double mzExact, @Nullable Chain chain,
+        @Nullable LipidChainType chainType) {
+      list.add(new Candidate(matchMz, mzExact, list.size(), rule,
+          chain == null ? null : chain.length(), chain == null ? null : chain.doubleBonds(),
+          chainType));
+    }
+  }
+
+  private record Chain(String formula, double mass, int length, int doubleBonds) {
+
+  }
+
+  /**
+   * Masses of all chain formulas are calculated once on first use
+   */
+  private static class Chains {
+
+    private static final ChainTools CHAIN_TOOLS = new ChainTools();
+    private static final List<Chain> FATTY_ACIDS = create(
+        CHAIN_TOOLS.calculateFattyAcidFormulas());
+    private static final List<Chain> HYDRO_CARBONS = create(
+        CHAIN_TOOLS.calculateHydroCarbonFormulas());
+    /**
+     * The formula and the added mass of the deprotonation are parsed as one formula string, as in
+     * {@link MSMSLipidTools}
+     */
+    private static final double[] DEPROTONATED_HYDRO_CARBON_MASSES = HYDRO_CARBONS.stream()
+        .mapToDouble(hc -> FormulaUtils.calculateExactMass(
+            hc.formula() + IonizationType.NEGATIVE_HYDROGEN.getAddedMass())).toArray();
+
+    private static List<Chain> create(List<String> formulas) {
+      return formulas.stream().map(f -> new Chain(f, FormulaUtils.calculateExactMass(f),
+          CHAIN_TOOLS.getChainLengthFromFormula(f),
+          CHAIN_TOOLS.getNumberOfDoubleBondsFromFormula(f))).toList();
+    }
+  }
+}
@@ -53,6 +53,7 @@ import io.github.mzmine.util.scans.FragmentScanSelection;
 import io.github.mzmine.util.scans.FragmentScanSelection.IncludeInputSpectra;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.SpectraMerging.IntensityMergingType;
+import io.github.mzmine.util.scans.similarity.SpectralAlignmentKernel;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
@@ -288,34 +289,30 @@ public class RowsSpectralMatchTask extends AbstractTask {
 
   @Override
   public void run() {
-
-    // combine libraries
-    List<SpectralLibraryEntry> entries = new ArrayList<>();
-    for (var lib : libraries) {
-      entries.addAll(lib.getEntries());
-    }
+    final int numEntries = libraries.stream().mapToInt(SpectralLibrary::size).sum();
 
     // run on spectra
     if (scan != null) {
       logger.info(
-          () -> String.format("Comparing %d library spectra to scan: %s", entries.size(), scan));
+          () -> String.format("Comparing %d library spectra to scan: %s", numEntries, scan));
 
-      matchScan(entries, scan);
+      matchScan(getCandidateEntries(scanPrecursorMZ, scan.getRetentionTime()), scan);
 
       logger.info(
           () -> String.format("library matches=%d (Errors:%d); library entries=%d; for scan: %s",
-              getCount(), getErrorCount(), entries.size(), scan));
+              getCount(), getErrorCount(), numEntries, scan));
     }
 
     // run in parallel
     if (rows != null) {
       logger.info(() -> String.format("Comparing %d library spectra to %d feature list rows",
-          entries.size(), totalRows));
+          numEntries, totalRows));
       // cannot use parallel.forEach with side effects - this thread will continue without waiting for
       // stream to finish
       var totalMatches = rows.stream().filter(FeatureListRow::hasMs2Fragmentation).parallel()
           .mapToInt(row -> {
             if (!isCanceled()) {
+              var entries = getCandidateEntries(row.getAverageMZ(), row.getAverageRT());
               int matches = matchRowToLibraries(entries, row);
               finishedRows.incrementAndGet();
               return matches;
@@ -324,8 +321,53 @@ public class RowsSpectralMatchTask extends AbstractTask {
           }).sum();
       logger.info("Total spectral library matches " + totalMatches);
       logger.info(() -> String.format("library matches=%d (Errors:%d); rows=%d; library entries=%d",
-          getCount(), getErrorCount(), totalRows, entries.size()));
+          getCount(), getErrorCount(), totalRows, numEntries));
+    }
+  }
+
+  /**
+   * Candidate library entries for a query. Uses the precursor m/z index of each library to only
+   * select entries within the precursor m/z tolerance (and absolute RT tolerance if active). All
+   * candidates are still checked by {@link #matchSpectrum(Float, double, Float, DataPoint[],
+   * SpectralLibraryEntry)}. MS1 matching requires all entries.
+   *
+   * @param precursorMZ precursor m/z of the query
+   * @param rt          retention time of the query or null
+   * @return list of candidate entries
+   */
+  protected List<SpectralLibraryEntry> getCandidateEntries(@Nullable Double precursorMZ,
+      @Nullable Float rt) {
+    if (msLevelFilter.isMs1Only() || mzTolerancePrecursor == null) {
+      // combine libraries
+      List<SpectralLibraryEntry> entries = new ArrayList<>();
+      for (var lib : libraries) {
+        entries.addAll(lib.getEntries());
+      }
+      return entries;
+    }
+    if (precursorMZ == null) {
+      // entries without precursor mz never match
+      return List.of();
+    }
+    // the tolerance is applied to the library precursor mz: lib - tol(lib) <= mz <= lib + tol(lib)
+    final double absTolerance = mzTolerancePrecursor.getMzTolerance();
+    final double relTolerance = mzTolerancePrecursor.getPpmTolerance() / 1_000_000d;
+    final double minMZ = Math.min(precursorMZ - absTolerance, precursorMZ / (1d + relTolerance));
+    final double maxMZ = Math.max(precursorMZ + absTolerance, precursorMZ / (1d - relTolerance));
+    // relative RT tolerance depends on the library RT - only pre-filter absolute tolerances
+    float minRT = Float.NaN;
+    float maxRT = Float.NaN;
+    if (useRT && rt != null && rtTolerance.isAbsolute()) {
+      var rtRange = rtTolerance.getToleranceRange(rt);
+      minRT = rtRange.lowerEndpoint();
+      maxRT = rtRange.upperEndpoint();
+    }
+
+    List<SpectralLibraryEntry> candidates = new ArrayList<>();
+    for (var lib : libraries) {
+      lib.getIndex().addCandidates(minMZ, maxMZ, minRT, maxRT, candidates);
     }
+    return candidates;
   }
 
   /**
@@ -395,7 +437,7 @@ public class RowsSpectralMatchTask extends AbstractTask {
   /**
    * Match row against all entries, add matches, sort them by score
    *
-   * @param entries combined library entries
+   * @param entries combined library entries or candidates of the precursor m/z index
    * @param row     target row
    */
   public int matchRowToLibraries(List<SpectralLibraryEntry> entries, FeatureListRow row) {
@@ -490,6 +532,13 @@ public class RowsSpectralMatchTask extends AbstractTask {
     // MS level 1 or check precursorMZ
     if (checkRT(rowRT, ident) && (msLevelFilter.isMs1Only() || checkPrecursorMZ(rowMZ, ident))
         && checkCCS(rowCCS, ident)) {
+      // score first without creating aligned data points, most entries are no match
+      // other functions would create the same similarity twice
+      if (simFunction.getModule().hasKernelScore() && Double.isNaN(
+          calculateScore(rowMZ, rowMassList, ident))) {
+        return null;
+      }
+
       DataPoint[] library = ident.getDataPoints();
       if (removeIsotopes) {
         library = removeIsotopes(library);
@@ -520,6 +569,33 @@ public class RowsSpectralMatchTask extends AbstractTask {
     return null;
   }
 
+  /**
+   * Applies the same filters as {@link #matchSpectrum} as signal ranges on the primitive spectra of
+   * the thread's {@link SpectralAlignmentKernel}, without copying the data points.
+   *
+   * @return the score of the similarity function or NaN if the criteria were not met
+   */
+  private double calculateScore(double rowMZ, DataPoint[] rowMassList,
+      SpectralLibraryEntry ident) {
+    final SpectralAlignmentKernel kernel = SpectralAlignmentKernel.get();
+    if (removeIsotopes) {
+      kernel.setLibrary(removeIsotopes(ident.getDataPoints()));
+    } else {
+      kernel.setLibrary(ident);
+    }
+    kernel.setQuery(rowMassList);
+
+    if (cropSpectraToOverlap) {
+      kernel.cropToOverlap(mzToleranceSpectra, ident.getPrecursorMZ(), rowMZ);
+    }
+    if (!msLevelFilter.isMs1Only() && removePrecursor && ident.getPrecursorMZ() != null) {
+      var removeMzRange = mzToleranceRemovePrecursor.getToleranceRange(ident.getPrecursorMZ());
+      kernel.removeLibrarySignals(removeMzRange.lowerEndpoint(), removeMzRange.upperEndpoint());
+    }
+    return simFunction.getModule()
+        .getScore(simFunction.getParameterSet(), mzToleranceSpectra, minMatch, kernel);
+  }
+
   private boolean checkCCS(Float rowCCS, SpectralLibraryEntry ident) {
     return ccsTolerance == null || ccsTolerance.matches(rowCCS,
         ident.getOrElse(DBEntryField.CCS, null));
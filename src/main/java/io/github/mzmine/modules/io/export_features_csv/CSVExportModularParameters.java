@@ -62,10 +62,12 @@ public class CSVExportModularParameters extends SimpleParameterSet {
           + "If the file already exists, it will be overwritten.", extensions,
       FileSelectionType.SAVE);
 
+  public static final BooleanParameter compressGzip = new BooleanParameter("Compress (gzip)",
+      "Writes a gzip compressed file with the additional extension .gz", false);
 
   public CSVExportModularParameters() {
     super(new Parameter[]{featureLists, filename, fieldSeparator, idSeparator, omitEmptyColumns,
-        filter});
+        filter, compressGzip});
   }
 
   @Override
@@ -25,6 +25,8 @@
 
 package io.github.mzmine.modules.io.export_features_csv;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -36,6 +38,8 @@ import io.github.mzmine.datamodel.features.types.LinkedGraphicalType;
 import io.github.mzmine.datamodel.features.types.modifiers.NoTextColumn;
 import io.github.mzmine.datamodel.features.types.modifiers.NullColumnType;
 import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.NumberRangeType;
+import io.github.mzmine.datamodel.features.types.numbers.abstr.NumberType;
 import io.github.mzmine.modules.io.export_features_gnps.fbmn.FeatureListRowsFilter;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -44,23 +48,32 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.io.CSVUtils;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
+import java.text.NumberFormat;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -68,6 +81,15 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
 
   public static final String DATAFILE_PREFIX = "datafile";
   private static final Logger logger = Logger.getLogger(CSVExportModularTask.class.getName());
+  /**
+   * Target number of cells formatted per chunk of rows
+   */
+  private static final int DEFAULT_CHUNK_CELLS = 100_000;
+  private static final int GZIP_BUFFER_BYTES = 1 << 16;
+  /**
+   * Data types may share their number formats, which are not thread safe
+   */
+  private static final Object SHARED_FORMAT_LOCK = new Object();
   private final ModularFeatureList[] featureLists;
   // parameter values
   private final File fileName;
@@ -76,9 +98,11 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
   private final String headerSeparator = ":";
   private final FeatureListRowsFilter rowFilter;
   private final boolean removeEmptyCols;
+  private final boolean compressGzip;
   // track number of exported items
   private final AtomicInteger exportedRows = new AtomicInteger(0);
-  private int processedTypes = 0, totalTypes = 0;
+  private int totalRows = 0;
+  private int chunkCells = DEFAULT_CHUNK_CELLS;
 
   public CSVExportModularTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // no new data stored -> null
@@ -89,6 +113,7 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
     idSeparator = parameters.getParameter(CSVExportModularParameters.idSeparator).getValue();
     this.rowFilter = parameters.getParameter(CSVExportModularParameters.filter).getValue();
     removeEmptyCols = parameters.getValue(CSVExportModularParameters.omitEmptyColumns);
+    compressGzip = parameters.getValue(CSVExportModularParameters.compressGzip);
   }
 
   /**
@@ -112,6 +137,14 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
     this.idSeparator = idSeparator;
     this.rowFilter = rowFilter;
     this.removeEmptyCols = removeEmptyCols;
+    this.compressGzip = false;
+  }
+
+  /**
+   * @param chunkCells the target number of cells that are formatted per chunk of rows
+   */
+  void setChunkCells(int chunkCells) {
+    this.chunkCells = chunkCells;
   }
 
   @Override
@@ -121,10 +154,10 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
 
   @Override
   public double getFinishedPercentage() {
-    if (totalTypes == 0) {
+    if (totalRows == 0) {
       return 0;
     }
-    return (double) processedTypes / (double) totalTypes;
+    return (double) exportedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -152,7 +185,7 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
 
     // Total number of rows
     for (ModularFeatureList featureList : featureLists) {
-      totalTypes += featureList.getNumberOfRows();
+      totalRows += featureList.getNumberOfRows();
     }
 
     // Process feature lists
@@ -177,12 +210,14 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
         curFile = new File(newFilename);
       }
       curFile = FileAndPathUtil.getRealFilePath(curFile, "csv");
+      if (compressGzip) {
+        curFile = new File(curFile.getPath() + ".gz");
+      }
 
       // Open file
 
-      try (BufferedWriter writer = Files.newBufferedWriter(curFile.toPath(),
-          StandardCharsets.UTF_8)) {
-        exportFeatureList(featureList, writer);
+      try (OutputStream out = openOutputStream(curFile)) {
+        exportFeatureList(featureList, out);
 
       } catch (IOException e) {
         setStatus(TaskStatus.ERROR);
@@ -206,107 +241,241 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
     }
   }
 
+  /**
+   * Rows are formatted in chunks on worker threads and written to the file in order. Large chunks
+   * are written directly to the file channel without further buffering.
+   */
+  private OutputStream openOutputStream(File file) throws IOException {
+    final OutputStream out = Channels.newOutputStream(
+        FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    if (!compressGzip) {
+      return out;
+    }
+    try {
+      return new GZIPOutputStream(out, GZIP_BUFFER_BYTES);
+    } catch (IOException e) {
+      out.close();
+      throw e;
+    }
+  }
+
   @SuppressWarnings("rawtypes")
-  private void exportFeatureList(ModularFeatureList flist, BufferedWriter writer)
-      throws IOException {
+  private void exportFeatureList(ModularFeatureList flist, OutputStream out) throws IOException {
     final List<FeatureListRow> rows = flist.getRows().stream().filter(rowFilter::accept)
         .sorted(FeatureListRowSorter.DEFAULT_ID).toList();
     List<RawDataFile> rawDataFiles = flist.getRawDataFiles();
 
+    // only check each type once if it contains any data
+    final Map<ContainsDataKey, Boolean> containsData = new HashMap<>();
     List<DataType> rowTypes = flist.getRowTypes().values().stream().filter(this::filterType)
-        .filter(type -> !removeEmptyCols || typeContainData(type, rows, false, -1))
+        .filter(type -> !removeEmptyCols || typeContainData(containsData, type, rows, false, -1))
         .collect(Collectors.toList());
 
     List<DataType> featureTypes = flist.getFeatureTypes().values().stream().filter(this::filterType)
-        .filter(type -> !removeEmptyCols || typeContainData(type, rows, true, -1))
+        .filter(type -> !removeEmptyCols || typeContainData(containsData, type, rows, true, -1))
         .collect(Collectors.toList());
 
-    // Write feature row headers
-    StringBuilder header = new StringBuilder(getJoinedHeader(rowTypes, "", rows, false));
-    for (RawDataFile raw : rawDataFiles) {
-      header.append((header.length() == 0) ? "" : fieldSeparator).append(
-          getJoinedHeader(featureTypes, DATAFILE_PREFIX + headerSeparator + raw.getName(), rows,
-              true));
-    }
-
-    writer.append(header.toString());
-    writer.newLine();
-
-    // write data
-    totalTypes = rowTypes.size() + featureTypes.size() * rawDataFiles.size();
-
-    List<String[]> formattedCols = new ArrayList<>(totalTypes);
-
-    // list string values for each type and sub type
+    // columns for each type and sub type of rows and features of each raw data file
+    final List<ExportColumn> columns = new ArrayList<>();
     for (DataType rowType : rowTypes) {
-      if (isCanceled()) {
-        return;
-      }
-
-      addFormattedColumnsRecursively(formattedCols, rows, null, rowType);
-
-      processedTypes++;
+      addColumnsRecursively(columns, containsData, rows, null, rowType);
     }
-
-    // add feature types for each raw data file
     for (RawDataFile raw : rawDataFiles) {
       for (DataType featureType : featureTypes) {
+        addColumnsRecursively(columns, containsData, rows, raw, featureType);
+      }
+    }
+
+    // Write feature row headers
+    final String header = columns.stream().map(ExportColumn::header)
+        .collect(Collectors.joining(fieldSeparator));
+    out.write((header + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+
+    // format chunks of rows in parallel and write them in order
+    final int rowsPerChunk = Math.max(1, chunkCells / Math.max(1, columns.size()));
+    final List<List<FeatureListRow>> chunks = Lists.partition(rows, rowsPerChunk);
+    final int maxPending = Runtime.getRuntime().availableProcessors();
+    final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    int nextChunk = 0;
+    try {
+      for (List<FeatureListRow> chunk : chunks) {
+        // Cancel?
         if (isCanceled()) {
           return;
         }
-
-        addFormattedColumnsRecursively(formattedCols, rows, raw, featureType);
-        processedTypes++;
+        while (nextChunk < chunks.size() && pending.size() < maxPending) {
+          final List<FeatureListRow> next = chunks.get(nextChunk++);
+          pending.add(CompletableFuture.supplyAsync(() -> formatRows(next, columns)));
+        }
+        out.write(pending.removeFirst().join());
+        exportedRows.addAndGet(chunk.size());
       }
-    }
-
-    for (int i = 0; i < rows.size(); i++) {
-      // Cancel?
-      if (isCanceled()) {
-        return;
-      }
-
-      final int row = i;
-      writer.append(
-          formattedCols.stream().map(col -> col[row]).collect(Collectors.joining(fieldSeparator)));
-      writer.newLine();
-
-      exportedRows.incrementAndGet();
-      processedTypes++;
+    } finally {
+      pending.forEach(future -> future.cancel(false));
     }
   }
 
   /**
-   * Adds columns of formatted values for each column / sub column. missing values are replaced by
-   * empty strings or default values
+   * Adds columns for the type or each of its sub columns. Sub columns may be excluded as no text
+   * column or if they are empty.
    *
-   * @param formattedCols the target list
-   * @param rows          the data
-   * @param raw           defines the feature
-   * @param type          the feature data type to be added (and its sub columns)
+   * @param columns the target list
+   * @param rows    the data
+   * @param raw     defines the feature
+   * @param type    the feature data type to be added (and its sub columns)
    */
-  private void addFormattedColumnsRecursively(List<String[]> formattedCols,
-      List<FeatureListRow> rows, @Nullable RawDataFile raw, DataType type) {
+  private void addColumnsRecursively(List<ExportColumn> columns,
+      Map<ContainsDataKey, Boolean> containsData, List<FeatureListRow> rows,
+      @Nullable RawDataFile raw, DataType type) {
+    final String prefix = raw == null ? "" : DATAFILE_PREFIX + headerSeparator + raw.getName();
+    final String header = (prefix.isEmpty() ? "" : prefix + headerSeparator) + type.getUniqueID();
     if (type instanceof SubColumnsFactory subFactory) {
       int subCols = subFactory.getNumberOfSubColumns();
       for (int s = 0; s < subCols; s++) {
         // filter sub column - maybe excluded, no text, empty
         DataType<?> subType = subFactory.getType(s);
-        if (!filterType(subType) || (removeEmptyCols && !typeContainData(type, rows, raw != null,
-            s))) {
+        if (!filterType(subType) || (removeEmptyCols && !typeContainData(containsData, type,
+            rows, raw != null, s))) {
           continue;
         }
-        // collect column data
-        final int subIndex = s;
-        String[] column = getDataStream(rows, raw, false).map(
-            data -> getFormattedValue(data, subFactory, subIndex)).toArray(String[]::new);
-        formattedCols.add(column);
+        columns.add(new ExportColumn(type, s, raw,
+            csvEscape(header + headerSeparator + subFactory.getUniqueID(s)),
+            getNumberFormat(type, s), true));
       }
     } else {
-      String[] column = getDataStream(rows, raw, false).map(data -> getFormattedValue(data, type))
-          .toArray(String[]::new);
-      formattedCols.add(column);
+      columns.add(new ExportColumn(type, -1, raw, csvEscape(header), getNumberFormat(type, -1),
+          !isPlainTextType(type)));
+    }
+  }
+
+  /**
+   * Number types and number range sub columns are formatted directly with a copy of their export
+   * format for each chunk, if they do not override the formatting.
+   *
+   * @return the export number format or null if the type is formatted by its own methods
+   */
+  @Nullable
+  private static NumberFormat getNumberFormat(DataType type, int sub) {
+    try {
+      final Class<?> typeClass = type.getClass();
+      if (sub == -1 && type instanceof NumberType<?> numberType
+          && !(type instanceof SubColumnsFactory) && NumberType.class.equals(
+          typeClass.getMethod("getFormattedString", Object.class, boolean.class)
+              .getDeclaringClass()) && NumberType.class.equals(
+          typeClass.getMethod("getFormat", boolean.class).getDeclaringClass())) {
+        return numberType.getExportFormat();
+      }
+      if (sub >= 0 && type instanceof NumberRangeType<?> rangeType && NumberRangeType.class.equals(
+          typeClass.getMethod("getFormattedSubColValue", int.class, Object.class, boolean.class)
+              .getDeclaringClass()) && SubColumnsFactory.class.equals(
+          typeClass.getMethod("getFormattedSubColExportValue", int.class, Object.class)
+              .getDeclaringClass())) {
+        return rangeType.getExportFormat();
+      }
+    } catch (NoSuchMethodException e) {
+      logger.finest(() -> "Using generic formatting for " + type.getClass().getName());
+    }
+    return null;
+  }
+
+  /**
+   * Many values format nested numbers with the shared formats of the configuration, e.g., the
+   * scores of compound annotations or the m/z of ion modifications. Only String values and enum
+   * values that use the default formatting of {@link DataType} are safe to format without the
+   * lock. Sub columns may extract their values with any method and are always formatted with the
+   * lock.
+   *
+   * @return true if the values of this type are formatted without any number format
+   */
+  private static boolean isPlainTextType(DataType type) {
+    try {
+      if (!DataType.class.equals(type.getClass()
+          .getMethod("getFormattedString", Object.class, boolean.class).getDeclaringClass())) {
+        return false;
+      }
+      final Class<?> valueClass = type.getValueClass();
+      if (String.class.equals(valueClass)) {
+        return true;
+      }
+      if (!valueClass.isEnum()) {
+        return false;
+      }
+      // constants may have their own class body
+      for (Object constant : valueClass.getEnumConstants()) {
+        if (!Enum.class.equals(
+            constant.getClass().getMethod("toString").getDeclaringClass())) {
+          return false;
+        }
+      }
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return the formatted lines of all rows
+   */
+  private byte[] formatRows(List<FeatureListRow> rows, List<ExportColumn> columns) {
+    // number formats are not thread safe, use copies
+    final NumberFormat[] formats = new NumberFormat[columns.size()];
+    for (int c = 0; c < formats.length; c++) {
+      final NumberFormat format = columns.get(c).numberFormat();
+      formats[c] = format == null ? null : (NumberFormat) format.clone();
+    }
+
+    final String lineSeparator = System.lineSeparator();
+    final StringBuilder b = new StringBuilder();
+    for (FeatureListRow row : rows) {
+      for (int c = 0; c < formats.length; c++) {
+        if (c > 0) {
+          b.append(fieldSeparator);
+        }
+        final ExportColumn column = columns.get(c);
+        final ModularDataModel data =
+            column.raw() == null ? row : (ModularFeature) row.getFeature(column.raw());
+        if (formats[c] != null) {
+          b.append(formatNumber(data, column, formats[c]));
+        } else if (column.sharedFormat()) {
+          synchronized (SHARED_FORMAT_LOCK) {
+            b.append(formatGeneric(data, column));
+          }
+        } else {
+          b.append(formatGeneric(data, column));
+        }
+      }
+      b.append(lineSeparator);
     }
+    return b.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private String formatGeneric(@Nullable ModularDataModel data, ExportColumn column) {
+    return column.subColumn() == -1 ? getFormattedValue(data, column.type())
+        : getFormattedValue(data, (SubColumnsFactory) column.type(), column.subColumn());
+  }
+
+  /**
+   * Same result as {@link #getFormattedValue(ModularDataModel, DataType)} and the sub column
+   * formatting of {@link NumberRangeType}
+   */
+  private String formatNumber(@Nullable ModularDataModel data, ExportColumn column,
+      NumberFormat format) {
+    Object value = data == null ? null : data.get(column.type());
+    if (value == null) {
+      value = column.type().getDefaultValue();
+    }
+    if (value == null) {
+      return "";
+    }
+    if (value instanceof Range<?> range) {
+      return switch (column.subColumn()) {
+        case 0 -> csvEscape(format.format(range.lowerEndpoint()));
+        case 1 -> csvEscape(format.format(range.upperEndpoint()));
+        default -> "";
+      };
+    }
+    return csvEscape(format.format(value));
   }
 
   /**
@@ -366,10 +535,13 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
    * @param featureType defines if row or feature type (true)
    * @return true if any row or feature contains data
    */
-  private boolean typeContainData(DataType type, List<FeatureListRow> rows, boolean featureType,
-      int sub) {
-    final Stream<? extends ModularDataModel> dataStream = getDataStream(rows, null, featureType);
-    return dataStream.anyMatch(data -> modelContainData(data, type, sub));
+  private boolean typeContainData(Map<ContainsDataKey, Boolean> containsData, DataType type,
+      List<FeatureListRow> rows, boolean featureType, int sub) {
+    // the same type and sub column is checked once for all raw data files
+    return containsData.computeIfAbsent(new ContainsDataKey(type, sub, featureType), key -> {
+      final Stream<? extends ModularDataModel> dataStream = getDataStream(rows, null, featureType);
+      return dataStream.anyMatch(data -> modelContainData(data, type, sub));
+    });
   }
 
   /**
@@ -391,43 +563,6 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
   }
 
 
-  /**
-   * Join headers by field separator and sub data types by headerSeparator (Standard is colon :)
-   *
-   * @param types
-   * @param prefix
-   * @return
-   */
-  private String getJoinedHeader(List<DataType> types, String prefix, List<FeatureListRow> rows,
-      boolean isFeatureType) {
-    StringBuilder b = new StringBuilder();
-    for (DataType t : types) {
-      String header =
-          (prefix == null || prefix.isEmpty() ? "" : prefix + headerSeparator) + t.getUniqueID();
-      if (t instanceof SubColumnsFactory subCols) {
-        int numberOfSub = subCols.getNumberOfSubColumns();
-        for (int i = 0; i < numberOfSub; i++) {
-          DataType subType = subCols.getType(i);
-          if (!filterType(subType) || (removeEmptyCols && !typeContainData(t, rows, isFeatureType,
-              i))) {
-            continue;
-          }
-          String field = subCols.getUniqueID(i);
-          if (b.length() != 0) {
-            b.append(fieldSeparator);
-          }
-          b.append(csvEscape(header + headerSeparator + field));
-        }
-      } else {
-        if (b.length() != 0) {
-          b.append(fieldSeparator);
-        }
-        b.append(csvEscape(header));
-      }
-    }
-    return b.toString();
-  }
-
   private String csvEscape(String input) {
     return CSVUtils.escape(input, fieldSeparator);
   }
@@ -455,4 +590,22 @@ public class CSVExportModularTask extends AbstractTask implements ProcessedItems
           featureList.getName(), numMS2, numMS2End));
     }
   }
+
+  /**
+   * A column in the export. Number formats are copied for each chunk of rows.
+   *
+   * @param subColumn    sub column index or -1 for the main column
+   * @param raw          the raw data file of a feature column or null for row columns
+   * @param numberFormat the number format for specialized formatting or null
+   * @param sharedFormat the generic formatting may use number formats shared between threads
+   */
+  private record ExportColumn(DataType type, int subColumn, @Nullable RawDataFile raw,
+                              String header, @Nullable NumberFormat numberFormat,
+                              boolean sharedFormat) {
+
+  }
+
+  private record ContainsDataKey(DataType type, int subColumn, boolean featureType) {
+
+  }
 }
@@ -25,13 +25,7 @@
 
 package io.github.mzmine.modules.io.export_features_sql;
 
-import java.io.ByteArrayInputStream;
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.Types;
-import io.github.mzmine.datamodel.DataPoint;
+import com.google.common.collect.Lists;
 import io.github.mzmine.datamodel.FeatureIdentity;
 import io.github.mzmine.datamodel.IsotopePattern;
 import io.github.mzmine.datamodel.MassList;
@@ -45,22 +39,49 @@ import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.scans.ScanUtils;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
-import java.util.Date;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 class SQLExportTask extends AbstractTask {
 
+  private static final Logger logger = Logger.getLogger(SQLExportTask.class.getName());
+
+  /**
+   * Columns that create one record per raw data file of a row
+   */
+  private static final Set<SQLExportDataType> DATA_FILE_TYPES = EnumSet.of(
+      SQLExportDataType.FEATURECHARGE, SQLExportDataType.FEATUREDURATION,
+      SQLExportDataType.FEATURESTATUS, SQLExportDataType.FEATUREMZ, SQLExportDataType.FEATURERT,
+      SQLExportDataType.FEATURERT_START, SQLExportDataType.FEATURERT_END,
+      SQLExportDataType.FEATUREHEIGHT, SQLExportDataType.FEATUREAREA, SQLExportDataType.DATAPOINTS,
+      SQLExportDataType.FWHM, SQLExportDataType.TAILINGFACTOR, SQLExportDataType.ASYMMETRYFACTOR,
+      SQLExportDataType.RAWFILE);
+
   private final FeatureList featureList;
   private final String connectionString;
   private final String tableName;
   private final SQLColumnSettings exportColumns;
   private final boolean emptyExport;
+  private final int batchSize;
 
   private int processedRows = 0, totalRows = 0;
 
-  private Connection dbConnection;
-
   SQLExportTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate); // no new data stored -> null
 
@@ -72,7 +93,7 @@ class SQLExportTask extends AbstractTask {
     this.tableName = parameters.getParameter(SQLExportParameters.tableName).getValue();
     this.exportColumns = parameters.getParameter(SQLExportParameters.exportColumns).getValue();
     this.emptyExport = parameters.getParameter(SQLExportParameters.emptyExport).getValue();
-
+    this.batchSize = parameters.getParameter(SQLExportParameters.batchSize).getValue();
   }
 
   @Override
@@ -95,220 +116,142 @@ class SQLExportTask extends AbstractTask {
     // Get number of rows
     totalRows = featureList.getNumberOfRows();
 
+    final Connection dbConnection;
     try {
-      this.dbConnection = DriverManager.getConnection(connectionString);
+      Properties properties = new Properties();
+      if (connectionString.startsWith("jdbc:mysql:")) {
+        // send batches as multi row inserts, settings in the connection string take precedence
+        properties.setProperty("rewriteBatchedStatements", "true");
+      }
+      dbConnection = DriverManager.getConnection(connectionString, properties);
     } catch (SQLException e) {
       setStatus(TaskStatus.ERROR);
       setErrorMessage("Error connecting to the SQL database: " + e.toString());
       return;
     }
 
-    FeatureListRow rows[] = featureList.getRows().toArray(FeatureListRow[]::new);
-
-    try {
+    final Column[] columns = getColumns();
+    final FeatureListRow[] rows = featureList.getRows().toArray(FeatureListRow[]::new);
+    try (dbConnection) {
+      // all records are written in one transaction
       dbConnection.setAutoCommit(false);
-
-      // If select, an empty row with just the raw data file
-      // information will be exported
-      if (rows.length < 1 && emptyExport) {
-        exportFeatureListRow(null);
-      } else {
-        for (FeatureListRow row : rows) {
-          if (getStatus() != TaskStatus.PROCESSING)
-            break;
-          exportFeatureListRow(row);
-          processedRows++;
-        }
+      try {
+        exportRecords(dbConnection, columns, rows);
+      } catch (SQLException | RuntimeException e) {
+        dbConnection.rollback();
+        throw e;
+      }
+      if (isCanceled()) {
+        dbConnection.rollback();
+        return;
       }
       dbConnection.commit();
-      dbConnection.close();
-    } catch (SQLException e) {
+    } catch (SQLException | CompletionException e) {
+      final Throwable cause = e instanceof CompletionException ? e.getCause() : e;
       setStatus(TaskStatus.ERROR);
-      setErrorMessage("Error running SQL query: " + e.toString());
+      setErrorMessage("Error running SQL query: " + cause.toString());
       return;
     }
 
-    if (getStatus() == TaskStatus.PROCESSING)
+    if (getStatus() == TaskStatus.PROCESSING) {
       setStatus(TaskStatus.FINISHED);
-
+    }
   }
 
-  private void exportFeatureListRow(FeatureListRow row) throws SQLException {
-
-    // Cancel?
-    if (isCanceled()) {
-      return;
+  private void exportRecords(Connection dbConnection, Column[] columns, FeatureListRow[] rows)
+      throws SQLException {
+    try (SQLRecordWriter<?> writer = SQLRecordWriter.create(dbConnection, tableName,
+        Arrays.stream(columns).map(Column::name).toArray(String[]::new),
+        Arrays.stream(columns).mapToInt(Column::sqlType).toArray())) {
+      // If select, an empty row with just the raw data file
+      // information will be exported
+      if (rows.length < 1 && emptyExport) {
+        writeEmptyRecord(writer, columns);
+      } else {
+        writeRows(writer, columns, rows);
+      }
+      if (!isCanceled()) {
+        writer.finish();
+      }
     }
+  }
 
-    // Value for looping through raw data files
-    boolean loopDataFiles = false;
-
-    StringBuilder sql = new StringBuilder();
-    sql.append("INSERT INTO ");
-    sql.append(tableName);
-    sql.append(" (");
-    for (int i = 0; i < exportColumns.getRowCount(); i++) {
-      sql.append(exportColumns.getValueAt(i, 0));
-      if (i < exportColumns.getRowCount() - 1)
-        sql.append(",");
+  private Column[] getColumns() {
+    Column[] columns = new Column[exportColumns.getRowCount()];
+    for (int i = 0; i < columns.length; i++) {
+      SQLExportDataType dataType = (SQLExportDataType) exportColumns.getValueAt(i, 1);
+      final int sqlType = switch (dataType.valueType()) {
+        case "BLOB" -> Types.BLOB;
+        case "DOUBLE" -> Types.DOUBLE;
+        case "INT" -> Types.INTEGER;
+        default -> Types.VARCHAR;
+      };
+      columns[i] = new Column((String) exportColumns.getValueAt(i, 0), dataType,
+          (String) exportColumns.getValueAt(i, 2), sqlType);
     }
-    sql.append(" ) VALUES (");
-    for (int i = 0; i < exportColumns.getRowCount(); i++) {
-      sql.append("?");
-      if (i < exportColumns.getRowCount() - 1)
-        sql.append(",");
+    return columns;
+  }
+
+  private <T> void writeEmptyRecord(SQLRecordWriter<T> writer, Column[] columns)
+      throws SQLException {
+    Object[] record = new Object[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      record[i] = switch (columns[i].type()) {
+        case CONSTANT -> columns[i].value();
+        case RAWFILE -> featureList.getRawDataFiles().get(0).getName();
+        default -> null;
+      };
     }
-    sql.append(")");
+    writer.write(writer.encode(List.<Object[]>of(record)));
+  }
 
-    PreparedStatement statement = dbConnection.prepareStatement(sql.toString());
+  /**
+   * Rows are formatted and encoded on worker threads while the connection writes the previous
+   * batch, so that the connection is always busy.
+   */
+  private <T> void writeRows(SQLRecordWriter<T> writer, Column[] columns, FeatureListRow[] rows)
+      throws SQLException {
+    final boolean loopDataFiles = Arrays.stream(columns)
+        .anyMatch(c -> DATA_FILE_TYPES.contains(c.type()));
+    final int recordsPerRow =
+        loopDataFiles ? Math.max(1, featureList.getNumberOfRawDataFiles()) : 1;
+    final List<List<FeatureListRow>> chunks = Lists.partition(Arrays.asList(rows),
+        Math.max(1, batchSize / recordsPerRow));
+    final int maxPending = Runtime.getRuntime().availableProcessors();
 
-    if (row == null) {
-      for (int i = 0; i < exportColumns.getRowCount(); i++) {
-        SQLExportDataType dataType = (SQLExportDataType) exportColumns.getValueAt(i, 1);
-        String dataValue = (String) exportColumns.getValueAt(i, 2);
-        switch (dataType) {
-          case CONSTANT:
-            statement.setString(i + 1, dataValue);
-            break;
-          case RAWFILE:
-            RawDataFile rawdatafiles[] = featureList.getRawDataFiles().toArray(RawDataFile[]::new);
-            statement.setString(i + 1, rawdatafiles[0].getName());
-            break;
-          default:
-            statement.setString(i + 1, null);
-            break;
+    final Deque<CompletableFuture<T>> pending = new ArrayDeque<>();
+    int nextChunk = 0;
+    try {
+      for (List<FeatureListRow> chunk : chunks) {
+        while (nextChunk < chunks.size() && pending.size() < maxPending) {
+          final List<FeatureListRow> next = chunks.get(nextChunk++);
+          pending.add(CompletableFuture.supplyAsync(
+              () -> writer.encode(formatRecords(next, columns, loopDataFiles))));
         }
+        if (isCanceled()) {
+          return;
+        }
+        writer.write(pending.removeFirst().join());
+        processedRows += chunk.size();
       }
-      statement.executeUpdate();
+    } finally {
+      pending.forEach(future -> future.cancel(false));
     }
+    logger.finest(() -> "Exported %d rows to SQL table %s in batches of %d rows".formatted(
+        processedRows, tableName, chunks.isEmpty() ? 0 : chunks.get(0).size()));
+  }
 
-    else {
+  private List<Object[]> formatRecords(List<FeatureListRow> rows, Column[] columns,
+      boolean loopDataFiles) {
+    List<Object[]> records = new ArrayList<>();
+    for (FeatureListRow row : rows) {
       for (RawDataFile rawDataFile : row.getRawDataFiles()) {
         Feature feature = row.getFeature(rawDataFile);
-
-        for (int i = 0; i < exportColumns.getRowCount(); i++) {
-          SQLExportDataType dataType = (SQLExportDataType) exportColumns.getValueAt(i, 1);
-          String dataValue = (String) exportColumns.getValueAt(i, 2);
-          switch (dataType) {
-            case CONSTANT:
-              statement.setString(i + 1, dataValue);
-              break;
-            case MZ:
-              statement.setDouble(i + 1, row.getAverageMZ());
-              break;
-            case RT:
-              statement.setDouble(i + 1, row.getAverageRT());
-              break;
-            case ID:
-              statement.setInt(i + 1, row.getID());
-              break;
-            case FEATURECHARGE:
-              statement.setDouble(i + 1, feature.getCharge());
-              loopDataFiles = true;
-              break;
-            case FEATUREDURATION:
-              statement.setDouble(i + 1, RangeUtils.rangeLength(feature.getRawDataPointsRTRange()));
-              loopDataFiles = true;
-              break;
-            case FEATURESTATUS:
-              statement.setString(i + 1, feature.getFeatureStatus().name());
-              loopDataFiles = true;
-              break;
-            case FEATUREMZ:
-              statement.setDouble(i + 1, feature.getMZ());
-              loopDataFiles = true;
-              break;
-            case FEATURERT:
-              statement.setDouble(i + 1, feature.getRT());
-              loopDataFiles = true;
-              break;
-            case FEATURERT_START:
-              statement.setDouble(i + 1, feature.getRawDataPointsRTRange().lowerEndpoint());
-              loopDataFiles = true;
-              break;
-            case FEATURERT_END:
-              statement.setDouble(i + 1, feature.getRawDataPointsRTRange().upperEndpoint());
-              loopDataFiles = true;
-              break;
-            case FEATUREHEIGHT:
-              statement.setDouble(i + 1, feature.getHeight());
-              loopDataFiles = true;
-              break;
-            case FEATUREAREA:
-              statement.setDouble(i + 1, feature.getArea());
-              loopDataFiles = true;
-              break;
-            case DATAPOINTS:
-              statement.setDouble(i + 1, feature.getScanNumbers().size());
-              loopDataFiles = true;
-              break;
-            case FWHM:
-              statement.setDouble(i + 1, feature.getFWHM());
-              loopDataFiles = true;
-              break;
-            case TAILINGFACTOR:
-              statement.setDouble(i + 1, feature.getTailingFactor());
-              loopDataFiles = true;
-              break;
-            case ASYMMETRYFACTOR:
-              statement.setDouble(i + 1, feature.getAsymmetryFactor());
-              loopDataFiles = true;
-              break;
-            case RAWFILE:
-              statement.setString(i + 1, rawDataFile.getName());
-              loopDataFiles = true;
-              break;
-            case HEIGHT:
-              statement.setDouble(i + 1, row.getAverageHeight());
-              break;
-            case AREA:
-              statement.setDouble(i + 1, row.getAverageArea());
-              break;
-            case COMMENT:
-              statement.setString(i + 1, row.getComment());
-              break;
-            case IDENTITY:
-              FeatureIdentity id = row.getPreferredFeatureIdentity();
-              if (id != null) {
-                statement.setString(i + 1, id.getName());
-              } else {
-                statement.setNull(i + 1, Types.VARCHAR);
-              }
-              break;
-            case ISOTOPEPATTERN:
-              IsotopePattern isotopes = row.getBestIsotopePattern();
-              if (isotopes == null) {
-                statement.setNull(i + 1, Types.BLOB);
-                break;
-              }
-              DataPoint dataPoints[] = ScanUtils.extractDataPoints(isotopes);
-              byte bytes[] = ScanUtils.encodeDataPointsToBytes(dataPoints);
-              ByteArrayInputStream is = new ByteArrayInputStream(bytes);
-              statement.setBlob(i + 1, is);
-              break;
-            case MSMS:
-              Scan msmsScan = row.getBestFeature().getMostIntenseFragmentScan();
-              // Check if there is any MS/MS scan
-              if (msmsScan == null) {
-                statement.setNull(i + 1, Types.BLOB);
-                break;
-              }
-              MassList msmsMassList = msmsScan.getMassList();
-              // Check if there is a masslist for the scan
-              if (msmsMassList == null) {
-                statement.setNull(i + 1, Types.BLOB);
-                break;
-              }
-              dataPoints = msmsMassList.getDataPoints();
-              bytes = ScanUtils.encodeDataPointsToBytes(dataPoints);
-              is = new ByteArrayInputStream(bytes);
-              statement.setBlob(i + 1, is);
-              break;
-            default:
-              break;
-          }
+        Object[] record = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+          record[i] = formatValue(columns[i], row, feature, rawDataFile);
         }
-        statement.executeUpdate();
+        records.add(record);
 
         // If no data file elements are selected then don't loop through
         // all
@@ -318,5 +261,60 @@ class SQLExportTask extends AbstractTask {
         }
       }
     }
+    return records;
+  }
+
+  @Nullable
+  private Object formatValue(Column column, FeatureListRow row, Feature feature,
+      RawDataFile rawDataFile) {
+    return switch (column.type()) {
+      case CONSTANT -> column.value();
+      case MZ -> row.getAverageMZ();
+      case RT -> toDouble(row.getAverageRT());
+      case ID -> row.getID();
+      case FEATURECHARGE -> toDouble(feature.getCharge());
+      case FEATUREDURATION -> toDouble(RangeUtils.rangeLength(feature.getRawDataPointsRTRange()));
+      case FEATURESTATUS -> feature.getFeatureStatus().name();
+      case FEATUREMZ -> feature.getMZ();
+      case FEATURERT -> toDouble(feature.getRT());
+      case FEATURERT_START -> toDouble(feature.getRawDataPointsRTRange().lowerEndpoint());
+      case FEATURERT_END -> toDouble(feature.getRawDataPointsRTRange().upperEndpoint());
+      case FEATUREHEIGHT -> toDouble(feature.getHeight());
+      case FEATUREAREA -> toDouble(feature.getArea());
+      case DATAPOINTS -> (double) feature.getScanNumbers().size();
+      case FWHM -> toDouble(feature.getFWHM());
+      case TAILINGFACTOR -> toDouble(feature.getTailingFactor());
+      case ASYMMETRYFACTOR -> toDouble(feature.getAsymmetryFactor());
+      case RAWFILE -> rawDataFile.getName();
+      case HEIGHT -> toDouble(row.getAverageHeight());
+      case AREA -> toDouble(row.getAverageArea());
+      case COMMENT -> row.getComment();
+      case IDENTITY -> {
+        FeatureIdentity id = row.getPreferredFeatureIdentity();
+        yield id != null ? id.getName() : null;
+      }
+      case ISOTOPEPATTERN -> {
+        IsotopePattern isotopes = row.getBestIsotopePattern();
+        yield isotopes == null ? null
+            : ScanUtils.encodeDataPointsToBytes(ScanUtils.extractDataPoints(isotopes));
+      }
+      case MSMS -> {
+        Scan msmsScan = row.getBestFeature().getMostIntenseFragmentScan();
+        // Check if there is any MS/MS scan and a masslist for the scan
+        MassList msmsMassList = msmsScan == null ? null : msmsScan.getMassList();
+        yield msmsMassList == null ? null
+            : ScanUtils.encodeDataPointsToBytes(msmsMassList.getDataPoints());
+      }
+      default -> null;
+    };
+  }
+
+  @Nullable
+  private static Double toDouble(@Nullable Number value) {
+    return value == null ? null : value.doubleValue();
+  }
+
+  private record Column(String name, SQLExportDataType type, String value, int sqlType) {
+
   }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.modules.io.export_features_sql;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.jetbrains.annotations.NotNull;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Writes the records of the SQL export in batches. Records are formatted values for all columns,
+ * either {@link String}, {@link Double}, {@link Integer}, byte[] for blobs or null.
+ * {@link #encode(List)} is called on worker threads, {@link #write(Object)} on the thread that owns
+ * the connection.
+ *
+ * @param <T> the encoded batch
+ */
+interface SQLRecordWriter<T> extends AutoCloseable {
+
+  /**
+   * Uses COPY for PostgreSQL if there are no blob columns, otherwise batched inserts with one
+   * prepared statement.
+   *
+   * @param sqlTypes the {@link Types} of all columns, used for null values
+   */
+  static SQLRecordWriter<?> create(@NotNull Connection connection, @NotNull String tableName,
+      @NotNull String[] columns, int[] sqlTypes) throws SQLException {
+    final boolean hasBlobs = Arrays.stream(sqlTypes).anyMatch(type -> type == Types.BLOB);
+    if (!hasBlobs && connection instanceof PGConnection pg) {
+      return new PostgresCopyWriter(pg, tableName, columns);
+    }
+    return new BatchInsertWriter(connection, tableName, columns, sqlTypes);
+  }
+
+  /**
+   * Thread safe encoding of a batch
+   */
+  T encode(@NotNull List<Object[]> records);
+
+  void write(@NotNull T batch) throws SQLException;
+
+  /**
+   * Called after all batches were written, before the transaction is committed
+   */
+  void finish() throws SQLException;
+
+  @Override
+  void close() throws SQLException;
+
+  /**
+   * JDBC batches of one reused prepared statement
+   */
+  class BatchInsertWriter implements SQLRecordWriter<List<Object[]>> {
+
+    private final PreparedStatement statement;
+    private final int[] sqlTypes;
+
+    BatchInsertWriter(Connection connection, String tableName, String[] columns, int[] sqlTypes)
+        throws SQLException {
+      this.sqlTypes = sqlTypes;
+      final String sql = "INSERT INTO %s (%s) VALUES (%s)".formatted(tableName,
+          String.join(",", columns),
+          Arrays.stream(columns).map(c -> "?").collect(Collectors.joining(",")));
+      statement = connection.prepareStatement(sql);
+    }
+
+    @Override
+    public List<Object[]> encode(@NotNull List<Object[]> records) {
+      return records;
+    }
+
+    @Override
+    public void write(@NotNull List<Object[]> batch) throws SQLException {
+      for (Object[] record : batch) {
+        for (int i = 0; i < record.length; i++) {
+          final Object value = record[i];
+          if (value == null) {
+            statement.setNull(i + 1, sqlTypes[i]);
+            continue;
+          }
+          switch (value) {
+            case Double d -> statement.setDouble(i + 1, d);
+            case Integer n -> statement.setInt(i + 1, n);
+            case byte[] bytes -> statement.setBlob(i + 1, new ByteArrayInputStream(bytes));
+            default -> statement.setString(i + 1, value.toString());
+          }
+        }
+        statement.addBatch();
+      }
+      statement.executeBatch();
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public void close() throws SQLException {
+      statement.close();
+    }
+  }
+
+  /**
+   * Streams CSV to a PostgreSQL COPY FROM STDIN
+   */
+  class PostgresCopyWriter implements SQLRecordWriter<byte[]> {
+
+    private final CopyIn copyIn;
+
+    PostgresCopyWriter(PGConnection connection, String tableName, String[] columns)
+        throws SQLException {
+      copyIn = connection.getCopyAPI()
+          .copyIn("COPY %s (%s) FROM STDIN WITH CSV".formatted(tableName,
+              String.join(",", columns)));
+    }
+
+    @Override
+    public byte[] encode(@NotNull List<Object[]> records) {
+      StringBuilder csv = new StringBuilder();
+      for (Object[] record : records) {
+        for (int i = 0; i < record.length; i++) {
+          if (i > 0) {
+            csv.append(',');
+          }
+          // null stays an unquoted empty value
+          final Object value = record[i];
+          if (value instanceof Double d && d == Math.rint(d) && Math.abs(d) < 1E15) {
+            // integral values without fraction, so that they also fit integer columns
+            csv.append(d.longValue());
+          } else if (value instanceof Number n) {
+            csv.append(n);
+          } else if (value != null) {
+            csv.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+          }
+        }
+        csv.append('\n');
+      }
+      return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(@NotNull byte[] batch) throws SQLException {
+      copyIn.writeToCopy(batch, 0, batch.length);
+    }
+
+    @Override
+    public void finish() throws SQLException {
+      copyIn.endCopy();
+    }
+
+    @Override
+    public void close() throws SQLException {
+      if (copyIn.isActive()) {
+        copyIn.cancelCopy();
+      }
+    }
+  }
+}
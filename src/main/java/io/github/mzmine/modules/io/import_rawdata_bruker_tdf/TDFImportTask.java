@@ -62,12 +62,21 @@ import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import org.jetbrains.annotations.NotNull;
@@ -79,6 +88,11 @@ import org.jetbrains.annotations.Nullable;
 public class TDFImportTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(TDFImportTask.class.getName());
+  /**
+   * Frames that are extracted by one worker at a time in the parallel import. Files with fewer
+   * frames than two chunks are imported by a single thread.
+   */
+  private static final int FRAMES_PER_CHUNK = 32;
   private final MZmineProject project;
 
   @Nullable
@@ -269,49 +283,42 @@ public class TDFImportTask extends AbstractTask {
 
     logger.finest("Starting frame import.");
 
-    loadedFrames = 0;
-    // collect average spectra for each frame
-    Set<SimpleFrame> frames = new LinkedHashSet<>();
-
     final boolean importProfile = MZmineCore.getInstance().isTdfPseudoProfile();
+    final int numWorkers = Math.min(TDFUtils.getDefaultNumThreads(),
+        numFrames / FRAMES_PER_CHUNK);
+    if (numWorkers > 1) {
+      if (!importFramesConcurrently(numWorkers, importProfile)) {
+        tdfUtils.close();
+        return;
+      }
+    } else {
+      loadedFrames = 0;
+      // collect average spectra for each frame
+      Set<SimpleFrame> frames = new LinkedHashSet<>();
 
-    try {
-      for (int i = 0; i < numFrames; i++) {
-        int frameId = frameTable.getFrameIdColumn().get(i).intValue();
-        setFinishedPercentage(0.1 * (loadedFrames) / numFrames);
-        setDescription(
-            "Importing " + rawDataFileName + ": Averaging Frame " + frameId + "/" + numFrames);
-        final SimpleFrame frame;
-        if (!importProfile) {
-          frame = tdfUtils.extractCentroidScanForTimsFrame(newMZmineFile, frameId, metaDataTable,
-              frameTable, framePrecursorTable, maldiFrameInfoTable, ms1Detector, ms1DetectorParam,
-              ms2Detector, ms2DetectorParam);
-        } else {
-          frame = tdfUtils.extractProfileScanForFrame(newMZmineFile, frameId, metaDataTable,
-              frameTable, framePrecursorTable, maldiFrameInfoTable, ms1Detector, ms1DetectorParam,
-              ms2Detector, ms2DetectorParam);
-        }
-
-        if (frame.getMSLevel() == 1 && ms1Detector != null && ms1DetectorParam != null) {
-          frame.addMassList(new ScanPointerMassList(frame));
-        } else if (frame.getMSLevel() == 2 && ms2Detector != null && ms2DetectorParam != null) {
-          frame.addMassList(new ScanPointerMassList(frame));
-        }
-
-        newMZmineFile.addScan(frame);
-        frames.add(frame);
-        loadedFrames++;
-        if (isCanceled()) {
-          tdfUtils.close();
-          return;
+      try {
+        for (int i = 0; i < numFrames; i++) {
+          int frameId = frameTable.getFrameIdColumn().get(i).intValue();
+          setFinishedPercentage(0.1 * (loadedFrames) / numFrames);
+          setDescription(
+              "Importing " + rawDataFileName + ": Averaging Frame " + frameId + "/" + numFrames);
+          final SimpleFrame frame = extractFrame(tdfUtils, frameId, importProfile);
+
+          newMZmineFile.addScan(frame);
+          frames.add(frame);
+          loadedFrames++;
+          if (isCanceled()) {
+            tdfUtils.close();
+            return;
+          }
         }
+      } catch (IOException e) {
+        e.printStackTrace();
       }
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
 
-    // extract mobility scans
-    appendScansFromTimsSegment(tdfUtils, frameTable, frames);
+      // extract mobility scans
+      appendScansFromTimsSegment(tdfUtils, frameTable, frames);
+    }
 
     // now assign MS/MS infos
     constructMsMsInfo(newMZmineFile, framePrecursorTable);
@@ -417,16 +424,7 @@ public class TDFImportTask extends AbstractTask {
               + numFrames);
       setFinishedPercentage(0.1 + (0.9 * ((double) loadedFrames / numFrames)));
 
-      final int msLevel = frame.getMSLevel();
-      final MassDetector detector = msLevel == 1 ? ms1Detector : ms2Detector;
-      final ParameterSet param = msLevel == 1 ? ms1DetectorParam : ms2DetectorParam;
-      final List<BuildingMobilityScan> spectra = tdfUtils.loadSpectraForTIMSFrame(
-          frame.getFrameId(), frameTable, detector, param);
-      if (spectra.isEmpty()) {
-        spectra.add(new BuildingMobilityScan(0, new double[]{}, new double[]{}));
-      }
-
-      frame.setMobilityScans(spectra, detector != null);
+      loadMobilityScans(tdfUtils, frame);
 
       if (isCanceled()) {
         return;
@@ -436,6 +434,140 @@ public class TDFImportTask extends AbstractTask {
 
   }
 
+  /**
+   * Extracts the frames and their mobility scans in parallel. Every worker opens its own handle of
+   * the tdf_bin file, because a handle must not be used by multiple threads. Workers take chunks
+   * of consecutive frames and the frames are added to the raw data file in frame order.
+   *
+   * @return true on success, false if the import failed or was canceled
+   */
+  private boolean importFramesConcurrently(final int numWorkers, final boolean importProfile) {
+    final int numFrames = frameTable.getFrameIdColumn().size();
+    final int numChunks = (numFrames + FRAMES_PER_CHUNK - 1) / FRAMES_PER_CHUNK;
+    final SimpleFrame[] frames = new SimpleFrame[numFrames];
+    final List<CompletableFuture<Void>> chunks = new ArrayList<>(numChunks);
+    for (int i = 0; i < numChunks; i++) {
+      chunks.add(new CompletableFuture<>());
+    }
+    final AtomicInteger nextChunk = new AtomicInteger(0);
+    // set if any worker failed or the import was stopped, the status is not CANCELED on errors
+    final AtomicBoolean stopped = new AtomicBoolean(false);
+
+    // every worker opens its own handle, so the native threads of all handles add up. Split the
+    // budget of this file instead of starting the default number of native threads per worker.
+    final int nativeThreads = Math.max(1, TDFUtils.getDefaultNumThreads() / numWorkers);
+    logger.finest(() -> "Importing frames of " + rawDataFileName + " with " + numWorkers
+        + " threads and " + nativeThreads + " library threads each.");
+    final ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+    try {
+      for (int i = 0; i < numWorkers; i++) {
+        executor.execute(() -> {
+          final TDFUtils utils = new TDFUtils(nativeThreads);
+          try {
+            if (utils.openFile(tdfBin) == 0L) {
+              throw new IllegalStateException(
+                  "Failed to open the file " + tdfBin + " using the Bruker TDF library");
+            }
+            int chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < numChunks) {
+              final int end = Math.min((chunk + 1) * FRAMES_PER_CHUNK, numFrames);
+              for (int j = chunk * FRAMES_PER_CHUNK; j < end; j++) {
+                if (stopped.get() || isCanceled()) {
+                  stopped.set(true);
+                  chunks.forEach(f -> f.cancel(false));
+                  return;
+                }
+                final int frameId = frameTable.getFrameIdColumn().get(j).intValue();
+                final SimpleFrame frame = extractFrame(utils, frameId, importProfile);
+                loadMobilityScans(utils, frame);
+                frames[j] = frame;
+              }
+              chunks.get(chunk).complete(null);
+            }
+          } catch (Throwable t) {
+            stopped.set(true);
+            chunks.forEach(f -> f.completeExceptionally(t));
+          } finally {
+            utils.close();
+          }
+        });
+      }
+
+      loadedFrames = 0;
+      for (int chunk = 0; chunk < numChunks; chunk++) {
+        // completion of the future publishes the frames of this chunk
+        chunks.get(chunk).get();
+        final int end = Math.min((chunk + 1) * FRAMES_PER_CHUNK, numFrames);
+        for (int j = chunk * FRAMES_PER_CHUNK; j < end; j++) {
+          newMZmineFile.addScan(frames[j]);
+          frames[j] = null;
+          loadedFrames++;
+        }
+        setDescription("Importing " + rawDataFileName + ": Frame " + loadedFrames + "/"
+            + numFrames);
+        setFinishedPercentage((double) loadedFrames / numFrames);
+      }
+      return true;
+    } catch (CancellationException e) {
+      stopped.set(true);
+      return false;
+    } catch (Exception e) {
+      // stop the other workers
+      stopped.set(true);
+      chunks.forEach(f -> f.cancel(false));
+      if (isCanceled()) {
+        return false;
+      }
+      final Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      logger.log(Level.SEVERE, "Error while importing frames of " + rawDataFileName, cause);
+      setErrorMessage("Error while importing frames of " + rawDataFileName + ": " + cause);
+      setStatus(TaskStatus.ERROR);
+      return false;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Extracts the frame spectrum and sets the mass list if a mass detector was selected.
+   */
+  private SimpleFrame extractFrame(final TDFUtils tdfUtils, final int frameId,
+      final boolean importProfile) {
+    final SimpleFrame frame;
+    if (!importProfile) {
+      frame = tdfUtils.extractCentroidScanForTimsFrame(newMZmineFile, frameId, metaDataTable,
+          frameTable, framePrecursorTable, maldiFrameInfoTable, ms1Detector, ms1DetectorParam,
+          ms2Detector, ms2DetectorParam);
+    } else {
+      frame = tdfUtils.extractProfileScanForFrame(newMZmineFile, frameId, metaDataTable,
+          frameTable, framePrecursorTable, maldiFrameInfoTable, ms1Detector, ms1DetectorParam,
+          ms2Detector, ms2DetectorParam);
+    }
+
+    if (frame.getMSLevel() == 1 && ms1Detector != null && ms1DetectorParam != null) {
+      frame.addMassList(new ScanPointerMassList(frame));
+    } else if (frame.getMSLevel() == 2 && ms2Detector != null && ms2DetectorParam != null) {
+      frame.addMassList(new ScanPointerMassList(frame));
+    }
+    return frame;
+  }
+
+  /**
+   * Loads the mobility scans of a frame and applies the mass detector of the frame's MS level.
+   */
+  private void loadMobilityScans(final TDFUtils tdfUtils, final SimpleFrame frame) {
+    final int msLevel = frame.getMSLevel();
+    final MassDetector detector = msLevel == 1 ? ms1Detector : ms2Detector;
+    final ParameterSet param = msLevel == 1 ? ms1DetectorParam : ms2DetectorParam;
+    final List<BuildingMobilityScan> spectra = tdfUtils.loadSpectraForTIMSFrame(
+        frame.getFrameId(), frameTable, detector, param);
+    if (spectra.isEmpty()) {
+      spectra.add(new BuildingMobilityScan(0, new double[]{}, new double[]{}));
+    }
+
+    frame.setMobilityScans(spectra, detector != null);
+  }
+
   private File[] getDataFilesFromDir(File dir) {
 
     if (!dir.exists() || !dir.isDirectory()) {
@@ -140,6 +140,13 @@ public class TDFUtils {
     DEFAULT_NUMTHREADS = numThreads;
   }
 
+  /**
+   * @return the default number of threads for each raw file
+   */
+  public static int getDefaultNumThreads() {
+    return DEFAULT_NUMTHREADS;
+  }
+
   /**
    * Initialises the tdf library. Is called when openFile is called.
    *
@@ -90,6 +90,10 @@ public class MSDKmzMLImportTask extends AbstractTask {
   public static final Pattern watersPattern = Pattern.compile(
       "function=([1-9]+) process=[\\d]+ scan=[\\d]+");
   private static final Logger logger = Logger.getLogger(MSDKmzMLImportTask.class.getName());
+  /**
+   * Number of scans that are converted in parallel before they are added to the data file
+   */
+  private static final int PARALLEL_BLOCK_SIZE = 512;
   private final File file;
   private final InputStream fis;
   // advanced processing will apply mass detection directly to the scans
@@ -242,50 +246,58 @@ public class MSDKmzMLImportTask extends AbstractTask {
 
   public void buildLCMSFile(io.github.msdk.datamodel.RawDataFile file, RawDataFile newMZmineFile)
       throws IOException {
-    for (MsScan scan : file.getScans()) {
+    final List<MsScan> scans = file.getScans();
+    for (int start = 0; start < scans.size(); start += PARALLEL_BLOCK_SIZE) {
       if (isCanceled()) {
         return;
       }
-      MzMLMsScan mzMLScan = (MzMLMsScan) scan;
-
-      Scan newScan = null;
-      if (applyMassDetection) {
-        // wrap scan
-        MsdkScanWrapper wrapper = new MsdkScanWrapper(scan);
-        double[][] mzIntensities = null;
-
-        // apply mass detection
-        if (ms1Detector != null && wrapper.getMSLevel() == 1) {
-          mzIntensities = applyMassDetection(ms1Detector, wrapper);
-        } else if (ms2Detector != null && wrapper.getMSLevel() >= 2) {
-          mzIntensities = applyMassDetection(ms2Detector, wrapper);
-          if (denormalizeMSnScans) {
-            ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzIntensities[1],
-                wrapper.getInjectionTime());
-          }
-        }
+      // decoding, sorting, and mass detection are independent for each scan. The decoder reads
+      // directly from the memory mapped file, so blocks of scans are converted in parallel and
+      // added in scan order
+      final List<Scan> block = scans.subList(start,
+              Math.min(start + PARALLEL_BLOCK_SIZE, scans.size())).parallelStream()
+          .map(scan -> convertScan((MzMLMsScan) scan, newMZmineFile)).toList();
+
+      for (Scan newScan : block) {
+        newMZmineFile.addScan(newScan);
+        parsedScans++;
+      }
+      description =
+          "Importing " + this.file.getName() + ", parsed " + parsedScans + "/" + totalScans
+              + " scans";
+    }
+  }
 
-        if (mzIntensities != null) {
-          // scans sorting is enforced in {@link AbstractStorableSpectrum#setDataPoints}
-          // create mass list and scan. Override data points and spectrum type
-          newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan, mzIntensities[0],
-              mzIntensities[1], MassSpectrumType.CENTROIDED);
-          ScanPointerMassList newMassList = new ScanPointerMassList(newScan);
-          newScan.addMassList(newMassList);
+  private Scan convertScan(MzMLMsScan mzMLScan, RawDataFile newMZmineFile) {
+    if (applyMassDetection) {
+      // wrap scan
+      MsdkScanWrapper wrapper = new MsdkScanWrapper(mzMLScan);
+      double[][] mzIntensities = null;
+
+      // apply mass detection
+      if (ms1Detector != null && wrapper.getMSLevel() == 1) {
+        mzIntensities = applyMassDetection(ms1Detector, wrapper);
+      } else if (ms2Detector != null && wrapper.getMSLevel() >= 2) {
+        mzIntensities = applyMassDetection(ms2Detector, wrapper);
+        if (denormalizeMSnScans) {
+          ScanUtils.denormalizeIntensitiesMultiplyByInjectTime(mzIntensities[1],
+              wrapper.getInjectionTime());
         }
       }
 
-      if (newScan == null) {
-        // mz arrays are sorted within this method to ensure order in scans
-        newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan);
+      if (mzIntensities != null) {
+        // scans sorting is enforced in {@link AbstractStorableSpectrum#setDataPoints}
+        // create mass list and scan. Override data points and spectrum type
+        Scan newScan = ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan,
+            mzIntensities[0], mzIntensities[1], MassSpectrumType.CENTROIDED);
+        ScanPointerMassList newMassList = new ScanPointerMassList(newScan);
+        newScan.addMassList(newMassList);
+        return newScan;
       }
-
-      newMZmineFile.addScan(newScan);
-      parsedScans++;
-      description =
-          "Importing " + this.file.getName() + ", parsed " + parsedScans + "/" + totalScans
-              + " scans";
     }
+
+    // mz arrays are sorted within this method to ensure order in scans
+    return ConversionUtils.msdkScanToSimpleScan(newMZmineFile, mzMLScan);
   }
 
   public void buildIonMobilityFile(io.github.msdk.datamodel.RawDataFile file,
@@ -29,8 +29,10 @@ import io.github.msdk.datamodel.Chromatogram;
 import io.github.msdk.datamodel.MsScan;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.MzMLFileImportMethod;
+import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.ByteBufferInputStream;
 import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.TagTracker;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
@@ -40,7 +42,6 @@ import java.util.regex.Pattern;
 import javolution.text.CharArray;
 import javolution.xml.internal.stream.XMLStreamReaderImpl;
 import javolution.xml.stream.XMLStreamReader;
-import org.apache.commons.io.IOUtils;
 
 /**
  * <p>
@@ -524,7 +525,7 @@ public class MzMLParser {
         .contentEquals(MzMLTags.TAG_BINARY) && !vars.skipBinaryDataArray) {
       if (tracker.inside(MzMLTags.TAG_SPECTRUM_LIST) && importer.getMsScanPredicate()
           .test(vars.spectrum)) {
-        vars.spectrum.setInputStream(IOUtils.toInputStream(xmlStreamReader.getText()));
+        vars.spectrum.setInputStream(toPayloadStream(xmlStreamReader.getText()));
         switch (vars.binaryDataInfo.getArrayType().getAccession()) {
           case MzMLCV.cvMzArray:
             vars.spectrum.getMzValues();
@@ -536,7 +537,7 @@ public class MzMLParser {
         }
       } else if (tracker.inside(MzMLTags.TAG_CHROMATOGRAM_LIST)
           && importer.getChromatogramPredicate().test(vars.chromatogram)) {
-        vars.chromatogram.setInputStream(IOUtils.toInputStream(xmlStreamReader.getText()));
+        vars.chromatogram.setInputStream(toPayloadStream(xmlStreamReader.getText()));
         switch (vars.binaryDataInfo.getArrayType().getAccession()) {
           case MzMLCV.cvRetentionTimeArray:
             vars.chromatogram.getRetentionTimes();
@@ -550,6 +551,23 @@ public class MzMLParser {
     }
   }
 
+  /**
+   * Copies the base64 payload of the current binary tag into a byte buffer without creating a
+   * String. The payload is decoded right away, so the binary data info now points to the start of
+   * this buffer.
+   */
+  private ByteBufferInputStream toPayloadStream(CharArray text) {
+    final char[] chars = text.array();
+    final int offset = text.offset();
+    final byte[] bytes = new byte[text.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      // base64 is pure ASCII
+      bytes[i] = (byte) chars[offset + i];
+    }
+    vars.binaryDataInfo.setPosition(0);
+    return new ByteBufferInputStream(ByteBuffer.wrap(bytes));
+  }
+
   /**
    * <p>
    * Call this method when the <code>xmlStreamReader</code> enters <code>&lt;cvParam&gt;</code> tag
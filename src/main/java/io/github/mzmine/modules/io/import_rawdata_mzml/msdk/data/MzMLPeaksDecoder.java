@@ -32,8 +32,13 @@ import io.github.mzmine.modules.io.import_rawdata_mzml.msdk.util.MSNumpress;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 import org.apache.commons.io.IOUtils;
 
@@ -61,16 +66,13 @@ public class MzMLPeaksDecoder {
 
     int lengthIn = binaryDataInfo.getEncodedLength();
     int numPoints = binaryDataInfo.getArrayLength();
-    InputStream is = null;
 
-    if (inputStream instanceof ByteBufferInputStream) {
-      ByteBufferInputStream mappedByteBufferInputStream = (ByteBufferInputStream) inputStream;
-      mappedByteBufferInputStream.constrain(binaryDataInfo.getPosition(), lengthIn);
-      is = Base64.getDecoder().wrap(mappedByteBufferInputStream);
-    } else {
-      is = Base64.getDecoder().wrap(inputStream);
+    if (inputStream instanceof ByteBufferInputStream mapped) {
+      return lengthIn == 0 ? new float[0] : decodeMappedToFloat(mapped, binaryDataInfo, data);
     }
 
+    InputStream is = Base64.getDecoder().wrap(inputStream);
+
     // for some reason there sometimes might be zero length <peaks> tags
     // (ms2 usually)
     // in this case we just return an empty result
@@ -204,16 +206,12 @@ public class MzMLPeaksDecoder {
     int lengthIn = binaryDataInfo.getEncodedLength();
     int numPoints = binaryDataInfo.getArrayLength();
 
-    InputStream is = null;
-
-    if (inputStream instanceof ByteBufferInputStream) {
-      ByteBufferInputStream mappedByteBufferInputStream = (ByteBufferInputStream) inputStream;
-      mappedByteBufferInputStream.constrain(binaryDataInfo.getPosition(), lengthIn);
-      is = Base64.getDecoder().wrap(mappedByteBufferInputStream);
-    } else {
-      is = Base64.getDecoder().wrap(inputStream);
+    if (inputStream instanceof ByteBufferInputStream mapped) {
+      return lengthIn == 0 ? new double[0] : decodeMappedToDouble(mapped, binaryDataInfo, data);
     }
 
+    InputStream is = Base64.getDecoder().wrap(inputStream);
+
     // for some reason there sometimes might be zero length <peaks> tags
     // (ms2 usually)
     // in this case we just return an empty result
@@ -328,4 +326,147 @@ public class MzMLPeaksDecoder {
     return data;
   }
 
+
+  /**
+   * Decodes a binary array directly from the memory mapped file. Base64 is decoded from the mapped
+   * region, zlib inflates into a single byte array and values are read in bulk. Does not change the
+   * position of the stream, so multiple threads can decode from the same stream.
+   */
+  private static float[] decodeMappedToFloat(ByteBufferInputStream mapped,
+      MzMLBinaryDataInfo binaryDataInfo, float[] data) throws DataFormatException, MSDKException {
+    final int numPoints = binaryDataInfo.getArrayLength();
+    if (data == null || data.length < numPoints) {
+      data = new float[numPoints];
+    }
+
+    final ByteBuffer bytes = decodeMappedBytes(mapped, binaryDataInfo);
+    final MzMLCompressionType compression = binaryDataInfo.getCompressionType();
+    if (isNumpress(compression)) {
+      final int decoded = switch (compression) {
+        case NUMPRESS_LINPRED, NUMPRESS_LINPRED_ZLIB ->
+            MSNumpress.decodeLinear(bytes.array(), bytes.limit(), data);
+        case NUMPRESS_POSINT, NUMPRESS_POSINT_ZLIB ->
+            MSNumpress.decodePic(bytes.array(), bytes.limit(), data);
+        default -> MSNumpress.decodeSlof(bytes.array(), bytes.limit(), data);
+      };
+      if (decoded < 0) {
+        throw new MSDKException("MSNumpress decoder failed for " + compression.getName());
+      }
+      return data;
+    }
+
+    try {
+      if (getPrecision(binaryDataInfo) == 32) {
+        bytes.asFloatBuffer().get(data, 0, numPoints);
+      } else {
+        for (int i = 0; i < numPoints; i++) {
+          data[i] = (float) bytes.getDouble(i * Double.BYTES);
+        }
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new MSDKException(
+          "Couldn't obtain values. Please make sure the scan/chromatogram passes the Predicate.");
+    }
+    return data;
+  }
+
+  /**
+   * Decodes a binary array directly from the memory mapped file. See
+   * {@link #decodeMappedToFloat(ByteBufferInputStream, MzMLBinaryDataInfo, float[])}
+   */
+  private static double[] decodeMappedToDouble(ByteBufferInputStream mapped,
+      MzMLBinaryDataInfo binaryDataInfo, double[] data) throws DataFormatException, MSDKException {
+    final int numPoints = binaryDataInfo.getArrayLength();
+    if (data == null || data.length < numPoints) {
+      data = new double[numPoints];
+    }
+
+    final ByteBuffer bytes = decodeMappedBytes(mapped, binaryDataInfo);
+    final MzMLCompressionType compression = binaryDataInfo.getCompressionType();
+    if (isNumpress(compression)) {
+      final int decoded = switch (compression) {
+        case NUMPRESS_LINPRED, NUMPRESS_LINPRED_ZLIB ->
+            MSNumpress.decodeLinear(bytes.array(), bytes.limit(), data);
+        case NUMPRESS_POSINT, NUMPRESS_POSINT_ZLIB ->
+            MSNumpress.decodePic(bytes.array(), bytes.limit(), data);
+        default -> MSNumpress.decodeSlof(bytes.array(), bytes.limit(), data);
+      };
+      if (decoded < 0) {
+        throw new MSDKException("MSNumpress decoder failed for " + compression.getName());
+      }
+      return data;
+    }
+
+    try {
+      if (getPrecision(binaryDataInfo) == 64) {
+        bytes.asDoubleBuffer().get(data, 0, numPoints);
+      } else {
+        for (int i = 0; i < numPoints; i++) {
+          data[i] = bytes.getFloat(i * Float.BYTES);
+        }
+      }
+    } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new MSDKException(
+          "Couldn't obtain values. Please make sure the scan/chromatogram passes the Predicate.");
+    }
+    return data;
+  }
+
+  /**
+   * @return the base64 decoded and inflated bytes in little endian order, backed by an array that
+   * starts at index 0.
+   */
+  private static ByteBuffer decodeMappedBytes(ByteBufferInputStream mapped,
+      MzMLBinaryDataInfo binaryDataInfo) throws DataFormatException {
+    final ByteBuffer encoded = mapped.slice(binaryDataInfo.getPosition(),
+        binaryDataInfo.getEncodedLength());
+    ByteBuffer bytes = Base64.getDecoder().decode(encoded);
+
+    final MzMLCompressionType compression = binaryDataInfo.getCompressionType();
+    if (compression == MzMLCompressionType.ZLIB
+        || compression == MzMLCompressionType.NUMPRESS_LINPRED_ZLIB
+        || compression == MzMLCompressionType.NUMPRESS_POSINT_ZLIB
+        || compression == MzMLCompressionType.NUMPRESS_SHLOGF_ZLIB) {
+      bytes = inflate(bytes, binaryDataInfo.getArrayLength() * Double.BYTES);
+    }
+    return bytes.order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static ByteBuffer inflate(ByteBuffer compressed, int expectedLength)
+      throws DataFormatException {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(compressed);
+      byte[] result = new byte[Math.max(expectedLength, compressed.remaining() * 2) + 1];
+      int length = 0;
+      while (!inflater.finished()) {
+        if (length == result.length) {
+          result = Arrays.copyOf(result, result.length * 2);
+        }
+        final int inflated = inflater.inflate(result, length, result.length - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      return ByteBuffer.wrap(result, 0, length);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  private static boolean isNumpress(MzMLCompressionType compression) {
+    return compression != null && compression != MzMLCompressionType.ZLIB
+           && compression != MzMLCompressionType.NO_COMPRESSION;
+  }
+
+  private static int getPrecision(MzMLBinaryDataInfo binaryDataInfo) {
+    return switch (binaryDataInfo.getBitLength()) {
+      case THIRTY_TWO_BIT_FLOAT, THIRTY_TWO_BIT_INTEGER -> 32;
+      case SIXTY_FOUR_BIT_FLOAT, SIXTY_FOUR_BIT_INTEGER -> 64;
+      default -> throw new IllegalArgumentException(
+          "Precision MUST be specified and be either 32-bit or 64-bit, "
+          + "if MS-NUMPRESS compression was not used");
+    };
+  }
 }
@@ -271,6 +271,30 @@ public class ByteBufferInputStream extends InputStream {
     return new ByteBufferInputStream(byteBuffer.clone(), size, curr, new boolean[n]);
   }
 
+  /**
+   * Creates a view of a region of the underlying buffers without changing the position of this
+   * stream, so it can be used by multiple threads at the same time. Regions that span two chunks
+   * are copied.
+   *
+   * @param position the absolute start position
+   * @param length   the number of bytes
+   * @return a buffer with position 0 and limit length
+   */
+  public ByteBuffer slice(final long position, final int length) {
+    final int chunk = (int) (position >>> CHUNK_SHIFT);
+    final int offset = (int) (position - ((long) chunk << CHUNK_SHIFT));
+    final ByteBuffer buffer = byteBuffer[chunk];
+    if (offset + length <= buffer.capacity()) {
+      return buffer.slice(offset, length);
+    }
+
+    final byte[] copy = new byte[length];
+    final int first = buffer.capacity() - offset;
+    buffer.get(offset, copy, 0, first);
+    byteBuffer[chunk + 1].get(0, copy, first, length - first);
+    return ByteBuffer.wrap(copy);
+  }
+
   /**
    * <p>constrain.</p>
    *
@@ -26,10 +26,13 @@
 package io.github.mzmine.modules.io.projectload;
 
 import com.google.common.io.CountingInputStream;
+import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.version_3_0.FeatureListLoadTask;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileSnapshotReader;
 import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
 import io.github.mzmine.modules.io.projectsave.RawDataFileSaveHandler;
+import io.github.mzmine.modules.io.projectsave.RawDataFileSnapshotWriter;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.ProjectManager;
 import io.github.mzmine.project.impl.MZmineProjectImpl;
@@ -182,6 +185,8 @@ public class ProjectOpeningTask extends AbstractTask {
           loadConfiguration(cis);
         } else if (entryName.equals(ProjectSavingTask.PARAMETERS_FILENAME)) {
           loadUserParameters(cis);
+        } else if (entryName.startsWith(RawDataFileSnapshotWriter.SNAPSHOT_FOLDER)) {
+          loadRawDataFileSnapshot(cis);
         } else if (entryName.equals(RawDataFileSaveHandler.RAW_DATA_IMPORT_BATCH_FILENAME)) {
           loadRawDataFiles(cis, zipFile);
         } else if(entryName.equals(ProjectSavingTask.STANDALONE_FILENAME)) {
@@ -380,6 +385,15 @@ public class ProjectOpeningTask extends AbstractTask {
 
   }
 
+  /**
+   * Loads a raw data file from its binary snapshot without re-importing the file.
+   */
+  private void loadRawDataFileSnapshot(InputStream is) throws IOException {
+    currentLoadedObjectName = ("MS data file snapshot");
+    final RawDataFile file = RawDataFileSnapshotReader.read(is, newProject);
+    logger.finest(() -> "Loaded snapshot of raw data file " + file.getName());
+  }
+
   private boolean loadRawDataFiles(InputStream is, ZipFile zipFile) {
     currentLoadedObjectName = ("MS data files");
     rawDataFileOpenHandler.setBatchFileStream(is);
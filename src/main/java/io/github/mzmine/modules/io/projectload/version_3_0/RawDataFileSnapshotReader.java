@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.io.projectsave.RawDataFileSnapshotWriter;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.scene.paint.Color;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads a raw data file snapshot written by {@link RawDataFileSnapshotWriter}. The decoded scans
+ * and mass lists are directly stored in the {@link MemoryMapStorage} of the new file, so loading
+ * does not require to re-run the import or mass detection.
+ */
+public class RawDataFileSnapshotReader {
+
+  private static final Logger logger = Logger.getLogger(RawDataFileSnapshotReader.class.getName());
+
+  private final DataInputStream in;
+  private byte[] buffer = new byte[0];
+
+  private RawDataFileSnapshotReader(@NotNull InputStream stream) {
+    this.in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+  }
+
+  /**
+   * Reads a snapshot and adds the resulting raw data file to the project.
+   *
+   * @param stream  the snapshot stream (not closed)
+   * @param project the target project
+   * @return the loaded raw data file
+   */
+  public static RawDataFile read(@NotNull InputStream stream, @NotNull MZmineProject project)
+      throws IOException {
+    final RawDataFile file;
+    try {
+      file = new RawDataFileSnapshotReader(stream).readFile();
+    } catch (XMLStreamException | ParserConfigurationException | SAXException e) {
+      throw new IOException("Cannot read raw data file snapshot", e);
+    }
+    project.addFile(file);
+    return file;
+  }
+
+  private RawDataFile readFile()
+      throws IOException, XMLStreamException, ParserConfigurationException, SAXException {
+    if (in.readInt() != RawDataFileSnapshotWriter.MAGIC) {
+      throw new IOException("Not a raw data file snapshot");
+    }
+    final int version = in.readInt();
+    if (version > RawDataFileSnapshotWriter.FORMAT_VERSION) {
+      throw new IOException("Unsupported raw data file snapshot version " + version);
+    }
+
+    final String name = readString();
+    final String path = readString();
+    final String color = readString();
+    final String startTimeStamp = readString();
+    final String appliedMethods = readString();
+
+    final RawDataFile file = MZmineCore.createNewFile(name, path,
+        MemoryMapStorage.forRawDataFile());
+    if (color != null) {
+      file.setColor(Color.web(color));
+    }
+    if (startTimeStamp != null) {
+      file.setStartTimeStamp(LocalDateTime.parse(startTimeStamp));
+    }
+
+    // metadata columns
+    final int numScans = in.readInt();
+    final int[] scanNumbers = new int[numScans];
+    final int[] msLevels = new int[numScans];
+    final float[] rts = new float[numScans];
+    final PolarityType[] polarities = new PolarityType[numScans];
+    final MassSpectrumType[] spectrumTypes = new MassSpectrumType[numScans];
+    final float[] injectionTimes = new float[numScans];
+    final double[] scanRanges = new double[numScans * 2];
+    final String[] scanDefinitions = new String[numScans];
+    final String[] msMsInfos = new String[numScans];
+    for (int i = 0; i < numScans; i++) {
+      scanNumbers[i] = in.readInt();
+    }
+    for (int i = 0; i < numScans; i++) {
+      msLevels[i] = in.readInt();
+    }
+    for (int i = 0; i < numScans; i++) {
+      rts[i] = in.readFloat();
+    }
+    for (int i = 0; i < numScans; i++) {
+      polarities[i] = PolarityType.valueOf(readString());
+    }
+    for (int i = 0; i < numScans; i++) {
+      spectrumTypes[i] = MassSpectrumType.valueOf(readString());
+    }
+    for (int i = 0; i < numScans; i++) {
+      injectionTimes[i] = in.readFloat();
+    }
+    for (int i = 0; i < scanRanges.length; i++) {
+      scanRanges[i] = in.readDouble();
+    }
+    for (int i = 0; i < numScans; i++) {
+      scanDefinitions[i] = readString();
+    }
+    for (int i = 0; i < numScans; i++) {
+      msMsInfos[i] = readString();
+    }
+
+    // data blocks
+    final MemoryMapStorage massListStorage = MemoryMapStorage.forMassList();
+    for (int i = 0; i < numScans; i++) {
+      final int numDp = in.readInt();
+      final double[] mzs = readDoubles(numDp);
+      final double[] intensities = readDoubles(numDp);
+      final Float injectionTime = Float.isNaN(injectionTimes[i]) ? null : injectionTimes[i];
+
+      final SimpleScan scan = new SimpleScan(file, scanNumbers[i], msLevels[i], rts[i], null, mzs,
+          intensities, spectrumTypes[i], polarities[i], scanDefinitions[i],
+          Range.closed(scanRanges[i * 2], scanRanges[i * 2 + 1]), injectionTime);
+
+      final byte massListType = in.readByte();
+      switch (massListType) {
+        case RawDataFileSnapshotWriter.MASS_LIST_STORED -> {
+          final int numMasses = in.readInt();
+          scan.addMassList(new SimpleMassList(massListStorage, readDoubles(numMasses),
+              readDoubles(numMasses)));
+        }
+        case RawDataFileSnapshotWriter.MASS_LIST_SCAN_POINTER ->
+            scan.addMassList(new ScanPointerMassList(scan));
+        default -> {
+        }
+      }
+      file.addScan(scan);
+    }
+
+    // ms ms info may reference other scans - set after all scans were added
+    final List<RawDataFile> files = List.of(file);
+    final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+    for (int i = 0; i < numScans; i++) {
+      if (msMsInfos[i] == null) {
+        continue;
+      }
+      final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(
+          new StringReader(msMsInfos[i]));
+      while (reader.hasNext() && !reader.isStartElement()) {
+        reader.next();
+      }
+      final Scan scan = file.getScan(i);
+      if (scan instanceof SimpleScan simpleScan) {
+        simpleScan.setMsMsInfo(MsMsInfo.loadFromXML(reader, file, files));
+      }
+      reader.close();
+    }
+
+    loadAppliedMethods(file, appliedMethods);
+    return file;
+  }
+
+  private void loadAppliedMethods(@NotNull RawDataFile file, @Nullable String xml)
+      throws ParserConfigurationException, IOException, SAXException {
+    if (xml == null) {
+      return;
+    }
+    final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .parse(new InputSource(new StringReader(xml)));
+    final NodeList methodElements = document.getElementsByTagName(
+        CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+    for (int i = 0; i < methodElements.getLength(); i++) {
+      FeatureListAppliedMethod method = SimpleFeatureListAppliedMethod.loadValueFromXML(
+          (Element) methodElements.item(i));
+      if (method != null) {
+        file.getAppliedMethods().add(method);
+      } else {
+        logger.log(Level.WARNING, "Cannot load applied method of file " + file.getName());
+      }
+    }
+  }
+
+  private double[] readDoubles(int length) throws IOException {
+    final int numBytes = length * Double.BYTES;
+    if (buffer.length < numBytes) {
+      buffer = new byte[numBytes];
+    }
+    in.readFully(buffer, 0, numBytes);
+    final double[] values = new double[length];
+    ByteBuffer.wrap(buffer, 0, numBytes).asDoubleBuffer().get(values);
+    return values;
+  }
+
+  @Nullable
+  private String readString() throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -32,7 +32,10 @@ public enum ProjectSaveOption {
   STANDALONE("Standalone (large/flexible)", "Large flexible format that contains the raw data"), //
   REFERENCING("Referencing (small)",
       "Smaller format that points to the raw data files in their original path. "
-      + "Project might be corrupted by removing, renaming, or moving files.");
+      + "Project might be corrupted by removing, renaming, or moving files."), //
+  SNAPSHOT("Snapshot (large/fast loading)",
+      "Large format that contains the already imported scans and mass lists. "
+      + "Loading does not require to re-import the raw data files.");
 
   public final String name;
   public final String description;
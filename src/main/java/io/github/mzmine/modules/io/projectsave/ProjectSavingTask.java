@@ -154,7 +154,7 @@ public class ProjectSavingTask extends AbstractTask {
       setStatus(TaskStatus.PROCESSING);
 
       switch (projectType) {
-        case STANDALONE -> savedProject.setStandalone(true);
+        case STANDALONE, SNAPSHOT -> savedProject.setStandalone(true);
         case REFERENCING -> savedProject.setStandalone(false);
       }
 
@@ -328,7 +328,8 @@ public class ProjectSavingTask extends AbstractTask {
 
     AtomicBoolean finished = new AtomicBoolean(false);
     rawDataFileSaveHandler = new RawDataFileSaveHandler(savedProject, zipStream,
-        Objects.requireNonNullElse(savedProject.isStandalone(), true), getModuleCallDate());
+        Objects.requireNonNullElse(savedProject.isStandalone(), true),
+        projectType == ProjectSaveOption.SNAPSHOT, getModuleCallDate());
     rawDataFileSaveHandler.addTaskStatusListener((task, newStatus, oldStatus) -> {
       switch (newStatus) {
         case WAITING, PROCESSING -> {
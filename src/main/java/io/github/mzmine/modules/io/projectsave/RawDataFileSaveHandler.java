@@ -84,6 +84,8 @@ public class RawDataFileSaveHandler extends AbstractTask {
   private final ZipOutputStream zipStream;
   private double progress = 0;
   private final List<RawDataFile> files;
+  // files that are saved as binary snapshot instead of the import batch
+  private final List<RawDataFile> snapshotFiles;
   private final boolean saveFilesInProject;
   private final String prefix = "Saving raw data files: ";
   private String description;
@@ -97,13 +99,26 @@ public class RawDataFileSaveHandler extends AbstractTask {
 
   public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
       boolean saveFilesInProject, @NotNull Instant moduleCallDate) {
+    this(project, zipOutputStream, saveFilesInProject, false, moduleCallDate);
+  }
+
+  /**
+   * @param saveSnapshots save the decoded scans and mass lists of all supported files as binary
+   *                      snapshots (see {@link RawDataFileSnapshotWriter}). Other files are saved
+   *                      as import batch.
+   */
+  public RawDataFileSaveHandler(MZmineProject project, ZipOutputStream zipOutputStream,
+      boolean saveFilesInProject, boolean saveSnapshots, @NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
     this.project = project;
     this.zipStream = zipOutputStream;
     this.saveFilesInProject = saveFilesInProject;
-    files = List.of(project.getDataFiles());
+    final List<RawDataFile> allFiles = List.of(project.getDataFiles());
+    snapshotFiles = saveSnapshots ? allFiles.stream()
+        .filter(RawDataFileSnapshotWriter::isSnapshotSupported).toList() : List.of();
+    files = allFiles.stream().filter(file -> !snapshotFiles.contains(file)).toList();
     numSteps = 1 /*dissect + merge */ + (saveFilesInProject ? files.size() : 0) /*save files*/
-        + 1 /*save batch file*/;
+        + snapshotFiles.size() /*save snapshots*/ + 1 /*save batch file*/;
     stepProgress = 1 / (double) numSteps;
   }
 
@@ -124,8 +139,28 @@ public class RawDataFileSaveHandler extends AbstractTask {
     return path.toString();
   }
 
+  /**
+   * Writes the binary snapshots. Must be written before the import batch so that the files are
+   * available before the remaining files are imported.
+   */
+  private void saveRawDataFileSnapshots() throws IOException {
+    for (int i = 0; i < snapshotFiles.size(); i++) {
+      if (isCanceled()) {
+        return;
+      }
+      final RawDataFile file = snapshotFiles.get(i);
+      description = prefix + "Writing snapshot of " + file.getName();
+      zipStream.putNextEntry(new ZipEntry(RawDataFileSnapshotWriter.getZipPath(i)));
+      RawDataFileSnapshotWriter.write(file, zipStream);
+      zipStream.closeEntry();
+      progress += stepProgress;
+    }
+  }
+
   public boolean saveRawDataFilesAsBatch() throws IOException, ParserConfigurationException {
 
+    saveRawDataFileSnapshots();
+
     List<BatchQueue> cleanedBatchQueues = List.of(RawDataSavingUtils.makeBatchQueue(files));
     progress += stepProgress;
 
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.ImagingRawDataFile;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Writes the already decoded scans and mass lists of a {@link RawDataFile} as a binary snapshot.
+ * Loading a snapshot does not require to re-run the import and mass detection of the data file (see
+ * {@link io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileSnapshotReader}).
+ * <p>
+ * Layout (big endian): header (magic, version, file name, path, color, start time stamp, applied
+ * methods as xml), scan metadata columns (one column per property over all scans), then per scan a
+ * block of mz values, intensity values, mass list mz values and mass list intensity values. The
+ * snapshot is written into a zip entry and compressed with the zip deflater.
+ */
+public class RawDataFileSnapshotWriter {
+
+  public static final String SNAPSHOT_FOLDER = "rawdata_snapshots/";
+  public static final String SNAPSHOT_SUFFIX = ".mzsnapshot";
+  public static final int MAGIC = 0x4D5A534E; // MZSN
+  public static final int FORMAT_VERSION = 1;
+
+  public static final String XML_APPLIED_METHODS_ELEMENT = "appliedmethods";
+
+  // mass list flags
+  public static final byte MASS_LIST_NONE = 0;
+  public static final byte MASS_LIST_STORED = 1;
+  public static final byte MASS_LIST_SCAN_POINTER = 2;
+
+  private final DataOutputStream out;
+  private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+  private RawDataFileSnapshotWriter(@NotNull OutputStream stream) {
+    // do not close - the stream might be a zip stream
+    this.out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+  }
+
+  /**
+   * Only data files with regular scans can be saved as snapshots. IMS and imaging files are saved
+   * as import batch.
+   *
+   * @return true if the file can be written as a snapshot
+   */
+  public static boolean isSnapshotSupported(@NotNull RawDataFile file) {
+    return !(file instanceof IMSRawDataFile) && !(file instanceof ImagingRawDataFile);
+  }
+
+  public static String getZipPath(int fileIndex) {
+    return SNAPSHOT_FOLDER + fileIndex + SNAPSHOT_SUFFIX;
+  }
+
+  /**
+   * Writes the snapshot of the file to the stream. The stream is flushed but not closed.
+   *
+   * @param file   the raw data file
+   * @param stream the target stream
+   */
+  public static void write(@NotNull RawDataFile file, @NotNull OutputStream stream)
+      throws IOException {
+    try {
+      new RawDataFileSnapshotWriter(stream).writeFile(file);
+    } catch (ParserConfigurationException | TransformerException | XMLStreamException e) {
+      throw new IOException("Cannot write snapshot of raw data file " + file.getName(), e);
+    }
+  }
+
+  private void writeFile(@NotNull RawDataFile file)
+      throws IOException, ParserConfigurationException, TransformerException, XMLStreamException {
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    writeString(file.getName());
+    writeString(file.getAbsolutePath());
+    writeString(file.getColor() != null ? file.getColor().toString() : null);
+    writeString(file.getStartTimeStamp() != null ? file.getStartTimeStamp().toString() : null);
+    writeString(appliedMethodsToXml(file));
+
+    final var scans = file.getScans();
+    final int numScans = scans.size();
+    out.writeInt(numScans);
+
+    // metadata columns
+    for (Scan scan : scans) {
+      out.writeInt(scan.getScanNumber());
+    }
+    for (Scan scan : scans) {
+      out.writeInt(scan.getMSLevel());
+    }
+    for (Scan scan : scans) {
+      out.writeFloat(scan.getRetentionTime());
+    }
+    for (Scan scan : scans) {
+      writeString(scan.getPolarity().name());
+    }
+    for (Scan scan : scans) {
+      writeString(scan.getSpectrumType().name());
+    }
+    for (Scan scan : scans) {
+      final Float injectionTime = scan.getInjectionTime();
+      out.writeFloat(injectionTime != null ? injectionTime : Float.NaN);
+    }
+    for (Scan scan : scans) {
+      out.writeDouble(scan.getScanningMZRange().lowerEndpoint());
+      out.writeDouble(scan.getScanningMZRange().upperEndpoint());
+    }
+    for (Scan scan : scans) {
+      writeString(scan.getScanDefinition());
+    }
+    for (Scan scan : scans) {
+      writeString(msMsInfoToXml(scan.getMsMsInfo()));
+    }
+
+    // data blocks
+    double[] mzs = new double[0];
+    double[] intensities = new double[0];
+    for (Scan scan : scans) {
+      final int numDp = scan.getNumberOfDataPoints();
+      mzs = scan.getMzValues(mzs);
+      intensities = scan.getIntensityValues(intensities);
+      out.writeInt(numDp);
+      writeDoubles(mzs, numDp);
+      writeDoubles(intensities, numDp);
+
+      final MassList massList = scan.getMassList();
+      if (massList == null) {
+        out.writeByte(MASS_LIST_NONE);
+      } else if (massList instanceof ScanPointerMassList) {
+        out.writeByte(MASS_LIST_SCAN_POINTER);
+      } else {
+        out.writeByte(MASS_LIST_STORED);
+        final int numMasses = massList.getNumberOfDataPoints();
+        mzs = massList.getMzValues(mzs);
+        intensities = massList.getIntensityValues(intensities);
+        out.writeInt(numMasses);
+        writeDoubles(mzs, numMasses);
+        writeDoubles(intensities, numMasses);
+      }
+    }
+    out.flush();
+  }
+
+  private void writeDoubles(double[] values, int length) throws IOException {
+    final int numBytes = length * Double.BYTES;
+    if (buffer.capacity() < numBytes) {
+      buffer = ByteBuffer.allocate(numBytes);
+    }
+    buffer.clear();
+    buffer.asDoubleBuffer().put(values, 0, length);
+    out.write(buffer.array(), 0, numBytes);
+  }
+
+  /**
+   * Writes the length of the UTF-8 bytes (-1 for null) followed by the bytes. Not limited to 64 kB
+   * like {@link DataOutputStream#writeUTF(String)}.
+   */
+  private void writeString(@Nullable String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  @Nullable
+  private static String msMsInfoToXml(@Nullable MsMsInfo info) throws XMLStreamException {
+    if (info == null) {
+      return null;
+    }
+    // the copy does not reference the fragment scan itself, it is set on load
+    final StringWriter writer = new StringWriter();
+    final XMLStreamWriter xmlWriter = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+    info.createCopy().writeToXML(xmlWriter);
+    xmlWriter.flush();
+    xmlWriter.close();
+    return writer.toString();
+  }
+
+  @NotNull
+  private static String appliedMethodsToXml(@NotNull RawDataFile file)
+      throws ParserConfigurationException, TransformerException {
+    final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+        .newDocument();
+    final Element root = document.createElement(XML_APPLIED_METHODS_ELEMENT);
+    document.appendChild(root);
+    for (FeatureListAppliedMethod appliedMethod : file.getAppliedMethods()) {
+      Element methodElement = document.createElement(CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+      appliedMethod.saveValueToXML(methodElement);
+      root.appendChild(methodElement);
+    }
+
+    final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+    transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+    transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+    final StringWriter writer = new StringWriter();
+    transformer.transform(new DOMSource(document), new StreamResult(writer));
+    return writer.toString();
+  }
+}
@@ -57,6 +57,7 @@ import io.github.mzmine.datamodel.features.types.annotations.iin.IonNetworkIDTyp
 import io.github.mzmine.datamodel.features.types.annotations.iin.IonTypeType;
 import io.github.mzmine.datamodel.features.types.fx.ColumnID;
 import io.github.mzmine.datamodel.features.types.fx.ColumnType;
+import io.github.mzmine.datamodel.features.types.fx.DataTypeCellValueFactory;
 import io.github.mzmine.datamodel.features.types.modifiers.ExpandableType;
 import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
 import io.github.mzmine.datamodel.features.types.numbers.AreaType;
@@ -78,6 +79,7 @@ import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.datatype.DataTypeCheckListParameter;
 import io.github.mzmine.util.javafx.FxIconUtil;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -90,15 +92,18 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ObservableValue;
-import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Pos;
@@ -108,6 +113,7 @@ import javafx.scene.control.MenuItem;
 import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeTableColumn;
+import javafx.scene.control.TreeTableColumn.SortType;
 import javafx.scene.control.TreeTablePosition;
 import javafx.scene.control.TreeTableView;
 import javafx.scene.image.ImageView;
@@ -131,8 +137,12 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     ListChangeListener<FeatureListRow> {
 
   private static final Logger logger = Logger.getLogger(FeatureTableFX.class.getName());
-  private final FilteredList<TreeItem<ModularFeatureListRow>> filteredRowItems;
-  private final ObservableList<TreeItem<ModularFeatureListRow>> rowItems;
+  // all rows in feature list order, the root only holds the filtered and sorted rows
+  private final List<TreeItem<ModularFeatureListRow>> rowItems = new ArrayList<>();
+  // only the latest filter and sort update is shown
+  private final AtomicLong rowItemsUpdate = new AtomicLong(0);
+  private @Nullable Predicate<ModularFeatureListRow> rowFilter;
+  private boolean applyingRowItems = false;
   // parameters
   private final ParameterSet parameters;
   private final DataTypeCheckListParameter rowTypesParameter;
@@ -160,9 +170,14 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     featureTypesParameter = parameters.getParameter(
         FeatureTableFXParameters.showFeatureTypeColumns);
 
-    rowItems = FXCollections.observableArrayList();
-    filteredRowItems = new FilteredList<>(rowItems);
     newColumnMap = new HashMap<>();
+    // sorting runs on a background thread, the rows are replaced once they are sorted
+    setSortPolicy(table -> {
+      if (!applyingRowItems) {
+        updateRowItems();
+      }
+      return true;
+    });
     initHandleDoubleClicks();
     setContextMenu(new FeatureTableContextMenu(this));
 
@@ -458,15 +473,8 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     }
 
     MZmineCore.runLater(() -> {
-      getRoot().getChildren().clear();
-      rowItems.clear();
-      // add rows
-      for (FeatureListRow row : featureListProperty.get().getRows()) {
-        final ModularFeatureListRow mrow = (ModularFeatureListRow) row;
-        rowItems.add(new TreeItem<>(mrow));
-      }
-      getRoot().getChildren().addAll(filteredRowItems);
-      this.sort();
+      setRowItems(featureListProperty.get());
+      updateRowItems();
     });
   }
 
@@ -653,9 +661,138 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     return headerLabel;
   }
 
-  @NotNull
-  public FilteredList<TreeItem<ModularFeatureListRow>> getFilteredRowItems() {
-    return filteredRowItems;
+  /**
+   * Only shows the rows that match the filter. The filter is applied on a background thread.
+   *
+   * @param rowFilter the filter or null to show all rows
+   */
+  public void setRowFilter(@Nullable Predicate<ModularFeatureListRow> rowFilter) {
+    this.rowFilter = rowFilter;
+    updateRowItems();
+  }
+
+  private void setRowItems(@NotNull ModularFeatureList flist) {
+    rowItems.clear();
+    for (FeatureListRow row : flist.getRows()) {
+      rowItems.add(new TreeItem<>((ModularFeatureListRow) row));
+    }
+  }
+
+  /**
+   * Filters and sorts all rows and shows the result. Without filter and sort order, the rows are
+   * shown directly. Otherwise, the sort keys of all rows are extracted once and the rows are
+   * filtered and sorted on a background thread, so that large feature lists do not block the GUI.
+   * Sort keys of data type columns are read directly from the data model, other columns are
+   * evaluated here. Must be called on the FX thread.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void updateRowItems() {
+    final long update = rowItemsUpdate.incrementAndGet();
+    final Predicate<ModularFeatureListRow> filter = rowFilter;
+    if (filter == null && getSortOrder().isEmpty()) {
+      applyRowItems(rowItems);
+      return;
+    }
+
+    final List<TreeItem<ModularFeatureListRow>> items = List.copyOf(rowItems);
+    final List<SortColumn> sortColumns = new ArrayList<>();
+    for (TreeTableColumn<ModularFeatureListRow, ?> column : getSortOrder()) {
+      final Comparator comparator =
+          column.getSortType() == SortType.DESCENDING ? column.getComparator().reversed()
+              : column.getComparator();
+      if (column.getCellValueFactory() instanceof DataTypeCellValueFactory factory) {
+        sortColumns.add(new SortColumn(factory, null, comparator));
+      } else {
+        // cell value factories may access the FX scene graph
+        final Object[] keys = new Object[items.size()];
+        for (int i = 0; i < keys.length; i++) {
+          keys[i] = column.getCellData(items.get(i));
+        }
+        sortColumns.add(new SortColumn(null, keys, comparator));
+      }
+    }
+
+    CompletableFuture.supplyAsync(() -> filterAndSort(items, filter, sortColumns))
+        .thenAccept(result -> MZmineCore.runLater(() -> {
+          if (rowItemsUpdate.get() == update) {
+            applyRowItems(result);
+          }
+        })).exceptionally(ex -> {
+          logger.log(Level.WARNING, "Cannot sort or filter feature table. " + ex.getMessage(), ex);
+          return null;
+        });
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static List<TreeItem<ModularFeatureListRow>> filterAndSort(
+      List<TreeItem<ModularFeatureListRow>> items,
+      @Nullable Predicate<ModularFeatureListRow> filter, List<SortColumn> sortColumns) {
+    // indices of the remaining items
+    final int[] filtered = IntStream.range(0, items.size()).parallel()
+        .filter(i -> filter == null || filter.test(items.get(i).getValue())).toArray();
+    final int n = filtered.length;
+
+    final Object[][] keys = new Object[sortColumns.size()][];
+    for (int c = 0; c < sortColumns.size(); c++) {
+      final SortColumn column = sortColumns.get(c);
+      final Object[] columnKeys = new Object[n];
+      if (column.factory() != null) {
+        IntStream.range(0, n).parallel().forEach(
+            i -> columnKeys[i] = column.factory().getValue(items.get(filtered[i]).getValue()));
+      } else {
+        for (int i = 0; i < n; i++) {
+          columnKeys[i] = column.fxKeys()[filtered[i]];
+        }
+      }
+      keys[c] = columnKeys;
+    }
+
+    final int[] order = IntStream.range(0, n).toArray();
+    if (!sortColumns.isEmpty()) {
+      // stable like the default sort policy
+      IntArrays.mergeSort(order, (a, b) -> {
+        for (int c = 0; c < keys.length; c++) {
+          final Comparator comparator = sortColumns.get(c).comparator();
+          final int result = comparator.compare(keys[c][a], keys[c][b]);
+          if (result != 0) {
+            return result;
+          }
+        }
+        return 0;
+      });
+    }
+
+    final List<TreeItem<ModularFeatureListRow>> sorted = new ArrayList<>(n);
+    for (int i : order) {
+      sorted.add(items.get(filtered[i]));
+    }
+    return sorted;
+  }
+
+  /**
+   * Sort keys are either read from the data model or were evaluated on the FX thread
+   *
+   * @param factory    reads the keys from the data model or null
+   * @param fxKeys     the keys of all items if there is no factory
+   * @param comparator comparator including the sort type
+   */
+  @SuppressWarnings("rawtypes")
+  private record SortColumn(@Nullable DataTypeCellValueFactory factory,
+                            @Nullable Object[] fxKeys, Comparator comparator) {
+
+  }
+
+  private void applyRowItems(List<TreeItem<ModularFeatureListRow>> items) {
+    final TreeItem<ModularFeatureListRow> selected = getSelectionModel().getSelectedItem();
+    applyingRowItems = true;
+    try {
+      getRoot().getChildren().setAll(items);
+    } finally {
+      applyingRowItems = false;
+    }
+    if (selected != null && selected.getParent() == getRoot()) {
+      getSelectionModel().select(selected);
+    }
   }
 
   /**
@@ -921,6 +1058,7 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     featureListProperty().addListener((observable, oldValue, newValue) -> {
       MZmineCore.runLater(() -> {
         // Clear old rows and old columns
+        rowItemsUpdate.incrementAndGet();
         getRoot().getChildren().clear();
         getColumns().clear();
         rowItems.clear();
@@ -937,13 +1075,8 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
         }
 
         // add rows
-        for (FeatureListRow row : newValue.getRows()) {
-          final ModularFeatureListRow mrow = (ModularFeatureListRow) row;
-          rowItems.add(new TreeItem<>(mrow));
-        }
-
-        TreeItem<ModularFeatureListRow> root = getRoot();
-        root.getChildren().addAll(filteredRowItems);
+        setRowItems(newValue);
+        updateRowItems();
 
         // reflect the changes to the feature list in the table
         newValue.getRows().addListener(this);
@@ -1019,6 +1152,8 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
       return;
     }
     flist.getRows().removeListener(this);
+    // discard pending sort and filter updates
+    rowItemsUpdate.incrementAndGet();
     flist.modularStream().forEach(ModularFeatureListRow::clearBufferedColCharts);
     flist.streamFeatures().forEach(ModularFeature::clearBufferedColCharts);
   }
@@ -151,9 +151,8 @@ public class FeatureTableFXMLTabAnchorPaneController {
         anySearchField.getText().isBlank() ? null : anySearchField.getText().toLowerCase().trim();
     DataType<?> type = typeComboBox.getValue();
 
-    // Filter rows
-    featureTable.getFilteredRowItems().setPredicate(item -> {
-      ModularFeatureListRow row = item.getValue();
+    // Filter rows in the background
+    featureTable.setRowFilter(row -> {
       boolean anyFilterOk = true;
       if (anyFilterString != null && type != null) {
         Object value = row.get(type);
@@ -166,10 +165,6 @@ public class FeatureTableFXMLTabAnchorPaneController {
       return (mz == null || mzFilter.contains(mz)) && (rt == null || rtFilter.contains(
           rt.doubleValue())) && anyFilterOk;
     });
-
-    // Update rows in feature table
-    featureTable.getRoot().getChildren().clear();
-    featureTable.getRoot().getChildren().addAll(featureTable.getFilteredRowItems());
   }
 
   /**
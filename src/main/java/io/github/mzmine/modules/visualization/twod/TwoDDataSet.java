@@ -25,6 +25,7 @@
 
 package io.github.mzmine.modules.visualization.twod;
 
+import com.google.common.collect.BoundType;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
@@ -32,6 +33,7 @@ import io.github.mzmine.gui.chartbasics.simplechart.datasets.AbstractTaskXYDatas
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.RangeUtils;
 import java.util.ArrayList;
 import java.util.Arrays;
 import javafx.application.Platform;
@@ -42,8 +44,6 @@ class TwoDDataSet extends AbstractTaskXYDataset {
 
   private final float[] retentionTimes;
   private final double[] basePeaks;
-  private final double[][] mzValues;
-  private final double[][] intensityValues;
 
   private final Range<Double> totalMZRange;
   private final Range<Float> totalRTRange;
@@ -51,6 +51,11 @@ class TwoDDataSet extends AbstractTaskXYDataset {
   private final Scan[] scans;
   private int processedScans;
 
+  /**
+   * Set when all scans were added. Until then, the values are read from the scans directly.
+   */
+  private volatile TwoDIntensityPyramid pyramid;
+
   public double curMaxIntensity;
   private ArrayList<Float> rtValuesInUserRange;
 
@@ -66,10 +71,13 @@ class TwoDDataSet extends AbstractTaskXYDataset {
 
     totalScans = scans.length;
 
-    mzValues = new double[totalScans][];
-    intensityValues = new double[totalScans][];
     retentionTimes = new float[totalScans];
     basePeaks = new double[totalScans];
+    for (int index = 0; index < totalScans; index++) {
+      Double scanBasePeakInt = scans[index].getBasePeakIntensity();
+      retentionTimes[index] = scans[index].getRetentionTime();
+      basePeaks[index] = (scanBasePeakInt == null ? 0 : scanBasePeakInt);
+    }
 
     MZmineCore.getTaskController().addTask(this, TaskPriority.HIGH);
 
@@ -80,6 +88,10 @@ class TwoDDataSet extends AbstractTaskXYDataset {
 
     setStatus(TaskStatus.PROCESSING);
 
+    final TwoDIntensityPyramid newPyramid = new TwoDIntensityPyramid(totalScans, totalMZRange);
+    double[] mzs = new double[0];
+    double[] intensities = new double[0];
+
     for (int index = 0; index < totalScans; index++) {
 
       // Cancel?
@@ -88,16 +100,20 @@ class TwoDDataSet extends AbstractTaskXYDataset {
       }
 
       Scan scan = scans[index];
-      Double scanBasePeakInt = scan.getBasePeakIntensity();
-      retentionTimes[index] = scan.getRetentionTime();
-      basePeaks[index] = (scanBasePeakInt == null ? 0 : scanBasePeakInt);
-      mzValues[index] = new double[scan.getNumberOfDataPoints()];
-      scan.getMzValues(mzValues[index]);
-      intensityValues[index] = new double[scan.getNumberOfDataPoints()];
-      scan.getIntensityValues(intensityValues[index]);
+      final int numPoints = scan.getNumberOfDataPoints();
+      if (mzs.length < numPoints) {
+        mzs = new double[numPoints];
+        intensities = new double[numPoints];
+      }
+      scan.getMzValues(mzs);
+      scan.getIntensityValues(intensities);
+      newPyramid.addScan(index, mzs, intensities, numPoints);
       processedScans++;
     }
 
+    newPyramid.build();
+    pyramid = newPyramid;
+
     Platform.runLater(() -> fireDatasetChanged());
 
     setStatus(TaskStatus.FINISHED);
@@ -156,10 +172,6 @@ class TwoDDataSet extends AbstractTaskXYDataset {
     double maxIntensity = 0;
 
     float[] searchRetentionTimes = retentionTimes;
-    if (processedScans < totalScans) {
-      searchRetentionTimes = new float[processedScans];
-      System.arraycopy(retentionTimes, 0, searchRetentionTimes, 0, searchRetentionTimes.length);
-    }
 
     int startScanIndex = Arrays.binarySearch(searchRetentionTimes, rtRange.lowerEndpoint());
 
@@ -220,32 +232,34 @@ class TwoDDataSet extends AbstractTaskXYDataset {
 
     double maxIntensity = 0;
 
-    int startMZIndex = Arrays.binarySearch(mzValues[index], mzRange.lowerEndpoint());
-    if (startMZIndex < 0) {
-      startMZIndex = (startMZIndex * -1) - 1;
-    }
+    final Scan scan = scans[index];
+    final int numPoints = scan.getNumberOfDataPoints();
+    int startMZIndex = findFirstMzAtLeast(scan, mzRange.lowerEndpoint());
 
-    if (startMZIndex >= mzValues[index].length) {
+    if (startMZIndex >= numPoints) {
       return 0;
     }
 
-    if (mzValues[index][startMZIndex] > mzRange.upperEndpoint()) {
+    // the upper m/z is only included for the last pixel of an image
+    final double upperMZ = mzRange.upperEndpoint();
+    final boolean upperClosed = mzRange.upperBoundType() == BoundType.CLOSED;
+    if (!isBelow(scan.getMzValue(startMZIndex), upperMZ, upperClosed)) {
       if (plotMode != PlotMode.CENTROID) {
         if (startMZIndex == 0) {
           return 0;
         }
-        if (startMZIndex == mzValues[index].length - 1) {
-          return intensityValues[index][startMZIndex - 1];
+        if (startMZIndex == numPoints - 1) {
+          return scan.getIntensityValue(startMZIndex - 1);
         }
 
         // find which data point is closer
-        double diffNext = mzValues[index][startMZIndex] - mzRange.upperEndpoint();
-        double diffPrev = mzRange.lowerEndpoint() - mzValues[index][startMZIndex - 1];
+        double diffNext = scan.getMzValue(startMZIndex) - mzRange.upperEndpoint();
+        double diffPrev = mzRange.lowerEndpoint() - scan.getMzValue(startMZIndex - 1);
 
         if (diffPrev < diffNext) {
-          return intensityValues[index][startMZIndex - 1];
+          return scan.getIntensityValue(startMZIndex - 1);
         } else {
-          return intensityValues[index][startMZIndex];
+          return scan.getIntensityValue(startMZIndex);
         }
       } else {
         return 0;
@@ -254,10 +268,10 @@ class TwoDDataSet extends AbstractTaskXYDataset {
     }
 
     for (int mzIndex = startMZIndex;
-        ((mzIndex < mzValues[index].length) && (mzValues[index][mzIndex]
-            <= mzRange.upperEndpoint())); mzIndex++) {
-      if (intensityValues[index][mzIndex] > maxIntensity) {
-        maxIntensity = intensityValues[index][mzIndex];
+        ((mzIndex < numPoints) && isBelow(scan.getMzValue(mzIndex), upperMZ, upperClosed));
+        mzIndex++) {
+      if (scan.getIntensityValue(mzIndex) > maxIntensity) {
+        maxIntensity = scan.getIntensityValue(mzIndex);
       }
     }
 
@@ -265,6 +279,152 @@ class TwoDDataSet extends AbstractTaskXYDataset {
 
   }
 
+  private static boolean isBelow(double mz, double upperMZ, boolean upperClosed) {
+    return mz < upperMZ || (upperClosed && mz == upperMZ);
+  }
+
+  /**
+   * @return the index of the first data point with an m/z >= the given m/z or the number of data
+   * points
+   */
+  private static int findFirstMzAtLeast(Scan scan, double mz) {
+    int low = 0;
+    int high = scan.getNumberOfDataPoints();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (scan.getMzValue(mid) < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Calculates the maximum intensity of every pixel of an image. Uses the coarsest level of the
+   * intensity pyramid that resolves single pixels. If the pixels are smaller than the finest grid
+   * or the pyramid is not built yet, the values are read from the scans. The m/z ranges of the
+   * pixels are half-open, so data points on a border are only counted once.
+   *
+   * @return the intensities as [x][y]
+   */
+  double[][] getMaxIntensities(double rtMin, double rtMax, int width, double mzMin, double mzMax,
+      int height, PlotMode plotMode) {
+    final double mzStep = (mzMax - mzMin) / height;
+    final int level = getPyramidLevel(rtMin, rtMax, width, mzStep);
+    if (level < 0) {
+      return getMaxIntensitiesFromScans(rtMin, rtMax, width, mzMin, mzMax, height, plotMode);
+    }
+
+    final double rtStep = (rtMax - rtMin) / width;
+    final double[][] values = new double[width][height];
+    final TwoDIntensityPyramid pyramid = this.pyramid;
+    final int[] fromRows = new int[height];
+    final int[] toRows = new int[height];
+    for (int j = 0; j < height; j++) {
+      final double pointMZMin = mzMin + (j * mzStep);
+      final double pointMZMax = pointMZMin + mzStep;
+      fromRows[j] = pyramid.getRow(level, pointMZMin);
+      toRows[j] = Math.max(fromRows[j], j == height - 1 ? pyramid.getRow(level, pointMZMax)
+          : pyramid.getRowBelow(level, pointMZMax));
+    }
+
+    for (int i = 0; i < width; i++) {
+      final float pointRTMin = (float) (rtMin + (i * rtStep));
+      final float pointRTMax = (float) (rtMin + (i * rtStep) + rtStep);
+      int fromScan = findFirstScanAtLeast(pointRTMin);
+      int toScan = findFirstScanAtLeast(Math.nextUp(pointRTMax)) - 1;
+      if (fromScan > toScan) {
+        // no scan in this pixel, use the closest one
+        if (fromScan == 0 || fromScan >= totalScans) {
+          continue;
+        }
+        final double diffNext = retentionTimes[fromScan] - pointRTMax;
+        final double diffPrev = pointRTMin - retentionTimes[fromScan - 1];
+        fromScan = toScan = diffPrev < diffNext ? fromScan - 1 : fromScan;
+      }
+
+      final int fromColumn = pyramid.getColumn(level, fromScan);
+      final int toColumn = pyramid.getColumn(level, toScan);
+      for (int j = 0; j < height; j++) {
+        values[i][j] = pyramid.getMaxIntensity(level, fromColumn, toColumn, fromRows[j],
+            toRows[j]);
+        // the grid does not know the neighbouring data points of empty cells, so these pixels
+        // are interpolated from the scans unless the data is centroided. Pixels with data points
+        // in some of their scans keep the maximum of these points.
+        if (values[i][j] == 0 && plotMode != PlotMode.CENTROID) {
+          values[i][j] = getMaxIntensity(rtMin, rtStep, i, mzMin, mzStep, j, height, plotMode);
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Calculates the maximum intensity of every pixel of an image from the scans.
+   *
+   * @return the intensities as [x][y]
+   */
+  double[][] getMaxIntensitiesFromScans(double rtMin, double rtMax, int width, double mzMin,
+      double mzMax, int height, PlotMode plotMode) {
+    final double rtStep = (rtMax - rtMin) / width;
+    final double mzStep = (mzMax - mzMin) / height;
+    final double[][] values = new double[width][height];
+    for (int i = 0; i < width; i++) {
+      for (int j = 0; j < height; j++) {
+        values[i][j] = getMaxIntensity(rtMin, rtStep, i, mzMin, mzStep, j, height, plotMode);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @return the maximum intensity of the pixel (i, j) read from the scans
+   */
+  private double getMaxIntensity(double rtMin, double rtStep, int i, double mzMin, double mzStep,
+      int j, int height, PlotMode plotMode) {
+    double pointRTMin = rtMin + (i * rtStep);
+    double pointRTMax = pointRTMin + rtStep;
+    double pointMZMin = mzMin + (j * mzStep);
+    double pointMZMax = pointMZMin + mzStep;
+    final Range<Double> mzRange = j == height - 1 ? Range.closed(pointMZMin, pointMZMax)
+        : Range.closedOpen(pointMZMin, pointMZMax);
+    return upperEndpointIntensity(RangeUtils.toFloatRange(Range.closed(pointRTMin, pointRTMax)),
+        mzRange, plotMode);
+  }
+
+  /**
+   * @return the pyramid level for the given resolution or -1 if the scans have to be read
+   */
+  private int getPyramidLevel(double rtMin, double rtMax, int width, double mzStep) {
+    final TwoDIntensityPyramid pyramid = this.pyramid;
+    if (pyramid == null || width <= 0) {
+      return -1;
+    }
+    final int numScans =
+        findFirstScanAtLeast(Math.nextUp((float) rtMax)) - findFirstScanAtLeast((float) rtMin);
+    return pyramid.getLevel((double) numScans / width, mzStep);
+  }
+
+  /**
+   * @return the index of the first scan with a retention time >= the given one or the number of
+   * scans
+   */
+  private int findFirstScanAtLeast(float rt) {
+    int low = 0;
+    int high = totalScans;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (retentionTimes[mid] < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   @Override
   public double getFinishedPercentage() {
     if (totalScans == 0) {
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.twod;
+
+import com.google.common.collect.Range;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Maximum intensities of a raw data file on a grid of scans x m/z bins in multiple resolutions.
+ * Level 0 is the finest grid, every further level merges 2x2 cells of the previous level. The
+ * plot reads the coarsest level that still resolves one pixel, so rendering only depends on the
+ * screen size and not on the number of data points. The grids are kept in direct buffers outside
+ * of the heap.
+ */
+class TwoDIntensityPyramid {
+
+  /**
+   * Maximum number of columns of level 0. Consecutive scans are merged into one column for longer
+   * runs.
+   */
+  private static final int MAX_BASE_COLUMNS = 4096;
+  private static final int BASE_ROWS = 2048;
+  /**
+   * No further levels are created if one dimension is smaller.
+   */
+  private static final int MIN_LEVEL_SIZE = 16;
+
+  private final int scansPerColumn;
+  private final double mzMin;
+  private final double mzMax;
+  private final double mzBinWidth;
+  private final int[] numColumns;
+  private final int[] numRows;
+  private final FloatBuffer[] levels;
+
+  TwoDIntensityPyramid(int numScans, Range<Double> mzRange) {
+    scansPerColumn = Math.max(1, (numScans + MAX_BASE_COLUMNS - 1) / MAX_BASE_COLUMNS);
+    mzMin = mzRange.lowerEndpoint();
+    mzMax = mzRange.upperEndpoint();
+    mzBinWidth = Math.max(mzMax - mzMin, Double.MIN_NORMAL) / BASE_ROWS;
+
+    int numLevels = 1;
+    int columns = Math.max(1, (numScans + scansPerColumn - 1) / scansPerColumn);
+    int rows = BASE_ROWS;
+    while (columns > MIN_LEVEL_SIZE && rows > MIN_LEVEL_SIZE) {
+      columns = (columns + 1) / 2;
+      rows = (rows + 1) / 2;
+      numLevels++;
+    }
+
+    numColumns = new int[numLevels];
+    numRows = new int[numLevels];
+    levels = new FloatBuffer[numLevels];
+    numColumns[0] = Math.max(1, (numScans + scansPerColumn - 1) / scansPerColumn);
+    numRows[0] = BASE_ROWS;
+    for (int level = 1; level < numLevels; level++) {
+      numColumns[level] = (numColumns[level - 1] + 1) / 2;
+      numRows[level] = (numRows[level - 1] + 1) / 2;
+    }
+    levels[0] = allocate(numColumns[0] * numRows[0]);
+  }
+
+  private static FloatBuffer allocate(int size) {
+    return ByteBuffer.allocateDirect(size * Float.BYTES).order(ByteOrder.nativeOrder())
+        .asFloatBuffer();
+  }
+
+  /**
+   * Adds the data points of a scan to level 0. Points outside of the m/z range are ignored.
+   *
+   * @param scanIndex   the index of the scan in the data set
+   * @param mzs         the m/z values
+   * @param intensities the intensities
+   * @param numPoints   the number of valid values in the arrays
+   */
+  void addScan(int scanIndex, double[] mzs, double[] intensities, int numPoints) {
+    final FloatBuffer base = levels[0];
+    final int offset = scanIndex / scansPerColumn * numRows[0];
+    for (int i = 0; i < numPoints; i++) {
+      if (mzs[i] < mzMin || mzs[i] > mzMax) {
+        continue;
+      }
+      // the upper endpoint of the range belongs to the last bin
+      final int row = Math.min((int) ((mzs[i] - mzMin) / mzBinWidth), numRows[0] - 1);
+      final int index = offset + row;
+      if (intensities[i] > base.get(index)) {
+        base.put(index, (float) intensities[i]);
+      }
+    }
+  }
+
+  /**
+   * Creates the coarser levels after all scans were added.
+   */
+  void build() {
+    for (int level = 1; level < levels.length; level++) {
+      final FloatBuffer finer = levels[level - 1];
+      final int finerColumns = numColumns[level - 1];
+      final int finerRows = numRows[level - 1];
+      final int rows = numRows[level];
+      final FloatBuffer coarse = allocate(numColumns[level] * rows);
+
+      for (int column = 0; column < numColumns[level]; column++) {
+        final int c0 = column * 2;
+        final int c1 = Math.min(c0 + 1, finerColumns - 1);
+        for (int row = 0; row < rows; row++) {
+          final int r0 = row * 2;
+          final int r1 = Math.min(r0 + 1, finerRows - 1);
+          final float max = Math.max(
+              Math.max(finer.get(c0 * finerRows + r0), finer.get(c0 * finerRows + r1)),
+              Math.max(finer.get(c1 * finerRows + r0), finer.get(c1 * finerRows + r1)));
+          coarse.put(column * rows + row, max);
+        }
+      }
+      levels[level] = coarse;
+    }
+  }
+
+  /**
+   * @param scansPerPixel the number of scans covered by one pixel
+   * @param mzPerPixel    the m/z width of one pixel
+   * @return the coarsest level whose cells are not larger than a pixel or -1 if even level 0 is
+   * too coarse
+   */
+  int getLevel(double scansPerPixel, double mzPerPixel) {
+    int level = -1;
+    while (level + 1 < levels.length
+        && (long) scansPerColumn << (level + 1) <= scansPerPixel
+        && mzBinWidth * (1L << (level + 1)) <= mzPerPixel) {
+      level++;
+    }
+    return level;
+  }
+
+  /**
+   * @return the column of the scan in the given level
+   */
+  int getColumn(int level, int scanIndex) {
+    return Math.min(scanIndex / scansPerColumn >> level, numColumns[level] - 1);
+  }
+
+  /**
+   * @return the row of the m/z value in the given level, clamped to the grid
+   */
+  int getRow(int level, double mz) {
+    final int row = (int) Math.floor((mz - mzMin) / (mzBinWidth * (1L << level)));
+    return Math.max(0, Math.min(row, numRows[level] - 1));
+  }
+
+  /**
+   * @return the last row of the given level that starts below the m/z value, clamped to the grid.
+   * Used as the exclusive upper end of a pixel so that a bin is not shared by two adjacent pixels
+   * if their border matches the grid.
+   */
+  int getRowBelow(int level, double mz) {
+    final int row = (int) Math.ceil((mz - mzMin) / (mzBinWidth * (1L << level))) - 1;
+    return Math.max(0, Math.min(row, numRows[level] - 1));
+  }
+
+  /**
+   * @return the maximum intensity of the cells in the given column and row ranges (inclusive)
+   */
+  double getMaxIntensity(int level, int fromColumn, int toColumn, int fromRow, int toRow) {
+    final FloatBuffer grid = levels[level];
+    final int rows = numRows[level];
+    float max = 0f;
+    for (int column = fromColumn; column <= toColumn; column++) {
+      final int offset = column * rows;
+      for (int row = fromRow; row <= toRow; row++) {
+        max = Math.max(max, grid.get(offset + row));
+      }
+    }
+    return max;
+  }
+}
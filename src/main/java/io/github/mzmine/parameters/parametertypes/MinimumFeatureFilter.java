@@ -96,6 +96,15 @@ public class MinimumFeatureFilter {
     return excludeEstimatedFeatures;
   }
 
+  /**
+   * @return true if {@link #filterMinFeaturesOverlap} only accepts rows with at least one pair of
+   * features within the retention time tolerance
+   */
+  public boolean isRequiringFeatureOverlap() {
+    return minFInSamples.isGreaterZero() || (filterGroups && sgroupSize != null
+                                             && minFInGroups.isGreaterZero());
+  }
+
   /**
    * only keep rows which contain features in at least X % samples in a set called before starting
    * row processing
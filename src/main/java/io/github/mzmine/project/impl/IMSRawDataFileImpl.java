@@ -38,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
@@ -58,7 +59,8 @@ public class IMSRawDataFileImpl extends RawDataFileImpl implements IMSRawDataFil
   private final Hashtable<Integer, List<Scan>> frameNumbersCache;
   private final Hashtable<Integer, Range<Double>> dataMobilityRangeCache;
   private final Hashtable<Integer, List<Frame>> frameMsLevelCache;
-  private final List<DoubleImmutableList> mobilitySegments = new ArrayList<>();
+  // frames of a file may be imported concurrently
+  private final List<DoubleImmutableList> mobilitySegments = new CopyOnWriteArrayList<>();
 
   protected Range<Double> mobilityRange;
   protected MobilityType mobilityType;
@@ -290,7 +292,7 @@ public class IMSRawDataFileImpl extends RawDataFileImpl implements IMSRawDataFil
   }
 
   @Override
-  public int addMobilityValues(double[] mobilities) {
+  public synchronized int addMobilityValues(double[] mobilities) {
     for (int i = 0; i < mobilitySegments.size(); i++) {
       var mobilitySegment = mobilitySegments.get(i);
       if (mobilitySegment.size() != mobilities.length) {
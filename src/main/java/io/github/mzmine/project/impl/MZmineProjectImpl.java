@@ -265,6 +265,7 @@ public class MZmineProjectImpl implements MZmineProject {
         featureList.setName(getUniqueName(featureList.getName(), names));
       }
       featureLists.add(featureList);
+      retainStorage(featureList);
       fireFeatureListsChangeEvent(List.of(featureList), Type.ADDED);
     } finally {
       featureLock.writeLock().unlock();
@@ -276,13 +277,33 @@ public class MZmineProjectImpl implements MZmineProject {
     try {
       featureLock.writeLock().lock();
 
-      featureLists.removeAll(featureList);
+      for (FeatureList flist : featureList) {
+        if (featureLists.remove(flist)) {
+          releaseStorage(flist);
+        }
+      }
       fireFeatureListsChangeEvent(List.of(featureList), Type.REMOVED);
     } finally {
       featureLock.writeLock().unlock();
     }
   }
 
+  /**
+   * Feature lists in the project own their storage. The temporary files are deleted once the last
+   * feature list that uses the storage is removed.
+   */
+  private static void retainStorage(FeatureList flist) {
+    if (flist instanceof ModularFeatureList mfl && mfl.getMemoryMapStorage() != null) {
+      mfl.getMemoryMapStorage().retain();
+    }
+  }
+
+  private static void releaseStorage(FeatureList flist) {
+    if (flist instanceof ModularFeatureList mfl && mfl.getMemoryMapStorage() != null) {
+      mfl.getMemoryMapStorage().release();
+    }
+  }
+
   @Override
   public @NotNull List<FeatureList> getCurrentFeatureLists() {
     try {
@@ -327,7 +348,11 @@ public class MZmineProjectImpl implements MZmineProject {
     try {
       featureLock.writeLock().lock();
 
-      this.featureLists.removeAll(featureLists);
+      for (FeatureList flist : featureLists) {
+        if (this.featureLists.remove(flist)) {
+          releaseStorage(flist);
+        }
+      }
       fireFeatureListsChangeEvent(List.copyOf(featureLists), Type.REMOVED);
     } finally {
       featureLock.writeLock().unlock();
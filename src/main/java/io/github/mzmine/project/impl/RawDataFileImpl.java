@@ -33,17 +33,16 @@ import io.github.mzmine.datamodel.MassSpectrumType;
 import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.ScanMetadataIndex;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.javafx.FxColorUtil;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import java.io.IOException;
 import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -52,6 +51,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.paint.Color;
 import org.jetbrains.annotations.NotNull;
@@ -76,10 +76,8 @@ public class RawDataFileImpl implements RawDataFile {
   protected final ObservableList<FeatureListAppliedMethod> appliedMethods = FXCollections.observableArrayList();
   // for ease of use we have a javafx safe copy of name
   private final StringProperty nameProperty = new SimpleStringProperty("");
-  private final Map<Integer, Range<Double>> dataMZRange = new HashMap<>();
-  private final Map<Integer, Range<Float>> dataRTRange = new HashMap<>();
-  private final Int2DoubleOpenHashMap dataMaxBasePeakIntensity = new Int2DoubleOpenHashMap(2);
-  private final Int2DoubleOpenHashMap dataMaxTIC = new Int2DoubleOpenHashMap(2);
+  // cached metadata of all scans, recreated after changes to the scans
+  private volatile ScanMetadataIndex scanMetadataIndex;
   // Temporary file for scan data storage
   private final MemoryMapStorage storageMemoryMap;
   private final ObjectProperty<Color> color = new SimpleObjectProperty<>();
@@ -110,6 +108,7 @@ public class RawDataFileImpl implements RawDataFile {
     this.absolutePath = absolutePath;
 
     scans = FXCollections.observableArrayList();
+    scans.addListener((ListChangeListener<Scan>) change -> scanMetadataIndex = null);
 
     this.color.setValue(color);
   }
@@ -136,43 +135,28 @@ public class RawDataFileImpl implements RawDataFile {
 
   @Override
   public double getDataMaxBasePeakIntensity(int msLevel) {
-    // check if we have this value already cached
-    return dataMaxBasePeakIntensity.computeIfAbsent(msLevel, key -> {
-      double max = Double.NEGATIVE_INFINITY;
-      // find the value
-      for (Scan scan : scans) {
-        // ignore scans of other ms levels
-        if (scan.getMSLevel() != msLevel) {
-          continue;
-        }
-
-        Double basePeakIntensity = scan.getBasePeakIntensity();
-        if (basePeakIntensity != null && basePeakIntensity > max) {
-          max = scan.getTIC();
-        }
-      }
-      return Double.compare(Double.NEGATIVE_INFINITY, max) == 0 ? -1d : max;
-    });
+    return getScanMetadataIndex().getMaxBasePeakIntensity(msLevel);
   }
 
   @Override
   public double getDataMaxTotalIonCurrent(int msLevel) {
-    // check if we have this value already cached
-    return dataMaxTIC.computeIfAbsent(msLevel, key -> {
-      double max = Double.NEGATIVE_INFINITY;
-      // find the value
-      for (Scan scan : scans) {
-        // ignore scans of other ms levels
-        if (scan.getMSLevel() != msLevel) {
-          continue;
-        }
+    return getScanMetadataIndex().getMaxTIC(msLevel);
+  }
 
-        if (scan.getTIC() > max) {
-          max = scan.getTIC();
+  @Override
+  public @NotNull ScanMetadataIndex getScanMetadataIndex() {
+    ScanMetadataIndex index = scanMetadataIndex;
+    if (index == null) {
+      // synchronized with addScan so that the index is not replaced by an outdated version
+      synchronized (this) {
+        index = scanMetadataIndex;
+        if (index == null) {
+          index = ScanMetadataIndex.of(scans);
+          scanMetadataIndex = index;
         }
       }
-      return Double.compare(Double.NEGATIVE_INFINITY, max) == 0 ? -1d : max;
-    });
+    }
+    return index;
   }
 
   @Override
@@ -219,10 +203,7 @@ public class RawDataFileImpl implements RawDataFile {
       }
     }
     // Remove cached values
-    dataMZRange.clear();
-    dataRTRange.clear();
-    dataMaxBasePeakIntensity.clear();
-    dataMaxTIC.clear();
+    scanMetadataIndex = null;
   }
 
   @Override
@@ -249,41 +230,8 @@ public class RawDataFileImpl implements RawDataFile {
   @Override
   @NotNull
   public Range<Double> getDataMZRange(int msLevel) {
-
-    // check if we have this value already cached
-    Range<Double> mzRange = dataMZRange.get(msLevel);
-    if (mzRange != null) {
-      return mzRange;
-    }
-
-    // find the value
-    for (Scan scan : scans) {
-
-      // ignore scans of other ms levels
-      if ((msLevel != 0) && (scan.getMSLevel() != msLevel)) {
-        continue;
-      }
-
-      final Range<Double> scanMzRange = scan.getDataPointMZRange();
-      if (mzRange == null) {
-        mzRange = scanMzRange;
-      } else {
-        if (scanMzRange != null) {
-          mzRange = mzRange.span(scanMzRange);
-        }
-      }
-
-    }
-
-    // cache the value, if we found any
-    if (mzRange != null) {
-      dataMZRange.put(msLevel, mzRange);
-    } else {
-      mzRange = Range.singleton(0.0);
-    }
-
-    return mzRange;
-
+    final Range<Double> mzRange = getScanMetadataIndex().getMZRange(msLevel);
+    return mzRange != null ? mzRange : Range.singleton(0.0);
   }
 
   @Override
@@ -298,41 +246,37 @@ public class RawDataFileImpl implements RawDataFile {
     if (msLevel == null) {
       return getDataRTRange();
     }
-    // check if we have this value already cached
-    Range<Float> rtRange = dataRTRange.get(msLevel);
-    if (rtRange != null) {
-      return rtRange;
-    }
-
-    // find the value
-    for (Scan scan : scans) {
-
-      // ignore scans of other ms levels
-      if ((msLevel != 0) && (scan.getMSLevel() != msLevel)) {
-        continue;
-      }
-
-      if (rtRange == null) {
-        rtRange = Range.singleton(scan.getRetentionTime());
-      } else {
-        rtRange = rtRange.span(Range.singleton(scan.getRetentionTime()));
-      }
+    final Range<Float> rtRange = getScanMetadataIndex().getRTRange(msLevel);
+    return rtRange != null ? rtRange : Range.singleton(0.0f);
+  }
 
-    }
+  @Override
+  public int getNumOfScans(int msLevel) {
+    return getScanMetadataIndex().getNumberOfScans(msLevel);
+  }
 
-    // cache the value
-    if (rtRange != null) {
-      dataRTRange.put(msLevel, rtRange);
-    } else {
-      rtRange = Range.singleton(0.0f);
-    }
+  @Override
+  public @NotNull int[] getMSLevels() {
+    return getScanMetadataIndex().getMSLevels();
+  }
 
-    return rtRange;
+  @Override
+  public @NotNull List<Scan> getScanNumbers(int msLevel) {
+    return toScanList(getScanMetadataIndex().getScanIndices(msLevel));
   }
 
   @Override
-  public int getNumOfScans(int msLevel) {
-    return getScanNumbers(msLevel).size();
+  public @NotNull Scan[] getScanNumbers(int msLevel, @NotNull Range<Float> rtRange) {
+    return toScanList(getScanMetadataIndex().getScanIndices(msLevel, rtRange)).toArray(
+        Scan[]::new);
+  }
+
+  private List<Scan> toScanList(int[] scanIndices) {
+    final List<Scan> result = new ArrayList<>(scanIndices.length);
+    for (int index : scanIndices) {
+      result.add(scans.get(index));
+    }
+    return result;
   }
 
   @NotNull
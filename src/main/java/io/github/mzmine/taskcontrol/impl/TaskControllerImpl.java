@@ -37,47 +37,87 @@ import io.github.mzmine.taskcontrol.TaskControlListener;
 import io.github.mzmine.taskcontrol.TaskController;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.Vector;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
- * Task controller implementation
+ * Task controller implementation. Tasks are executed on a pool of reusable worker threads. New
+ * tasks and finished tasks trigger the dispatch of waiting tasks, so there is no polling delay
+ * between tasks. High priority tasks are started immediately, normal priority tasks are started in
+ * the order they were added when a thread becomes available. Queue wait and run times are collected
+ * per task class in {@link #getTaskMetrics()}.
  */
-public class TaskControllerImpl implements TaskController, Runnable {
+public class TaskControllerImpl implements TaskController {
 
   private static final Logger logger = Logger.getLogger(TaskControllerImpl.class.getName());
   /**
    * Update the task progress window every 300 ms
    */
-  private final int TASKCONTROLLER_THREAD_SLEEP = 300;
+  private static final int PROGRESS_UPDATE_INTERVAL = 300;
+  /**
+   * Idle pool threads are released after this time
+   */
+  private static final int THREAD_KEEP_ALIVE_SECONDS = 10;
 
   private static final TaskControllerImpl INSTANCE = new TaskControllerImpl();
-  private final ArrayList<TaskControlListener> listeners = new ArrayList<>();
-  private final Thread taskControllerThread;
+  private final List<TaskControlListener> listeners = new CopyOnWriteArrayList<>();
 
   private final TaskQueue taskQueue;
+  private final TaskMetrics taskMetrics = new TaskMetrics();
+
+  /**
+   * Pool of worker threads. The number of concurrent NORMAL priority tasks is limited by the
+   * preferences, HIGH priority tasks always get a thread.
+   */
+  private final ThreadPoolExecutor executor;
+  private final ScheduledExecutorService progressUpdater;
+
+  /**
+   * Waiting tasks of NORMAL priority in the order they were added. Guarded by itself.
+   */
+  private final ArrayDeque<WrappedTask> waitingTasks = new ArrayDeque<>();
+  /**
+   * Number of running NORMAL priority tasks. Guarded by {@link #waitingTasks}.
+   */
+  private int numRunningLimitedTasks = 0;
 
   /**
-   * This vector contains references to all running threads of NORMAL priority. Maximum number of
-   * concurrent threads is specified in the preferences dialog.
+   * All running workers
    */
-  private final Vector<WorkerThread> runningThreads;
+  private final Set<TaskWorker> runningWorkers = ConcurrentHashMap.newKeySet();
 
+  private int previousQueueSize = -1;
+  private int previousPercentDone = -1;
 
   private TaskControllerImpl() {
-    logger.finest("Starting task controller thread");
+    logger.finest("Starting task controller thread pool");
     taskQueue = new TaskQueue();
 
-    runningThreads = new Vector<>();
-
-    // Create a low-priority thread that will manage the queue and start
-    // worker threads for tasks
-    taskControllerThread = new Thread(this, "Task controller thread");
-    taskControllerThread.setPriority(Thread.MIN_PRIORITY);
-    taskControllerThread.start();
+    final AtomicInteger threadCounter = new AtomicInteger(0);
+    executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, THREAD_KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS, new SynchronousQueue<>(),
+        r -> new Thread(r, "Task worker thread " + threadCounter.incrementAndGet()));
+
+    // only updates the progress of tasks in the GUI and listeners, tasks are dispatched on events
+    progressUpdater = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "Task controller progress thread");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    progressUpdater.scheduleWithFixedDelay(this::updateProgress, PROGRESS_UPDATE_INTERVAL,
+        PROGRESS_UPDATE_INTERVAL, TimeUnit.MILLISECONDS);
   }
 
   public static TaskControllerImpl getInstance() {
@@ -89,6 +129,13 @@ public class TaskControllerImpl implements TaskController, Runnable {
     return taskQueue;
   }
 
+  /**
+   * @return the queue wait and run time metrics per task class
+   */
+  public TaskMetrics getTaskMetrics() {
+    return taskMetrics;
+  }
+
   @Override
   public void addTask(Task task) {
     addTask(task, task.getTaskPriority());
@@ -128,30 +175,90 @@ public class TaskControllerImpl implements TaskController, Runnable {
       WrappedTask newQueueEntry = new WrappedTask(task, priority);
       taskQueue.addWrappedTask(newQueueEntry);
       wrappedTasks[i] = newQueueEntry;
-      // logger.finest("Added wrapped task for " +
-      // task.getTaskDescription());
     }
 
-    // Wake up the task controller thread
-    synchronized (this) {
-      this.notifyAll();
+    synchronized (waitingTasks) {
+      for (WrappedTask task : wrappedTasks) {
+        if (task.getPriority() == TaskPriority.HIGH) {
+          startTask(task, false);
+        } else {
+          waitingTasks.add(task);
+        }
+      }
     }
+    dispatchWaitingTasks();
     return wrappedTasks;
   }
 
   /**
-   * Task controller thread main method.
+   * Starts waiting tasks until the maximum number of concurrent tasks is reached. Called when tasks
+   * are added and when tasks finish.
    */
-  @Override
-  public void run() {
+  private void dispatchWaitingTasks() {
+    final int maxRunningThreads = getMaxRunningThreads();
+    synchronized (waitingTasks) {
+      while (numRunningLimitedTasks < maxRunningThreads && !waitingTasks.isEmpty()) {
+        WrappedTask task = waitingTasks.poll();
+        // Skip canceled tasks
+        if (task.getActualTask().getStatus() == TaskStatus.CANCELED) {
+          continue;
+        }
+        numRunningLimitedTasks++;
+        startTask(task, true);
+      }
+    }
+  }
+
+  /**
+   * @param limited counts towards the maximum number of concurrent tasks
+   */
+  private void startTask(WrappedTask task, boolean limited) {
+    final TaskWorker worker = new TaskWorker(task, this, limited);
+    runningWorkers.add(worker);
+
+    // track task use
+    GoogleAnalyticsTracker.trackTaskRun(task.getActualTask());
 
-    int previousQueueSize = -1;
-    int previousPercentDone = -1;
+    executor.execute(worker);
+  }
 
-    while (true) {
+  /**
+   * Called by the worker after its task has finished.
+   */
+  void onTaskFinished(TaskWorker worker, Class<? extends Task> taskClass, long queueWaitNanos,
+      long runNanos) {
+    taskMetrics.record(taskClass, queueWaitNanos, runNanos);
+    runningWorkers.remove(worker);
+    if (worker.isLimited()) {
+      synchronized (waitingTasks) {
+        numRunningLimitedTasks--;
+      }
+    }
+    dispatchWaitingTasks();
+  }
+
+  private int getMaxRunningThreads() {
+    // Obtain the settings of max concurrent threads
+    NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads);
+    if (parameter.isAutomatic() || (parameter.getValue() == null)) {
+      return Runtime.getRuntime().availableProcessors();
+    } else {
+      return parameter.getValue();
+    }
+  }
+
+  /**
+   * Updates listeners and the tasks window. Does not dispatch any tasks.
+   */
+  private void updateProgress() {
+    try {
+      if (taskQueue.isEmpty() && previousQueueSize == 0) {
+        return;
+      }
 
       final int waitingTasks = taskQueue.getNumOfWaitingTasks();
-      final int percentDone = taskQueue.getTotalPercentComplete();
+      final int percentDone = taskQueue.isEmpty() ? 0 : taskQueue.getTotalPercentComplete();
       if ((waitingTasks != previousQueueSize) || (percentDone != previousPercentDone)) {
         previousQueueSize = waitingTasks;
         previousPercentDone = percentDone;
@@ -160,69 +267,9 @@ public class TaskControllerImpl implements TaskController, Runnable {
         }
       }
 
-      // If the queue is empty, we can sleep. When new task is added into
-      // the queue, we will be awaken by notify()
-      synchronized (this) {
-        while (taskQueue.isEmpty()) {
-          try {
-            this.wait(100);
-          } catch (InterruptedException e) {
-            // Ignore
-          }
-        }
-      }
-
       // Check if all tasks in the queue are finished
-      if (taskQueue.allTasksFinished()) {
+      if (!taskQueue.isEmpty() && taskQueue.allTasksFinished()) {
         taskQueue.clear();
-        continue;
-      }
-
-      // Remove already finished threads from runningThreads
-      Iterator<WorkerThread> threadIterator = runningThreads.iterator();
-      while (threadIterator.hasNext()) {
-        WorkerThread thread = threadIterator.next();
-        if (thread.isFinished()) {
-          threadIterator.remove();
-        }
-      }
-
-      // Get a snapshot of the queue
-      WrappedTask[] queueSnapshot = taskQueue.getQueueSnapshot();
-
-      // Obtain the settings of max concurrent threads
-      NumOfThreadsParameter parameter = MZmineCore.getConfiguration().getPreferences()
-          .getParameter(MZminePreferences.numOfThreads);
-      int maxRunningThreads;
-      if (parameter.isAutomatic() || (parameter.getValue() == null)) {
-        maxRunningThreads = Runtime.getRuntime().availableProcessors();
-      } else {
-        maxRunningThreads = parameter.getValue();
-      }
-
-      // Check all tasks in the queue
-      for (WrappedTask task : queueSnapshot) {
-
-        // Skip assigned and canceled tasks
-        if (task.isAssigned() || (task.getActualTask().getStatus() == TaskStatus.CANCELED)) {
-          continue;
-        }
-
-        // Create a new thread if the task is high-priority or if we
-        // have less then maximum # of threads running
-        if ((task.getPriority() == TaskPriority.HIGH) || (runningThreads.size()
-            < maxRunningThreads)) {
-          WorkerThread newThread = new WorkerThread(task);
-
-          // track task use
-          GoogleAnalyticsTracker.trackTaskRun(task.getActualTask());
-
-          if (task.getPriority() == TaskPriority.NORMAL) {
-            runningThreads.add(newThread);
-          }
-
-          newThread.start();
-        }
       }
 
       // Refresh the tasks window
@@ -230,16 +277,10 @@ public class TaskControllerImpl implements TaskController, Runnable {
       if ((desktop != null) && (!(desktop instanceof HeadLessDesktop))) {
         desktop.getTasksView().refresh();
       }
-
-      // Sleep for a while until next update
-      try {
-        Thread.sleep(TASKCONTROLLER_THREAD_SLEEP);
-      } catch (InterruptedException e) {
-        // Ignore
-      }
-
+    } catch (Exception e) {
+      // never stop the scheduled updates
+      logger.finest(() -> "Error while updating task progress " + e.getMessage());
     }
-
   }
 
   @Override
@@ -255,6 +296,15 @@ public class TaskControllerImpl implements TaskController, Runnable {
         logger.finest(
             "Setting priority of task \"" + task.getTaskDescription() + "\" to " + priority);
         wrappedTask.setPriority(priority);
+
+        // waiting tasks with high priority are started immediately
+        if (priority == TaskPriority.HIGH) {
+          synchronized (waitingTasks) {
+            if (waitingTasks.remove(wrappedTask)) {
+              startTask(wrappedTask, false);
+            }
+          }
+        }
       }
     }
 
@@ -278,9 +328,16 @@ public class TaskControllerImpl implements TaskController, Runnable {
       }
     }
 
-    var running = runningThreads.toArray(WorkerThread[]::new);
-    for (WorkerThread runningThread : running) {
-      if (clazz.isInstance(runningThread.getWrappedTask().getActualTask())) {
+    synchronized (waitingTasks) {
+      for (WrappedTask waitingTask : waitingTasks) {
+        if (clazz.isInstance(waitingTask.getActualTask())) {
+          return true;
+        }
+      }
+    }
+
+    for (TaskWorker worker : runningWorkers) {
+      if (clazz.isInstance(worker.getWrappedTask().getActualTask())) {
         return true;
       }
     }
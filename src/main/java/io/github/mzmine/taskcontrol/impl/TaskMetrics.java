@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.taskcontrol.impl;
+
+import io.github.mzmine.taskcontrol.Task;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Collects the time tasks spend waiting in the queue and running, grouped by task class.
+ */
+public class TaskMetrics {
+
+  private final Map<Class<? extends Task>, Stats> stats = new ConcurrentHashMap<>();
+
+  void record(@NotNull Class<? extends Task> taskClass, long queueWaitNanos, long runNanos) {
+    stats.computeIfAbsent(taskClass, c -> new Stats()).add(queueWaitNanos, runNanos);
+  }
+
+  /**
+   * @return summary of all task classes sorted by the total run time (descending)
+   */
+  @NotNull
+  public List<TaskClassMetrics> getSummary() {
+    return stats.entrySet().stream()
+        .map(e -> e.getValue().toMetrics(e.getKey().getSimpleName()))
+        .sorted(Comparator.comparingLong(TaskClassMetrics::totalRunNanos).reversed()).toList();
+  }
+
+  public void clear() {
+    stats.clear();
+  }
+
+  private static class Stats {
+
+    private long count;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+    private long maxRunNanos;
+
+    synchronized void add(long waitNanos, long runNanos) {
+      count++;
+      totalWaitNanos += waitNanos;
+      maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+      totalRunNanos += runNanos;
+      maxRunNanos = Math.max(maxRunNanos, runNanos);
+    }
+
+    synchronized TaskClassMetrics toMetrics(String taskClass) {
+      return new TaskClassMetrics(taskClass, count, totalWaitNanos, maxWaitNanos, totalRunNanos,
+          maxRunNanos);
+    }
+  }
+
+  /**
+   * Queue-wait and run-time metrics of one task class
+   */
+  public record TaskClassMetrics(String taskClass, long count, long totalWaitNanos,
+                                 long maxWaitNanos, long totalRunNanos, long maxRunNanos) {
+
+    public double averageWaitMillis() {
+      return count == 0 ? 0 : totalWaitNanos / 1E6 / count;
+    }
+
+    public double averageRunMillis() {
+      return count == 0 ? 0 : totalRunNanos / 1E6 / count;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: n=%d, wait avg=%.1f ms (max=%.1f ms), run avg=%.1f ms (max=%.1f ms)",
+          taskClass, count, averageWaitMillis(), maxWaitNanos / 1E6, averageRunMillis(),
+          maxRunNanos / 1E6);
+    }
+  }
+}
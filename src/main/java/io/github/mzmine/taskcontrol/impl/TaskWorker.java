@@ -27,33 +27,47 @@ package io.github.mzmine.taskcontrol.impl;
 
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.taskcontrol.Task;
+import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ExceptionUtils;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Task controller worker thread, this thread will process one task and then finish
+ * Task controller worker, processes one task on a thread of the task controller pool. The
+ * {@link TaskControllerImpl} is notified on completion to dispatch the next task.
  */
-class WorkerThread extends Thread {
+class TaskWorker implements Runnable {
 
-  private Logger logger = Logger.getLogger(this.getClass().getName());
+  private static final Logger logger = Logger.getLogger(TaskWorker.class.getName());
 
-  private WrappedTask wrappedTask;
-  private boolean finished = false;
+  private final WrappedTask wrappedTask;
+  private final TaskControllerImpl controller;
+  // counts towards the maximum number of concurrent tasks
+  private final boolean limited;
+  private volatile Thread thread;
+  private volatile boolean finished = false;
 
-  WorkerThread(WrappedTask wrappedTask) {
-    super("Thread executing task " + wrappedTask);
+  TaskWorker(WrappedTask wrappedTask, TaskControllerImpl controller, boolean limited) {
     this.wrappedTask = wrappedTask;
+    this.controller = controller;
+    this.limited = limited;
     wrappedTask.assignTo(this);
   }
 
   /**
    * @see java.lang.Runnable#run()
    */
+  @Override
   public void run() {
+    thread = Thread.currentThread();
+    final String threadName = thread.getName();
+    thread.setName("Thread executing task " + wrappedTask);
+    applyPriority(wrappedTask.getPriority());
 
+    final long startNanos = System.nanoTime();
     Task actualTask = wrappedTask.getActualTask();
+    final Class<? extends Task> taskClass = actualTask.getClass();
 
     try {
 
@@ -67,8 +81,9 @@ class WorkerThread extends Thread {
       if (actualTask.getStatus() == TaskStatus.ERROR) {
 
         String errorMsg = actualTask.getErrorMessage();
-        if (errorMsg == null)
+        if (errorMsg == null) {
           errorMsg = "Unspecified error";
+        }
 
         // Log the error
         logger.severe("Error of task " + actualTask.getTaskDescription() + ": " + errorMsg);
@@ -102,13 +117,35 @@ class WorkerThread extends Thread {
       MZmineCore.getDesktop().displayErrorMessage("Unhandled exception in task "
           + actualTask.getTaskDescription() + ": " + ExceptionUtils.exceptionToString(e));
 
+    } finally {
+      final long endNanos = System.nanoTime();
+      /*
+       * Mark this worker as finished and reset the pool thread
+       */
+      finished = true;
+      thread.setName(threadName);
+      thread.setPriority(Thread.NORM_PRIORITY);
+      thread = null;
+      controller.onTaskFinished(this, taskClass, startNanos - wrappedTask.getQueuedNanos(),
+          endNanos - startNanos);
     }
+  }
 
-    /*
-     * Mark this thread as finished
-     */
-    finished = true;
+  /**
+   * Changes the priority of the executing thread
+   */
+  void applyPriority(TaskPriority priority) {
+    final Thread current = thread;
+    if (current != null) {
+      switch (priority) {
+        case HIGH -> current.setPriority(Thread.MAX_PRIORITY);
+        case NORMAL -> current.setPriority(Thread.NORM_PRIORITY);
+      }
+    }
+  }
 
+  boolean isLimited() {
+    return limited;
   }
 
   boolean isFinished() {
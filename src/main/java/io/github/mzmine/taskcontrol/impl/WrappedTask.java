@@ -54,30 +54,35 @@ public class WrappedTask {
 
   private Task task;
   private Property<TaskPriority> priority;
-  private WorkerThread assignedTo;
+  // the actual priority, the property is updated on the FX thread
+  private volatile TaskPriority currentPriority;
+  private volatile TaskWorker assignedTo;
+  // time when the task was added to the queue
+  private final long queuedNanos;
 
   public WrappedTask(Task task, TaskPriority priority) {
     this.task = task;
     this.priority = new SimpleObjectProperty<>(priority);
+    this.currentPriority = priority;
+    this.queuedNanos = System.nanoTime();
   }
 
   /**
    * @return Returns the priority.
    */
   TaskPriority getPriority() {
-    return priority.getValue();
+    return currentPriority;
   }
 
   /**
    * @param priority The priority to set.
    */
   void setPriority(TaskPriority priority) {
+    currentPriority = priority;
     MZmineCore.runLater(() -> this.priority.setValue(priority));
-    if (assignedTo != null) {
-      switch (priority) {
-        case HIGH -> assignedTo.setPriority(Thread.MAX_PRIORITY);
-        case NORMAL -> assignedTo.setPriority(Thread.NORM_PRIORITY);
-      }
+    final TaskWorker worker = assignedTo;
+    if (worker != null) {
+      worker.applyPriority(priority);
     }
   }
 
@@ -92,8 +97,15 @@ public class WrappedTask {
     return assignedTo != null;
   }
 
-  void assignTo(WorkerThread thread) {
-    assignedTo = thread;
+  void assignTo(TaskWorker worker) {
+    assignedTo = worker;
+  }
+
+  /**
+   * @return {@link System#nanoTime()} when this task was added to the queue
+   */
+  long getQueuedNanos() {
+    return queuedNanos;
   }
 
   /**
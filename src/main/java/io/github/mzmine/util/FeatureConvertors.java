@@ -101,6 +101,14 @@ public class FeatureConvertors {
 
     SimpleIonTimeSeries timeSeries = createSimpleTimeSeries(featureList.getMemoryMapStorage(),
         new ArrayList<>(dataPoints), new ArrayList<>(scans));
+    return IonTimeSeriesToModularFeature(featureList, dataFile, timeSeries);
+  }
+
+  /**
+   * Creates a detected feature with all MS2 scans within its m/z and retention time range
+   */
+  public static ModularFeature IonTimeSeriesToModularFeature(ModularFeatureList featureList,
+      RawDataFile dataFile, @NotNull IonTimeSeries<? extends Scan> timeSeries) {
     ModularFeature modularFeature = new ModularFeature(featureList, dataFile, timeSeries,
         FeatureStatus.DETECTED);
 
@@ -30,15 +30,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -50,19 +50,22 @@ import sun.misc.Unsafe;
  * buffer is directly bound to the memory-mapped portion of the file so the data can be directly
  * accessed without loading it into another intermediate primitive type array.
  * <p>
- * The size of each temporary file is STORAGE_FILE_CAPACITY bytes. When the file is full, a new file
- * is automatically created using the createNewMappedFile() function. The size of each temporary
- * file in the filesystem may show as 1GB, but actually only a portion of that space is occupied on
- * the disk, depending on the amount of stored data (this can be examined using the 'du -hs' Linux
- * command.
+ * The storage consists of segments, each segment is one memory-mapped temporary file. The first
+ * segment is small and every new segment doubles in size up to MAX_SEGMENT_CAPACITY bytes, so
+ * that the many small storages (e.g., one per feature list) do not reserve 1 GB each. Sizes are
+ * long values, the total size of a storage is only limited by the number of segments.
  * <p>
- * There is no support for removing data from the file - we assume such operation is rare and
- * therefore the data can be left on the disk until the whole temporary file is discarded.
+ * Space is allocated lock-free: every array is reserved in the current segment with a single
+ * compare-and-set on the segment position. Only the creation of a new segment is synchronized. No
+ * thread keeps a reference to a segment, so released segments are only reachable from the buffers
+ * that point into them.
  * <p>
- * There is a limit on the number of open file descriptors (e.g. 1024 by default on Linux). With 1
- * GB per temporary file, this would give us about 1 TB of storage space, so perhaps it is okay.
- * There is no way to remove the memory-mapped file, it is removed automatically when the
- * MappedByteBuffer is garbage-collected.
+ * There is no support for removing single arrays. Instead, the owners of a storage (feature lists,
+ * mass lists) {@link #retain()} the storage and {@link #release()} it when they are removed from
+ * the project. When the last owner releases the storage, all temporary files are deleted and the
+ * segments are dropped. The memory mappings are not unmapped explicitly, because buffers that were
+ * copied to other objects may still point to the data. The operating system frees the disk space
+ * and page cache once the last buffer is garbage-collected.
  * <p>
  * The total amount of storage space is also limited by the amount of addressable virtual memory
  * (e.g., 128TB on Linux). For this reason, this approach requires a 64-bit system - the limit would
@@ -71,18 +74,25 @@ import sun.misc.Unsafe;
 public class MemoryMapStorage {
 
   /**
-   * One temporary file can store STORAGE_FILE_CAPACITY bytes. We need to fit within 2GB limit for a
-   * single MappedByteBuffer. 1 GB per file seems like a good start.
+   * A single MappedByteBuffer is limited to 2 GB. 1 GB per segment is the upper limit, the first
+   * segment starts with INITIAL_SEGMENT_CAPACITY bytes.
    */
-  private static final long STORAGE_FILE_CAPACITY = 1_000_000_000L;
+  private static final long MAX_SEGMENT_CAPACITY = 1_000_000_000L;
+  private static final long INITIAL_SEGMENT_CAPACITY = 16L * 1024 * 1024;
+
   private final Logger logger = Logger.getLogger(this.getClass().getName());
-  private final Set<File> temporaryFiles = new HashSet<>();
-  private final List<MappedByteBuffer> mappedByteBufferList = new ArrayList<>();
+  private final List<Segment> segments = new ArrayList<>();
+  private final AtomicInteger owners = new AtomicInteger(0);
 
   private static boolean storeFeaturesInRam = false;
   private static boolean storeRawFilesInRam = false;
   private static boolean storeMassListsInRam = false;
 
+  /**
+   * The segment that we are currently allocating from.
+   */
+  private volatile Segment currentSegment = null;
+
   /**
    * @return The {@link MemoryMapStorage} or null, if the data shall be stored in ram.
    */
@@ -118,42 +128,88 @@ public class MemoryMapStorage {
   }
 
   /**
-   * The file that we are currently writing into.
-   */
-  private MappedByteBuffer currentMappedFile = null;
-
-  /**
-   * Creates a new temporary file, maps it into memory, and returns the corresponding
-   * MappedByteBuffer. The capacity of the buffer is STORAGE_FILE_CAPACITY bytes.
+   * Creates a new temporary file and maps it into memory. Only called when the current segment is
+   * full.
    *
-   * @return a MappedByteBuffer corresponding to the memory-mapped temporary file
+   * @param full      the segment that was full or null if there was no segment yet
+   * @param minLength the number of bytes that need to fit into the new segment
+   * @return the new current segment. Might also be a segment created by another thread.
    * @throws IOException
    */
-  private MappedByteBuffer createNewMappedFile() throws IOException {
+  private synchronized Segment createNewSegment(@Nullable Segment full, long minLength)
+      throws IOException {
+    if (currentSegment != full) {
+      // another thread was faster
+      return currentSegment;
+    }
+    if (minLength > Integer.MAX_VALUE - Long.BYTES) {
+      throw new IOException(
+          "Cannot store " + minLength + " bytes in a single memory mapped array (2 GB max)");
+    }
+
+    final long capacity = Math.max(minLength, full == null ? INITIAL_SEGMENT_CAPACITY
+        : Math.min(full.capacity * 2, MAX_SEGMENT_CAPACITY));
 
     // Create the temporary storage file
     File storageFileName = File.createTempFile("mzmine", ".tmp");
-    temporaryFiles.add(storageFileName);
     logger.finest("Created a temporary file " + storageFileName);
 
-    // Open the file for writing
-    RandomAccessFile storageFile = new RandomAccessFile(storageFileName, "rw");
-
-    // Map the file into memory
-    MappedByteBuffer mappedFileBuffer =
-        storageFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, STORAGE_FILE_CAPACITY);
-    mappedByteBufferList.add(mappedFileBuffer);
-
-    // Close the temporary file, the memory mapping will remain
-    storageFile.close();
+    // Map the file into memory. Closing the file keeps the memory mapping
+    final MappedByteBuffer mappedFileBuffer;
+    try (RandomAccessFile storageFile = new RandomAccessFile(storageFileName, "rw")) {
+      mappedFileBuffer = storageFile.getChannel()
+          .map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
 
     // Unfortunately, deleteOnExit() doesn't work on Windows, see JDK
     // bug #4171239. We will try to remove the temporary files in a
     // shutdown hook registered in the main.ShutDownHook class.
     storageFileName.deleteOnExit();
 
-    return mappedFileBuffer;
+    final Segment segment = new Segment(storageFileName, mappedFileBuffer, (int) capacity);
+    segments.add(segment);
+    currentSegment = segment;
+    return segment;
+  }
+
+  /**
+   * Reserves the given number of bytes in the current segment. Lock-free unless a new segment is
+   * needed.
+   */
+  @NotNull
+  private Allocation allocateInSegment(int length) throws IOException {
+    Segment segment = currentSegment;
+    while (true) {
+      if (segment != null) {
+        final int start = segment.tryAllocate(length);
+        if (start >= 0) {
+          return new Allocation(segment, start);
+        }
+      }
+      segment = createNewSegment(segment, length);
+    }
+  }
+
+  /**
+   * Reserves length bytes, aligned to 8 bytes.
+   */
+  @NotNull
+  private ByteBuffer allocate(long length) throws IOException {
+    if (length > Integer.MAX_VALUE - Long.BYTES) {
+      throw new IOException(
+          "Cannot store " + length + " bytes in a single memory mapped array (2 GB max)");
+    }
+    final int aligned = align((int) length);
+
+    final Allocation allocation = allocateInSegment(aligned);
 
+    // absolute slice does not change the position of the shared buffer
+    return allocation.segment.buffer.slice(allocation.start, (int) length)
+        .order(ByteOrder.nativeOrder());
+  }
+
+  private static int align(int length) {
+    return (length + Long.BYTES - 1) & -Long.BYTES;
   }
 
   /**
@@ -165,8 +221,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized DoubleBuffer storeData(@NotNull final double data[])
-      throws IOException {
+  public DoubleBuffer storeData(@NotNull final double data[]) throws IOException {
     return storeData(data, 0, data.length);
   }
 
@@ -181,36 +236,11 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized DoubleBuffer storeData(@NotNull final double data[], int offset,
-      int length) throws IOException {
-
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Double.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Double.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
-
-    // Create a double view of the memory-mapped byte buffer
-    DoubleBuffer sliceDoubleView = slice.asDoubleBuffer();
-
-    // Copy the data to the memory mapped storage
-    sliceDoubleView.put(data, offset, length);
-
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Double.BYTES);
-
-    // Create a read-only version of the new buffer slice
-    final DoubleBuffer readOnlySlice = sliceDoubleView.asReadOnlyBuffer();
-
-    return readOnlySlice;
-
+  public DoubleBuffer storeData(@NotNull final double data[], int offset, int length)
+      throws IOException {
+    final DoubleBuffer view = allocate((long) length * Double.BYTES).asDoubleBuffer();
+    view.put(data, offset, length);
+    return view.asReadOnlyBuffer();
   }
 
   /**
@@ -222,8 +252,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized FloatBuffer storeData(@NotNull final float data[])
-      throws IOException {
+  public FloatBuffer storeData(@NotNull final float data[]) throws IOException {
     return storeData(data, 0, data.length);
   }
 
@@ -238,36 +267,11 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized FloatBuffer storeData(@NotNull final float data[], int offset,
-      int length) throws IOException {
-
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Float.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Float.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
-
-    // Create a float view of the memory-mapped byte buffer
-    FloatBuffer sliceFloatView = slice.asFloatBuffer();
-
-    // Copy the data to the memory mapped storage
-    sliceFloatView.put(data, offset, length);
-
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Float.BYTES);
-
-    // Create a read-only version of the new buffer slice
-    final FloatBuffer readOnlySlice = sliceFloatView.asReadOnlyBuffer();
-
-    return readOnlySlice;
-
+  public FloatBuffer storeData(@NotNull final float data[], int offset, int length)
+      throws IOException {
+    final FloatBuffer view = allocate((long) length * Float.BYTES).asFloatBuffer();
+    view.put(data, offset, length);
+    return view.asReadOnlyBuffer();
   }
 
   /**
@@ -279,7 +283,7 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized IntBuffer storeData(@NotNull final int data[]) throws IOException {
+  public IntBuffer storeData(@NotNull final int data[]) throws IOException {
     return storeData(data, 0, data.length);
   }
 
@@ -294,36 +298,85 @@ public class MemoryMapStorage {
    * @throws IOException
    */
   @NotNull
-  public synchronized IntBuffer storeData(@NotNull final int data[], int offset,
-      int length) throws IOException {
-
-    // If we have no storage file or if the current file is full, create a new one
-    if ((currentMappedFile == null)
-        || (currentMappedFile.position() + (length * Integer.BYTES) > STORAGE_FILE_CAPACITY)) {
-      currentMappedFile = createNewMappedFile();
-    }
-
-    // Save the current position in the storage file
-    final int savedPosition = currentMappedFile.position();
-
-    // Set the limit to the end of the new array and create a buffer slice
-    currentMappedFile.limit(savedPosition + length * Integer.BYTES);
-    final ByteBuffer slice = currentMappedFile.slice();
+  public IntBuffer storeData(@NotNull final int data[], int offset, int length)
+      throws IOException {
+    final IntBuffer view = allocate((long) length * Integer.BYTES).asIntBuffer();
+    view.put(data, offset, length);
+    return view.asReadOnlyBuffer();
+  }
 
-    // Create an int view of the memory-mapped byte buffer
-    IntBuffer sliceIntView = slice.asIntBuffer();
+  /**
+   * Store the given byte[] array in a memory-mapped temporary file and return a read-only
+   * ByteBuffer that can access the data.
+   *
+   * @param data   the byte[] array with the data
+   * @param offset offset of the stored portion of the data[] array
+   * @param length size of the stored portion of the data[] array
+   * @return a read-only ByteBuffer that is directly mapped to the stored data on the disk
+   * @throws IOException
+   */
+  @NotNull
+  public ByteBuffer storeData(@NotNull final byte data[], int offset, int length)
+      throws IOException {
+    final ByteBuffer view = allocate(length);
+    view.put(0, data, offset, length);
+    return view.asReadOnlyBuffer();
+  }
 
-    // Copy the data to the memory mapped storage
-    sliceIntView.put(data, offset, length);
+  /**
+   * Registers an owner of this storage. Every call must be matched by a call to
+   * {@link #release()} once the owner is removed.
+   *
+   * @return this storage
+   */
+  @NotNull
+  public MemoryMapStorage retain() {
+    owners.incrementAndGet();
+    return this;
+  }
 
-    // Update the position and the main buffer so we are ready to store the next array
-    currentMappedFile.position(savedPosition + length * Integer.BYTES);
+  /**
+   * Unregisters an owner of this storage. When the last owner releases this storage, the temporary
+   * files are deleted and the segments are dropped. The storage can still be used afterwards and
+   * will create new segments.
+   */
+  public void release() {
+    if (owners.decrementAndGet() == 0) {
+      reclaim();
+    }
+  }
 
-    // Create a read-only version of the new buffer slice
-    final IntBuffer readOnlySlice = sliceIntView.asReadOnlyBuffer();
+  /**
+   * Deletes all temporary files and drops the segments without unmapping them. Buffers that still
+   * point into the segments stay valid until they are garbage-collected.
+   */
+  private synchronized void reclaim() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.capacity;
+      // on Windows, mapped files cannot be deleted. TmpFileCleanup removes them on next start
+      if (!segment.file.delete()) {
+        logger.finest("Could not delete temporary file " + segment.file.getAbsolutePath());
+      }
+    }
+    segments.clear();
+    currentSegment = null;
+    MZmineCore.unregisterStorage(this);
 
-    return readOnlySlice;
+    final long releasedBytes = bytes;
+    logger.finest(() -> "Released %d MB of memory mapped storage".formatted(
+        releasedBytes / 1024 / 1024));
+  }
 
+  /**
+   * @return the number of bytes of all mapped segments (not the number of bytes in use)
+   */
+  public synchronized long getMappedBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.capacity;
+    }
+    return bytes;
   }
 
   /**
@@ -332,22 +385,21 @@ public class MemoryMapStorage {
   public synchronized void discard(Unsafe theUnsafe) throws IOException {
 
     if (theUnsafe != null) {
-      for (MappedByteBuffer mappedByteBuffer : mappedByteBufferList) {
-        theUnsafe.invokeCleaner(mappedByteBuffer);
+      for (Segment segment : segments) {
+        theUnsafe.invokeCleaner(segment.buffer);
       }
     }
 
-    for (File tmpFile : temporaryFiles) {
-      if (!tmpFile.delete()) {
-        logger.warning("Could not delete temporary file " + tmpFile.getAbsolutePath());
+    for (Segment segment : segments) {
+      if (!segment.file.delete()) {
+        logger.warning("Could not delete temporary file " + segment.file.getAbsolutePath());
       }
     }
 
-    temporaryFiles.clear();
-    currentMappedFile = null;
+    segments.clear();
+    currentSegment = null;
   }
 
-
   public static boolean isStoreFeaturesInRam() {
     return storeFeaturesInRam;
   }
@@ -381,4 +433,40 @@ public class MemoryMapStorage {
     storeMassListsInRam = state;
     storeRawFilesInRam = state;
   }
+
+  /**
+   * One memory mapped temporary file.
+   */
+  private static final class Segment {
+
+    private final File file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicInteger position = new AtomicInteger(0);
+
+    private Segment(File file, MappedByteBuffer buffer, int capacity) {
+      this.file = file;
+      this.buffer = buffer;
+      this.capacity = capacity;
+    }
+
+    /**
+     * @return the start position in this segment or -1 if the segment is full
+     */
+    private int tryAllocate(int length) {
+      while (true) {
+        final int start = position.get();
+        if ((long) start + length > capacity) {
+          return -1;
+        }
+        if (position.compareAndSet(start, start + length)) {
+          return start;
+        }
+      }
+    }
+  }
+
+  private record Allocation(Segment segment, int start) {
+
+  }
 }
@@ -227,7 +227,8 @@ public class ScanUtils {
     double baseMz = 0d;
     double baseIntensity = 0d;
 
-    for (int i = 0; i < scan.getNumberOfDataPoints(); i++) {
+    final int numDataPoints = scan.getNumberOfDataPoints();
+    for (int i = findFirstMzAtLeast(scan, lower, numDataPoints); i < numDataPoints; i++) {
       double mz = scan.getMzValue(i);
       if (mz < lower) {
         continue;
@@ -245,6 +246,26 @@ public class ScanUtils {
     return found ? new SimpleDataPoint(baseMz, baseIntensity) : null;
   }
 
+  /**
+   * Binary search in a spectrum sorted by m/z
+   *
+   * @return the index of the first data point with an m/z >= mz or numDataPoints if there is none
+   */
+  private static int findFirstMzAtLeast(@NotNull MassSpectrum spectrum, double mz,
+      int numDataPoints) {
+    int low = 0;
+    int high = numDataPoints;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (spectrum.getMzValue(mid) < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   /**
    * @param numValues The number of values to be scanned.
    * @return The base peak or null
@@ -714,8 +735,8 @@ public class ScanUtils {
       @Nullable Range<Float> rtRange, @NotNull Range<Double> mzRange,
       @Nullable Comparator<Scan> sorter) {
 
-    final Stream<Scan> stream = dataFile.getScanNumbers(2).stream()
-        .filter(s -> matchesMS2Scan(s, rtRange, mzRange));
+    // binary search on the precursor m/z instead of testing all MS2 scans
+    final Stream<Scan> stream = dataFile.getFragmentScans(2, rtRange, mzRange).stream();
     return sorter == null ? stream : stream.sorted(sorter);
   }
 
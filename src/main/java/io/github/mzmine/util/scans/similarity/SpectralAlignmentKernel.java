@@ -0,0 +1,519 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.ScanAlignment;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Allocation free alignment of a library and a query spectrum on primitive arrays. Produces the
+ * same matches as {@link ScanAlignment#align(MZTolerance, DataPoint[], DataPoint[])} and the same
+ * sums as {@link io.github.mzmine.util.maths.similarity.Similarity#COSINE} on
+ * {@link ScanAlignment#toIntensityMatrixWeighted}, including the order of all additions, so that
+ * the scores are identical to the {@link SpectralSimilarityFunction#getSimilarity} results.
+ * <p>
+ * All buffers are reused. Use one instance per thread, see {@link #get()}. Set the library and the
+ * query, optionally restrict the signals with {@link #cropToOverlap} and
+ * {@link #removeLibrarySignals}, then call {@link #align}.
+ */
+public class SpectralAlignmentKernel {
+
+  private static final ThreadLocal<SpectralAlignmentKernel> threadKernel = ThreadLocal.withInitial(
+      SpectralAlignmentKernel::new);
+
+  // library and query sorted by m/z
+  private double[] libraryMzs = new double[0];
+  private double[] libraryIntensities = new double[0];
+  private int librarySize;
+  private double[] queryMzs = new double[0];
+  private double[] queryIntensities = new double[0];
+  private int querySize;
+  // the data points of the current query
+  private DataPoint[] lastQuery;
+
+  // signal filters, closed ranges
+  private double libraryMin;
+  private double libraryMax;
+  private double queryMin;
+  private double queryMax;
+  private double excludedMin;
+  private double excludedMax;
+
+  // filtered library indices, sorted by intensity
+  private int[] libraryOrder = new int[0];
+  private int filteredLibrarySize;
+  // filtered query indices sorted by m/z, positions sorted by intensity, and the rank of each
+  // position
+  private int[] querySignals = new int[0];
+  private int[] queryRanks = new int[0];
+  private int[] queryOrder = new int[0];
+  private boolean[] queryUsed = new boolean[0];
+  private int filteredQuerySize;
+
+  // matched pairs in order of the library intensity
+  private int[] pairLibrary = new int[0];
+  private int[] pairQuery = new int[0];
+  private int[] pairOrder = new int[0];
+  private double[] pairMinMzs = new double[0];
+  private int overlap;
+
+  private double dot;
+  private double normLibrary;
+  private double normQuery;
+
+  /**
+   * @return the kernel of the current thread
+   */
+  public static SpectralAlignmentKernel get() {
+    return threadKernel.get();
+  }
+
+  /**
+   * Sets the library spectrum and resets all signal filters
+   */
+  public void setLibrary(@NotNull MassSpectrum spectrum) {
+    final int n = spectrum.getNumberOfDataPoints();
+    ensureLibraryCapacity(n);
+    libraryMzs = spectrum.getMzValues(libraryMzs);
+    libraryIntensities = spectrum.getIntensityValues(libraryIntensities);
+    librarySize = n;
+    sortByMz(libraryMzs, libraryIntensities, n);
+    resetFilters();
+  }
+
+  /**
+   * Sets the library spectrum and resets all signal filters
+   */
+  public void setLibrary(@NotNull DataPoint[] dataPoints) {
+    final int n = dataPoints.length;
+    ensureLibraryCapacity(n);
+    for (int i = 0; i < n; i++) {
+      libraryMzs[i] = dataPoints[i].getMZ();
+      libraryIntensities[i] = dataPoints[i].getIntensity();
+    }
+    librarySize = n;
+    sortByMz(libraryMzs, libraryIntensities, n);
+    resetFilters();
+  }
+
+  /**
+   * Sets the query spectrum and resets all signal filters
+   */
+  public void setQuery(@NotNull DataPoint[] dataPoints) {
+    if (dataPoints == lastQuery) {
+      // same query for many library entries
+      resetFilters();
+      return;
+    }
+    final int n = dataPoints.length;
+    if (queryMzs.length < n) {
+      queryMzs = new double[n];
+      queryIntensities = new double[n];
+      querySignals = new int[n];
+      queryRanks = new int[n];
+      queryOrder = new int[n];
+      queryUsed = new boolean[n];
+    }
+    for (int i = 0; i < n; i++) {
+      queryMzs[i] = dataPoints[i].getMZ();
+      queryIntensities[i] = dataPoints[i].getIntensity();
+    }
+    querySize = n;
+    lastQuery = dataPoints;
+    sortByMz(queryMzs, queryIntensities, n);
+    resetFilters();
+  }
+
+  private void ensureLibraryCapacity(int n) {
+    if (libraryMzs.length < n) {
+      libraryMzs = new double[n];
+      libraryIntensities = new double[n];
+    }
+    if (libraryOrder.length < n) {
+      libraryOrder = new int[n];
+      pairLibrary = new int[n];
+      pairQuery = new int[n];
+      pairOrder = new int[n];
+      pairMinMzs = new double[n];
+    }
+  }
+
+  private void resetFilters() {
+    libraryMin = Double.NEGATIVE_INFINITY;
+    libraryMax = Double.POSITIVE_INFINITY;
+    queryMin = Double.NEGATIVE_INFINITY;
+    queryMax = Double.POSITIVE_INFINITY;
+    excludedMin = Double.NaN;
+    excludedMax = Double.NaN;
+  }
+
+  /**
+   * Restricts both spectra to their overlapping m/z range, same as
+   * {@link ScanAlignment#cropToOverlap(MZTolerance, DataPoint[], DataPoint[], Double, double)}
+   *
+   * @param libraryPrecursorMz precursor m/z of the library spectrum, extends its m/z range
+   * @param queryPrecursorMz   precursor m/z of the query spectrum, extends its m/z range
+   */
+  public void cropToOverlap(@NotNull MZTolerance mzTol, @Nullable Double libraryPrecursorMz,
+      double queryPrecursorMz) {
+    // empty spectra are treated as a single signal at 0 like in ScanAlignment.getMZRange
+    double libraryLower = librarySize == 0 ? 0 : libraryMzs[0];
+    double libraryUpper = librarySize == 0 ? 0 : libraryMzs[librarySize - 1];
+    if (libraryPrecursorMz != null) {
+      libraryLower = Math.min(libraryLower, libraryPrecursorMz);
+      libraryUpper = Math.max(libraryUpper, libraryPrecursorMz);
+    }
+    final double queryLower = Math.min(querySize == 0 ? 0 : queryMzs[0], queryPrecursorMz);
+    final double queryUpper = Math.max(querySize == 0 ? 0 : queryMzs[querySize - 1],
+        queryPrecursorMz);
+
+    double min;
+    double max;
+    if (libraryLower > queryUpper || queryLower > libraryUpper) {
+      // no overlap
+      min = 0;
+      max = 0;
+    } else {
+      min = Math.max(libraryLower, queryLower);
+      min = min - mzTol.getMzToleranceForMass(min);
+      max = Math.min(libraryUpper, queryUpper);
+      max = max + mzTol.getMzToleranceForMass(max);
+    }
+    libraryMin = Math.max(libraryMin, min);
+    libraryMax = Math.min(libraryMax, max);
+    queryMin = Math.max(queryMin, min);
+    queryMax = Math.min(queryMax, max);
+  }
+
+  /**
+   * Removes all library signals within the closed m/z range, e.g., the precursor
+   */
+  public void removeLibrarySignals(double minMz, double maxMz) {
+    excludedMin = minMz;
+    excludedMax = maxMz;
+  }
+
+  private boolean isLibrarySignal(double mz) {
+    // NaN excluded range never matches
+    return mz >= libraryMin && mz <= libraryMax && !(mz >= excludedMin && mz <= excludedMax);
+  }
+
+  private boolean isQuerySignal(double mz) {
+    return mz >= queryMin && mz <= queryMax;
+  }
+
+  /**
+   * Aligns the library and query signals that pass the filters. Signals are matched in order of
+   * decreasing intensity to the most intense free signal of the other spectrum within the m/z
+   * tolerance.
+   *
+   * @param weights         m/z and intensity weights for the cosine
+   * @param handleUnmatched defines which unmatched signals are added to the norms
+   * @return the number of matched signals
+   */
+  public int align(@NotNull MZTolerance mzTol, @NotNull Weights weights,
+      @NotNull HandleUnmatchedSignalOptions handleUnmatched) {
+    final boolean keepLibrary =
+        handleUnmatched == HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO
+        || handleUnmatched == HandleUnmatchedSignalOptions.KEEP_LIBRARY_SIGNALS;
+    final boolean keepQuery =
+        handleUnmatched == HandleUnmatchedSignalOptions.KEEP_ALL_AND_MATCH_TO_ZERO
+        || handleUnmatched == HandleUnmatchedSignalOptions.KEEP_EXPERIMENTAL_SIGNALS;
+    final double weightIntensity = weights.getIntensity();
+    final double weightMz = weights.getMz();
+
+    filteredLibrarySize = 0;
+    for (int i = 0; i < librarySize; i++) {
+      if (isLibrarySignal(libraryMzs[i])) {
+        libraryOrder[filteredLibrarySize++] = i;
+      }
+    }
+    sortByIntensity(libraryOrder, filteredLibrarySize, null, libraryMzs, libraryIntensities);
+
+    filteredQuerySize = 0;
+    for (int i = 0; i < querySize; i++) {
+      if (isQuerySignal(queryMzs[i])) {
+        querySignals[filteredQuerySize++] = i;
+      }
+    }
+    // positions of the filtered query signals sorted by intensity and the rank of each position
+    for (int p = 0; p < filteredQuerySize; p++) {
+      queryOrder[p] = p;
+    }
+    sortByIntensity(queryOrder, filteredQuerySize, querySignals, queryMzs, queryIntensities);
+    for (int r = 0; r < filteredQuerySize; r++) {
+      queryRanks[queryOrder[r]] = r;
+    }
+    Arrays.fill(queryUsed, 0, filteredQuerySize, false);
+
+    overlap = 0;
+    dot = 0;
+    normLibrary = 0;
+    normQuery = 0;
+    for (int o = 0; o < filteredLibrarySize; o++) {
+      final int a = libraryOrder[o];
+      final double mz = libraryMzs[a];
+      final double tolerance = mzTol.getMzToleranceForMass(mz);
+      final int match = findMatch(mz - tolerance, mz + tolerance);
+      final double wa = weight(libraryMzs[a], libraryIntensities[a], weightIntensity, weightMz);
+      if (match >= 0) {
+        queryUsed[match] = true;
+        final int b = querySignals[match];
+        final double wb = weight(queryMzs[b], queryIntensities[b], weightIntensity, weightMz);
+        dot += wa * wb;
+        normLibrary += wa * wa;
+        normQuery += wb * wb;
+        pairLibrary[overlap] = a;
+        pairQuery[overlap] = b;
+        overlap++;
+      } else if (keepLibrary) {
+        normLibrary += wa * wa;
+      }
+    }
+    // unmatched query signals are appended in order of intensity
+    if (keepQuery) {
+      for (int r = 0; r < filteredQuerySize; r++) {
+        final int p = queryOrder[r];
+        if (!queryUsed[p]) {
+          final int b = querySignals[p];
+          final double wb = weight(queryMzs[b], queryIntensities[b], weightIntensity, weightMz);
+          normQuery += wb * wb;
+        }
+      }
+    }
+    return overlap;
+  }
+
+  /**
+   * @return the position of the free query signal with the highest intensity within the closed m/z
+   * range or -1
+   */
+  private int findMatch(double minMz, double maxMz) {
+    int low = 0;
+    int high = filteredQuerySize;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (queryMzs[querySignals[mid]] < minMz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int best = -1;
+    for (int p = low; p < filteredQuerySize && queryMzs[querySignals[p]] <= maxMz; p++) {
+      if (!queryUsed[p] && (best == -1 || queryRanks[p] < queryRanks[best])) {
+        best = p;
+      }
+    }
+    return best;
+  }
+
+  private static double weight(double mz, double intensity, double weightIntensity,
+      double weightMz) {
+    return Math.pow(intensity, weightIntensity) * Math.pow(mz, weightMz);
+  }
+
+  /**
+   * @return the weighted cosine of the last alignment
+   */
+  public double getCosine() {
+    return dot / (Math.sqrt(normLibrary) * Math.sqrt(normQuery));
+  }
+
+  /**
+   * @return the number of matched signals of the last alignment
+   */
+  public int getOverlap() {
+    return overlap;
+  }
+
+  /**
+   * @return the number of query signals that passed the filters in the last alignment
+   */
+  public int getFilteredQuerySize() {
+    return filteredQuerySize;
+  }
+
+  /**
+   * Sum of the relative intensity ratios of neighbouring matched signals divided by the overlap,
+   * used by the composite cosine identity. Matched pairs are sorted by their lower m/z.
+   *
+   * @return the relative neighbour factor of the last alignment (0-1)
+   */
+  public double getRelativeNeighbourFactor() {
+    for (int k = 0; k < overlap; k++) {
+      pairMinMzs[k] = Math.min(libraryMzs[pairLibrary[k]], queryMzs[pairQuery[k]]);
+      pairOrder[k] = k;
+    }
+    // stable insertion sort to keep the library intensity order for equal m/z
+    for (int k = 1; k < overlap; k++) {
+      final int current = pairOrder[k];
+      int j = k - 1;
+      while (j >= 0 && Double.compare(pairMinMzs[pairOrder[j]], pairMinMzs[current]) > 0) {
+        pairOrder[j + 1] = pairOrder[j];
+        j--;
+      }
+      pairOrder[j + 1] = current;
+    }
+
+    double factor = 0;
+    for (int k = 1; k < overlap; k++) {
+      final int match1 = pairOrder[k - 1];
+      final int match2 = pairOrder[k];
+      double ratioLibrary =
+          libraryIntensities[pairLibrary[match2]] / libraryIntensities[pairLibrary[match1]];
+      double ratioQuery = queryIntensities[pairQuery[match2]] / queryIntensities[pairQuery[match1]];
+      factor += Math.min(ratioLibrary, ratioQuery) / Math.max(ratioLibrary, ratioQuery);
+    }
+    return factor / overlap;
+  }
+
+  /**
+   * @return the library signals that pass the filters
+   */
+  @NotNull
+  public DataPoint[] getLibraryDataPoints() {
+    int n = 0;
+    for (int i = 0; i < librarySize; i++) {
+      if (isLibrarySignal(libraryMzs[i])) {
+        n++;
+      }
+    }
+    final DataPoint[] dataPoints = new DataPoint[n];
+    n = 0;
+    for (int i = 0; i < librarySize; i++) {
+      if (isLibrarySignal(libraryMzs[i])) {
+        dataPoints[n++] = new SimpleDataPoint(libraryMzs[i], libraryIntensities[i]);
+      }
+    }
+    return dataPoints;
+  }
+
+  /**
+   * @return the query signals that pass the filters
+   */
+  @NotNull
+  public DataPoint[] getQueryDataPoints() {
+    int n = 0;
+    for (int i = 0; i < querySize; i++) {
+      if (isQuerySignal(queryMzs[i])) {
+        n++;
+      }
+    }
+    final DataPoint[] dataPoints = new DataPoint[n];
+    n = 0;
+    for (int i = 0; i < querySize; i++) {
+      if (isQuerySignal(queryMzs[i])) {
+        dataPoints[n++] = new SimpleDataPoint(queryMzs[i], queryIntensities[i]);
+      }
+    }
+    return dataPoints;
+  }
+
+  /**
+   * Spectra are usually sorted by m/z already. Otherwise sorts both arrays in place by m/z.
+   */
+  private static void sortByMz(double[] mzs, double[] intensities, int n) {
+    for (int i = 1; i < n; i++) {
+      if (mzs[i] < mzs[i - 1]) {
+        // insertion sort from the first unsorted element
+        for (int k = i; k < n; k++) {
+          final double mz = mzs[k];
+          final double intensity = intensities[k];
+          int j = k - 1;
+          while (j >= 0 && mzs[j] > mz) {
+            mzs[j + 1] = mzs[j];
+            intensities[j + 1] = intensities[j];
+            j--;
+          }
+          mzs[j + 1] = mz;
+          intensities[j + 1] = intensity;
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Heap sort of signal indices, same order as the {@link ScanAlignment#sorter}: decreasing
+   * intensity, then decreasing m/z
+   *
+   * @param order     the values to sort
+   * @param n         number of values
+   * @param signalMap maps the values to signal indices, null if the values are the indices
+   */
+  private static void sortByIntensity(int[] order, int n, @Nullable int[] signalMap, double[] mzs,
+      double[] intensities) {
+    for (int i = n / 2 - 1; i >= 0; i--) {
+      siftDown(order, i, n, signalMap, mzs, intensities);
+    }
+    for (int end = n - 1; end > 0; end--) {
+      final int tmp = order[0];
+      order[0] = order[end];
+      order[end] = tmp;
+      siftDown(order, 0, end, signalMap, mzs, intensities);
+    }
+  }
+
+  private static void siftDown(int[] order, int root, int n, @Nullable int[] signalMap,
+      double[] mzs, double[] intensities) {
+    while (true) {
+      int child = 2 * root + 1;
+      if (child >= n) {
+        return;
+      }
+      if (child + 1 < n
+          && compare(order[child + 1], order[child], signalMap, mzs, intensities) > 0) {
+        child++;
+      }
+      if (compare(order[child], order[root], signalMap, mzs, intensities) <= 0) {
+        return;
+      }
+      final int tmp = order[root];
+      order[root] = order[child];
+      order[child] = tmp;
+      root = child;
+    }
+  }
+
+  /**
+   * @return a positive value if a is sorted after b
+   */
+  private static int compare(int a, int b, @Nullable int[] signalMap, double[] mzs,
+      double[] intensities) {
+    final int i = signalMap == null ? a : signalMap[a];
+    final int j = signalMap == null ? b : signalMap[b];
+    // descending intensity and m/z
+    final int result = Double.compare(intensities[j], intensities[i]);
+    return result != 0 ? result : Double.compare(mzs[j], mzs[i]);
+  }
+}
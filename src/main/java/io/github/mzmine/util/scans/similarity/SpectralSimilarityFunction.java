@@ -64,6 +64,32 @@ public abstract class SpectralSimilarityFunction implements MZmineModule {
   public abstract SpectralSimilarity getSimilarity(ParameterSet parameters, MZTolerance mzTol,
       int minMatch, DataPoint[] library, DataPoint[] query);
 
+  /**
+   * @return true if {@link #getScore} is calculated on the kernel without creating the aligned data
+   * points. Only then it is worth to score candidates before calling {@link #getSimilarity}.
+   */
+  public boolean hasKernelScore() {
+    return false;
+  }
+
+  /**
+   * The score of {@link #getSimilarity} for the library and query spectra set to the kernel, without
+   * creating the aligned data points. Used to test many library entries and only create the full
+   * {@link SpectralSimilarity} for matches. The default implementation creates the filtered data
+   * points and calls {@link #getSimilarity}, override with an allocation free calculation and
+   * {@link #hasKernelScore()}.
+   *
+   * @param minMatch minimum overlap in signals
+   * @param kernel   the kernel with library and query spectrum
+   * @return the score if all requirements were met - otherwise NaN
+   */
+  public double getScore(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      SpectralAlignmentKernel kernel) {
+    final SpectralSimilarity similarity = getSimilarity(parameters, mzTol, minMatch,
+        kernel.getLibraryDataPoints(), kernel.getQueryDataPoints());
+    return similarity == null ? Double.NaN : similarity.getScore();
+  }
+
   /**
    * Align two mass lists. Override if alignement is changed in a specific spectral similarity
    * function.
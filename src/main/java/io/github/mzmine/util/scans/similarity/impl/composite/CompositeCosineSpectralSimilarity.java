@@ -31,6 +31,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.SpectralAlignmentKernel;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
@@ -93,6 +94,34 @@ public class CompositeCosineSpectralSimilarity extends SpectralSimilarityFunctio
     return null;
   }
 
+  @Override
+  public boolean hasKernelScore() {
+    return true;
+  }
+
+  @Override
+  public double getScore(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      SpectralAlignmentKernel kernel) {
+    Weights weights =
+        parameters.getParameter(CompositeCosineSpectralSimilarityParameters.weight).getValue();
+    double minCos =
+        parameters.getParameter(CompositeCosineSpectralSimilarityParameters.minCosine).getValue();
+    HandleUnmatchedSignalOptions handleUnmatched = parameters
+        .getParameter(CompositeCosineSpectralSimilarityParameters.handleUnmatched)
+        .getValue();
+
+    int overlap = kernel.align(mzTol, weights, handleUnmatched);
+    int queryN = kernel.getFilteredQuerySize();
+
+    if (overlap >= minMatch) {
+      double relativeFactor = kernel.getRelativeNeighbourFactor();
+      double diffCosine = kernel.getCosine();
+      double composite = (queryN * diffCosine + overlap * relativeFactor) / (queryN + overlap);
+      return composite >= minCos ? composite : Double.NaN;
+    }
+    return Double.NaN;
+  }
+
   /**
    * sum of relative ratios of neighbours in both mass lists
    *
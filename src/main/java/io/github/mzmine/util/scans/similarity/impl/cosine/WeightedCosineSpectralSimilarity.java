@@ -31,6 +31,7 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.util.maths.similarity.Similarity;
 import io.github.mzmine.util.scans.ScanAlignment;
 import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.SpectralAlignmentKernel;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
 import io.github.mzmine.util.scans.similarity.SpectralSimilarityFunction;
 import io.github.mzmine.util.scans.similarity.Weights;
@@ -80,6 +81,29 @@ public class WeightedCosineSpectralSimilarity extends SpectralSimilarityFunction
     return null;
   }
 
+  @Override
+  public boolean hasKernelScore() {
+    return true;
+  }
+
+  @Override
+  public double getScore(ParameterSet parameters, MZTolerance mzTol, int minMatch,
+      SpectralAlignmentKernel kernel) {
+    Weights weights =
+        parameters.getParameter(WeightedCosineSpectralSimilarityParameters.weight).getValue();
+    double minCos =
+        parameters.getParameter(WeightedCosineSpectralSimilarityParameters.minCosine).getValue();
+    HandleUnmatchedSignalOptions handleUnmatched = parameters
+        .getParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched).getValue();
+
+    int overlap = kernel.align(mzTol, weights, handleUnmatched);
+    if (overlap >= minMatch) {
+      double diffCosine = kernel.getCosine();
+      return diffCosine >= minCos ? diffCosine : Double.NaN;
+    }
+    return Double.NaN;
+  }
+
   @Override
   @NotNull
   public String getName() {
@@ -25,16 +25,19 @@
 
 package io.github.mzmine.util.spectraldb.entry;
 
+import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
 import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.ParsingUtils;
+import java.nio.DoubleBuffer;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Supplier;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -47,7 +50,13 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
   private static final String XML_DB_FIELD_ELEMENT = "entry";
   private static final String XML_FIELD_NAME_ATTR = "name";
 
-  private final Map<DBEntryField, Object> fields;
+  // null until the fields of a compiled entry are decoded
+  private volatile Map<DBEntryField, Object> fields;
+  @Nullable
+  private Supplier<Map<DBEntryField, Object>> fieldDecoder;
+  // precursor m/z of a compiled entry, so that indexing does not decode all fields
+  @Nullable
+  private final Double compiledPrecursorMZ;
 
   public SpectralDBEntry(@Nullable MemoryMapStorage storage, @NotNull double[] mzValues,
       @NotNull double[] intensityValues, Map<DBEntryField, Object> fields) {
@@ -56,6 +65,23 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
     if (fields != null) {
       this.fields.putAll(fields);
     }
+    compiledPrecursorMZ = null;
+  }
+
+  /**
+   * Entry of a compiled spectral library. The data points are already sorted and mapped, the fields
+   * are only decoded on first access.
+   *
+   * @param precursorMZ  the precursor m/z that is returned without decoding all fields
+   * @param fieldDecoder decodes the fields once into a new mutable map
+   */
+  public SpectralDBEntry(@NotNull DoubleBuffer mzValues, @NotNull DoubleBuffer intensityValues,
+      @Nullable Range<Double> mzRange, @Nullable Integer basePeakIndex, double tic,
+      @Nullable Double precursorMZ, @NotNull Supplier<Map<DBEntryField, Object>> fieldDecoder) {
+    super(mzValues, intensityValues, mzRange, basePeakIndex, tic);
+    this.fields = null;
+    this.fieldDecoder = fieldDecoder;
+    compiledPrecursorMZ = precursorMZ;
   }
 
   public SpectralDBEntry(@Nullable MemoryMapStorage storage, @NotNull double[] mzValues,
@@ -99,13 +125,13 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
 
   @Override
   public void putAll(Map<DBEntryField, Object> fields) {
-    this.fields.putAll(fields);
+    fields().putAll(fields);
   }
 
   @Override
   public boolean putIfNotNull(DBEntryField field, Object value) {
     if (field != null && value != null) {
-      fields.put(field, value);
+      fields().put(field, value);
       return true;
     }
     return false;
@@ -140,17 +166,18 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
 
   @Override
   public Double getPrecursorMZ() {
-    return (Double) fields.get(DBEntryField.PRECURSOR_MZ);
+    final Map<DBEntryField, Object> current = fields;
+    return current == null ? compiledPrecursorMZ : (Double) current.get(DBEntryField.PRECURSOR_MZ);
   }
 
   @Override
   public Optional<Object> getField(DBEntryField f) {
-    return Optional.ofNullable(fields.get(f));
+    return Optional.ofNullable(fields().get(f));
   }
 
   @Override
   public <T> T getOrElse(DBEntryField f, T defaultValue) {
-    final Object value = fields.get(f);
+    final Object value = fields().get(f);
     return value == null ? defaultValue : (T) value;
   }
 
@@ -169,7 +196,7 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
     writer.writeEndElement(); // intensities
 
     writer.writeStartElement(XML_DB_FIELD_LIST_ELEMENT);
-    for (Entry<DBEntryField, Object> entry : fields.entrySet()) {
+    for (Entry<DBEntryField, Object> entry : fields().entrySet()) {
       var key = entry.getKey();
       var value = entry.getValue();
       writer.writeStartElement(XML_DB_FIELD_ELEMENT);
@@ -191,7 +218,7 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
       return false;
     }
     SpectralDBEntry that = (SpectralDBEntry) o;
-    return Objects.equals(fields, that.fields)
+    return Objects.equals(fields(), that.fields())
         && getNumberOfDataPoints() == that.getNumberOfDataPoints();
   }
 
@@ -203,12 +230,27 @@ public class SpectralDBEntry extends SimpleMassList implements SpectralLibraryEn
 
   @Override
   public int hashCode() {
-    return Objects.hash(fields, getNumberOfDataPoints());
+    return Objects.hash(fields(), getNumberOfDataPoints());
   }
 
   @Override
   public Map<DBEntryField, Object> getFields() {
-    return fields;
+    return fields();
+  }
+
+  private Map<DBEntryField, Object> fields() {
+    Map<DBEntryField, Object> current = fields;
+    if (current == null) {
+      synchronized (this) {
+        current = fields;
+        if (current == null) {
+          current = fieldDecoder.get();
+          fields = current;
+          fieldDecoder = null;
+        }
+      }
+    }
+    return current;
   }
 
 }
@@ -54,6 +54,9 @@ public class SpectralLibrary {
   private final MemoryMapStorage storage;
   private final ObservableMap<Class<? extends DataType>, DataType> types = FXCollections.observableMap(
       new LinkedHashMap<>());
+  // precursor mz index, lazily created and replaced when entries change
+  @Nullable
+  private volatile SpectralLibraryIndex index;
 
   public SpectralLibrary(@Nullable MemoryMapStorage storage, @NotNull File path) {
     this(storage, path.getName(), path);
@@ -122,6 +125,27 @@ public class SpectralLibrary {
     return getEntries().size();
   }
 
+  /**
+   * Index of all entries sorted by precursor m/z. The index is created on first access and reused
+   * until the number of entries changes.
+   *
+   * @return the index over all entries of this library
+   */
+  @NotNull
+  public SpectralLibraryIndex getIndex() {
+    SpectralLibraryIndex current = index;
+    if (current == null || current.getNumEntries() != entries.size()) {
+      synchronized (this) {
+        current = index;
+        if (current == null || current.getNumEntries() != entries.size()) {
+          current = new SpectralLibraryIndex(entries);
+          index = current;
+        }
+      }
+    }
+    return current;
+  }
+
   public Stream<SpectralLibraryEntry> stream() {
     return getEntries().stream();
   }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable index over the entries of a {@link SpectralLibrary}. Entries are sorted by precursor
+ * m/z so that a search only visits the entries within the precursor tolerance window. Retention
+ * times are kept in a primitive array to allow fast pre-filtering without accessing the field maps
+ * of each entry. Entries without precursor m/z are kept separately.
+ * <p>
+ * The index is created once per library by {@link SpectralLibrary#getIndex()} and reused for all
+ * following searches until entries are added to the library.
+ */
+public class SpectralLibraryIndex {
+
+  private final int numEntries;
+  // sorted by precursor mz
+  private final double[] precursorMZs;
+  // NaN if not available
+  private final float[] rts;
+  private final SpectralLibraryEntry[] entries;
+  // entries without precursor mz
+  private final List<SpectralLibraryEntry> entriesWithoutPrecursor;
+
+  SpectralLibraryIndex(@NotNull List<SpectralLibraryEntry> libraryEntries) {
+    numEntries = libraryEntries.size();
+    List<SpectralLibraryEntry> withPrecursor = new ArrayList<>(libraryEntries.size());
+    List<SpectralLibraryEntry> withoutPrecursor = new ArrayList<>();
+    for (SpectralLibraryEntry entry : libraryEntries) {
+      if (entry.getPrecursorMZ() == null) {
+        withoutPrecursor.add(entry);
+      } else {
+        withPrecursor.add(entry);
+      }
+    }
+    entriesWithoutPrecursor = List.copyOf(withoutPrecursor);
+
+    final int n = withPrecursor.size();
+    final double[] unsortedMZs = new double[n];
+    for (int i = 0; i < n; i++) {
+      unsortedMZs[i] = withPrecursor.get(i).getPrecursorMZ();
+    }
+    // sort indices by precursor mz
+    final int[] order = new int[n];
+    Arrays.setAll(order, i -> i);
+    IntArrays.parallelQuickSort(order, (a, b) -> Double.compare(unsortedMZs[a], unsortedMZs[b]));
+
+    precursorMZs = new double[n];
+    rts = new float[n];
+    entries = new SpectralLibraryEntry[n];
+    for (int i = 0; i < n; i++) {
+      SpectralLibraryEntry entry = withPrecursor.get(order[i]);
+      entries[i] = entry;
+      precursorMZs[i] = unsortedMZs[order[i]];
+      rts[i] = toFloat(entry.getOrElse(DBEntryField.RT, null));
+    }
+  }
+
+  private static float toFloat(@Nullable Object value) {
+    return value instanceof Number n ? n.floatValue() : Float.NaN;
+  }
+
+  /**
+   * @return the number of library entries when this index was created
+   */
+  public int getNumEntries() {
+    return numEntries;
+  }
+
+  /**
+   * @return all entries that define no precursor m/z
+   */
+  @NotNull
+  public List<SpectralLibraryEntry> getEntriesWithoutPrecursor() {
+    return entriesWithoutPrecursor;
+  }
+
+  /**
+   * @return the index of the first entry with precursor m/z >= mz
+   */
+  private int lowerBound(double mz) {
+    int low = 0;
+    int high = precursorMZs.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (precursorMZs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Adds all entries within the precursor m/z range and the optional RT window to the target
+   * list. Entries without RT always pass the RT filter.
+   *
+   * @param minMZ  lower bound of precursor m/z (inclusive)
+   * @param maxMZ  upper bound of precursor m/z (inclusive)
+   * @param minRT  lower RT bound or NaN to skip RT filter
+   * @param maxRT  upper RT bound or NaN to skip RT filter
+   * @param target the target list
+   * @return the number of added entries
+   */
+  public int addCandidates(double minMZ, double maxMZ, float minRT, float maxRT,
+      @NotNull List<SpectralLibraryEntry> target) {
+    final boolean filterRT = !Float.isNaN(minRT) && !Float.isNaN(maxRT);
+    int added = 0;
+    for (int i = lowerBound(minMZ); i < precursorMZs.length && precursorMZs[i] <= maxMZ; i++) {
+      if (filterRT && !Float.isNaN(rts[i]) && (rts[i] < minRT || rts[i] > maxRT)) {
+        continue;
+      }
+      target.add(entries[i]);
+      added++;
+    }
+    return added;
+  }
+
+  /**
+   * @param minMZ lower bound of precursor m/z (inclusive)
+   * @param maxMZ upper bound of precursor m/z (inclusive)
+   * @return all entries within the precursor m/z range
+   */
+  @NotNull
+  public List<SpectralLibraryEntry> getCandidates(double minMZ, double maxMZ) {
+    List<SpectralLibraryEntry> candidates = new ArrayList<>();
+    addCandidates(minMZ, maxMZ, Float.NaN, Float.NaN, candidates);
+    return candidates;
+  }
+}
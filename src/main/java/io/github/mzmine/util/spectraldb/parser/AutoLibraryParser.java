@@ -29,14 +29,19 @@ import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
 import java.io.File;
 import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
- * Auto detects library format
+ * Auto detects library format. The parsed library is compiled to a binary file on the first import
+ * and the compiled library is used as long as the source file is unchanged, see
+ * {@link CompiledSpectralLibrary}.
  *
  * @author Robin Schmid
  */
 public class AutoLibraryParser extends SpectralDBParser {
 
+  private static final Logger logger = Logger.getLogger(AutoLibraryParser.class.getName());
   private SpectralDBParser subParser;
 
   public AutoLibraryParser(int bufferEntries, LibraryEntryProcessor processor) {
@@ -46,9 +51,44 @@ public class AutoLibraryParser extends SpectralDBParser {
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile, SpectralLibrary library)
       throws UnsupportedFormatException, IOException {
-    subParser = SpectralLibraryFormatChecker.getParser(dataBaseFile, bufferEntries, processor);
-    // parse the file
-    return subParser.parse(mainTask, dataBaseFile, library);
+    if (CompiledLibraryParser.isCompiled(dataBaseFile)) {
+      subParser = new CompiledLibraryParser(bufferEntries, processor);
+      try {
+        return subParser.parse(mainTask, dataBaseFile, library);
+      } catch (IOException e) {
+        if (subParser.getProcessedEntries() > 0) {
+          throw e;
+        }
+        logger.log(Level.WARNING,
+            "Cannot read compiled library, parsing " + dataBaseFile.getAbsolutePath(), e);
+      }
+    }
+
+    final CompiledLibraryWriter writer = CompiledLibraryWriter.create(dataBaseFile,
+        CompiledSpectralLibrary.getCacheFile(dataBaseFile));
+    if (writer == null) {
+      subParser = SpectralLibraryFormatChecker.getParser(dataBaseFile, bufferEntries, processor);
+      return subParser.parse(mainTask, dataBaseFile, library);
+    }
+
+    boolean success = false;
+    try {
+      // compile entries before they are handed on
+      subParser = SpectralLibraryFormatChecker.getParser(dataBaseFile, bufferEntries,
+          (list, alreadyProcessed) -> {
+            writer.addEntries(list);
+            processor.processNextEntries(list, alreadyProcessed);
+          });
+      // parse the file
+      success = subParser.parse(mainTask, dataBaseFile, library);
+      return success;
+    } finally {
+      if (success && (mainTask == null || !mainTask.isCanceled())) {
+        writer.finish();
+      } else {
+        writer.abort();
+      }
+    }
   }
 
   @Override
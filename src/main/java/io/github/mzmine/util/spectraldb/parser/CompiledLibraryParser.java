@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the {@link CompiledSpectralLibrary} of a library file. The entries are memory mapped and
+ * their fields are decoded on first access.
+ */
+public class CompiledLibraryParser extends SpectralDBParser {
+
+  private static final Logger logger = Logger.getLogger(CompiledLibraryParser.class.getName());
+  private int numEntries = 0;
+  private int createdEntries = 0;
+
+  public CompiledLibraryParser(int bufferEntries, LibraryEntryProcessor processor) {
+    super(bufferEntries, processor);
+  }
+
+  /**
+   * @param dataBaseFile the source library file
+   * @return true if there is a compiled library for the current version of the file
+   */
+  public static boolean isCompiled(File dataBaseFile) {
+    return CompiledSpectralLibrary.isUpToDate(dataBaseFile,
+        CompiledSpectralLibrary.getCacheFile(dataBaseFile));
+  }
+
+  /**
+   * @param dataBaseFile the source library file, the compiled library is located automatically
+   * @throws IOException if the compiled library is invalid. No entries were processed in this
+   *                     case.
+   */
+  @Override
+  public boolean parse(@Nullable AbstractTask mainTask, File dataBaseFile,
+      @Nullable SpectralLibrary library) throws IOException {
+    final File compiledFile = CompiledSpectralLibrary.getCacheFile(dataBaseFile);
+    final CompiledSpectralLibrary compiled = CompiledSpectralLibrary.open(dataBaseFile,
+        compiledFile);
+    logger.info(
+        "Reading compiled spectral library %s of %s".formatted(compiledFile.getAbsolutePath(),
+            dataBaseFile.getAbsolutePath()));
+
+    numEntries = compiled.getNumEntries();
+    for (int i = 0; i < numEntries; i++) {
+      if (mainTask != null && mainTask.isCanceled()) {
+        return false;
+      }
+      // entries were checked before compilation
+      addCheckedLibraryEntry(compiled.createEntry(i));
+      createdEntries++;
+    }
+    finish();
+    return true;
+  }
+
+  @Override
+  public double getProgress() {
+    return numEntries == 0 ? 0 : createdEntries / (double) numEntries;
+  }
+}
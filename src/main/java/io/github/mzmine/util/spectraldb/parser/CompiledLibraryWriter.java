@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.util.spectraldb.parser;
+
+import static io.github.mzmine.util.spectraldb.parser.CompiledSpectralLibrary.HEADER_BYTES;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.parser.CompiledSpectralLibrary.Header;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes a {@link CompiledSpectralLibrary} while the source file is parsed. The peaks are streamed
+ * to a temporary file, only the metadata columns and the string dictionary are kept until
+ * {@link #finish()} moves the complete file to its final location. Libraries with field values
+ * that cannot be compiled are not written.
+ */
+class CompiledLibraryWriter {
+
+  private static final Logger logger = Logger.getLogger(CompiledLibraryWriter.class.getName());
+  private static final int BUFFER_BYTES = 1 << 20;
+  // keys are stored as byte ordinals
+  private static final DBEntryField[] KEYS = DBEntryField.values();
+
+  private final File source;
+  private final File target;
+  private final long sourceSize;
+  private final long sourceLastModified;
+  private final Path tempFile;
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES)
+      .order(ByteOrder.LITTLE_ENDIAN);
+  private long position = HEADER_BYTES;
+
+  // entry columns
+  private final LongArrayList peakOffsets = new LongArrayList();
+  private final DoubleArrayList precursorMzs = new DoubleArrayList();
+  private final DoubleArrayList tics = new DoubleArrayList();
+  private final DoubleArrayList minMzs = new DoubleArrayList();
+  private final DoubleArrayList maxMzs = new DoubleArrayList();
+  private final IntArrayList numPeaks = new IntArrayList();
+  private final IntArrayList basePeakIndices = new IntArrayList();
+  private final IntArrayList fieldStarts = IntArrayList.of(0);
+  // field columns
+  private final LongArrayList fieldValues = new LongArrayList();
+  private final ByteArrayList fieldKeys = new ByteArrayList();
+  private final ByteArrayList fieldTypes = new ByteArrayList();
+  // string dictionary
+  private final Object2IntOpenHashMap<String> stringIds = new Object2IntOpenHashMap<>();
+  private final List<byte[]> strings = new ArrayList<>();
+  private long stringBytes = 0;
+
+  private double[] mzs = new double[0];
+  private double[] intensities = new double[0];
+  private boolean failed = false;
+
+  private CompiledLibraryWriter(@NotNull File source, @NotNull File target) throws IOException {
+    this.source = source;
+    this.target = target;
+    // changes during parsing are detected when the compiled library is used
+    sourceSize = source.length();
+    sourceLastModified = source.lastModified();
+
+    Files.createDirectories(target.toPath().getParent());
+    tempFile = Files.createTempFile(target.toPath().getParent(), target.getName(), ".tmp");
+    channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+    // the header is written last
+    channel.position(HEADER_BYTES);
+
+    stringIds.defaultReturnValue(-1);
+    addString(source.getAbsolutePath());
+    for (DBEntryField key : KEYS) {
+      addString(key.name());
+    }
+  }
+
+  /**
+   * @return a writer or null if the compiled library cannot be created
+   */
+  @Nullable
+  static CompiledLibraryWriter create(@NotNull File source, @NotNull File target) {
+    try {
+      return new CompiledLibraryWriter(source, target);
+    } catch (IOException e) {
+      logger.log(Level.WARNING,
+          "Cannot create compiled library " + target.getAbsolutePath() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Adds the entries in the order of the source file
+   */
+  synchronized void addEntries(@NotNull List<SpectralLibraryEntry> entries) {
+    if (failed) {
+      return;
+    }
+    try {
+      for (SpectralLibraryEntry entry : entries) {
+        addEntry(entry);
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      logger.log(Level.WARNING,
+          "Cannot compile library %s: %s".formatted(source.getName(), e.getMessage()));
+      abort();
+    }
+  }
+
+  private void addEntry(SpectralLibraryEntry entry) throws IOException {
+    for (Map.Entry<DBEntryField, Object> field : entry.getFields().entrySet()) {
+      if (field.getValue() == null) {
+        continue;
+      }
+      final Object value = field.getValue();
+      final byte type;
+      final long bits;
+      switch (value) {
+        case String s -> {
+          type = CompiledSpectralLibrary.TYPE_STRING;
+          bits = addString(s);
+        }
+        case Double d -> {
+          type = CompiledSpectralLibrary.TYPE_DOUBLE;
+          bits = Double.doubleToRawLongBits(d);
+        }
+        case Float f -> {
+          type = CompiledSpectralLibrary.TYPE_FLOAT;
+          bits = Float.floatToRawIntBits(f);
+        }
+        case Integer i -> {
+          type = CompiledSpectralLibrary.TYPE_INTEGER;
+          bits = i;
+        }
+        case Long l -> {
+          type = CompiledSpectralLibrary.TYPE_LONG;
+          bits = l;
+        }
+        default -> throw new IllegalArgumentException(
+            "unsupported value type %s of field %s".formatted(value.getClass().getSimpleName(),
+                field.getKey()));
+      }
+      fieldValues.add(bits);
+      fieldKeys.add((byte) field.getKey().ordinal());
+      fieldTypes.add(type);
+    }
+    fieldStarts.add(fieldValues.size());
+
+    final int n = entry.getNumberOfDataPoints();
+    mzs = entry.getMzValues(mzs);
+    intensities = entry.getIntensityValues(intensities);
+    peakOffsets.add(position);
+    for (int i = 0; i < n; i++) {
+      putDouble(mzs[i]);
+    }
+    for (int i = 0; i < n; i++) {
+      putDouble(intensities[i]);
+    }
+
+    final Object precursorMz = entry.getFields().get(DBEntryField.PRECURSOR_MZ);
+    precursorMzs.add(precursorMz instanceof Double d ? d : Double.NaN);
+    tics.add(entry.getTIC());
+    final Range<Double> mzRange = entry.getDataPointMZRange();
+    minMzs.add(mzRange == null ? Double.NaN : mzRange.lowerEndpoint());
+    maxMzs.add(mzRange == null ? Double.NaN : mzRange.upperEndpoint());
+    numPeaks.add(n);
+    final Integer basePeak = entry.getBasePeakIndex();
+    basePeakIndices.add(basePeak == null ? -1 : basePeak);
+  }
+
+  private int addString(String s) {
+    int id = stringIds.getInt(s);
+    if (id == -1) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      stringBytes += bytes.length;
+      if (stringBytes > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("string dictionary exceeds 2 GB");
+      }
+      id = strings.size();
+      strings.add(bytes);
+      stringIds.put(s, id);
+    }
+    return id;
+  }
+
+  private void putDouble(double value) throws IOException {
+    if (buffer.remaining() < Double.BYTES) {
+      flush();
+    }
+    buffer.putDouble(value);
+    position += Double.BYTES;
+  }
+
+  private void putInt(int value) throws IOException {
+    if (buffer.remaining() < Integer.BYTES) {
+      flush();
+    }
+    buffer.putInt(value);
+    position += Integer.BYTES;
+  }
+
+  private void putLong(long value) throws IOException {
+    if (buffer.remaining() < Long.BYTES) {
+      flush();
+    }
+    buffer.putLong(value);
+    position += Long.BYTES;
+  }
+
+  private void putBytes(byte[] values) throws IOException {
+    for (int offset = 0; offset < values.length; ) {
+      if (!buffer.hasRemaining()) {
+        flush();
+      }
+      final int length = Math.min(buffer.remaining(), values.length - offset);
+      buffer.put(values, offset, length);
+      offset += length;
+      position += length;
+    }
+  }
+
+  private void padTo8() throws IOException {
+    while (position % 8 != 0) {
+      putBytes(new byte[]{0});
+    }
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes the metadata and the dictionary and replaces a previous compiled library
+   *
+   * @return true if the compiled library was written
+   */
+  synchronized boolean finish() {
+    if (failed) {
+      return false;
+    }
+    try {
+      final long metadataOffset = position;
+      final int n = numPeaks.size();
+      for (int i = 0; i < n; i++) {
+        putLong(peakOffsets.getLong(i));
+      }
+      for (DoubleArrayList column : List.of(precursorMzs, tics, minMzs, maxMzs)) {
+        for (int i = 0; i < n; i++) {
+          putDouble(column.getDouble(i));
+        }
+      }
+      for (int i = 0; i < fieldValues.size(); i++) {
+        putLong(fieldValues.getLong(i));
+      }
+      for (IntArrayList column : List.of(numPeaks, basePeakIndices, fieldStarts)) {
+        for (int i = 0; i < column.size(); i++) {
+          putInt(column.getInt(i));
+        }
+      }
+      putBytes(fieldKeys.toByteArray());
+      putBytes(fieldTypes.toByteArray());
+      padTo8();
+
+      final long dictionaryOffset = position;
+      int start = 0;
+      putInt(start);
+      for (byte[] s : strings) {
+        start += s.length;
+        putInt(start);
+      }
+      for (byte[] s : strings) {
+        putBytes(s);
+      }
+      flush();
+
+      new Header(sourceSize, sourceLastModified, n, fieldValues.size(), KEYS.length,
+          strings.size(), metadataOffset, dictionaryOffset).write(channel);
+      channel.close();
+      Files.move(tempFile, target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      logger.info(() -> "Compiled spectral library %s with %d entries to %s".formatted(
+          source.getName(), n, target.getAbsolutePath()));
+      return true;
+    } catch (IOException e) {
+      // a compiled library that is still mapped cannot be replaced on some systems
+      logger.log(Level.WARNING,
+          "Cannot write compiled library %s: %s".formatted(target.getAbsolutePath(),
+              e.getMessage()));
+      abort();
+      return false;
+    }
+  }
+
+  /**
+   * Deletes the temporary file, e.g., if parsing was canceled
+   */
+  synchronized void abort() {
+    failed = true;
+    try {
+      channel.close();
+      Files.deleteIfExists(tempFile);
+    } catch (IOException e) {
+      logger.log(Level.FINE, "Cannot delete temporary compiled library " + tempFile, e);
+    }
+  }
+}
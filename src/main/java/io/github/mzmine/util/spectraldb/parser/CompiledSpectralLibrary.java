@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.util.spectraldb.parser;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Binary compiled spectral library that is written by {@link CompiledLibraryWriter} on the first
+ * import of a library file and reused as long as the source file is unchanged. The file contains a
+ * header, a peak block with the sorted m/z and intensity values of each entry, a columnar metadata
+ * block and a string dictionary, all in little endian:
+ * <pre>
+ * header      magic, version, source size, source last modified, number of entries, fields, keys
+ *             and strings, offsets of the metadata and dictionary blocks
+ * peaks       per entry: m/z values, intensity values (double)
+ * metadata    peak offset (long), precursor m/z, TIC, min m/z, max m/z (double), number of peaks,
+ *             base peak index, first field (int) per entry; value (long), key (byte), type (byte)
+ *             per field
+ * dictionary  start (int) per string, UTF-8 bytes
+ * </pre>
+ * String 0 is the absolute path of the source file and strings 1 to the number of keys are the
+ * {@link DBEntryField} names, so that changes to the fields invalidate the compiled library. The
+ * peak and metadata blocks stay memory mapped, entries are created without reading their data
+ * points and their fields are only decoded on first access.
+ */
+final class CompiledSpectralLibrary {
+
+  static final String CACHE_EXTENSION = "mzlib";
+  // "MZLB"
+  static final int MAGIC = 0x424C5A4D;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 64;
+
+  static final byte TYPE_STRING = 0;
+  static final byte TYPE_DOUBLE = 1;
+  static final byte TYPE_FLOAT = 2;
+  static final byte TYPE_INTEGER = 3;
+  static final byte TYPE_LONG = 4;
+
+  // mapped buffers are limited to 2 GB, peaks are mapped in chunks that end on entry boundaries
+  private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+  private final Header header;
+  private final DBEntryField[] keys;
+  private final LongBuffer peakOffsets;
+  private final DoubleBuffer precursorMzs;
+  private final DoubleBuffer tics;
+  private final DoubleBuffer minMzs;
+  private final DoubleBuffer maxMzs;
+  private final IntBuffer numPeaks;
+  private final IntBuffer basePeakIndices;
+  private final IntBuffer fieldStarts;
+  private final LongBuffer fieldValues;
+  private final ByteBuffer fieldKeys;
+  private final ByteBuffer fieldTypes;
+  private final IntBuffer stringStarts;
+  private final ByteBuffer stringBytes;
+  // decoded strings, shared by all entries
+  private final String[] strings;
+  private final long[] chunkStarts;
+  private final MappedByteBuffer[] peakChunks;
+
+  private CompiledSpectralLibrary(@NotNull File source, @NotNull FileChannel channel,
+      @NotNull Header header) throws IOException {
+    this.header = header;
+    final int n = header.numEntries();
+    final int numFields = header.numFields();
+
+    ByteBuffer metadata = map(channel, header.metadataOffset(), header.dictionaryOffset());
+    int pos = 0;
+    peakOffsets = slice(metadata, pos, n * 8L).asLongBuffer();
+    pos += n * 8;
+    precursorMzs = slice(metadata, pos, n * 8L).asDoubleBuffer();
+    pos += n * 8;
+    tics = slice(metadata, pos, n * 8L).asDoubleBuffer();
+    pos += n * 8;
+    minMzs = slice(metadata, pos, n * 8L).asDoubleBuffer();
+    pos += n * 8;
+    maxMzs = slice(metadata, pos, n * 8L).asDoubleBuffer();
+    pos += n * 8;
+    fieldValues = slice(metadata, pos, numFields * 8L).asLongBuffer();
+    pos += numFields * 8;
+    numPeaks = slice(metadata, pos, n * 4L).asIntBuffer();
+    pos += n * 4;
+    basePeakIndices = slice(metadata, pos, n * 4L).asIntBuffer();
+    pos += n * 4;
+    fieldStarts = slice(metadata, pos, (n + 1) * 4L).asIntBuffer();
+    pos += (n + 1) * 4;
+    fieldKeys = slice(metadata, pos, numFields);
+    pos += numFields;
+    fieldTypes = slice(metadata, pos, numFields);
+
+    ByteBuffer dictionary = map(channel, header.dictionaryOffset(), channel.size());
+    final int numStrings = header.numStrings();
+    stringStarts = slice(dictionary, 0, (numStrings + 1) * 4L).asIntBuffer();
+    stringBytes = slice(dictionary, (numStrings + 1) * 4,
+        dictionary.capacity() - (numStrings + 1) * 4L);
+    strings = new String[numStrings];
+
+    if (!source.getAbsolutePath().equals(getString(0))) {
+      throw new IOException("Compiled library was created for another file " + getString(0));
+    }
+    keys = new DBEntryField[header.numKeys()];
+    for (int i = 0; i < keys.length; i++) {
+      try {
+        keys[i] = DBEntryField.valueOf(getString(i + 1));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Compiled library contains unknown field " + getString(i + 1));
+      }
+    }
+
+    // map the peaks in chunks, one entry is never split between chunks
+    List<long[]> chunks = new ArrayList<>();
+    long chunkStart = HEADER_BYTES;
+    long chunkEnd = HEADER_BYTES;
+    for (int i = 0; i < n; i++) {
+      final long entryEnd = peakOffsets.get(i) + numPeaks.get(i) * 16L;
+      if (entryEnd - chunkStart > MAX_CHUNK_BYTES && chunkEnd > chunkStart) {
+        chunks.add(new long[]{chunkStart, chunkEnd});
+        chunkStart = chunkEnd;
+      }
+      chunkEnd = entryEnd;
+    }
+    chunks.add(new long[]{chunkStart, chunkEnd});
+    chunkStarts = new long[chunks.size()];
+    peakChunks = new MappedByteBuffer[chunks.size()];
+    for (int i = 0; i < chunks.size(); i++) {
+      chunkStarts[i] = chunks.get(i)[0];
+      peakChunks[i] = map(channel, chunks.get(i)[0], chunks.get(i)[1]);
+    }
+  }
+
+  /**
+   * @return the compiled library file of a spectral library file
+   */
+  @NotNull
+  static File getCacheFile(@NotNull File source) {
+    File userDir = FileAndPathUtil.getUserSettingsDir();
+    File dir = new File(userDir != null ? userDir : new File(System.getProperty("java.io.tmpdir")),
+        "library_cache");
+    String name = "%s_%08x.%s".formatted(FileAndPathUtil.safePathEncode(source.getName()),
+        source.getAbsolutePath().hashCode(), CACHE_EXTENSION);
+    return new File(dir, name);
+  }
+
+  /**
+   * Only checks the header, the full check is done by {@link #open(File, File)}
+   *
+   * @return true if the compiled library exists and matches the current version and the size and
+   * last modified time of the source file
+   */
+  static boolean isUpToDate(@NotNull File source, @NotNull File compiled) {
+    if (!compiled.isFile()) {
+      return false;
+    }
+    try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ)) {
+      return Header.read(channel).matches(source);
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Maps the compiled library. The mapping stays valid after the file channel is closed.
+   *
+   * @throws IOException if the compiled library is corrupt or does not match the source file
+   */
+  @NotNull
+  static CompiledSpectralLibrary open(@NotNull File source, @NotNull File compiled)
+      throws IOException {
+    try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ)) {
+      Header header = Header.read(channel);
+      if (!header.matches(source)) {
+        throw new IOException("Compiled library is outdated " + compiled.getAbsolutePath());
+      }
+      return new CompiledSpectralLibrary(source, channel, header);
+    }
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long start, long end)
+      throws IOException {
+    if (end < start || end > channel.size() || end - start > Integer.MAX_VALUE) {
+      throw new IOException(
+          "Invalid block in compiled library from %d to %d".formatted(start, end));
+    }
+    return channel.map(MapMode.READ_ONLY, start, end - start);
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int index, long length) throws IOException {
+    if (index + length > buffer.capacity()) {
+      throw new IOException("Compiled library is truncated");
+    }
+    // slices are always big endian
+    return buffer.slice(index, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  int getNumEntries() {
+    return header.numEntries();
+  }
+
+  /**
+   * Creates the entry on the mapped peaks without reading them
+   *
+   * @param index entry index
+   * @return a new library entry
+   */
+  @NotNull
+  SpectralLibraryEntry createEntry(int index) {
+    final int n = numPeaks.get(index);
+    final long offset = peakOffsets.get(index);
+    final DoubleBuffer mzs = peaks(offset, n);
+    final DoubleBuffer intensities = peaks(offset + n * 8L, n);
+    final Range<Double> mzRange =
+        n == 0 ? null : Range.closed(minMzs.get(index), maxMzs.get(index));
+    final int basePeak = basePeakIndices.get(index);
+    final double precursorMz = precursorMzs.get(index);
+    return new SpectralDBEntry(mzs, intensities, mzRange, basePeak < 0 ? null : basePeak,
+        tics.get(index), Double.isNaN(precursorMz) ? null : precursorMz,
+        () -> decodeFields(index));
+  }
+
+  private DoubleBuffer peaks(long offset, int n) {
+    int chunk = Arrays.binarySearch(chunkStarts, offset);
+    if (chunk < 0) {
+      chunk = -chunk - 2;
+    }
+    final int start = (int) (offset - chunkStarts[chunk]);
+    return peakChunks[chunk].slice(start, n * 8).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+  }
+
+  private Map<DBEntryField, Object> decodeFields(int index) {
+    final int start = fieldStarts.get(index);
+    final int end = fieldStarts.get(index + 1);
+    Map<DBEntryField, Object> fields = new HashMap<>();
+    for (int i = start; i < end; i++) {
+      final long value = fieldValues.get(i);
+      final Object decoded = switch (fieldTypes.get(i)) {
+        case TYPE_STRING -> getString((int) value);
+        case TYPE_DOUBLE -> Double.longBitsToDouble(value);
+        case TYPE_FLOAT -> Float.intBitsToFloat((int) value);
+        case TYPE_INTEGER -> (int) value;
+        case TYPE_LONG -> value;
+        default -> throw new IllegalStateException("Unknown field type " + fieldTypes.get(i));
+      };
+      fields.put(keys[fieldKeys.get(i)], decoded);
+    }
+    return fields;
+  }
+
+  private String getString(int id) {
+    // strings are immutable, concurrent decoding of the same string is harmless
+    String s = strings[id];
+    if (s == null) {
+      final int start = stringStarts.get(id);
+      byte[] bytes = new byte[stringStarts.get(id + 1) - start];
+      stringBytes.get(start, bytes);
+      s = new String(bytes, StandardCharsets.UTF_8);
+      strings[id] = s;
+    }
+    return s;
+  }
+
+  record Header(long sourceSize, long sourceLastModified, int numEntries, int numFields,
+                int numKeys, int numStrings, long metadataOffset, long dictionaryOffset) {
+
+    static Header read(FileChannel channel) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, buffer.position()) < 0) {
+          throw new IOException("Compiled library is truncated");
+        }
+      }
+      buffer.flip();
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a compiled spectral library");
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported compiled library version " + version);
+      }
+      return new Header(buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.getInt(),
+          buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getLong());
+    }
+
+    void write(FileChannel channel) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(VERSION).putLong(sourceSize).putLong(sourceLastModified)
+          .putInt(numEntries).putInt(numFields).putInt(numKeys).putInt(numStrings)
+          .putLong(metadataOffset).putLong(dictionaryOffset);
+      buffer.position(0);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, buffer.position());
+      }
+    }
+
+    boolean matches(File source) {
+      return sourceSize == source.length() && sourceLastModified == source.lastModified();
+    }
+  }
+}
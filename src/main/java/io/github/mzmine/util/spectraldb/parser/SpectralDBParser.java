@@ -76,6 +76,17 @@ public abstract class SpectralDBParser {
           "Found entry with zero intensity, maybe not centroided but profile data - entry was excluded");
       return false;
     }
+    addCheckedLibraryEntry(entry);
+    return true;
+  }
+
+  /**
+   * Add DB entry that was already checked, e.g., from a compiled library, and push every
+   * {@link #bufferEntries} entries.
+   *
+   * @param entry handle library entry
+   */
+  protected void addCheckedLibraryEntry(SpectralLibraryEntry entry) {
     synchronized (LOCK) {
       // need double lock as list changes inside
       synchronized (list) {
@@ -92,7 +103,6 @@ public abstract class SpectralDBParser {
         }
       }
     }
-    return true;
   }
 
   /**
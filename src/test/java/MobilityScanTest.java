@@ -173,6 +173,49 @@ public class MobilityScanTest {
 
   }
 
+  @Test
+  public void testCompressedStorage() {
+    MobilityScanStorage.setCompressionEnabled(true);
+    try {
+      RawDataFile rawDataFile = createRawDataFile();
+      SimpleFrame frame = new SimpleFrame(rawDataFile, 1, 1, 0f, new double[]{0d, 1},
+          new double[]{15d, 1E5}, MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "test",
+          Range.closed(0d, 1d), MobilityType.TIMS, null, null);
+
+      List<BuildingMobilityScan> scans = makeSomeScans(100);
+      // ion counts are stored as integers
+      for (int i = 0; i < scans.size(); i += 2) {
+        final double[] intensities = scans.get(i).getIntensityValues();
+        for (int j = 0; j < intensities.length; j++) {
+          intensities[j] = Math.round(intensities[j] * 1E6);
+        }
+      }
+      frame.setMobilityScans(scans, true);
+
+      for (int i = 0; i < scans.size(); i++) {
+        final BuildingMobilityScan original = scans.get(i);
+        final MobilityScan mobilityScan = frame.getMobilityScan(i);
+        Assertions.assertEquals(original.getNumberOfDataPoints(),
+            mobilityScan.getNumberOfDataPoints());
+
+        final double[] mzs = mobilityScan.getMzValues(
+            new double[mobilityScan.getNumberOfDataPoints()]);
+        final double[] intensities = mobilityScan.getIntensityValues(
+            new double[mobilityScan.getNumberOfDataPoints()]);
+        for (int j = 0; j < mzs.length; j++) {
+          Assertions.assertEquals(original.getMzValues()[j], mzs[j], 5.1E-6);
+          Assertions.assertEquals(original.getIntensityValues()[j], intensities[j],
+              original.getIntensityValues()[j] * 1E-7);
+          Assertions.assertEquals(mzs[j], mobilityScan.getMzValue(j));
+          Assertions.assertEquals(intensities[j], mobilityScan.getIntensityValue(j));
+          Assertions.assertEquals(mzs[j], mobilityScan.getMassList().getMzValue(j));
+        }
+      }
+    } finally {
+      MobilityScanStorage.setCompressionEnabled(false);
+    }
+  }
+
   /**
    * Mobility scans guaranteed to start at 0 and being consecutive is a crucial requirement for
    * MZmine. Therefore it is crucial that the exceptions are thrown.
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package datamodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import io.github.mzmine.datamodel.features.columnar.ColumnarValueMap;
+import io.github.mzmine.datamodel.features.columnar.PrimitiveColumnStore;
+import io.github.mzmine.datamodel.features.types.annotations.CommentType;
+import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ColumnarValueMapTest {
+
+  @Test
+  void testPutGetRemove() {
+    final PrimitiveColumnStore store = new PrimitiveColumnStore();
+    final ColumnarValueMap map = store.createValueMap();
+
+    assertNull(map.put(new MZType(), 301.1234));
+    assertNull(map.put(new RTType(), 4.2f));
+    assertNull(map.put(new IDType(), 17));
+    assertNull(map.put(new CommentType(), "comment"));
+
+    assertEquals(301.1234, map.get(new MZType()));
+    assertEquals(4.2f, map.get(new RTType()));
+    assertEquals(17, map.get(new IDType()));
+    assertEquals("comment", map.get(new CommentType()));
+    assertEquals(4, map.entrySet().size());
+
+    assertEquals(4.2f, map.put(new RTType(), Float.NaN));
+    assertEquals(Float.NaN, map.get(new RTType()));
+    assertEquals(17, map.remove(new IDType()));
+    assertNull(map.get(new IDType()));
+    assertEquals(3, map.entrySet().size());
+
+    // the sentinel of int columns is kept as an object value
+    assertNull(map.put(new IDType(), Integer.MIN_VALUE));
+    assertEquals(Integer.MIN_VALUE, map.get(new IDType()));
+    assertEquals(Integer.MIN_VALUE, map.put(new IDType(), 5));
+    assertEquals(5, map.get(new IDType()));
+    assertEquals(4, map.entrySet().size());
+  }
+
+  @Test
+  void testSlotsAcrossPages() {
+    final PrimitiveColumnStore store = new PrimitiveColumnStore();
+    final List<ColumnarValueMap> maps = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      final ColumnarValueMap map = store.createValueMap();
+      // leave gaps to check missing values
+      if (i % 3 != 0) {
+        map.put(new IDType(), i);
+        map.put(new MZType(), i * 0.5d);
+      }
+      maps.add(map);
+    }
+
+    for (int i = 0; i < maps.size(); i++) {
+      final ColumnarValueMap map = maps.get(i);
+      if (i % 3 != 0) {
+        assertEquals(i, map.get(new IDType()));
+        assertEquals(i * 0.5d, map.get(new MZType()));
+      } else {
+        assertNull(map.get(new IDType()));
+        assertNull(map.get(new MZType()));
+      }
+      assertNull(map.get(new RTType()));
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package datamodel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.DDAMsMsInfoImpl;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.msms.ActivationMethod;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.IOException;
+import java.util.List;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ScanMetadataIndexTest {
+
+  private RawDataFile file;
+
+  @BeforeEach
+  void initialise() throws IOException {
+    file = new RawDataFileImpl("testfile", null, null, Color.BLACK);
+    // alternating MS1 and MS2 scans, precursor m/z 200, 201, 202, 200, ...
+    for (int i = 0; i < 10; i++) {
+      addScan(2 * i, 1, i, null);
+      addScan(2 * i + 1, 2, i + 0.5f, 200d + i % 3);
+    }
+  }
+
+  private void addScan(int scanNumber, int msLevel, float rt, Double precursorMz)
+      throws IOException {
+    final var msMsInfo = precursorMz == null ? null
+        : new DDAMsMsInfoImpl(precursorMz, 1, 20f, null, null, msLevel, ActivationMethod.UNKNOWN,
+            null);
+    file.addScan(new SimpleScan(file, scanNumber, msLevel, rt, msMsInfo,
+        new double[]{100d, 150d + scanNumber}, new double[]{10d, 1000d + scanNumber},
+        MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d)));
+  }
+
+  private static List<Integer> scanNumbers(List<Scan> scans) {
+    return scans.stream().map(Scan::getScanNumber).toList();
+  }
+
+  @Test
+  void testRetentionTimeQueries() {
+    assertEquals(List.of(4, 6, 8), scanNumbers(file.getScans(1, Range.closed(2f, 4f))));
+    assertEquals(List.of(7, 9), scanNumbers(file.getScans(2, Range.open(2.5f, 5.5f))));
+    assertEquals(10, file.getNumOfScans(1));
+    assertEquals(Range.closed(0f, 9.5f), file.getDataRTRange());
+    assertEquals(Range.closed(0.5f, 9.5f), file.getDataRTRange(2));
+    assertEquals(1000d + 18, file.getDataMaxBasePeakIntensity(1));
+  }
+
+  @Test
+  void testPrecursorQueries() {
+    assertEquals(List.of(3, 9, 15),
+        scanNumbers(file.getFragmentScans(2, null, Range.closed(201d, 201d))));
+    assertEquals(List.of(1, 3, 7, 9),
+        scanNumbers(file.getFragmentScans(2, Range.atMost(5f), Range.closed(200d, 201d))));
+  }
+
+  @Test
+  void testIndexIsUpdatedOnNewScans() throws IOException {
+    assertEquals(0, file.getFragmentScans(2, null, Range.closed(300d, 301d)).size());
+    addScan(20, 2, 10.5f, 300d);
+    assertEquals(List.of(20),
+        scanNumbers(file.getFragmentScans(2, null, Range.closed(300d, 301d))));
+    assertEquals(Range.closed(0f, 10.5f), file.getDataRTRange());
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.datamodel.features.correlation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class R2RMapTest {
+
+  @Test
+  void testUndirectedKeys() {
+    assertEquals(R2RMap.toKey(5, 70_000), R2RMap.toKey(70_000, 5));
+    // the int pairing function overflowed for such IDs
+    assertNotEquals(R2RMap.toKey(50_000, 60_000), R2RMap.toKey(60_000, 50_000 + 1));
+  }
+
+  @Test
+  void testConcurrentPut() {
+    final R2RMap<Integer> map = new R2RMap<>();
+    IntStream.range(0, 100_000).parallel()
+        .forEach(i -> map.put(R2RMap.toKey(i, i + 100_000), i));
+    assertEquals(100_000, map.size());
+    assertEquals(123, map.get(R2RMap.toKey(100_123, 123)));
+    assertNull(map.get(R2RMap.toKey(123, 124)));
+
+    final R2RMap<Number> copy = new R2RMap<>();
+    copy.putAll(map);
+    assertEquals(100_000, copy.values().size());
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_hierarchical;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import org.gnf.clustering.LinkageMode;
+import org.gnf.clustering.Node;
+import org.junit.jupiter.api.Test;
+
+class SparseHierarchicalClusteringTest {
+
+  // rows 0, 1, 2 and rows 3, 4 are close, 2 and 3 are weakly linked, row 5 has no edges
+  private final SparseDistanceMatrix distances = new SparseDistanceMatrix(6,
+      new int[]{0, 0, 1, 3, 2}, new int[]{1, 2, 2, 4, 3}, new float[]{0.1f, 0.2f, 0.15f, 0.1f, 0.9f},
+      null);
+
+  @Test
+  void testMatrix() {
+    assertEquals(5, distances.getNumberOfEdges());
+    assertEquals(0.15f, distances.getValue(2, 1));
+    assertEquals(0.15f, distances.getValue(1, 2));
+    assertEquals(0f, distances.getValue(5, 5));
+    assertEquals(SparseDistanceMatrix.NO_EDGE, distances.getValue(0, 4));
+    assertEquals(SparseDistanceMatrix.NO_EDGE, distances.getValue(5, 0));
+  }
+
+  @Test
+  void testSingleLinkage() {
+    final Node[] nodes = cluster(LinkageMode.MIN);
+    assertNode(nodes[0], 0, 1, 0.1f);
+    assertNode(nodes[1], 3, 4, 0.1f);
+    assertNode(nodes[2], 2, -1, 0.15f);
+    // the weak link joins both clusters
+    assertNode(nodes[3], -2, -3, 0.9f);
+    assertNode(nodes[4], 5, -4, SparseHierarchicalClustering.UNLINKED_DISTANCE);
+  }
+
+  @Test
+  void testCompleteLinkage() {
+    final Node[] nodes = cluster(LinkageMode.MAX);
+    assertNode(nodes[2], 2, -1, 0.2f);
+    // not all pairs of both clusters are linked
+    assertEquals(SparseHierarchicalClustering.UNLINKED_DISTANCE, nodes[3].m_fDistance);
+    assertEquals(SparseHierarchicalClustering.UNLINKED_DISTANCE, nodes[4].m_fDistance);
+  }
+
+  @Test
+  void testAverageLinkage() {
+    final Node[] nodes = cluster(LinkageMode.AVG);
+    assertNode(nodes[2], 2, -1, 0.175f);
+  }
+
+  private Node[] cluster(LinkageMode linkage) {
+    final Node[] nodes = SparseHierarchicalClustering.cluster(distances, linkage,
+        new ClusteringProgression(), () -> false);
+    assertNotNull(nodes);
+    assertEquals(distances.getRowCount() - 1, nodes.length);
+    return nodes;
+  }
+
+  private static void assertNode(Node node, int left, int right, float distance) {
+    assertEquals(left, node.m_nLeft);
+    assertEquals(right, node.m_nRight);
+    assertEquals(distance, (float) node.m_fDistance, 1e-6f);
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_join;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
+import io.github.mzmine.datamodel.features.types.numbers.AreaType;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Compares the in-memory and the out-of-core paths of the join aligner.
+ */
+class JoinAlignerTaskTest {
+
+  private RawDataFile rawA;
+  private RawDataFile rawB;
+  private RawDataFile rawC;
+  private ModularFeatureList flistA;
+  private ModularFeatureList flistB;
+  private ModularFeatureList flistC;
+
+  @BeforeEach
+  void setUp() {
+    rawA = mock(RawDataFile.class);
+    rawB = mock(RawDataFile.class);
+    rawC = mock(RawDataFile.class);
+    // A has the most rows overall, B has the most rows around m/z 200. If the base list was
+    // chosen per m/z region, B would be the base there and take both other rows
+    flistA = createFeatureList("A", rawA, 200.000, 300.0, 301.0, 302.0);
+    flistB = createFeatureList("B", rawB, 200.004, 200.0125);
+    flistC = createFeatureList("C", rawC, 200.008);
+  }
+
+  private static ModularFeatureList createFeatureList(String name, RawDataFile raw,
+      double... mzs) {
+    final ModularFeatureList flist = new ModularFeatureList(name, null, raw);
+    int id = 1;
+    for (double mz : mzs) {
+      final ModularFeature f = new ModularFeature(flist);
+      f.set(RawFileType.class, raw);
+      f.set(MZType.class, mz);
+      f.set(RTType.class, 5f);
+      f.set(HeightType.class, 1E5f);
+      f.set(AreaType.class, 1E6f);
+      f.set(DetectionType.class, FeatureStatus.DETECTED);
+      flist.addRow(new ModularFeatureListRow(flist, id++, f));
+    }
+    return flist;
+  }
+
+  @Test
+  void testInMemoryEqualsOutOfCore() {
+    final Set<Set<String>> inMemory = align(false);
+    final Set<Set<String>> outOfCore = align(true);
+
+    assertEquals(Set.of(Set.of("A 200.0", "B 200.004"), Set.of("B 200.0125", "C 200.008"),
+        Set.of("A 300.0"), Set.of("A 301.0"), Set.of("A 302.0")), inMemory);
+    assertEquals(inMemory, outOfCore);
+  }
+
+  /**
+   * @return the features of each aligned row as feature list name and m/z
+   */
+  private Set<Set<String>> align(boolean outOfCore) {
+    final ParameterSet parameters = new JoinAlignerParameters().cloneParameterSet();
+    parameters.getParameter(JoinAlignerParameters.peakLists)
+        .setValue(new FeatureListsSelection(flistA, flistB, flistC));
+    parameters.setParameter(JoinAlignerParameters.peakListName, "Aligned");
+    parameters.setParameter(JoinAlignerParameters.MZTolerance, new MZTolerance(0.005, 0));
+    parameters.setParameter(JoinAlignerParameters.MZWeight, 1d);
+    parameters.setParameter(JoinAlignerParameters.RTTolerance,
+        new RTTolerance(0.1f, Unit.MINUTES));
+    parameters.setParameter(JoinAlignerParameters.RTWeight, 1d);
+    parameters.setParameter(JoinAlignerParameters.mobilityTolerance, false);
+    parameters.setParameter(JoinAlignerParameters.mobilityWeight, 0d);
+    parameters.setParameter(JoinAlignerParameters.SameChargeRequired, false);
+    parameters.setParameter(JoinAlignerParameters.SameIDRequired, false);
+    parameters.setParameter(JoinAlignerParameters.compareIsotopePattern, false);
+    parameters.setParameter(JoinAlignerParameters.compareSpectraSimilarity, false);
+    parameters.setParameter(JoinAlignerParameters.outOfCoreAlignment, outOfCore);
+    parameters.setParameter(JoinAlignerParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+
+    final MZmineProject project = mock(MZmineProject.class);
+    final JoinAlignerTask task = new JoinAlignerTask(project, parameters, null, Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+
+    final ArgumentCaptor<FeatureList> aligned = ArgumentCaptor.forClass(FeatureList.class);
+    verify(project).addFeatureList(aligned.capture());
+
+    final Map<RawDataFile, String> names = Map.of(rawA, "A", rawB, "B", rawC, "C");
+    final Set<Set<String>> clusters = new HashSet<>();
+    for (FeatureListRow row : aligned.getValue().getRows()) {
+      final Set<String> cluster = new TreeSet<>();
+      for (Feature feature : row.getFeatures()) {
+        cluster.add(names.get(feature.getRawDataFile()) + " " + feature.getMZ());
+      }
+      clusters.add(cluster);
+    }
+    return clusters;
+  }
+}
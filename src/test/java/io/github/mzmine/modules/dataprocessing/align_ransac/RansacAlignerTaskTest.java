@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.align_ransac;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Random;
+import org.apache.commons.math.analysis.polynomials.PolynomialFunction;
+import org.junit.jupiter.api.Test;
+
+class RansacAlignerTaskTest {
+
+  @Test
+  void testSameSeedGivesSameModel() {
+    final ParameterSet parameters = new RansacAlignerParameters().cloneParameterSet();
+    parameters.setParameter(RansacAlignerParameters.Iterations, 200);
+    parameters.setParameter(RansacAlignerParameters.NMinPoints, 0.2);
+    parameters.setParameter(RansacAlignerParameters.Margin, 0.1);
+    parameters.setParameter(RansacAlignerParameters.Linear, false);
+
+    // a shifted RT axis with outliers, gaps of more than 2 min add smoothing points
+    final Random data = new Random(42);
+    final int size = 150;
+    final double[] rts = new double[size];
+    final double[] rts2 = new double[size];
+    for (int i = 0; i < size; i++) {
+      rts[i] = i < 50 ? i * 0.1 : 10 + i * 0.2 + (i % 10 == 0 ? 3 : 0);
+      rts2[i] = i % 7 == 0 ? data.nextDouble() * 40
+          : rts[i] * 1.02 + 0.2 + data.nextGaussian() * 0.01;
+    }
+
+    final long seed = 3;
+    final boolean[] aligned = new RANSAC(parameters).alignment(rts, rts2, seed);
+    final boolean[] aligned2 = new RANSAC(parameters).alignment(rts, rts2, seed);
+    assertArrayEquals(aligned, aligned2);
+    int inliers = 0;
+    for (boolean inlier : aligned) {
+      inliers += inlier ? 1 : 0;
+    }
+    assertTrue(inliers > size / 2);
+
+    final PolynomialFunction model = RansacAlignerTask.getPolynomialFunction(rts, rts2, aligned,
+        new Random(seed));
+    final PolynomialFunction model2 = RansacAlignerTask.getPolynomialFunction(rts, rts2,
+        aligned2, new Random(seed));
+    assertNotNull(model);
+    assertNotNull(model2);
+    assertArrayEquals(model.getCoefficients(), model2.getCoefficients());
+  }
+}
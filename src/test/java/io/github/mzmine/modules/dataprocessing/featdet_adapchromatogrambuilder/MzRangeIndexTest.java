@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class MzRangeIndexTest {
+
+  @Test
+  void testClosedOpenRanges() {
+    final MzRangeIndex index = new MzRangeIndex();
+    final int a = index.add(100.0, 100.01);
+    final int b = index.add(100.01, 100.02);
+    final int c = index.add(99.0, 99.5);
+
+    assertEquals(a, index.get(100.0));
+    assertEquals(a, index.get(100.005));
+    assertEquals(b, index.get(100.01));
+    assertEquals(-1, index.get(100.02));
+    assertEquals(c, index.get(99.2));
+    assertEquals(-1, index.get(99.7));
+    assertEquals(-1, index.get(50));
+    assertArrayEquals(new int[]{c, a, b}, index.toSortedIds());
+  }
+
+  @Test
+  void testRemoveRangesStartingIn() {
+    final MzRangeIndex index = new MzRangeIndex();
+    // enough ranges to split into multiple blocks
+    for (int i = 0; i < 5000; i++) {
+      index.add(100 + i * 0.01, 100 + i * 0.01 + 0.005);
+    }
+    assertEquals(5000, index.size());
+
+    index.removeRangesStartingIn(100 + 1000 * 0.01, 100 + 3000 * 0.01);
+    assertEquals(3000, index.size());
+    assertEquals(-1, index.get(100 + 2000 * 0.01));
+    assertEquals(999, index.get(100 + 999 * 0.01));
+    assertEquals(3000, index.get(100 + 3000 * 0.01));
+
+    final int[] ids = index.toSortedIds();
+    for (int i = 1; i < ids.length; i++) {
+      assertTrue(index.getLower(ids[i - 1]) < index.getLower(ids[i]));
+    }
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.dataprocessing.group_metacorrelate.msms.similarity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.modules.dataprocessing.group_metacorrelate.msms.similarity.MS2SignalIndex.CandidateCounter;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.junit.jupiter.api.Test;
+
+class MS2SignalIndexTest {
+
+  @Test
+  void testCandidatesWithinTolerance() {
+    final MS2SignalIndex index = new MS2SignalIndex(0.005);
+    // row 0 is the query
+    final double[] query = {100.0, 150.0, 200.0};
+    for (double mz : query) {
+      index.add(mz, 0, 1);
+    }
+    // row 1 shares all signals, within tolerance
+    index.add(100.004, 1, 1);
+    index.add(149.996, 1, 1);
+    index.add(200.004, 1, 1);
+    // row 2 shares one signal
+    index.add(100.0, 2, 1);
+    index.add(300.0, 2, 1);
+    // row 3 is just outside of the tolerance
+    index.add(100.006, 3, 1);
+    index.add(150.006, 3, 1);
+    index.add(199.994, 3, 1);
+    index.build();
+
+    final CandidateCounter counter = new CandidateCounter(4);
+    for (double mz : query) {
+      index.count(mz, 1, 0, counter);
+    }
+    final IntArrayList candidates = new IntArrayList();
+    counter.collectAndReset(2, candidates);
+    assertEquals(IntArrayList.of(1), candidates);
+
+    // counter is reset and only counts owners after the query row
+    candidates.clear();
+    index.count(100.0, 1, 1, counter);
+    counter.collectAndReset(1, candidates);
+    assertEquals(IntArrayList.of(2), candidates);
+  }
+
+  @Test
+  void testWeightedCounts() {
+    final MS2SignalIndex index = new MS2SignalIndex(0.01);
+    index.add(18.011, 1, 3);
+    index.add(44.0, 1, 1);
+    index.build();
+
+    final CandidateCounter counter = new CandidateCounter(2);
+    // min of both weights
+    index.count(18.01, 2, 0, counter);
+    index.count(44.0, 5, 0, counter);
+    final IntArrayList candidates = new IntArrayList();
+    counter.collectAndReset(3, candidates);
+    assertEquals(IntArrayList.of(1), candidates);
+    candidates.clear();
+
+    index.count(18.01, 2, 0, counter);
+    index.count(44.0, 5, 0, counter);
+    counter.collectAndReset(4, candidates);
+    assertEquals(0, candidates.size());
+  }
+}
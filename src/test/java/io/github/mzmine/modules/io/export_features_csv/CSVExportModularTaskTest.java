@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.export_features_csv;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.compoundannotations.CompoundDBAnnotation;
+import io.github.mzmine.datamodel.features.compoundannotations.SimpleCompoundDBAnnotation;
+import io.github.mzmine.datamodel.features.types.annotations.CommentType;
+import io.github.mzmine.datamodel.features.types.annotations.CompoundDatabaseMatchesType;
+import io.github.mzmine.datamodel.features.types.annotations.CompoundNameType;
+import io.github.mzmine.datamodel.features.types.annotations.formula.FormulaType;
+import io.github.mzmine.datamodel.features.types.annotations.iin.IonIdentityListType;
+import io.github.mzmine.datamodel.features.types.annotations.iin.IonTypeType;
+import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.datamodel.features.types.numbers.scores.CompoundAnnotationScoreType;
+import io.github.mzmine.datamodel.identities.iontype.IonIdentity;
+import io.github.mzmine.datamodel.identities.iontype.IonModification;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.modules.io.export_features_gnps.fbmn.FeatureListRowsFilter;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CSVExportModularTaskTest {
+
+  private static final int ROWS = 2000;
+
+  @TempDir
+  Path tempDir;
+
+  /**
+   * Compound annotations and ion identities format their scores and m/z values with the shared
+   * number formats of the configuration while other chunks are formatted in parallel.
+   */
+  @Test
+  void testParallelChunksEqualSingleChunk() throws IOException {
+    final ModularFeatureList flist = createFeatureList();
+
+    final byte[] single = export(flist, "single.csv", Integer.MAX_VALUE);
+    final byte[] parallel = export(flist, "parallel.csv", 1);
+
+    final String text = new String(single);
+    assertEquals(ROWS + 1, text.lines().count());
+    assertArrayEquals(single, parallel);
+  }
+
+  private byte[] export(ModularFeatureList flist, String name, int chunkCells)
+      throws IOException {
+    final File file = tempDir.resolve(name).toFile();
+    final CSVExportModularTask task = new CSVExportModularTask(new ModularFeatureList[]{flist},
+        file, ",", ";", FeatureListRowsFilter.ALL, false, Instant.now());
+    task.setChunkCells(chunkCells);
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus());
+    return Files.readAllBytes(file.toPath());
+  }
+
+  private static ModularFeatureList createFeatureList() {
+    final ModularFeatureList flist = new ModularFeatureList("csv", null, List.of());
+    flist.addRowType(new IDType(), new MZType(), new RTType(), new CommentType(),
+        new CompoundDatabaseMatchesType(), new IonIdentityListType());
+
+    final IonModification[] adducts = {IonModification.H, IonModification.NA,
+        IonModification.NH4, IonModification.K};
+    for (int i = 0; i < ROWS; i++) {
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, i + 1);
+      final double mz = 100 + i * 0.123456789;
+      row.set(MZType.class, mz);
+      row.set(RTType.class, i * 0.0137f);
+      row.set(CommentType.class, "comment " + i);
+
+      final IonType ion = new IonType(adducts[i % adducts.length]);
+      final CompoundDBAnnotation annotation = new SimpleCompoundDBAnnotation();
+      annotation.put(new CompoundNameType(), "compound " + i);
+      annotation.put(new FormulaType(), "C6H12O6");
+      annotation.put(new IonTypeType(), ion);
+      annotation.put(new CompoundAnnotationScoreType(), 1f / (i + 3));
+      row.set(CompoundDatabaseMatchesType.class, new ArrayList<>(List.of(annotation)));
+      row.set(IonIdentityListType.class, new ArrayList<>(List.of(new IonIdentity(ion))));
+      flist.addRow(row);
+    }
+    return flist;
+  }
+}
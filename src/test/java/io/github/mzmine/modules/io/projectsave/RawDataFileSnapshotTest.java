@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.google.common.collect.Range;
+import fxinitializer.InitJavaFX;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.DDAMsMsInfoImpl;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.ActivationMethod;
+import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.io.projectload.ProjectOpeningTask;
+import io.github.mzmine.modules.tools.rawfilerename.RawDataFileRenameModule;
+import io.github.mzmine.modules.tools.rawfilerename.RawDataFileRenameParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class RawDataFileSnapshotTest {
+
+  @TempDir
+  Path tempDir;
+
+  @BeforeAll
+  static void initFX() {
+    // opening a project closes all windows on the FX thread
+    InitJavaFX.init();
+  }
+
+  @AfterEach
+  void cleanProject() {
+    MZmineCore.getProjectManager().setCurrentProject(new MZmineProjectImpl());
+  }
+
+  @Test
+  void testSnapshotRoundTrip() throws IOException {
+    final RawDataFile file = createFile();
+    final File projectFile = tempDir.resolve("snapshot.mzmine").toFile();
+    try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(projectFile))) {
+      zip.putNextEntry(new ZipEntry(ProjectSavingTask.VERSION_FILENAME));
+      zip.write(String.valueOf(MZmineCore.getMZmineVersion()).getBytes(StandardCharsets.UTF_8));
+      zip.putNextEntry(new ZipEntry(RawDataFileSnapshotWriter.getZipPath(0)));
+      RawDataFileSnapshotWriter.write(file, zip);
+      zip.closeEntry();
+    }
+
+    // an empty project does not ask to replace the current files
+    MZmineCore.getProjectManager().setCurrentProject(new MZmineProjectImpl());
+    final ProjectOpeningTask task = new ProjectOpeningTask(projectFile, Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+
+    final RawDataFile[] loadedFiles = MZmineCore.getProjectManager().getCurrentProject()
+        .getDataFiles();
+    assertEquals(1, loadedFiles.length);
+    final RawDataFile loaded = loadedFiles[0];
+    assertEquals(file.getName(), loaded.getName());
+    assertEquals(file.getAbsolutePath(), loaded.getAbsolutePath());
+    assertEquals(file.getColor(), loaded.getColor());
+    assertEquals(file.getStartTimeStamp(), loaded.getStartTimeStamp());
+
+    assertEquals(file.getNumOfScans(), loaded.getNumOfScans());
+    for (int i = 0; i < file.getNumOfScans(); i++) {
+      assertScanEquals(file.getScan(i), loaded.getScan(i));
+    }
+
+    assertEquals(file.getAppliedMethods().size(), loaded.getAppliedMethods().size());
+    for (int i = 0; i < file.getAppliedMethods().size(); i++) {
+      final FeatureListAppliedMethod method = file.getAppliedMethods().get(i);
+      final FeatureListAppliedMethod loadedMethod = loaded.getAppliedMethods().get(i);
+      assertEquals(method.getDescription(), loadedMethod.getDescription());
+      assertEquals(method.getModuleCallDate(), loadedMethod.getModuleCallDate());
+      assertEquals(method.getParameters().getValue(RawDataFileRenameParameters.newName),
+          loadedMethod.getParameters().getValue(RawDataFileRenameParameters.newName));
+    }
+  }
+
+  private static void assertScanEquals(Scan scan, Scan loaded) {
+    assertEquals(scan.getScanNumber(), loaded.getScanNumber());
+    assertEquals(scan.getMSLevel(), loaded.getMSLevel());
+    assertEquals(scan.getRetentionTime(), loaded.getRetentionTime());
+    assertEquals(scan.getPolarity(), loaded.getPolarity());
+    assertEquals(scan.getSpectrumType(), loaded.getSpectrumType());
+    assertEquals(scan.getInjectionTime(), loaded.getInjectionTime());
+    assertEquals(scan.getScanningMZRange(), loaded.getScanningMZRange());
+    assertEquals(scan.getScanDefinition(), loaded.getScanDefinition());
+    assertSpectrumEquals(scan, loaded);
+
+    final MassList massList = scan.getMassList();
+    if (massList == null) {
+      assertNull(loaded.getMassList());
+    } else {
+      assertNotNull(loaded.getMassList());
+      assertEquals(massList.getClass(), loaded.getMassList().getClass());
+      assertSpectrumEquals(massList, loaded.getMassList());
+    }
+
+    if (scan.getMsMsInfo() instanceof DDAMsMsInfo info) {
+      final DDAMsMsInfo loadedInfo = assertInstanceOf(DDAMsMsInfo.class, loaded.getMsMsInfo());
+      assertEquals(info.getIsolationMz(), loadedInfo.getIsolationMz());
+      assertEquals(info.getPrecursorCharge(), loadedInfo.getPrecursorCharge());
+      assertEquals(info.getActivationEnergy(), loadedInfo.getActivationEnergy());
+      assertEquals(info.getActivationMethod(), loadedInfo.getActivationMethod());
+      assertEquals(info.getIsolationWindow(), loadedInfo.getIsolationWindow());
+      assertEquals(info.getMsLevel(), loadedInfo.getMsLevel());
+      assertNotNull(loadedInfo.getParentScan());
+      assertEquals(info.getParentScan().getScanNumber(),
+          loadedInfo.getParentScan().getScanNumber());
+    } else {
+      assertNull(loaded.getMsMsInfo());
+    }
+  }
+
+  private static void assertSpectrumEquals(MassSpectrum spectrum, MassSpectrum loaded) {
+    assertEquals(spectrum.getNumberOfDataPoints(), loaded.getNumberOfDataPoints());
+    for (int i = 0; i < spectrum.getNumberOfDataPoints(); i++) {
+      assertEquals(spectrum.getMzValue(i), loaded.getMzValue(i));
+      assertEquals(spectrum.getIntensityValue(i), loaded.getIntensityValue(i));
+    }
+  }
+
+  /**
+   * @return a file with MS1 scans with stored or scan pointer mass lists and MS2 scans with and
+   * without mass lists
+   */
+  private static RawDataFile createFile() throws IOException {
+    final RawDataFile file = MZmineCore.createNewFile("snapshot.mzML",
+        "/data/snapshot.mzML", null);
+    file.setStartTimeStamp(LocalDateTime.of(2022, 3, 14, 15, 9, 26));
+
+    Scan parent = null;
+    for (int i = 0; i < 12; i++) {
+      final boolean ms1 = i % 3 == 0;
+      final int numDp = 5 + i;
+      final double[] mzs = new double[numDp];
+      final double[] intensities = new double[numDp];
+      for (int d = 0; d < numDp; d++) {
+        mzs[d] = 100 + d * 17.123456789 + i * 0.001;
+        intensities[d] = 1000 * (d + 1) + i;
+      }
+
+      final DDAMsMsInfoImpl info = ms1 ? null
+          : new DDAMsMsInfoImpl(mzs[numDp - 1], i % 2 == 0 ? null : 1, 20f + i, null, parent, 2,
+              ActivationMethod.CID, Range.closed(mzs[numDp - 1] - 0.5, mzs[numDp - 1] + 0.5));
+      final SimpleScan scan = new SimpleScan(file, i + 1, ms1 ? 1 : 2, i * 0.1f, info, mzs,
+          intensities, ms1 ? MassSpectrumType.PROFILE : MassSpectrumType.CENTROIDED,
+          i % 2 == 0 ? PolarityType.POSITIVE : PolarityType.NEGATIVE, "scan " + (i + 1),
+          Range.closed(50d, 1000d), i % 4 == 0 ? null : 50f + i);
+
+      if (ms1) {
+        scan.addMassList(new SimpleMassList(null, new double[]{mzs[1], mzs[3]},
+            new double[]{intensities[1], intensities[3]}));
+        parent = scan;
+      } else if (i % 3 == 1) {
+        scan.addMassList(new ScanPointerMassList(scan));
+      }
+      file.addScan(scan);
+    }
+
+    final ParameterSet parameters = new RawDataFileRenameParameters().cloneParameterSet();
+    parameters.setParameter(RawDataFileRenameParameters.newName, "snapshot.mzML");
+    file.getAppliedMethods().add(
+        new SimpleFeatureListAppliedMethod(RawDataFileRenameModule.class, parameters,
+            Instant.parse("2022-03-14T15:09:26Z")));
+    return file;
+  }
+}
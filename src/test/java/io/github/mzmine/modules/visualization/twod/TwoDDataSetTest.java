@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.modules.visualization.twod;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import fxinitializer.InitJavaFX;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TwoDDataSetTest {
+
+  private static final int SCANS = 128;
+  private static final double MZ_MAX = 2048;
+
+  private static TwoDDataSet dataSet;
+
+  @BeforeAll
+  static void init() throws IOException, InterruptedException {
+    // the data set notifies the chart on the FX thread
+    InitJavaFX.init();
+
+    final RawDataFile file = MZmineCore.createNewFile("twod.mzML", null, null);
+    final Random random = new Random(42);
+    // profile peaks on a 0.25 m/z grid at the same positions in all scans, so many data points are
+    // on pixel and bin borders and every pixel has data points in all or none of its scans
+    final double[] mzs = random.ints(40, 0, (int) MZ_MAX * 4 + 1).boxed()
+        .flatMap(center -> IntStream.rangeClosed(center - 4, center + 4).boxed())
+        .filter(mz -> mz >= 0 && mz <= MZ_MAX * 4).mapToDouble(mz -> mz / 4d).distinct().sorted()
+        .toArray();
+    final Scan[] scans = new Scan[SCANS];
+    for (int i = 0; i < SCANS; i++) {
+      final double[] intensities = new double[mzs.length];
+      for (int d = 0; d < mzs.length; d++) {
+        intensities[d] = 1 + random.nextInt(100_000);
+      }
+      scans[i] = new SimpleScan(file, i + 1, 1, i + 0.5f, null, mzs, intensities,
+          MassSpectrumType.PROFILE, PolarityType.POSITIVE, "", Range.closed(0d, MZ_MAX),
+          null);
+    }
+
+    dataSet = new TwoDDataSet(file, scans, Range.closed(0.5f, SCANS - 0.5f),
+        Range.closed(0d, MZ_MAX), null);
+    final long timeout = System.currentTimeMillis() + 30_000;
+    while (dataSet.getStatus() != TaskStatus.FINISHED && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(TaskStatus.FINISHED, dataSet.getStatus());
+  }
+
+  @Test
+  void testPyramidEqualsScans() {
+    // pixels of 8 and 4 scans and m/z units match the cells of the pyramid levels
+    for (int width : new int[]{16, 32}) {
+      final int height = width * 16;
+      for (PlotMode plotMode : PlotMode.values()) {
+        final double[][] pyramid = dataSet.getMaxIntensities(0, SCANS, width, 0, MZ_MAX, height,
+            plotMode);
+        final double[][] scans = dataSet.getMaxIntensitiesFromScans(0, SCANS, width, 0, MZ_MAX,
+            height, plotMode);
+        for (int i = 0; i < width; i++) {
+          assertArrayEquals(scans[i], pyramid[i], plotMode + " " + width + "x" + height);
+        }
+        assertTrue(Arrays.stream(pyramid).flatMapToDouble(Arrays::stream).anyMatch(v -> v > 0));
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class MemoryMapStorageTest {
+
+  private static double[] values(int length, double start) {
+    final double[] values = new double[length];
+    for (int i = 0; i < length; i++) {
+      values[i] = start + i;
+    }
+    return values;
+  }
+
+  @Test
+  void testConcurrentStore() throws Exception {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Boolean>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          final List<double[]> stored = new ArrayList<>();
+          final List<DoubleBuffer> buffers = new ArrayList<>();
+          for (int i = 0; i < 2000; i++) {
+            // mix of small and large arrays that span several segments
+            final double[] data = values(i % 100 == 0 ? 50_000 : 1 + i % 37, thread * 1E6 + i);
+            stored.add(data);
+            buffers.add(storage.storeData(data));
+          }
+          for (int i = 0; i < stored.size(); i++) {
+            final double[] read = new double[buffers.get(i).capacity()];
+            buffers.get(i).get(0, read);
+            assertArrayEquals(stored.get(i), read);
+          }
+          return true;
+        }));
+      }
+      for (Future<Boolean> future : futures) {
+        assertTrue(future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(storage.getMappedBytes() > 0);
+  }
+
+  @Test
+  void testReleaseKeepsBuffersValid() throws IOException {
+    final MemoryMapStorage storage = MemoryMapStorage.create();
+    storage.retain();
+    storage.retain();
+    final double[] data = values(1000, 5);
+    final DoubleBuffer buffer = storage.storeData(data);
+
+    storage.release();
+    assertTrue(storage.getMappedBytes() > 0);
+    storage.release();
+    assertEquals(0, storage.getMappedBytes());
+
+    // data stays readable until the buffer is garbage-collected
+    final double[] read = new double[data.length];
+    buffer.get(0, read);
+    assertArrayEquals(data, read);
+
+    // the storage can still be used
+    final DoubleBuffer next = storage.storeData(data);
+    assertEquals(data[999], next.get(999));
+  }
+}
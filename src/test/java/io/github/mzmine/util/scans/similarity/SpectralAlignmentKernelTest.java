@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.scans.similarity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.ScanAlignment;
+import io.github.mzmine.util.scans.similarity.impl.composite.CompositeCosineSpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.impl.composite.CompositeCosineSpectralSimilarityParameters;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarityParameters;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class SpectralAlignmentKernelTest {
+
+  private static final int TESTS = 5000;
+
+  @Test
+  void testWeightedCosineEqualsSimilarity() {
+    final WeightedCosineSpectralSimilarity function = new WeightedCosineSpectralSimilarity();
+    final Random random = new Random(1);
+    int matches = 0;
+    for (int i = 0; i < TESTS; i++) {
+      final ParameterSet parameters =
+          new WeightedCosineSpectralSimilarityParameters().cloneParameterSet();
+      parameters.setParameter(WeightedCosineSpectralSimilarityParameters.minCosine, 0d);
+      parameters.setParameter(WeightedCosineSpectralSimilarityParameters.weight,
+          Weights.VALUES[random.nextInt(Weights.VALUES.length)]);
+      parameters.setParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched,
+          HandleUnmatchedSignalOptions.values()[random.nextInt(
+              HandleUnmatchedSignalOptions.values().length)]);
+      matches += compare(function, parameters, random) ? 1 : 0;
+    }
+    assertTrue(matches > TESTS / 4);
+  }
+
+  @Test
+  void testCompositeCosineEqualsSimilarity() {
+    final CompositeCosineSpectralSimilarity function = new CompositeCosineSpectralSimilarity();
+    final Random random = new Random(2);
+    int matches = 0;
+    for (int i = 0; i < TESTS; i++) {
+      final ParameterSet parameters =
+          new CompositeCosineSpectralSimilarityParameters().cloneParameterSet();
+      parameters.setParameter(CompositeCosineSpectralSimilarityParameters.minCosine, 0d);
+      parameters.setParameter(CompositeCosineSpectralSimilarityParameters.weight,
+          Weights.VALUES[random.nextInt(Weights.VALUES.length)]);
+      parameters.setParameter(CompositeCosineSpectralSimilarityParameters.handleUnmatched,
+          HandleUnmatchedSignalOptions.values()[random.nextInt(
+              HandleUnmatchedSignalOptions.values().length)]);
+      matches += compare(function, parameters, random) ? 1 : 0;
+    }
+    assertTrue(matches > TESTS / 4);
+  }
+
+  /**
+   * Applies random filters like the spectral library search to a random library and query spectrum
+   * and scores them with the kernel and with {@link SpectralSimilarityFunction#getSimilarity}
+   *
+   * @return true if the spectra matched
+   */
+  private static boolean compare(SpectralSimilarityFunction function, ParameterSet parameters,
+      Random random) {
+    // some signals of both spectra are close to shared m/z values
+    final double[] shared = new double[random.nextInt(20)];
+    for (int i = 0; i < shared.length; i++) {
+      shared[i] = 50 + random.nextDouble() * 450;
+    }
+    final DataPoint[] library = createSpectrum(random, shared);
+    final DataPoint[] query = createSpectrum(random, shared);
+    final MZTolerance mzTol = new MZTolerance(random.nextDouble() * 0.01,
+        random.nextDouble() * 20);
+    final int minMatch = random.nextInt(5);
+    final boolean crop = random.nextBoolean();
+    final double libraryPrecursorMz = 100 + random.nextDouble() * 400;
+    final double queryPrecursorMz =
+        random.nextBoolean() ? libraryPrecursorMz : 100 + random.nextDouble() * 400;
+    final Range<Double> precursorRange = random.nextBoolean() ? new MZTolerance(
+        random.nextDouble(), 0).getToleranceRange(libraryPrecursorMz) : null;
+
+    // same filters as the library search before getSimilarity
+    DataPoint[] filteredLibrary = library.clone();
+    DataPoint[] filteredQuery = query.clone();
+    if (crop) {
+      final DataPoint[][] cropped = ScanAlignment.cropToOverlap(mzTol, filteredLibrary,
+          filteredQuery, libraryPrecursorMz, queryPrecursorMz);
+      filteredLibrary = cropped[0];
+      filteredQuery = cropped[1];
+    }
+    if (precursorRange != null) {
+      filteredLibrary = Arrays.stream(filteredLibrary)
+          .filter(dp -> !precursorRange.contains(dp.getMZ())).toArray(DataPoint[]::new);
+    }
+    final SpectralSimilarity similarity = function.getSimilarity(parameters, mzTol, minMatch,
+        filteredLibrary, filteredQuery);
+
+    final SpectralAlignmentKernel kernel = SpectralAlignmentKernel.get();
+    kernel.setLibrary(library.clone());
+    kernel.setQuery(query.clone());
+    if (crop) {
+      kernel.cropToOverlap(mzTol, libraryPrecursorMz, queryPrecursorMz);
+    }
+    if (precursorRange != null) {
+      kernel.removeLibrarySignals(precursorRange.lowerEndpoint(), precursorRange.upperEndpoint());
+    }
+    final double score = function.getScore(parameters, mzTol, minMatch, kernel);
+
+    if (similarity == null) {
+      assertTrue(Double.isNaN(score), "kernel matched but the similarity did not");
+      return false;
+    }
+    // identical order of all additions
+    assertEquals(similarity.getScore(), score, 0d);
+    return true;
+  }
+
+  /**
+   * @return a spectrum with equal intensities, close m/z values and unsorted signals
+   */
+  private static DataPoint[] createSpectrum(Random random, double[] shared) {
+    final DataPoint[] dataPoints = new DataPoint[random.nextInt(30)];
+    for (int i = 0; i < dataPoints.length; i++) {
+      final double mz = shared.length > 0 && random.nextBoolean() ?
+          shared[random.nextInt(shared.length)] + random.nextGaussian() * 0.003
+          : 50 + random.nextDouble() * 450;
+      final double intensity =
+          random.nextInt(5) == 0 ? 100 : Math.round(random.nextDouble() * 1000) + 1;
+      dataPoints[i] = new SimpleDataPoint(mz, intensity);
+    }
+    if (random.nextBoolean()) {
+      Arrays.sort(dataPoints, Comparator.comparingDouble(DataPoint::getMZ));
+    }
+    return dataPoints;
+  }
+}
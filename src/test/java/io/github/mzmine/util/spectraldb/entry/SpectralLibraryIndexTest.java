@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package io.github.mzmine.util.spectraldb.entry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SpectralLibraryIndexTest {
+
+  private SpectralLibrary library;
+
+  private static SpectralLibraryEntry entry(Double precursorMZ, Float rt) {
+    Map<DBEntryField, Object> fields = new HashMap<>();
+    if (precursorMZ != null) {
+      fields.put(DBEntryField.PRECURSOR_MZ, precursorMZ);
+    }
+    if (rt != null) {
+      fields.put(DBEntryField.RT, rt);
+    }
+    return SpectralLibraryEntry.create(null, fields,
+        new DataPoint[]{new SimpleDataPoint(50d, 100d), new SimpleDataPoint(80d, 10d)});
+  }
+
+  @BeforeEach
+  void setUp() {
+    library = new SpectralLibrary(null, "test", new File("test.json"));
+    library.getEntries().addAll(
+        List.of(entry(300d, 5f), entry(100d, 1f), entry(200.001, null), entry(null, 3f),
+            entry(200d, 2f), entry(199.999, 10f)));
+  }
+
+  @Test
+  void testPrecursorWindow() {
+    SpectralLibraryIndex index = library.getIndex();
+    assertEquals(6, index.getNumEntries());
+    assertEquals(1, index.getEntriesWithoutPrecursor().size());
+
+    List<SpectralLibraryEntry> candidates = index.getCandidates(199.9995, 200.001);
+    assertEquals(2, candidates.size());
+    assertEquals(200d, candidates.get(0).getPrecursorMZ());
+    assertEquals(200.001, candidates.get(1).getPrecursorMZ());
+
+    assertEquals(6 - 1, index.getCandidates(0, 1000).size());
+    assertEquals(0, index.getCandidates(400, 1000).size());
+  }
+
+  @Test
+  void testRTFilter() {
+    List<SpectralLibraryEntry> candidates = new ArrayList<>();
+    // entries without RT always pass the RT filter
+    int added = library.getIndex().addCandidates(199, 201, 1.5f, 2.5f, candidates);
+    assertEquals(2, added);
+    assertEquals(2, candidates.size());
+  }
+
+  @Test
+  void testIndexReusedUntilEntriesChange() {
+    SpectralLibraryIndex index = library.getIndex();
+    assertSame(index, library.getIndex());
+    library.getEntries().add(entry(150d, null));
+    SpectralLibraryIndex updated = library.getIndex();
+    assertNotSame(index, updated);
+    assertEquals(1, updated.getCandidates(149, 151).size());
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2004-2022 The MZmine Development Team
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mzmine.util.spectraldb.parser;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.util.spectraldb.entry.SpectralLibraryEntry;
+import io.github.mzmine.util.spectraldb.parser.gnps.GNPSJsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompiledSpectralLibraryTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  void testCompileAndRead() throws IOException {
+    File source = tempDir.resolve("gnps.json").toFile();
+    Files.copy(Path.of(CompiledSpectralLibraryTest.class.getClassLoader()
+        .getResource("json/gnps.json").getFile()), source.toPath());
+    File compiled = tempDir.resolve("gnps.mzlib").toFile();
+
+    List<SpectralLibraryEntry> entries = new ArrayList<>();
+    new GNPSJsonParser(0, (list, alreadyProcessed) -> entries.addAll(list)).parse(null, source,
+        null);
+
+    CompiledLibraryWriter writer = CompiledLibraryWriter.create(source, compiled);
+    assertNotNull(writer);
+    writer.addEntries(entries);
+    assertTrue(writer.finish());
+    assertTrue(CompiledSpectralLibrary.isUpToDate(source, compiled));
+
+    CompiledSpectralLibrary library = CompiledSpectralLibrary.open(source, compiled);
+    assertEquals(entries.size(), library.getNumEntries());
+    for (int i = 0; i < entries.size(); i++) {
+      SpectralLibraryEntry expected = entries.get(i);
+      SpectralLibraryEntry actual = library.createEntry(i);
+      // precursor is available before the fields are decoded
+      assertEquals(expected.getPrecursorMZ(), actual.getPrecursorMZ());
+      assertArrayEquals(expected.getMzValues(new double[0]), actual.getMzValues(new double[0]));
+      assertArrayEquals(expected.getIntensityValues(new double[0]),
+          actual.getIntensityValues(new double[0]));
+      assertEquals(expected.getDataPointMZRange(), actual.getDataPointMZRange());
+      assertEquals(expected.getBasePeakIndex(), actual.getBasePeakIndex());
+      assertEquals(expected.getTIC(), actual.getTIC());
+      assertEquals(expected.getFields(), actual.getFields());
+    }
+
+    // changed source invalidates the compiled library
+    assertTrue(source.setLastModified(source.lastModified() - 10_000));
+    assertFalse(CompiledSpectralLibrary.isUpToDate(source, compiled));
+  }
+}
@@ -25,12 +25,15 @@
 
 package util.lipidannotationtest;
 
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentTable;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.LipidFragmentationRule;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipididentificationtools.MSMSLipidTools;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipids.ILipidAnnotation;
@@ -315,6 +318,26 @@ class LipidAnnotationTest {
    checkLipidAnnotation(testSpectrum);
    }
 
+  /**
+   * The precompiled fragment table needs to find the same fragments as the rule wise search
+   */
+  private void assertSameFragments(Set<LipidFragment> expected, List<LipidFragment> actual) {
+    Comparator<LipidFragment> order = Comparator.comparingDouble(
+        (LipidFragment f) -> f.getDataPoint().getMZ());
+    List<LipidFragment> expectedSorted = expected.stream().sorted(order).toList();
+    List<LipidFragment> actualSorted = actual.stream().sorted(order).toList();
+    Assert.assertEquals(expectedSorted.size(), actualSorted.size());
+    for (int i = 0; i < expectedSorted.size(); i++) {
+      LipidFragment e = expectedSorted.get(i);
+      LipidFragment a = actualSorted.get(i);
+      Assert.assertEquals(e.getRuleType(), a.getRuleType());
+      Assert.assertEquals(e.getMzExact(), a.getMzExact());
+      Assert.assertEquals(e.getChainLength(), a.getChainLength());
+      Assert.assertEquals(e.getNumberOfDBEs(), a.getNumberOfDBEs());
+      Assert.assertEquals(e.getLipidChainType(), a.getLipidChainType());
+    }
+  }
+
   private void checkLipidAnnotation(LipidAnnotationMsMsTestResource testSpectrum) {
     Set<MatchedLipid> matchedLipids = new HashSet<>();
     ILipidAnnotation lipidAnnotation = testSpectrum.getTestLipid();
@@ -341,6 +364,9 @@ class LipidAnnotationTest {
         }
       }
     }
+    assertSameFragments(annotatedFragments,
+        LipidFragmentTable.create(speciesLevelAnnotation, testSpectrum.getIonizationType(), rules)
+            .findFragments(massList, mzTolerance, null));
 
     Assert.assertTrue("No fragments detected", annotatedFragments.size() >= 1);
     if (!annotatedFragments.isEmpty()) {